@@ -86,7 +86,29 @@ Extras.DataGrid.Model = Core.extend({
          * @param {Number} lastColumn the last column to retrieve (inclusive)
          * @param {Number} lastRow the last row to retrieve (inclusive)
          */
-        prefetch: null
+        prefetch: null,
+        
+        /**
+         * Invoked to notify model that a region of data is displayed.  A model which discards data to limit its memory
+         * use should retain the data of the region until <code>release()</code> is invoked for the same region.
+         * 
+         * @param {Number} firstColumn the first displayed column (inclusive)
+         * @param {Number} firstRow the first displayed row (inclusive)
+         * @param {Number} lastColumn the last displayed column (inclusive)
+         * @param {Number} lastRow the last displayed row (inclusive)
+         */
+        retain: null,
+        
+        /**
+         * Invoked to notify model that a region of data previously provided to <code>retain()</code> is no longer 
+         * displayed.
+         * 
+         * @param {Number} firstColumn the first column (inclusive)
+         * @param {Number} firstRow the first row (inclusive)
+         * @param {Number} lastColumn the last column (inclusive)
+         * @param {Number} lastRow the last row (inclusive)
+         */
+        release: null
     }
 });
 
@@ -273,6 +273,12 @@ Extras.Sync.DataGrid = Core.extend(Echo.Render.ComponentSync, {
              */
             _renderContext: null,
             
+            /**
+             * Flag indicating whether the cells of the tile are retained by the model.
+             * @type Boolean
+             */
+            _retained: false,
+            
             /**
              * Creates a new <code>Tile</code>.
              *
@@ -400,6 +406,8 @@ Extras.Sync.DataGrid = Core.extend(Echo.Render.ComponentSync, {
                 this._table.style.width = this.positionPx.width + "px";
 
                 this.div.appendChild(this._table);
+                
+                this._loadCells();
 
                 for (row = this.cellIndex.top; row <= this.cellIndex.bottom; ++row) {
                     tr = document.createElement("tr");
@@ -410,20 +418,7 @@ Extras.Sync.DataGrid = Core.extend(Echo.Render.ComponentSync, {
                         if (row === this.cellIndex.top) {
                             td.style.width = (columnWidths[column] - this.dataGrid._cellBorderWidthPx) + "px";
                         }
-                        var value = this.dataGrid._model.get(column, row);
-                        if (value == null) {
-                            // FIXME Temporary fix for zero-height cells causing rendering to take forever.
-                            // Remove when bounding is working properly.
-                            value = "\u00a0";
-                        }
-                        
-                        var values = value.toString().split("\n");
-                        for (var iValue = 0; iValue < values.length; ++iValue) {
-                            if (iValue > 0) {
-                                td.appendChild(document.createElement("br"));
-                            }
-                            td.appendChild(document.createTextNode(values[iValue]));
-                        }
+                        this._renderCellContent(td, this.dataGrid._model.get(column, row));
                         tr.appendChild(td);
                     }
                     this._table.firstChild.appendChild(tr);
@@ -484,6 +479,11 @@ Extras.Sync.DataGrid = Core.extend(Echo.Render.ComponentSync, {
              * Must be invoked before the tile is discarded.
              */
             dispose: function() {
+                if (this._retained) {
+                    this.dataGrid._model.release(this.cellIndex.left, this.cellIndex.top, this.cellIndex.right, 
+                            this.cellIndex.bottom);
+                    this._retained = false;
+                }
                 this._renderContext.dispose();
                 this.div = this._table = null;
             },
@@ -533,6 +533,28 @@ Extras.Sync.DataGrid = Core.extend(Echo.Render.ComponentSync, {
                         this.positionPx.height, 0, this.region.bounds.height);
             },
 
+            /**
+             * Retains the cells of the tile in the model and requests their values, if supported by the model.
+             * Cells whose values are not immediately available are rendered again when the model provides them.
+             */
+            _loadCells: function() {
+                var model = this.dataGrid._model;
+                if (model.retain) {
+                    model.retain(this.cellIndex.left, this.cellIndex.top, this.cellIndex.right, this.cellIndex.bottom);
+                    this._retained = true;
+                }
+                if (model.prefetch) {
+                    var tile = this, 
+                        loading = true;
+                    model.prefetch(function() {
+                        if (!loading) {
+                            tile._renderCells();
+                        }
+                    }, this.cellIndex.left, this.cellIndex.top, this.cellIndex.right, this.cellIndex.bottom);
+                    loading = false;
+                }
+            },
+
             /**
              * Disposes of resources used by the tile.
              */
@@ -543,6 +565,51 @@ Extras.Sync.DataGrid = Core.extend(Echo.Render.ComponentSync, {
                 }
             },
             
+            /**
+             * Renders a model value as the content of a cell, replacing any existing content.
+             * 
+             * @param {Element} td the cell element
+             * @param value the model value
+             */
+            _renderCellContent: function(td, value) {
+                while (td.firstChild) {
+                    td.removeChild(td.firstChild);
+                }
+                
+                if (value == null) {
+                    // FIXME Temporary fix for zero-height cells causing rendering to take forever.
+                    // Remove when bounding is working properly.
+                    value = "\u00a0";
+                }
+                
+                var values = value.toString().split("\n");
+                for (var iValue = 0; iValue < values.length; ++iValue) {
+                    if (iValue > 0) {
+                        td.appendChild(document.createElement("br"));
+                    }
+                    td.appendChild(document.createTextNode(values[iValue]));
+                }
+            },
+            
+            /**
+             * Renders the content of the cells of a created tile again from the model.
+             * Does nothing if the tile has been disposed.
+             */
+            _renderCells: function() {
+                if (!this._table) {
+                    return;
+                }
+                var tr = this._table.firstChild.firstChild;
+                for (var row = this.cellIndex.top; tr; ++row) {
+                    var td = tr.firstChild;
+                    for (var column = this.cellIndex.left; td; ++column) {
+                        this._renderCellContent(td, this.dataGrid._model.get(column, row));
+                        td = td.nextSibling;
+                    }
+                    tr = tr.nextSibling;
+                }
+            },
+            
             setRowHeight: function(row, newHeight) {
                 var oldHeight = this.positionPx.rowHeights[row];
                 var tbody = this._table.firstChild;
@@ -675,12 +742,23 @@ Extras.Sync.DataGrid = Core.extend(Echo.Render.ComponentSync, {
                     return;
                 }
             
-                var row, rowIndex, tile;
+                var row, rowIndex, tile, columnIndex, empty;
                 for (rowIndex in this._tiles) {
                     row = this._tiles[rowIndex];
-                    for (var columnIndex in row) {
+                    empty = true;
+                    for (columnIndex in row) {
                         tile = row[columnIndex];
                         tile.adjustPositionPx(px, horizontal);
+                        if (tile.displayed) {
+                            empty = false;
+                        } else {
+                            // Discard tiles scrolled off screen, they are created again when scrolled back into view.
+                            tile.dispose();
+                            delete row[columnIndex];
+                        }
+                    }
+                    if (empty) {
+                        delete this._tiles[rowIndex];
                     }
                 }
                 
@@ -1175,6 +1253,8 @@ Extras.Sync.DataGrid = Core.extend(Echo.Render.ComponentSync, {
             this.scrollPosition.setIndex(null, this.visibleRange.top); 
             this.scrollPosition.store(this.component);
         }
+        
+        this._prefetchAdjacent(horizontal, px < 0 ? 1 : -1);
     },
     
     _adjustRegionPositionPx: function(px, horizontal) {
@@ -1292,6 +1372,65 @@ Extras.Sync.DataGrid = Core.extend(Echo.Render.ComponentSync, {
         };
     },
     
+    /**
+     * Notifies the model of the cells adjacent to the visible range in the scroll direction, such that they may be 
+     * retrieved before they are scrolled into view.  The prefetched range extends one visible width (or height) beyond 
+     * the visible range.  The fixed cells of the prefetched columns (or rows) are prefetched as separate ranges.
+     * 
+     * @param {Boolean} horizontal true if the grid was scrolled horizontally, false if it was scrolled vertically
+     * @param {Number} direction the scroll direction, 1 to scroll towards the right or bottom, -1 to scroll towards 
+     *        the left or top
+     */
+    _prefetchAdjacent: function(horizontal, direction) {
+        if (!this._model || !this._model.prefetch) {
+            return;
+        }
+        
+        var firstScrollColumn = this.fixedCells.left,
+            lastScrollColumn = this.size.columns - this.fixedCells.right - 1,
+            firstScrollRow = this.fixedCells.top,
+            lastScrollRow = this.size.rows - this.fixedCells.bottom - 1;
+        var left = this.visibleRange.left == null ? firstScrollColumn : Math.floor(this.visibleRange.left),
+            right = this.visibleRange.right == null ? lastScrollColumn : Math.ceil(this.visibleRange.right) - 1,
+            top = this.visibleRange.top == null ? firstScrollRow : Math.floor(this.visibleRange.top),
+            bottom = this.visibleRange.bottom == null ? lastScrollRow : Math.ceil(this.visibleRange.bottom) - 1,
+            extent, ranges, i;
+        
+        if (horizontal) {
+            extent = right - left + 1;
+            left = direction > 0 ? right + 1 : left - extent;
+            right = left + extent - 1;
+            left = Math.max(left, firstScrollColumn);
+            right = Math.min(right, lastScrollColumn);
+            if (left > right) {
+                return;
+            }
+            ranges = [ [ top, bottom ], [ 0, this.fixedCells.top - 1 ], 
+                    [ this.size.rows - this.fixedCells.bottom, this.size.rows - 1 ] ];
+            for (i = 0; i < ranges.length; ++i) {
+                if (ranges[i][0] <= ranges[i][1]) {
+                    this._model.prefetch(function() { }, left, ranges[i][0], right, ranges[i][1]);
+                }
+            }
+        } else {
+            extent = bottom - top + 1;
+            top = direction > 0 ? bottom + 1 : top - extent;
+            bottom = top + extent - 1;
+            top = Math.max(top, firstScrollRow);
+            bottom = Math.min(bottom, lastScrollRow);
+            if (top > bottom) {
+                return;
+            }
+            ranges = [ [ left, right ], [ 0, this.fixedCells.left - 1 ], 
+                    [ this.size.columns - this.fixedCells.right, this.size.columns - 1 ] ];
+            for (i = 0; i < ranges.length; ++i) {
+                if (ranges[i][0] <= ranges[i][1]) {
+                    this._model.prefetch(function() { }, ranges[i][0], top, ranges[i][1], bottom);
+                }
+            }
+        }
+    },
+    
     _processScroll: function(e) {
         if (e.incremental) {
             if (e.verticalIncrement) {
@@ -1368,6 +1507,9 @@ Extras.Sync.DataGrid = Core.extend(Echo.Render.ComponentSync, {
     
     /** @see Echo.Render.ComponentSync#renderDispose */
     renderDispose: function(update) {
+        for (var name in this.regions) {
+            this.regions[name].clear();
+        }
         this._cachedTileRows = { };
         this._prototypeTable = null;
         this.regions = null;
@@ -0,0 +1,83 @@
+package nextapp.echo.extras.app;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nextapp.echo.extras.app.tree.DefaultMutableTreeNode;
+import nextapp.echo.extras.app.tree.TreeNodeModel;
+import nextapp.echo.extras.app.tree.TreeRowIndex;
+
+/**
+ * Reports the serialized size of a fully expanded <code>Tree</code> of 10000
+ * rows, as stored in the session, compared with the size including the row
+ * index that is no longer serialized but rebuilt after deserialization.
+ * <p>
+ * Run with <code>java nextapp.echo.extras.app.TreeSerializationBenchmark</code>.
+ */
+public class TreeSerializationBenchmark {
+
+	private static final int FOLDERS = 100;
+	private static final int FILES = 99;
+
+	private static DefaultMutableTreeNode createNode(String name) {
+		Map columnValues = new HashMap();
+		columnValues.put("name", name);
+		return new DefaultMutableTreeNode(columnValues);
+	}
+
+	private static byte[] serialize(Object[] objects) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		for (int i = 0; i < objects.length; ++i) {
+			out.writeObject(objects[i]);
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static byte[] serialize(Object object) throws IOException {
+		return serialize(new Object[] { object });
+	}
+
+	public static void main(String[] args) throws IOException, ClassNotFoundException {
+		DefaultMutableTreeNode root = createNode("root");
+		for (int i = 0; i < FOLDERS; ++i) {
+			DefaultMutableTreeNode folder = createNode("folder" + i);
+			root.addChild(folder);
+			for (int j = 0; j < FILES; ++j) {
+				folder.addChild(createNode("file" + i + "." + j));
+			}
+		}
+		Tree tree = new Tree(new TreeNodeModel(root));
+		tree.expandAll();
+		tree.validate();
+
+		List paths = new ArrayList();
+		for (int row = 0; row < tree.getRowCount(); ++row) {
+			paths.add(tree.getPathForRow(row));
+		}
+		TreeRowIndex rowIndex = new TreeRowIndex();
+		rowIndex.insert(0, paths);
+
+		int size = serialize(tree).length;
+		int sizeWithRowIndex = serialize(new Object[] { tree, rowIndex }).length;
+		System.out.println(tree.getRowCount() + " rows");
+		System.out.println("serialized tree: " + size + " bytes");
+		System.out.println("serialized tree including row index: " + sizeWithRowIndex + " bytes");
+		System.out.println("saved: " + (sizeWithRowIndex - size) + " bytes ("
+				+ (100 * (sizeWithRowIndex - size) / sizeWithRowIndex) + "%)");
+
+		Tree restored = (Tree) new ObjectInputStream(new ByteArrayInputStream(serialize(tree))).readObject();
+		long start = System.nanoTime();
+		int rowCount = restored.getRowCount();
+		System.out.println("row index of " + rowCount + " rows rebuilt after deserialization in "
+				+ (System.nanoTime() - start) / 1000 + " us");
+	}
+}
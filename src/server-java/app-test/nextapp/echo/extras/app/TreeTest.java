@@ -0,0 +1,646 @@
+package nextapp.echo.extras.app;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import junit.framework.TestCase;
+import nextapp.echo.app.ApplicationInstance;
+import nextapp.echo.app.Component;
+import nextapp.echo.app.Label;
+import nextapp.echo.app.Window;
+import nextapp.echo.app.event.ChangeEvent;
+import nextapp.echo.app.event.ChangeListener;
+import nextapp.echo.extras.app.event.TreeExpansionBatchListener;
+import nextapp.echo.extras.app.event.TreeExpansionEvent;
+import nextapp.echo.extras.app.event.TreeExpansionListener;
+import nextapp.echo.extras.app.tree.AbstractAsyncTreeModel;
+import nextapp.echo.extras.app.tree.DefaultMutableTreeNode;
+import nextapp.echo.extras.app.tree.DefaultTreeCellRenderer;
+import nextapp.echo.extras.app.tree.RecyclingTreeCellRenderer;
+import nextapp.echo.extras.app.tree.TreeNodeModel;
+import nextapp.echo.extras.app.tree.TreePath;
+import nextapp.echo.extras.app.tree.TreeSelectionModel;
+
+/**
+ * Tests that the rows of a <code>Tree</code> are updated incrementally when
+ * its model or expansion state changes.
+ */
+public class TreeTest extends TestCase {
+
+	private DefaultMutableTreeNode root;
+	private DefaultMutableTreeNode child1;
+	private DefaultMutableTreeNode child2;
+	private Tree tree;
+
+	private static DefaultMutableTreeNode createNode(String name) {
+		Map columnValues = new HashMap();
+		columnValues.put("name", name);
+		return new DefaultMutableTreeNode(columnValues);
+	}
+
+	protected void setUp() {
+		root = createNode("root");
+		child1 = createNode("child1");
+		child2 = createNode("child2");
+		root.addChild(child1);
+		root.addChild(child2);
+		child1.addChild(createNode("child1.1"));
+		tree = new Tree(new TreeNodeModel(root));
+		tree.expand(new TreePath(root));
+		tree.validate();
+	}
+
+	/**
+	 * Tests that inserted nodes are added at the correct rows, without
+	 * rendering the existing rows again.
+	 */
+	public void testNodesAdded() {
+		Component child2Component = tree.getComponent(2, 0);
+		DefaultMutableTreeNode child3 = createNode("child3");
+		root.addChild(child3);
+		tree.validate();
+
+		assertEquals(4, tree.getComponentCount());
+		assertSame(child2Component, tree.getComponent(2, 0));
+		assertEquals(new TreePath(new Object[] { root, child3 }), tree.getPathForRow(3));
+	}
+
+	/**
+	 * Tests that nodes added below a collapsed node are not rendered.
+	 */
+	public void testNodesAddedCollapsed() {
+		child1.addChild(createNode("child1.2"));
+		tree.validate();
+
+		assertEquals(3, tree.getComponentCount());
+		assertNull(tree.getComponent(3, 0));
+	}
+
+	/**
+	 * Tests that the rows of removed nodes and their visible descendants are
+	 * removed.
+	 */
+	public void testNodesRemoved() {
+		tree.expand(new TreePath(new Object[] { root, child1 }));
+		assertEquals(new TreePath(new Object[] { root, child2 }), tree.getPathForRow(3));
+
+		root.removeChild(child1);
+		tree.validate();
+
+		assertEquals(2, tree.getComponentCount());
+		assertEquals(new TreePath(new Object[] { root, child2 }), tree.getPathForRow(1));
+		assertEquals(-1, tree.getRowForPath(new TreePath(new Object[] { root, child1 })));
+	}
+
+	/**
+	 * Tests that the cached components of hidden descendants of a removed
+	 * node are disposed.
+	 */
+	public void testNodesRemovedCollapsed() {
+		TreePath child1Path = new TreePath(new Object[] { root, child1 });
+		tree.expand(child1Path);
+		tree.validate();
+		tree.collapse(child1Path);
+		tree.validate();
+		int componentCount = tree.getComponentCount();
+
+		root.removeChild(child1);
+		tree.validate();
+
+		assertEquals(componentCount - 2, tree.getComponentCount());
+		assertEquals(2, tree.getRowCount());
+	}
+
+	/**
+	 * Tests that only the components of a changed node are rendered again.
+	 */
+	public void testNodesChanged() {
+		Component child1Component = tree.getComponent(1, 0);
+		Component child2Component = tree.getComponent(2, 0);
+		Map columnValues = new HashMap();
+		columnValues.put("name", "changed");
+		child1.setColumnValues(columnValues);
+		tree.validate();
+
+		assertNotSame(child1Component, tree.getComponent(1, 0));
+		assertSame(child2Component, tree.getComponent(2, 0));
+		assertEquals(3, tree.getComponentCount());
+	}
+
+	/**
+	 * Tests that the components of all columns of a row are stored and
+	 * replaced together.
+	 */
+	public void testMultipleColumns() {
+		tree = new Tree(new TreeNodeModel(root, new String[] { "name", "size" }, true));
+		tree.expand(new TreePath(root));
+		tree.validate();
+		assertEquals(6, tree.getComponentCount());
+
+		TreePath child1Path = new TreePath(new Object[] { root, child1 });
+		Component[] components = tree.getRowComponents(child1Path);
+		assertEquals(2, components.length);
+		assertSame(components[0], tree.getComponent(1, 0));
+		assertSame(components[1], tree.getComponent(child1Path, 1));
+
+		Component sizeComponent = components[1];
+		Map columnValues = new HashMap();
+		columnValues.put("name", "changed");
+		child1.setColumnValues(columnValues);
+		tree.validate();
+		assertNotSame(sizeComponent, tree.getComponent(child1Path, 1));
+		assertNull(sizeComponent.getParent());
+		assertEquals(6, tree.getComponentCount());
+	}
+
+	/**
+	 * Tests that a virtualized tree only holds the components of the rows
+	 * within its window, and releases them once they leave the window.
+	 */
+	public void testVirtualizedWindow() {
+		for (int i = 0; i < 20; ++i) {
+			child2.addChild(createNode("child2." + i));
+		}
+		tree.expand(new TreePath(new Object[] { root, child2 }));
+		tree.setVirtualized(true);
+		tree.setOverscanRowCount(2);
+		tree.setViewport(0, 5);
+		tree.validate();
+
+		assertEquals(23, tree.getRowCount());
+		assertEquals(0, tree.getWindowStartRow());
+		assertEquals(7, tree.getWindowEndRow());
+		assertEquals(7, tree.getComponentCount());
+		assertNull(tree.getComponent(7, 0));
+
+		Component row6Component = tree.getComponent(6, 0);
+		tree.setViewport(10, 5);
+		assertEquals(8, tree.getWindowStartRow());
+		assertEquals(17, tree.getWindowEndRow());
+		assertEquals(9, tree.getComponentCount());
+		assertNull(tree.getComponent(6, 0));
+		assertNotNull(tree.getComponent(8, 0));
+		assertNull(row6Component.getParent());
+	}
+
+	/**
+	 * Renderer that reconfigures the labels it rendered before.
+	 */
+	private static class LabelRecyclingRenderer extends DefaultTreeCellRenderer implements RecyclingTreeCellRenderer {
+
+		public boolean recycleTreeCellRendererComponent(Component component, Tree tree, TreePath treePath,
+				Object value, int column, int row, boolean leaf) {
+			((Label) component).setText(value == null ? null : value.toString());
+			return true;
+		}
+	}
+
+	/**
+	 * Tests that the components of a <code>RecyclingTreeCellRenderer</code>
+	 * are reused for the rows entering the window of a virtualized tree, and
+	 * reconfigured in place when their node changes.
+	 */
+	public void testComponentRecycling() {
+		for (int i = 0; i < 20; ++i) {
+			child2.addChild(createNode("child2." + i));
+		}
+		tree.setCellRenderer(new LabelRecyclingRenderer());
+		tree.expand(new TreePath(new Object[] { root, child2 }));
+		tree.setVirtualized(true);
+		tree.setOverscanRowCount(2);
+		tree.setViewport(0, 5);
+		tree.validate();
+
+		Component row6Component = tree.getComponent(6, 0);
+		tree.setViewport(10, 5);
+		assertEquals(9, tree.getComponentCount());
+		assertSame(tree, row6Component.getParent());
+		assertEquals("child2.5", ((Label) tree.getComponent(8, 0)).getText());
+
+		tree.setViewport(0, 5);
+		assertEquals(7, tree.getComponentCount());
+
+		Component child1Component = tree.getComponent(1, 0);
+		Map columnValues = new HashMap();
+		columnValues.put("name", "changed");
+		child1.setColumnValues(columnValues);
+		tree.validate();
+		assertSame(child1Component, tree.getComponent(1, 0));
+		assertEquals("changed", ((Label) child1Component).getText());
+		assertEquals(7, tree.getComponentCount());
+	}
+
+	/**
+	 * Tests that expanding a subtree fires a single property change, and an
+	 * expansion event for every expanded path.
+	 */
+	public void testExpandAll() {
+		DefaultMutableTreeNode child11 = (DefaultMutableTreeNode) child1.getChild(0);
+		child11.addChild(createNode("child1.1.1"));
+		final List expandedPaths = new ArrayList();
+		tree.addTreeExpansionListener(new TreeExpansionListener() {
+			public void treeExpanded(TreeExpansionEvent e) {
+				expandedPaths.add(e.getPath());
+			}
+			public void treeCollapsed(TreeExpansionEvent e) {
+				fail("no path is collapsed");
+			}
+		});
+		final int[] propertyChanges = new int[1];
+		tree.addPropertyChangeListener(new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent e) {
+				if (Tree.EXPANSION_STATE_CHANGED_PROPERTY.equals(e.getPropertyName())) {
+					++propertyChanges[0];
+				}
+			}
+		});
+
+		tree.expandAll();
+
+		assertEquals(1, propertyChanges[0]);
+		assertEquals(2, expandedPaths.size());
+		assertEquals(5, tree.getRowCount());
+		assertEquals(5, tree.getComponentCount());
+		assertEquals(new TreePath(new Object[] { root, child1, child11 }), tree.getPathForRow(2));
+		assertEquals(new TreePath(new Object[] { root, child2 }), tree.getPathForRow(4));
+	}
+
+	/**
+	 * Tests that a <code>TreeExpansionBatchListener</code> is notified once
+	 * of all paths expanded by <code>expandAll()</code>.
+	 */
+	public void testExpandAllBatchListener() {
+		DefaultMutableTreeNode child11 = (DefaultMutableTreeNode) child1.getChild(0);
+		child11.addChild(createNode("child1.1.1"));
+		final List events = new ArrayList();
+		tree.addTreeExpansionListener(new TreeExpansionBatchListener() {
+			public void treeExpanded(TreeExpansionEvent e) {
+				fail("batch listener notified per path");
+			}
+			public void treeCollapsed(TreeExpansionEvent e) {
+				fail("no path is collapsed");
+			}
+			public void treePathsExpanded(TreeExpansionEvent e) {
+				events.add(e);
+			}
+			public void treePathsCollapsed(TreeExpansionEvent e) {
+				fail("no path is collapsed");
+			}
+		});
+
+		tree.expandAll();
+
+		assertEquals(1, events.size());
+		TreePath[] paths = ((TreeExpansionEvent) events.get(0)).getPaths();
+		assertEquals(2, paths.length);
+		assertEquals(new TreePath(new Object[] { root, child1 }), ((TreeExpansionEvent) events.get(0)).getPath());
+	}
+
+	/**
+	 * Tests that only the nodes up to the given depth are expanded.
+	 */
+	public void testExpandToDepth() {
+		DefaultMutableTreeNode child11 = (DefaultMutableTreeNode) child1.getChild(0);
+		child11.addChild(createNode("child1.1.1"));
+		tree.collapse(new TreePath(root));
+		assertEquals(1, tree.getRowCount());
+
+		tree.expandToDepth(new TreePath(root), 2);
+
+		assertTrue(tree.isExpanded(new TreePath(new Object[] { root, child1 })));
+		assertFalse(tree.isExpanded(new TreePath(new Object[] { root, child1, child11 })));
+		assertEquals(4, tree.getRowCount());
+	}
+
+	/**
+	 * Tests that collapsing a subtree removes the rows of all its 
+	 * descendants at once.
+	 */
+	public void testCollapseAll() {
+		tree.expandAll();
+		assertEquals(4, tree.getRowCount());
+		final int[] propertyChanges = new int[1];
+		tree.addPropertyChangeListener(new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent e) {
+				if (Tree.EXPANSION_STATE_CHANGED_PROPERTY.equals(e.getPropertyName())) {
+					++propertyChanges[0];
+				}
+			}
+		});
+
+		tree.collapseAll();
+
+		assertEquals(1, propertyChanges[0]);
+		assertEquals(1, tree.getRowCount());
+		assertFalse(tree.isExpanded(new TreePath(new Object[] { root, child1 })));
+	}
+
+	/**
+	 * Tests that selecting and deselecting an interval of rows changes the
+	 * selection model only once.
+	 */
+	public void testSelectionInterval() {
+		tree.expandAll();
+		tree.getSelectionModel().setSelectionMode(TreeSelectionModel.MULTIPLE_SELECTION);
+		final int[] changes = new int[1];
+		tree.getSelectionModel().addChangeListener(new ChangeListener() {
+			public void stateChanged(ChangeEvent e) {
+				++changes[0];
+			}
+		});
+
+		tree.setSelectionInterval(3, 1);
+		assertEquals(1, changes[0]);
+		TreePath[] paths = tree.getSelectionModel().getSelectionPaths();
+		assertEquals(3, paths.length);
+		for (int i = 0; i < paths.length; i++) {
+			assertEquals(tree.getPathForRow(i + 1), paths[i]);
+		}
+
+		tree.removeSelectionInterval(1, 2);
+		assertEquals(2, changes[0]);
+		assertEquals(1, tree.getSelectionModel().getSelectionPaths().length);
+		assertTrue(tree.getSelectionModel().isPathSelected(tree.getPathForRow(3)));
+
+		tree.addSelectionInterval(0, 10);
+		assertEquals(3, changes[0]);
+		assertEquals(4, tree.getSelectionModel().getSelectionPaths().length);
+	}
+
+	/**
+	 * Tests that the rows of a deserialized tree are rebuilt from its model 
+	 * and expanded paths.
+	 */
+	public void testSerialization() throws Exception {
+		tree.expand(new TreePath(new Object[] { root, child1 }));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(tree);
+		out.close();
+
+		Tree restored = (Tree) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+		assertEquals(4, restored.getRowCount());
+		TreePath path = restored.getPathForRow(2);
+		assertEquals(3, path.getPathCount());
+		assertTrue(restored.isExpanded(path.getParentPath()));
+		assertEquals(2, restored.getRowForPath(path));
+		assertEquals(4, restored.getComponentCount());
+		assertNotNull(restored.getComponent(path, 0));
+	}
+
+	/**
+	 * Tests that a filter shows the matching nodes and their expanded 
+	 * ancestors, and that the expansion state is restored when cleared.
+	 */
+	public void testFilter() {
+		DefaultMutableTreeNode child11 = (DefaultMutableTreeNode) child1.getChild(0);
+		child2.addChild(createNode("child2.1"));
+		tree.setSearchIndexed(true);
+		tree.setFilter("CHILD1.1");
+		tree.validate();
+
+		assertEquals(3, tree.getRowCount());
+		assertEquals(new TreePath(new Object[] { root, child1, child11 }), tree.getPathForRow(2));
+		assertTrue(tree.isExpanded(new TreePath(new Object[] { root, child1 })));
+		assertSame(root, tree.getModel().getRoot());
+		assertEquals(1, tree.getViewModel().getChildCount(root));
+
+		child2.addChild(createNode("child1.1 copy"));
+		tree.validate();
+		assertEquals(5, tree.getRowCount());
+		assertEquals(3, tree.findPaths("child1").length);
+
+		tree.setFilter(null);
+		tree.validate();
+		assertEquals(3, tree.getRowCount());
+		assertFalse(tree.isExpanded(new TreePath(new Object[] { root, child1 })));
+	}
+
+	/**
+	 * Tests that sorting reorders the rows while keeping their components,
+	 * and that changes of the model are shown in sorted order.
+	 */
+	public void testSort() {
+		tree.expand(new TreePath(new Object[] { root, child1 }));
+		Component child1Component = tree.getComponent(1, 0);
+		Component child2Component = tree.getComponent(3, 0);
+		int componentCount = tree.getComponentCount();
+
+		tree.setSort(0, false);
+		tree.validate();
+		assertEquals(new TreePath(new Object[] { root, child2 }), tree.getPathForRow(1));
+		assertEquals(new TreePath(new Object[] { root, child1 }), tree.getPathForRow(2));
+		assertEquals(3, tree.getPathForRow(3).getPathCount());
+		assertSame(child2Component, tree.getComponent(1, 0));
+		assertSame(child1Component, tree.getComponent(2, 0));
+		assertEquals(componentCount, tree.getComponentCount());
+
+		DefaultMutableTreeNode child3 = createNode("child3");
+		root.addChild(child3);
+		tree.validate();
+		assertEquals(new TreePath(new Object[] { root, child3 }), tree.getPathForRow(1));
+		assertSame(child2Component, tree.getComponent(2, 0));
+
+		Map columnValues = new HashMap();
+		columnValues.put("name", "child0");
+		child3.setColumnValues(columnValues);
+		tree.validate();
+		assertEquals(new TreePath(new Object[] { root, child3 }), tree.getPathForRow(4));
+
+		tree.processInput(Tree.INPUT_SORT, new Integer(0));
+		tree.validate();
+		assertTrue(tree.isSortAscending());
+		assertEquals(new TreePath(new Object[] { root, child3 }), tree.getPathForRow(1));
+
+		tree.setSort(-1, true);
+		tree.validate();
+		assertEquals(new TreePath(new Object[] { root, child1 }), tree.getPathForRow(1));
+		assertSame(root, tree.getViewModel().getRoot());
+		assertSame(tree.getModel(), tree.getViewModel());
+	}
+
+	/**
+	 * Tests that changing the comparator of the sort column sorts the rows
+	 * again rather than reporting a change of the column widths.
+	 */
+	public void testSortComparatorChanged() {
+		tree.setSort(0, true);
+		tree.validate();
+		assertEquals(new TreePath(new Object[] { root, child1 }), tree.getPathForRow(1));
+		final List propertyNames = new ArrayList();
+		tree.addPropertyChangeListener(new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent e) {
+				propertyNames.add(e.getPropertyName());
+			}
+		});
+
+		tree.getColumnModel().getColumn(0).setComparator(Collections.reverseOrder());
+		tree.validate();
+
+		assertEquals(new TreePath(new Object[] { root, child2 }), tree.getPathForRow(1));
+		assertTrue(propertyNames.contains(Tree.SORT_CHANGED_PROPERTY));
+		assertFalse(propertyNames.contains(Tree.COLUMN_WIDTH_CHANGED_PROPERTY));
+	}
+
+	/**
+	 * Tests that a failed load collapses the node and is reported through
+	 * <code>childLoadingFailed()</code> rather than thrown.
+	 */
+	public void testAsyncChildLoadingFailed() {
+		ApplicationInstance app = createApplication();
+		try {
+			final List failures = new ArrayList();
+			TestAsyncTreeModel model = new TestAsyncTreeModel() {
+				protected List loadChildren(Serializable parent) {
+					throw new IllegalStateException("unavailable");
+				}
+			};
+			QueueExecutor executor = new QueueExecutor();
+			tree = new Tree(model) {
+				protected void childLoadingFailed(TreePath treePath, Throwable cause) {
+					failures.add(treePath);
+					failures.add(cause);
+				}
+			};
+			tree.setChildLoaderExecutor(executor);
+			tree.validate();
+
+			executor.runAll();
+			app.processQueuedTasks();
+
+			assertEquals(2, failures.size());
+			assertEquals(new TreePath(model.getRoot()), failures.get(0));
+			assertTrue(failures.get(1) instanceof IllegalStateException);
+			assertFalse(model.isLoading("root"));
+			assertFalse(tree.isExpanded(new TreePath(model.getRoot())));
+			assertEquals(1, tree.getRowCount());
+		} finally {
+			ApplicationInstance.setActive(null);
+		}
+	}
+
+	/**
+	 * Asynchronous model whose root has the children "a" and "b".
+	 */
+	private static class TestAsyncTreeModel extends AbstractAsyncTreeModel {
+
+		protected List loadChildren(Serializable parent) {
+			return Arrays.asList(new String[] { "a", "b" });
+		}
+
+		protected Serializable getNodeValueAt(Serializable node, int columnIndex) {
+			return node;
+		}
+
+		protected boolean isLeafNode(Serializable node) {
+			return !"root".equals(node);
+		}
+
+		public int getColumnCount() {
+			return 1;
+		}
+
+		public Serializable getRoot() {
+			return "root";
+		}
+	}
+
+	/**
+	 * Executor that runs tasks only when requested.
+	 */
+	private static class QueueExecutor implements Executor {
+
+		private List tasks = new ArrayList();
+
+		public void execute(Runnable task) {
+			tasks.add(task);
+		}
+
+		private void runAll() {
+			for (int i = 0; i < tasks.size(); ++i) {
+				((Runnable) tasks.get(i)).run();
+			}
+			tasks.clear();
+		}
+	}
+
+	private ApplicationInstance createApplication() {
+		ApplicationInstance app = new ApplicationInstance() {
+			public Window init() {
+				return new Window();
+			}
+		};
+		ApplicationInstance.setActive(app);
+		return app;
+	}
+
+	/**
+	 * Tests that an expanded node of an <code>AsyncTreeModel</code> shows a
+	 * placeholder row until its children have been loaded, and that the
+	 * children are merged by the application task queue.
+	 */
+	public void testAsyncChildLoading() {
+		ApplicationInstance app = createApplication();
+		try {
+			TestAsyncTreeModel model = new TestAsyncTreeModel();
+			QueueExecutor executor = new QueueExecutor();
+			tree = new Tree(model);
+			tree.setChildLoaderExecutor(executor);
+			tree.validate();
+
+			assertTrue(model.isLoading("root"));
+			assertEquals(2, tree.getRowCount());
+			assertTrue(tree.getPathForRow(1).getLastPathComponent() instanceof AbstractAsyncTreeModel.LoadingNode);
+
+			executor.runAll();
+			assertEquals(2, tree.getRowCount());
+			app.processQueuedTasks();
+			tree.validate();
+
+			assertFalse(model.isLoading("root"));
+			assertEquals(3, tree.getRowCount());
+			assertEquals("b", tree.getPathForRow(2).getLastPathComponent());
+		} finally {
+			ApplicationInstance.setActive(null);
+		}
+	}
+
+	/**
+	 * Tests that collapsing a node cancels the loading of its children.
+	 */
+	public void testAsyncChildLoadingCancelled() {
+		ApplicationInstance app = createApplication();
+		try {
+			TestAsyncTreeModel model = new TestAsyncTreeModel();
+			QueueExecutor executor = new QueueExecutor();
+			tree = new Tree(model);
+			tree.setChildLoaderExecutor(executor);
+			tree.validate();
+			assertTrue(model.isLoading("root"));
+
+			tree.collapse(new TreePath(model.getRoot()));
+			executor.runAll();
+			app.processQueuedTasks();
+
+			assertFalse(model.isLoading("root"));
+			assertFalse(model.isChildrenLoaded("root"));
+			assertFalse(app.hasQueuedTasks());
+			assertEquals(1, tree.getRowCount());
+		} finally {
+			ApplicationInstance.setActive(null);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package nextapp.echo.extras.app.datagrid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the partitioned prefetching of <code>AbstractPartitionedDataGridModel</code>.
+ */
+public class AbstractPartitionedDataGridModelTest extends TestCase {
+
+	private static class TestModel extends AbstractPartitionedDataGridModel {
+
+		List fetchedRanges = Collections.synchronizedList(new ArrayList());
+		CountDownLatch release;
+		boolean fail;
+
+		TestModel(int partitionSize) {
+			super(partitionSize);
+		}
+
+		protected Object[][] fetch(int firstColumn, int firstRow, int lastColumn, int lastRow) throws Exception {
+			fetchedRanges.add(firstColumn + "," + firstRow + "-" + lastColumn + "," + lastRow);
+			if (release != null) {
+				release.await();
+			}
+			if (fail) {
+				throw new IllegalStateException("Backend unavailable");
+			}
+			Object[][] values = new Object[lastRow - firstRow + 1][lastColumn - firstColumn + 1];
+			for (int row = firstRow; row <= lastRow; ++row) {
+				for (int column = firstColumn; column <= lastColumn; ++column) {
+					values[row - firstRow][column - firstColumn] = column + "," + row;
+				}
+			}
+			return values;
+		}
+
+		public int getColumnCount() {
+			return 10;
+		}
+
+		public int getRowCount() {
+			return 1000;
+		}
+	}
+
+	private TestModel model;
+	private ExecutorService executor;
+
+	protected void setUp() throws Exception {
+		model = new TestModel(100);
+		executor = Executors.newFixedThreadPool(4);
+		model.setFetchExecutor(executor);
+	}
+
+	protected void tearDown() throws Exception {
+		if (model.release != null) {
+			model.release.countDown();
+		}
+		executor.shutdownNow();
+	}
+
+	public void testPartitionAlignedSubRanges() throws Exception {
+		model.prefetchAsync(0, 50, 4, 249).get();
+		List fetched = new ArrayList(model.fetchedRanges);
+		Collections.sort(fetched);
+		assertEquals("[0,100-4,199, 0,200-4,249, 0,50-4,99]", fetched.toString());
+	}
+
+	public void testParallelFetch() throws Exception {
+		model.release = new CountDownLatch(1);
+		Future future = model.prefetchAsync(0, 0, 4, 299);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (model.fetchedRanges.size() < 3 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(3, model.fetchedRanges.size());
+		assertFalse(future.isDone());
+		model.release.countDown();
+		future.get(5, TimeUnit.SECONDS);
+		assertTrue(future.isDone());
+	}
+
+	public void testCachedValues() throws Exception {
+		model.prefetchAsync(0, 0, 4, 149).get();
+		assertEquals(2, model.fetchedRanges.size());
+		assertEquals("3,120", model.get(3, 120));
+		assertEquals(2, model.fetchedRanges.size());
+
+		model.prefetchAsync(1, 10, 2, 20).get();
+		assertEquals(2, model.fetchedRanges.size());
+
+		assertEquals("7,120", model.get(7, 120));
+		assertEquals(3, model.fetchedRanges.size());
+	}
+
+	public void testEventClearsCache() throws Exception {
+		model.prefetch(0, 0, 4, 9);
+		assertEquals(1, model.fetchedRanges.size());
+		model.fireCellsUpdated(0, 0, 0, 0);
+		model.prefetch(0, 0, 4, 9);
+		assertEquals(2, model.fetchedRanges.size());
+	}
+
+	public void testTimeout() throws Exception {
+		model.release = new CountDownLatch(1);
+		Future future = model.prefetchAsync(0, 0, 4, 9);
+		try {
+			future.get(50, TimeUnit.MILLISECONDS);
+			fail("Prefetch did not time out.");
+		} catch (TimeoutException ex) {
+			// Expected.
+		}
+		assertTrue(future.cancel(true));
+		assertTrue(future.isCancelled());
+	}
+
+	public void testFailure() throws Exception {
+		model.fail = true;
+		try {
+			model.prefetchAsync(0, 0, 4, 9).get();
+			fail("Prefetch did not fail.");
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+		model.fail = false;
+		assertEquals("2,3", model.get(2, 3));
+	}
+}
@@ -0,0 +1,75 @@
+package nextapp.echo.extras.app.datagrid;
+
+import junit.framework.TestCase;
+import nextapp.echo.extras.app.event.DataGridModelEvent;
+import nextapp.echo.extras.app.event.DataGridModelListener;
+
+/**
+ * Tests <code>DefaultColumnarDataGridModel</code>.
+ */
+public class DefaultColumnarDataGridModelTest extends TestCase {
+
+	private DefaultColumnarDataGridModel model;
+
+	protected void setUp() throws Exception {
+		model = new DefaultColumnarDataGridModel(3);
+		model.addColumn(new int[] { 1, 2, 3 });
+		model.addColumn(new long[] { 4L, 5L, 6L });
+		model.addColumn(new double[] { 0.5, 1.5, 2.5 });
+		model.addColumn(new String[] { "a", null, "c" });
+	}
+
+	public void testColumnTypes() {
+		assertEquals(4, model.getColumnCount());
+		assertEquals(3, model.getRowCount());
+		assertEquals(ColumnarDataGridModel.TYPE_INT, model.getColumnType(0));
+		assertEquals(ColumnarDataGridModel.TYPE_LONG, model.getColumnType(1));
+		assertEquals(ColumnarDataGridModel.TYPE_DOUBLE, model.getColumnType(2));
+		assertEquals(ColumnarDataGridModel.TYPE_STRING, model.getColumnType(3));
+	}
+
+	public void testGetters() {
+		assertEquals(2, model.getInt(0, 1));
+		assertEquals(6L, model.getLong(1, 2));
+		assertEquals(0.5, model.getDouble(2, 0), 0.0);
+		assertNull(model.getString(3, 1));
+		try {
+			model.getInt(2, 0);
+			fail("Read int from double column.");
+		} catch (ClassCastException ex) {
+			// Expected.
+		}
+	}
+
+	public void testBoxedValues() {
+		assertEquals(new Integer(3), model.get(0, 2));
+		assertEquals(new Long(4L), model.get(1, 0));
+		assertEquals(new Double(1.5), model.get(2, 1));
+		assertEquals("c", model.get(3, 2));
+	}
+
+	public void testInvalidColumnLength() {
+		try {
+			model.addColumn(new int[2]);
+			fail("Added column of invalid length.");
+		} catch (IllegalArgumentException ex) {
+			// Expected.
+		}
+		assertEquals(4, model.getColumnCount());
+	}
+
+	public void testSetFiresEvent() {
+		final DataGridModelEvent[] event = new DataGridModelEvent[1];
+		model.addDataGridModelListener(new DataGridModelListener() {
+
+			public void modelChanged(DataGridModelEvent e) {
+				event[0] = e;
+			}
+		});
+		model.setDouble(2, 1, 7.5);
+		assertEquals(7.5, model.getDouble(2, 1), 0.0);
+		assertEquals(DataGridModelEvent.CELLS_UPDATED, event[0].getType());
+		assertEquals(2, event[0].getFirstColumn());
+		assertEquals(1, event[0].getFirstRow());
+	}
+}
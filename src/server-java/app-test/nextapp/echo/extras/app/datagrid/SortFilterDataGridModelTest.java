@@ -0,0 +1,329 @@
+package nextapp.echo.extras.app.datagrid;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import nextapp.echo.extras.app.event.DataGridModelEvent;
+import nextapp.echo.extras.app.event.DataGridModelListener;
+
+/**
+ * Tests <code>SortFilterDataGridModel</code>.
+ */
+public class SortFilterDataGridModelTest extends TestCase {
+
+	private static class EvenFilter implements DataGridRowFilter {
+
+		int acceptCount;
+
+		public boolean accept(DataGridModel model, int row) {
+			++acceptCount;
+			return model.get(0, row).hashCode() % 2 == 0;
+		}
+	}
+
+	private static class CountingComparator implements Comparator {
+
+		int compareCount;
+
+		public int compare(Object o1, Object o2) {
+			++compareCount;
+			return ((Comparable) o1).compareTo(o2);
+		}
+	}
+
+	private DefaultColumnarDataGridModel model;
+	private SortFilterDataGridModel view;
+	private List events;
+
+	protected void setUp() throws Exception {
+		model = new DefaultColumnarDataGridModel(5);
+		model.addColumn(new int[] { 3, 1, 4, 1, 5 });
+		model.addColumn(new String[] { "c", "a", "d", "b", "e" });
+		view = new SortFilterDataGridModel(model);
+		events = new ArrayList();
+		view.addDataGridModelListener(new DataGridModelListener() {
+
+			public void modelChanged(DataGridModelEvent e) {
+				events.add(e);
+			}
+		});
+	}
+
+	private String getColumn(int column) {
+		StringBuffer out = new StringBuffer();
+		for (int row = 0; row < view.getRowCount(); ++row) {
+			out.append(view.get(column, row));
+		}
+		return out.toString();
+	}
+
+	public void testUnsorted() {
+		assertEquals("31415", getColumn(0));
+		assertEquals(-1, view.getSortColumn());
+	}
+
+	public void testSortAscendingIsStable() {
+		view.setSort(0, true);
+		assertEquals("11345", getColumn(0));
+		assertEquals("abcde", getColumn(1));
+		assertEquals(3, view.getModelRow(1));
+	}
+
+	public void testSortDescendingIsStable() {
+		view.setSort(0, false);
+		assertEquals("54311", getColumn(0));
+		assertEquals("edcab", getColumn(1));
+	}
+
+	public void testSortByObjects() {
+		view.setSort(1, false);
+		assertEquals("edcba", getColumn(1));
+		view.clearSort();
+		assertEquals("cadbe", getColumn(1));
+	}
+
+	public void testSortChangeUpdatesCells() {
+		view.setSort(1, true);
+		assertEquals(1, events.size());
+		DataGridModelEvent e = (DataGridModelEvent) events.get(0);
+		assertEquals(DataGridModelEvent.CELLS_UPDATED, e.getType());
+		assertEquals(0, e.getFirstColumn());
+		assertEquals(0, e.getFirstRow());
+		assertEquals(1, e.getLastColumn());
+		assertEquals(4, e.getLastRow());
+		assertEquals(5, view.getRowCount());
+	}
+
+	public void testPermutationsCached() {
+		CountingComparator comparator = new CountingComparator();
+		view.setSort(1, true, comparator);
+		getColumn(1);
+		int compareCount = comparator.compareCount;
+		assertTrue(compareCount > 0);
+		view.setSort(0, true);
+		getColumn(1);
+		view.setSort(1, true, comparator);
+		assertEquals("abcde", getColumn(1));
+		assertEquals(compareCount, comparator.compareCount);
+
+		model.setString(1, 0, "z");
+		assertEquals("abdez", getColumn(1));
+		assertTrue(comparator.compareCount > compareCount);
+	}
+
+	public void testFilter() {
+		EvenFilter filter = new EvenFilter();
+		view.addFilter(filter);
+		assertEquals(DataGridModelEvent.STRUCTURE_CHANGED, ((DataGridModelEvent) events.get(0)).getType());
+		assertEquals(1, view.getRowCount());
+		assertEquals("d", view.get(1, 0));
+		assertEquals(5, filter.acceptCount);
+
+		view.setSort(1, false);
+		assertEquals("d", getColumn(1));
+		assertEquals(5, filter.acceptCount);
+
+		view.removeFilter(filter);
+		assertEquals(5, view.getRowCount());
+		assertEquals("edcba", getColumn(1));
+	}
+
+	public void testCombinedFilters() {
+		view.addFilter(new DataGridRowFilter() {
+
+			public boolean accept(DataGridModel model, int row) {
+				return ((Integer) model.get(0, row)).intValue() > 1;
+			}
+		});
+		view.addFilter(new DataGridRowFilter() {
+
+			public boolean accept(DataGridModel model, int row) {
+				return !"d".equals(model.get(1, row));
+			}
+		});
+		assertEquals("ce", getColumn(1));
+		view.clearFilters();
+		assertEquals("cadbe", getColumn(1));
+	}
+
+	public void testEventsForwardedWhenInactive() {
+		model.setInt(0, 2, 9);
+		assertEquals(1, events.size());
+		DataGridModelEvent e = (DataGridModelEvent) events.get(0);
+		assertSame(view, e.getSource());
+		assertEquals(2, e.getFirstRow());
+	}
+
+	public void testSortedUpdateKeepsRowCount() {
+		view.setSort(0, true);
+		events.clear();
+		model.setInt(0, 2, 0);
+		assertEquals(1, events.size());
+		DataGridModelEvent e = (DataGridModelEvent) events.get(0);
+		assertEquals(DataGridModelEvent.CELLS_UPDATED, e.getType());
+
+		// Only the rows which moved are updated.
+		assertEquals(0, e.getFirstRow());
+		assertEquals(3, e.getLastRow());
+		assertEquals("01135", getColumn(0));
+	}
+
+	public void testFilteredUpdateOfDisplayedRow() {
+		EvenFilter filter = new EvenFilter();
+		view.addFilter(filter);
+		assertEquals("d", getColumn(1));
+		events.clear();
+		model.setString(1, 2, "x");
+		assertEquals(1, events.size());
+		DataGridModelEvent e = (DataGridModelEvent) events.get(0);
+		assertEquals(DataGridModelEvent.CELLS_UPDATED, e.getType());
+		assertEquals(1, e.getFirstColumn());
+		assertEquals(0, e.getFirstRow());
+		assertEquals(1, e.getLastColumn());
+		assertEquals(0, e.getLastRow());
+		assertEquals("x", getColumn(1));
+		assertEquals(6, filter.acceptCount);
+
+		// Rows which are not displayed are not updated.
+		model.setInt(0, 1, 3);
+		assertEquals(1, events.size());
+		assertEquals(7, filter.acceptCount);
+	}
+
+	public void testFilteredUpdateChangesRows() {
+		EvenFilter filter = new EvenFilter();
+		view.addFilter(filter);
+		assertEquals("d", getColumn(1));
+		events.clear();
+		model.setInt(0, 1, 2);
+		assertEquals(1, events.size());
+		assertEquals(DataGridModelEvent.STRUCTURE_CHANGED, ((DataGridModelEvent) events.get(0)).getType());
+		assertEquals("ad", getColumn(1));
+		assertEquals(6, filter.acceptCount);
+	}
+
+	public void testSortedUpdateOfOtherColumn() {
+		view.setSort(0, true);
+		assertEquals("abcde", getColumn(1));
+		events.clear();
+		model.setString(1, 0, "z");
+		assertEquals(1, events.size());
+		DataGridModelEvent e = (DataGridModelEvent) events.get(0);
+		assertEquals(1, e.getFirstColumn());
+		assertEquals(2, e.getFirstRow());
+		assertEquals(1, e.getLastColumn());
+		assertEquals(2, e.getLastRow());
+		assertEquals("abzde", getColumn(1));
+	}
+
+	public void testSortedUpdateReinsertsRow() {
+		int rowCount = 64;
+		int[] values = new int[rowCount];
+		for (int row = 0; row < rowCount; ++row) {
+			values[row] = row;
+		}
+		DefaultColumnarDataGridModel largeModel = new DefaultColumnarDataGridModel(rowCount);
+		largeModel.addColumn(values);
+		largeModel.addColumn(new String[rowCount]);
+		SortFilterDataGridModel largeView = new SortFilterDataGridModel(largeModel);
+		largeView.setSort(0, true);
+		assertEquals(10, largeView.getModelRow(10));
+		final List largeEvents = new ArrayList();
+		largeView.addDataGridModelListener(new DataGridModelListener() {
+
+			public void modelChanged(DataGridModelEvent e) {
+				largeEvents.add(e);
+			}
+		});
+
+		// Equal values keep the order of the underlying model.
+		largeModel.setInt(0, 10, 20);
+		assertEquals(1, largeEvents.size());
+		DataGridModelEvent e = (DataGridModelEvent) largeEvents.get(0);
+		assertEquals(0, e.getFirstColumn());
+		assertEquals(10, e.getFirstRow());
+		assertEquals(1, e.getLastColumn());
+		assertEquals(19, e.getLastRow());
+		assertEquals(11, largeView.getModelRow(10));
+		assertEquals(10, largeView.getModelRow(19));
+		assertEquals(20, largeView.getModelRow(20));
+	}
+
+	public void testSortedUpdatesMatchSort() {
+		int rowCount = 200;
+		Random random = new Random(7);
+		double[] values = new double[rowCount];
+		for (int row = 0; row < rowCount; ++row) {
+			values[row] = random.nextInt(50);
+		}
+		DefaultColumnarDataGridModel largeModel = new DefaultColumnarDataGridModel(rowCount);
+		largeModel.addColumn(values);
+		SortFilterDataGridModel largeView = new SortFilterDataGridModel(largeModel);
+		largeView.setSort(0, false);
+		largeView.getRowCount();
+		for (int i = 0; i < 20; ++i) {
+			largeModel.setDouble(0, random.nextInt(rowCount), random.nextInt(50));
+			SortFilterDataGridModel sortedView = new SortFilterDataGridModel(largeModel);
+			sortedView.setSort(0, false);
+			for (int row = 0; row < rowCount; ++row) {
+				assertEquals(sortedView.getModelRow(row), largeView.getModelRow(row));
+			}
+			sortedView.dispose();
+		}
+	}
+
+	public void testColumnInsertShiftsSortColumn() {
+		view.setSort(1, true);
+		model.addColumn(new double[5]);
+		assertEquals(1, view.getSortColumn());
+		model.fireColumnsInserted(0, 0);
+		assertEquals(2, view.getSortColumn());
+		model.fireColumnsDeleted(2, 2);
+		assertEquals(-1, view.getSortColumn());
+	}
+
+	public void testParallelSort() {
+		int rowCount = SortFilterDataGridModel.PARALLEL_SORT_THRESHOLD * 3 + 7;
+		Random random = new Random(42);
+		double[] doubles = new double[rowCount];
+		long[] longs = new long[rowCount];
+		for (int row = 0; row < rowCount; ++row) {
+			doubles[row] = random.nextInt(1000) / 10.0;
+			longs[row] = row;
+		}
+		DefaultColumnarDataGridModel largeModel = new DefaultColumnarDataGridModel(rowCount);
+		largeModel.addColumn(doubles);
+		largeModel.addColumn(longs);
+		SortFilterDataGridModel largeView = new SortFilterDataGridModel(largeModel);
+		largeView.setSort(0, false);
+		for (int row = 1; row < rowCount; ++row) {
+			double previous = ((Double) largeView.get(0, row - 1)).doubleValue();
+			double value = ((Double) largeView.get(0, row)).doubleValue();
+			assertTrue(previous >= value);
+			if (previous == value) {
+				// Stable: equal values keep the order of the underlying model.
+				assertTrue(largeView.getModelRow(row - 1) < largeView.getModelRow(row));
+			}
+		}
+	}
+
+	public void testColumnarView() {
+		ColumnarSortFilterDataGridModel columnarView = new ColumnarSortFilterDataGridModel(model);
+		columnarView.setSort(0, false);
+		assertEquals(ColumnarDataGridModel.TYPE_INT, columnarView.getColumnType(0));
+		assertEquals(ColumnarDataGridModel.TYPE_STRING, columnarView.getColumnType(1));
+		StringBuffer out = new StringBuffer();
+		for (int row = 0; row < columnarView.getRowCount(); ++row) {
+			out.append(columnarView.getInt(0, row)).append(columnarView.getString(1, row));
+		}
+		assertEquals("5e4d3c1a1b", out.toString());
+
+		columnarView.addFilter(new EvenFilter());
+		assertEquals(1, columnarView.getRowCount());
+		assertEquals(4, columnarView.getInt(0, 0));
+		assertEquals("d", columnarView.getString(1, 0));
+	}
+}
@@ -0,0 +1,139 @@
+package nextapp.echo.extras.app.serial;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+
+import nextapp.echo.app.serial.PropertyPeerFactory;
+import nextapp.echo.app.serial.SerialContext;
+import nextapp.echo.app.serial.SerialPeerFactory;
+import nextapp.echo.app.serial.SerialPropertyPeer;
+import nextapp.echo.app.util.Context;
+import nextapp.echo.app.util.DomUtil;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Compares the time to serialize a block of 4096 model values, as served to
+ * the DataGrid and Viewer, by building a DOM with the
+ * <code>SerialPropertyPeer</code> of every value and saving it, with the time
+ * to stream the values with a <code>ModelXmlWriter</code>.
+ * <p>
+ * Run with <code>java nextapp.echo.extras.app.serial.ModelXmlWriterBenchmark</code>.
+ */
+public class ModelXmlWriterBenchmark {
+
+	private static final int CELLS = 4096;
+	private static final int WARMUP_ITERATIONS = 200;
+	private static final int ITERATIONS = 1000;
+
+	private static Object[] createValues() {
+		Object[] values = new Object[CELLS];
+		for (int i = 0; i < CELLS; ++i) {
+			switch (i % 4) {
+			case 0:
+				values[i] = "Cell " + i + " <" + (i * 31) + ">";
+				break;
+			case 1:
+				values[i] = new Integer(i);
+				break;
+			case 2:
+				values[i] = Boolean.valueOf(i % 3 == 0);
+				break;
+			default:
+				values[i] = i % 8 == 3 ? null : "Row " + (i / 16);
+			}
+		}
+		return values;
+	}
+
+	private static Context createContext(final Document document) {
+		final PropertyPeerFactory factory = SerialPeerFactory.forClassLoader(
+				ModelXmlWriterBenchmark.class.getClassLoader());
+		final SerialContext serialContext = new SerialContext() {
+
+			public ClassLoader getClassLoader() {
+				return ModelXmlWriterBenchmark.class.getClassLoader();
+			}
+
+			public Document getDocument() {
+				return document;
+			}
+
+			public int getFlags() {
+				return SerialContext.FLAG_RENDER_SHORT_NAMES;
+			}
+		};
+		return new Context() {
+
+			public Object get(Class specificContextClass) {
+				if (specificContextClass == PropertyPeerFactory.class) {
+					return factory;
+				} else if (specificContextClass == SerialContext.class) {
+					return serialContext;
+				}
+				return null;
+			}
+		};
+	}
+
+	private static int renderDom(Object[] values) throws Exception {
+		Document document = DomUtil.createDocument("model", null, null, null);
+		Context context = createContext(document);
+		PropertyPeerFactory factory = (PropertyPeerFactory) context.get(PropertyPeerFactory.class);
+		Element modelElement = document.getDocumentElement();
+		for (int i = 0; i < values.length; ++i) {
+			Element pElement = document.createElement("p");
+			if (values[i] != null) {
+				SerialPropertyPeer peer = factory.getPeerForProperty(values[i].getClass());
+				peer.toXml(context, Object.class, pElement, values[i]);
+			}
+			modelElement.appendChild(pElement);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DomUtil.save(document, out, null);
+		return out.size();
+	}
+
+	private static int renderStream(Object[] values) throws Exception {
+		Document document = DomUtil.createDocument("model", null, null, null);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ModelXmlWriter writer = new ModelXmlWriter(new BufferedWriter(new OutputStreamWriter(out, "UTF-8")),
+				createContext(document));
+		writer.writeDeclaration();
+		writer.writeStartElement("model");
+		for (int i = 0; i < values.length; ++i) {
+			writer.writeStartElement("p");
+			writer.writeValue(values[i], Object.class);
+			writer.writeEndElement();
+		}
+		writer.writeEndElement();
+		writer.flush();
+		return out.size();
+	}
+
+	private static long time(Object[] values, boolean stream, int iterations) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; ++i) {
+			if (stream) {
+				renderStream(values);
+			} else {
+				renderDom(values);
+			}
+		}
+		return (System.nanoTime() - start) / iterations;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Object[] values = createValues();
+		time(values, false, WARMUP_ITERATIONS);
+		time(values, true, WARMUP_ITERATIONS);
+
+		long domTime = time(values, false, ITERATIONS);
+		long streamTime = time(values, true, ITERATIONS);
+		System.out.println(CELLS + " values");
+		System.out.println("DOM: " + domTime / 1000 + " us, " + renderDom(values) + " bytes");
+		System.out.println("ModelXmlWriter: " + streamTime / 1000 + " us, " + renderStream(values) + " bytes");
+	}
+}
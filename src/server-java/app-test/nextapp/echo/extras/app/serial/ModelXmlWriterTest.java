@@ -0,0 +1,197 @@
+package nextapp.echo.extras.app.serial;
+
+import java.io.StringWriter;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+import nextapp.echo.app.serial.PropertyPeerFactory;
+import nextapp.echo.app.serial.SerialContext;
+import nextapp.echo.app.serial.SerialPropertyPeer;
+import nextapp.echo.app.util.Context;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Tests the XML written by <code>ModelXmlWriter</code>.
+ */
+public class ModelXmlWriterTest extends TestCase {
+
+	private static class Point {
+
+		int x, y;
+
+		Point(int x, int y) {
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+	private static class PointPeer implements SerialPropertyPeer {
+
+		int renderCount;
+
+		public Object toProperty(Context context, Class objectClass, Element propertyElement) {
+			throw new UnsupportedOperationException();
+		}
+
+		public void toXml(Context context, Class objectClass, Element propertyElement, Object propertyValue) {
+			++renderCount;
+			Point point = (Point) propertyValue;
+			propertyElement.setAttribute("t", "Point");
+			Element pointElement = propertyElement.getOwnerDocument().createElement("pt");
+			pointElement.setAttribute("x", Integer.toString(point.x));
+			pointElement.setAttribute("y", Integer.toString(point.y));
+			propertyElement.appendChild(pointElement);
+		}
+	}
+
+	private PointPeer pointPeer;
+	private StringWriter out;
+	private ModelXmlWriter writer;
+
+	protected void setUp() throws Exception {
+		final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		pointPeer = new PointPeer();
+		final PropertyPeerFactory factory = new PropertyPeerFactory() {
+
+			public SerialPropertyPeer getPeerForProperty(Class propertyClass) {
+				if (propertyClass == Point.class) {
+					return pointPeer;
+				}
+				fail("Unexpected peer lookup for " + propertyClass);
+				return null;
+			}
+		};
+		final SerialContext serialContext = new SerialContext() {
+
+			public ClassLoader getClassLoader() {
+				return getClass().getClassLoader();
+			}
+
+			public Document getDocument() {
+				return document;
+			}
+
+			public int getFlags() {
+				return 0;
+			}
+		};
+		Context context = new Context() {
+
+			public Object get(Class specificContextClass) {
+				if (specificContextClass == PropertyPeerFactory.class) {
+					return factory;
+				} else if (specificContextClass == SerialContext.class) {
+					return serialContext;
+				}
+				return null;
+			}
+		};
+		out = new StringWriter();
+		writer = new ModelXmlWriter(out, context);
+	}
+
+	private String writeProperty(Object value) throws Exception {
+		writer.writeStartElement("p");
+		writer.writeValue(value, Object.class);
+		writer.writeEndElement();
+		writer.flush();
+		return out.toString();
+	}
+
+	public void testDeclaration() throws Exception {
+		writer.writeDeclaration();
+		writer.writeStartElement("model");
+		writer.writeEndElement();
+		writer.flush();
+		assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><model/>", out.toString());
+	}
+
+	public void testElements() throws Exception {
+		writer.writeStartElement("model");
+		writer.writeAttribute("sz", "2");
+		writer.writeAttribute("is", "0");
+		writer.writeStartElement("p");
+		writer.writeEndElement();
+		writer.writeStartElement("p");
+		writer.writeAttribute("x", "1");
+		writer.writeText("a");
+		writer.writeEndElement();
+		writer.writeEndElement();
+		writer.flush();
+		assertEquals("<model sz=\"2\" is=\"0\"><p/><p x=\"1\">a</p></model>", out.toString());
+	}
+
+	public void testAttributeAfterContent() throws Exception {
+		writer.writeStartElement("p");
+		writer.writeText("a");
+		try {
+			writer.writeAttribute("x", "1");
+			fail("Attribute written after content.");
+		} catch (IllegalStateException ex) {
+			// Expected.
+		}
+	}
+
+	public void testEscaping() throws Exception {
+		writer.writeStartElement("p");
+		writer.writeAttribute("x", "<\"a\" & \tb\n>");
+		writer.writeText("<\"a\" & \tb\r\n>");
+		writer.writeEndElement();
+		writer.flush();
+		assertEquals("<p x=\"&lt;&quot;a&quot; &amp; &#9;b&#10;&gt;\">&lt;\"a\" &amp; \tb&#13;\n&gt;</p>", 
+				out.toString());
+	}
+
+	public void testNull() throws Exception {
+		assertEquals("<p/>", writeProperty(null));
+	}
+
+	public void testString() throws Exception {
+		assertEquals("<p>a &amp; b</p>", writeProperty("a & b"));
+		assertEquals(0, pointPeer.renderCount);
+	}
+
+	public void testNumber() throws Exception {
+		assertEquals("<p t=\"n\">42</p>", writeProperty(new Integer(42)));
+	}
+
+	public void testBoolean() throws Exception {
+		assertEquals("<p t=\"b\">true</p>", writeProperty(Boolean.TRUE));
+	}
+
+	public void testPeerValue() throws Exception {
+		assertEquals("<p t=\"Point\"><pt x=\"3\" y=\"4\"/></p>", writeProperty(new Point(3, 4)));
+		assertEquals(1, pointPeer.renderCount);
+	}
+
+	public void testPrimitives() throws Exception {
+		writer.writeStartElement("a");
+		writer.writeInt(0);
+		writer.writeText(" ");
+		writer.writeInt(-42);
+		writer.writeText(" ");
+		writer.writeInt(Integer.MIN_VALUE);
+		writer.writeText(" ");
+		writer.writeLong(Long.MAX_VALUE);
+		writer.writeText(" ");
+		writer.writeLong(Long.MIN_VALUE);
+		writer.writeEndElement();
+		writer.flush();
+		assertEquals("<a>0 -42 -2147483648 9223372036854775807 -9223372036854775808</a>", out.toString());
+	}
+
+	public void testDouble() throws Exception {
+		double[] values = new double[] { 0.0, -0.0, 1.0, -3.0, 2.5, 1e7, 1e20, Double.NaN, 
+				Double.NEGATIVE_INFINITY, 0.1 };
+		for (int i = 0; i < values.length; ++i) {
+			StringWriter valueOut = new StringWriter();
+			ModelXmlWriter valueWriter = new ModelXmlWriter(valueOut, null);
+			valueWriter.writeDouble(values[i]);
+			valueWriter.flush();
+			assertEquals(Double.toString(values[i]), valueOut.toString());
+		}
+	}
+}
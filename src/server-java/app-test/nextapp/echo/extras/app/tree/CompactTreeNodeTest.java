@@ -0,0 +1,174 @@
+package nextapp.echo.extras.app.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import nextapp.echo.extras.app.event.TreeModelEvent;
+import nextapp.echo.extras.app.event.TreeModelListener;
+
+/**
+ * Tests for <code>CompactTreeNode</code>.
+ */
+public class CompactTreeNodeTest extends TestCase {
+
+	private static final String[] KEYS = new String[] { "name", "size" };
+
+	private static CompactTreeNode createNode(String name) {
+		return new CompactTreeNode(KEYS, new Object[] { name, new Integer(name.length()) });
+	}
+
+	/**
+	 * Listener recording the received events.
+	 */
+	private static class RecordingListener implements TreeModelListener {
+
+		private List events = new ArrayList();
+
+		public void treeNodesAdded(TreeModelEvent e) {
+			events.add(e);
+		}
+
+		public void treeNodesChanged(TreeModelEvent e) {
+			events.add(e);
+		}
+
+		public void treeNodesRemoved(TreeModelEvent e) {
+			events.add(e);
+		}
+
+		public void treeStructureChanged(TreeModelEvent e) {
+			events.add(e);
+		}
+	}
+
+	/**
+	 * Tests that the indices of children are maintained when children are
+	 * added and removed.
+	 */
+	public void testIndexOf() {
+		CompactTreeNode parent = createNode("parent");
+		CompactTreeNode[] children = new CompactTreeNode[10];
+		for (int i = 0; i < children.length; i++) {
+			children[i] = createNode("child" + i);
+			parent.addChild(children[i]);
+		}
+		DefaultMutableTreeNode other = new DefaultMutableTreeNode();
+		parent.addChild(other);
+
+		assertEquals(11, parent.getChildCount());
+		assertEquals(10, parent.getIndexOf(other));
+		parent.removeChild(children[3]);
+		assertEquals(-1, parent.getIndexOf(children[3]));
+		assertNull(children[3].getParent());
+		assertEquals(3, parent.getIndexOf(children[4]));
+		assertSame(children[9], parent.getChild(8));
+		assertEquals(9, parent.getIndexOf(other));
+
+		CompactTreeNode otherParent = createNode("other");
+		otherParent.addChild(children[5]);
+		assertEquals(-1, parent.getIndexOf(children[5]));
+		assertEquals(0, otherParent.getIndexOf(children[5]));
+		assertEquals(9, parent.getChildCount());
+		assertEquals(-1, parent.getIndexOf(createNode("unrelated")));
+	}
+
+	/**
+	 * Tests that adding a collection of children fires a single event.
+	 */
+	public void testAddChildren() {
+		CompactTreeNode parent = createNode("parent");
+		parent.addChild(createNode("first"));
+		RecordingListener listener = new RecordingListener();
+		parent.addTreeModelListener(listener);
+
+		List nodes = new ArrayList();
+		for (int i = 0; i < 5; i++) {
+			nodes.add(createNode("child" + i));
+		}
+		parent.addChildren(nodes);
+
+		assertEquals(6, parent.getChildCount());
+		assertEquals(1, listener.events.size());
+		TreeModelEvent e = (TreeModelEvent) listener.events.get(0);
+		assertTrue(Arrays.equals(new int[] { 1, 2, 3, 4, 5 }, e.getChildIndices()));
+		assertSame(nodes.get(4), e.getChildren()[4]);
+		assertEquals(5, parent.getIndexOf((TreeNode) nodes.get(4)));
+	}
+
+	/**
+	 * Tests that paths are resolved and validated.
+	 */
+	public void testGetNodeForPath() {
+		CompactTreeNode node1 = createNode("node1");
+		CompactTreeNode node2 = createNode("node2");
+		CompactTreeNode node3 = createNode("node3");
+		node1.addChild(node2);
+		node2.addChild(node3);
+
+		assertSame(node1, node1.getNodeForPath(new TreePath(node1)));
+		assertSame(node3, node1.getNodeForPath(new TreePath(new Object[] { node1, node2, node3 })));
+		try {
+			node1.getNodeForPath(new TreePath(new Object[] { node1, node3 }));
+			fail("path skipping a node is accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			node1.getNodeForPath(new TreePath(new Object[] { node2, node3 }));
+			fail("path not starting at the node is accepted");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that column values are stored by the index of their key, and
+	 * retrieved by index by <code>TreeNodeModel</code>.
+	 */
+	public void testColumnValues() {
+		CompactTreeNode root = createNode("root");
+		CompactTreeNode child = createNode("child");
+		root.addChild(child);
+		TreeNodeModel model = new TreeNodeModel(root);
+
+		assertEquals(2, model.getColumnCount());
+		assertEquals("child", model.getValueAt(child, 0));
+		assertEquals(new Integer(5), model.getValueAt(child, 1));
+		assertEquals(Arrays.asList(KEYS), new ArrayList(child.getColumnValues().keySet()));
+
+		RecordingListener listener = new RecordingListener();
+		child.addTreeModelListener(listener);
+		Map values = new HashMap();
+		values.put("name", "renamed");
+		values.put("unknown", "ignored");
+		child.setColumnValues(values);
+		assertEquals("renamed", model.getValueAt(child, 0));
+		assertNull(model.getValueAt(child, 1));
+		assertEquals(2, child.getColumnValues().size());
+		assertEquals(1, listener.events.size());
+
+		child.setColumnValue(1, new Integer(7));
+		assertEquals(new Integer(7), model.getValueAt(child, 1));
+		assertEquals(2, listener.events.size());
+	}
+
+	/**
+	 * Tests that removing all children detaches them.
+	 */
+	public void testRemoveAllChildren() {
+		CompactTreeNode parent = createNode("parent");
+		CompactTreeNode child = createNode("child");
+		parent.addChild(child);
+		parent.removeAllChildren();
+
+		assertEquals(0, parent.getChildCount());
+		assertNull(child.getParent());
+		assertTrue(parent.isLeaf());
+		parent.addChild(child);
+		assertEquals(0, parent.getIndexOf(child));
+	}
+}
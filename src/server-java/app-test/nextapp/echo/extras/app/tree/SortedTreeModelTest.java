@@ -0,0 +1,108 @@
+package nextapp.echo.extras.app.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import nextapp.echo.extras.app.event.TreeModelEvent;
+import nextapp.echo.extras.app.event.TreeModelListener;
+
+/**
+ * Tests for <code>SortedTreeModel</code>.
+ */
+public class SortedTreeModelTest extends TestCase {
+
+	private DefaultMutableTreeNode root;
+	private SortedTreeModel model;
+	private List events = new ArrayList();
+
+	private static DefaultMutableTreeNode createNode(String name) {
+		Map columnValues = new HashMap();
+		columnValues.put("name", name);
+		return new DefaultMutableTreeNode(columnValues);
+	}
+
+	private static void setName(DefaultMutableTreeNode node, String name) {
+		Map columnValues = new HashMap();
+		columnValues.put("name", name);
+		node.setColumnValues(columnValues);
+	}
+
+	protected void setUp() {
+		root = createNode("root");
+		root.addChild(createNode("c"));
+		root.addChild(createNode("a"));
+		root.addChild(createNode("b"));
+		model = new SortedTreeModel(new TreeNodeModel(root), 0, true, null);
+		model.addTreeModelListener(new TreeModelListener() {
+			public void treeNodesAdded(TreeModelEvent e) {
+				events.add("added " + Arrays.asList(toIntegers(e.getChildIndices())));
+			}
+
+			public void treeNodesChanged(TreeModelEvent e) {
+				events.add("changed " + Arrays.asList(toIntegers(e.getChildIndices())));
+			}
+
+			public void treeNodesRemoved(TreeModelEvent e) {
+				events.add("removed " + Arrays.asList(toIntegers(e.getChildIndices())));
+			}
+
+			public void treeStructureChanged(TreeModelEvent e) {
+				events.add("structure " + e.getTreePath().getPathCount());
+			}
+		});
+	}
+
+	private static Integer[] toIntegers(int[] values) {
+		Integer[] integers = new Integer[values.length];
+		for (int i = 0; i < values.length; ++i) {
+			integers[i] = new Integer(values[i]);
+		}
+		return integers;
+	}
+
+	private String getChildNames() {
+		StringBuffer names = new StringBuffer();
+		for (int i = 0; i < model.getChildCount(root); ++i) {
+			names.append(model.getValueAt(model.getChild(root, i), 0));
+		}
+		return names.toString();
+	}
+
+	/**
+	 * Tests the order of the children and the translation of indices.
+	 */
+	public void testOrder() {
+		assertEquals("abc", getChildNames());
+		assertEquals(2, model.getIndexOfChild(root, root.getChild(0)));
+		model.setSort(0, false, null);
+		assertEquals("cba", getChildNames());
+		assertEquals(0, model.getIndexOfChild(root, root.getChild(0)));
+	}
+
+	/**
+	 * Tests that events are forwarded with the indices of the view.
+	 */
+	public void testEvents() {
+		getChildNames();
+		root.addChild(createNode("aa"));
+		assertEquals("aaabc", getChildNames());
+		assertEquals("added [1]", events.get(0));
+
+		root.removeChild(root.getChild(0));
+		assertEquals("aaab", getChildNames());
+		assertEquals("removed [3]", events.get(1));
+
+		setName((DefaultMutableTreeNode) root.getChild(1), "bb");
+		assertEquals("aaabb", getChildNames());
+		assertEquals("changed [2]", events.get(2));
+
+		setName((DefaultMutableTreeNode) root.getChild(0), "z");
+		assertEquals("aabbz", getChildNames());
+		assertEquals("structure 1", events.get(3));
+		assertEquals(4, events.size());
+	}
+}
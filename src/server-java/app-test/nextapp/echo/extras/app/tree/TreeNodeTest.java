@@ -1,9 +1,13 @@
 package nextapp.echo.extras.app.tree;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import junit.framework.TestCase;
+import nextapp.echo.extras.app.event.TreeModelEvent;
+import nextapp.echo.extras.app.event.TreeModelListener;
 
 /**
  * A set of tests for the TreeNode related classes.
@@ -229,6 +233,49 @@ public class TreeNodeTest extends TestCase {
 		assertEquals("node3", model.getValueAt(node3, 1));
 	}
 
+	/**
+	 * Tests that a model propagating events receives the events of all nodes
+	 * through a single listener on the root node.
+	 */
+	public void testPropagatedEvents() {
+		DefaultMutableTreeNode node1 = new DefaultMutableTreeNode(
+				getMap(new String[] { "node1" }));
+		DefaultMutableTreeNode node2 = new DefaultMutableTreeNode(
+				getMap(new String[] { "node2" }));
+		DefaultMutableTreeNode node3 = new DefaultMutableTreeNode(
+				getMap(new String[] { "node3" }));
+		node1.addChild(node2);
+
+		TreeNodeModel model = new TreeNodeModel(node1, null, true);
+		final List events = new ArrayList();
+		model.addTreeModelListener(new TreeModelListener() {
+			public void treeNodesAdded(TreeModelEvent e) {
+				events.add("added " + e.getChildIndices()[0]);
+			}
+			public void treeNodesChanged(TreeModelEvent e) {
+				events.add("changed " + e.getChildIndices()[0]);
+			}
+			public void treeNodesRemoved(TreeModelEvent e) {
+				events.add("removed " + e.getChildIndices()[0]);
+			}
+			public void treeStructureChanged(TreeModelEvent e) {
+				events.add("structure");
+			}
+		});
+		assertTrue(model.nodesWeAreListeningTo.isEmpty());
+
+		node2.addChild(node3);
+		node3.setColumnValues(getMap(new String[] { "changed" }));
+		node1.removeChild(node2);
+		node2.addChild(new DefaultMutableTreeNode());
+
+		assertEquals(3, events.size());
+		assertEquals("added 0", events.get(0));
+		assertEquals("changed 0", events.get(1));
+		assertEquals("removed 0", events.get(2));
+		assertTrue(model.nodesWeAreListeningTo.isEmpty());
+	}
+
 	private Map getMap(String[] values) {
 		Map ret = new HashMap();
 		for (int i = 0; i < values.length; i++) {
@@ -0,0 +1,105 @@
+package nextapp.echo.extras.app.tree;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Measures the throughput of <code>HashSet</code> lookups of 
+ * <code>TreePath</code>s in a deep tree with repeating node names, as used
+ * for the expanded paths and component cache of the Tree. The full path hash
+ * code is compared with a hash code computed from the last path component 
+ * only.
+ * <p>
+ * Run with <code>java nextapp.echo.extras.app.tree.TreePathBenchmark</code>.
+ */
+public class TreePathBenchmark {
+
+	private static final int HOSTS = 50;
+	private static final int DEPTH = 5;
+	private static final String[] NAMES = { "config", "network", "storage" };
+	private static final int ITERATIONS = 10;
+
+	/**
+	 * Wraps a path, hashing it by its last component only.
+	 */
+	private static class LastComponentKey {
+		private final TreePath path;
+
+		LastComponentKey(TreePath path) {
+			this.path = path;
+		}
+
+		public int hashCode() {
+			return path.getLastPathComponent().hashCode();
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof LastComponentKey && path.equals(((LastComponentKey) o).path);
+		}
+	}
+
+	private static void addPaths(TreePath parent, int depth, List paths) {
+		paths.add(parent);
+		if (depth == DEPTH) {
+			return;
+		}
+		for (int i = 0; i < NAMES.length; ++i) {
+			addPaths(parent.pathByAddingChild(NAMES[i]), depth + 1, paths);
+		}
+	}
+
+	/**
+	 * Returns equal copies of the paths, so that lookups cannot succeed by
+	 * identity.
+	 */
+	private static List copyPaths(List paths) {
+		List copies = new ArrayList(paths.size());
+		for (int i = 0; i < paths.size(); ++i) {
+			Serializable[] components = ((TreePath) paths.get(i)).getPath();
+			copies.add(new TreePath(components));
+		}
+		return copies;
+	}
+
+	private static long lookup(Set set, List keys) {
+		long start = System.nanoTime();
+		int found = 0;
+		for (int i = 0; i < keys.size(); ++i) {
+			if (set.contains(keys.get(i))) {
+				++found;
+			}
+		}
+		if (found != keys.size()) {
+			throw new IllegalStateException("Lookup failed.");
+		}
+		return System.nanoTime() - start;
+	}
+
+	public static void main(String[] args) {
+		List paths = new ArrayList();
+		TreePath root = new TreePath("root");
+		for (int i = 0; i < HOSTS; ++i) {
+			addPaths(root.pathByAddingChild("host" + i), 1, paths);
+		}
+		List keys = copyPaths(paths);
+
+		Set fullHashSet = new HashSet(paths);
+		Set lastHashSet = new HashSet();
+		List lastHashKeys = new ArrayList();
+		for (int i = 0; i < paths.size(); ++i) {
+			lastHashSet.add(new LastComponentKey((TreePath) paths.get(i)));
+			lastHashKeys.add(new LastComponentKey((TreePath) keys.get(i)));
+		}
+
+		System.out.println(paths.size() + " paths, depth " + DEPTH);
+		for (int i = 0; i < ITERATIONS; ++i) {
+			long fullHashTime = lookup(fullHashSet, keys);
+			long lastHashTime = lookup(lastHashSet, lastHashKeys);
+			System.out.println("full path hash: " + (fullHashTime / paths.size()) + " ns/lookup, "
+					+ "last component hash: " + (lastHashTime / paths.size()) + " ns/lookup");
+		}
+	}
+}
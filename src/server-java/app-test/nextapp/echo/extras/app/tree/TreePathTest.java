@@ -0,0 +1,50 @@
+package nextapp.echo.extras.app.tree;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for <code>TreePath</code>.
+ */
+public class TreePathTest extends TestCase {
+
+	public void testPathCount() {
+		TreePath root = new TreePath("root");
+		TreePath path = root.pathByAddingChild("a").pathByAddingChild("b");
+		assertEquals(1, root.getPathCount());
+		assertEquals(3, path.getPathCount());
+		assertEquals(3, new TreePath(new Serializable[] { "root", "a", "b" }).getPathCount());
+		assertEquals("a", path.getPathComponent(1));
+	}
+
+	public void testEquals() {
+		TreePath path = new TreePath("root").pathByAddingChild("a").pathByAddingChild("b");
+		TreePath other = new TreePath(new Object[] { "root", "a", "b" });
+		assertEquals(path, other);
+		assertEquals(path.hashCode(), other.hashCode());
+		assertFalse(path.equals(new TreePath(new Object[] { "root", "b", "b" })));
+		assertFalse(path.equals(new TreePath(new Object[] { "a", "b" })));
+	}
+
+	/**
+	 * Tests that the hash code is computed from the full path, so that 
+	 * paths ending in equal components do not collide.
+	 */
+	public void testHashCode() {
+		TreePath path = new TreePath(new Object[] { "root", "host1", "config" });
+		TreePath other = new TreePath(new Object[] { "root", "host2", "config" });
+		assertFalse(path.hashCode() == other.hashCode());
+		assertEquals(Arrays.asList(path.getPath()).hashCode(), path.hashCode());
+	}
+
+	public void testNullComponent() {
+		try {
+			new TreePath(new Object[] { "root", null });
+			fail("null path components are not allowed");
+		} catch (IllegalArgumentException e) {
+			// this is what we expect to happen
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package nextapp.echo.extras.app.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the row index used by the Tree.
+ */
+public class TreeRowIndexTest extends TestCase {
+
+	private TreeRowIndex index;
+
+	protected void setUp() throws Exception {
+		index = new TreeRowIndex();
+	}
+
+	private static List createPaths(String prefix, int count) {
+		List paths = new ArrayList();
+		for (int i = 0; i < count; i++) {
+			paths.add(new TreePath(prefix + i));
+		}
+		return paths;
+	}
+
+	private void assertRows(List expected) {
+		assertEquals(expected.size(), index.size());
+		for (int i = 0; i < expected.size(); i++) {
+			TreePath path = (TreePath) expected.get(i);
+			assertEquals(path, index.getPath(i));
+			assertEquals(i, index.getRow(path));
+		}
+	}
+
+	public void testEmptyIndex() {
+		assertEquals(0, index.size());
+		assertEquals(-1, index.getRow(new TreePath("a")));
+		try {
+			index.getPath(0);
+			fail("getPath is not checking the row bounds");
+		} catch (IndexOutOfBoundsException e) {
+			// this is what we expect to happen
+		}
+	}
+
+	public void testInsertSingle() {
+		TreePath a = new TreePath("a");
+		TreePath b = new TreePath("b");
+		TreePath c = new TreePath("c");
+		index.insert(0, a);
+		index.insert(1, c);
+		index.insert(1, b);
+
+		List expected = new ArrayList();
+		expected.add(a);
+		expected.add(b);
+		expected.add(c);
+		assertRows(expected);
+		assertTrue(index.contains(b));
+	}
+
+	public void testInsertBlock() {
+		List expected = createPaths("a", 10);
+		index.insert(0, expected);
+		List block = createPaths("b", 5);
+		index.insert(3, block);
+		expected.addAll(3, block);
+		assertRows(expected);
+	}
+
+	public void testInsertDuplicatePath() {
+		index.insert(0, createPaths("a", 3));
+		try {
+			index.insert(1, new TreePath("a1"));
+			fail("insert is not checking for duplicate paths");
+		} catch (IllegalArgumentException e) {
+			// this is what we expect to happen
+		}
+	}
+
+	public void testInsertDuplicateBlockLeavesIndexUnchanged() {
+		List expected = createPaths("a", 3);
+		index.insert(0, expected);
+		List block = createPaths("b", 2);
+		block.add(new TreePath("a2"));
+		try {
+			index.insert(1, block);
+			fail("insert is not checking for duplicate paths");
+		} catch (IllegalArgumentException e) {
+			// this is what we expect to happen
+		}
+		assertFalse(index.contains(new TreePath("b0")));
+		assertEquals(-1, index.getRow(new TreePath("b1")));
+		assertRows(expected);
+		index.insert(3, createPaths("b", 2));
+		assertEquals(5, index.size());
+	}
+
+	public void testRemoveRange() {
+		List expected = createPaths("a", 20);
+		index.insert(0, expected);
+
+		List removed = index.remove(5, 12);
+		assertEquals(expected.subList(5, 12), removed);
+		for (int i = 0; i < removed.size(); i++) {
+			assertFalse(index.contains((TreePath) removed.get(i)));
+			assertEquals(-1, index.getRow((TreePath) removed.get(i)));
+		}
+		expected.subList(5, 12).clear();
+		assertRows(expected);
+
+		assertTrue(index.remove(3, 3).isEmpty());
+		assertRows(expected);
+	}
+
+	public void testGetPaths() {
+		List expected = createPaths("a", 20);
+		index.insert(0, expected);
+		for (int from = 0; from <= 20; from++) {
+			for (int to = from; to <= 20; to++) {
+				assertEquals(expected.subList(from, to), index.getPaths(from, to));
+			}
+		}
+	}
+
+	public void testRemoveAll() {
+		List paths = createPaths("a", 8);
+		index.insert(0, paths);
+		assertEquals(paths, index.remove(0, 8));
+		assertEquals(0, index.size());
+		index.insert(0, paths);
+		assertRows(paths);
+	}
+
+	public void testClear() {
+		index.insert(0, createPaths("a", 4));
+		index.clear();
+		assertEquals(0, index.size());
+		assertFalse(index.contains(new TreePath("a0")));
+	}
+
+	public void testRandomOperationsMatchList() {
+		Random random = new Random(42);
+		List expected = new ArrayList();
+		int next = 0;
+		for (int i = 0; i < 500; i++) {
+			if (random.nextInt(3) < 2 || expected.isEmpty()) {
+				int row = random.nextInt(expected.size() + 1);
+				List block = createPaths("n" + next++ + "-", random.nextInt(10) + 1);
+				index.insert(row, block);
+				expected.addAll(row, block);
+			} else {
+				int from = random.nextInt(expected.size());
+				int to = from + random.nextInt(expected.size() - from + 1);
+				assertEquals(expected.subList(from, to), index.remove(from, to));
+				expected.subList(from, to).clear();
+			}
+		}
+		assertRows(expected);
+	}
+}
@@ -0,0 +1,127 @@
+package nextapp.echo.extras.app.tree;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for <code>TreeSearchIndex</code>.
+ */
+public class TreeSearchIndexTest extends TestCase {
+
+	private static final String[] WORDS = new String[] { "alpha", "beta", "gamma", "alphabet", "Beta-Max", "g2" };
+
+	private DefaultMutableTreeNode root;
+	private TreeNodeModel model;
+	private TreeSearchIndex index;
+
+	private static DefaultMutableTreeNode createNode(String name) {
+		Map columnValues = new HashMap();
+		columnValues.put("name", name);
+		return new DefaultMutableTreeNode(columnValues);
+	}
+
+	protected void setUp() {
+		root = createNode("root");
+		model = new TreeNodeModel(root);
+		index = new TreeSearchIndex(model);
+	}
+
+	private void assertSearch(String query) {
+		TreePath[] expected = TreeSearchIndex.scan(model, null, query);
+		TreePath[] actual = index.search(query);
+		assertEquals(query, Arrays.asList(expected), Arrays.asList(actual));
+	}
+
+	/**
+	 * Tests that words are split at any character other than letters and
+	 * digits, and compared ignoring case.
+	 */
+	public void testGetWords() {
+		String[] words = TreeSearchIndex.getWords("Report_2009-final.PDF");
+		Arrays.sort(words);
+		assertEquals(Arrays.asList(new String[] { "2009", "final", "pdf", "report" }), Arrays.asList(words));
+		assertEquals(0, TreeSearchIndex.getWords(" - ").length);
+		assertEquals(0, TreeSearchIndex.getWords(null).length);
+	}
+
+	/**
+	 * Tests that every query word must be the prefix of a word, and that the
+	 * results are in tree order.
+	 */
+	public void testSearch() {
+		DefaultMutableTreeNode a = createNode("alpha beta");
+		DefaultMutableTreeNode b = createNode("alphabet");
+		DefaultMutableTreeNode c = createNode("Beta gamma");
+		root.addChild(a);
+		root.addChild(b);
+		a.addChild(c);
+
+		assertEquals(Arrays.asList(new TreePath[] { new TreePath(new Object[] { root, a }),
+				new TreePath(new Object[] { root, a, c }) }), Arrays.asList(index.search("bet")));
+		assertEquals(1, index.search("alpha BET").length);
+		assertEquals(2, index.search("alp").length);
+		assertEquals(0, index.search("alpha gamma").length);
+		assertEquals(0, index.search("").length);
+	}
+
+	/**
+	 * Tests that the index is kept up to date with random changes of the 
+	 * model, by comparing its results with those of a scan of the model.
+	 */
+	public void testIncrementalUpdates() {
+		Random random = new Random(7);
+		DefaultMutableTreeNode[] nodes = new DefaultMutableTreeNode[60];
+		int nodeCount = 0;
+		nodes[nodeCount++] = root;
+		assertSearch("alpha");
+		for (int i = 0; i < 300; ++i) {
+			DefaultMutableTreeNode node = nodes[random.nextInt(nodeCount)];
+			int operation = random.nextInt(3);
+			if (operation == 0 && nodeCount < nodes.length) {
+				DefaultMutableTreeNode child = createNode(WORDS[random.nextInt(WORDS.length)]);
+				node.addChild(child);
+				nodes[nodeCount++] = child;
+			} else if (operation == 1 && node != root) {
+				// the root does not fire an event when its values change
+				Map columnValues = new HashMap();
+				columnValues.put("name", WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]);
+				node.setColumnValues(columnValues);
+			} else if (node != root) {
+				((DefaultMutableTreeNode) node.getParent()).removeChild(node);
+				// keep only the nodes still attached to the root
+				int attached = 0;
+				for (int j = 0; j < nodeCount; ++j) {
+					if (isAttached(nodes[j])) {
+						nodes[attached++] = nodes[j];
+					}
+				}
+				nodeCount = attached;
+			}
+			for (int j = 0; j < WORDS.length; ++j) {
+				assertSearch(WORDS[j].substring(0, 2));
+			}
+			assertSearch("beta max");
+		}
+	}
+
+	private boolean isAttached(TreeNode node) {
+		while (node.getParent() != null) {
+			node = node.getParent();
+		}
+		return node == root;
+	}
+
+	/**
+	 * Tests that a disposed index no longer listens to its model.
+	 */
+	public void testDispose() {
+		index.search("root");
+		index.dispose();
+		root.addChild(createNode("alpha"));
+		assertEquals(1, index.search("alpha").length);
+	}
+}
@@ -72,11 +72,21 @@ public class DataGrid extends Component {
     public static final String COLUMN_INDEX_CHANGED_PROPERTY = "columnIndex";
     public static final String COLUMN_PERCENT_CHANGED_PROPERTY = "columnPercent";
     public static final String MODEL_CHANGED_PROPERTY = "model";
+    public static final String MODEL_CONTENT_CHANGED_PROPERTY = "modelContent";
     public static final String ROW_INDEX_CHANGED_PROPERTY = "rowIndex";
     public static final String ROW_PERCENT_CHANGED_PROPERTY = "rowPercent";
+    
+    /**
+     * The default number of cells the client keeps in its model cache.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 20000;
+
+    public static final String PROPERTY_CACHE_SIZE = "cacheSize";
 
     /**
      * Listener to monitor changes to model.
+     * Changes to the structure of the model are reported as a change of the model, changes to its cells, rows and columns
+     * as a change of the model content, which the synchronization peer may render incrementally.
      */
     private DataGridModelListener modelListener = new DataGridModelListener() {
         
@@ -87,7 +97,11 @@ public class DataGrid extends Component {
          * @see nextapp.echo.extras.app.event.DataGridModelListener#modelChanged(nextapp.echo.extras.app.event.DataGridModelEvent)
          */
         public void modelChanged(DataGridModelEvent e) {
-            firePropertyChange(MODEL_CHANGED_PROPERTY, null, null);
+            if (e.getType() == DataGridModelEvent.STRUCTURE_CHANGED) {
+                firePropertyChange(MODEL_CHANGED_PROPERTY, null, null);
+            } else {
+                firePropertyChange(MODEL_CONTENT_CHANGED_PROPERTY, null, e);
+            }
         }
     };
     
@@ -137,6 +151,16 @@ public class DataGrid extends Component {
         setModel(model);
     }
     
+    /**
+     * Returns the maximum number of model cells cached by the client.
+     * 
+     * @return the cache size, in cells
+     */
+    public int getCacheSize() {
+        Integer cacheSize = (Integer) get(PROPERTY_CACHE_SIZE);
+        return cacheSize == null ? DEFAULT_CACHE_SIZE : cacheSize.intValue();
+    }
+    
     /**
      * Returns the first displayed column index.
      * Either this method or <code>getColumnPercent()</code> will return null.
@@ -186,6 +210,17 @@ public class DataGrid extends Component {
         return rowPercent;
     }
 
+    /**
+     * Sets the maximum number of model cells cached by the client.
+     * The least recently displayed cells are discarded by the client when the cache is full, and retrieved from the 
+     * server again when displayed.  Cells which are currently displayed are never discarded.
+     * 
+     * @param newValue the new cache size, in cells
+     */
+    public void setCacheSize(int newValue) {
+        set(PROPERTY_CACHE_SIZE, new Integer(newValue));
+    }
+    
     /**
      * Sets the first displayed column index.
      * This will override any setting configured using <code>setColumnPercent()</code> 
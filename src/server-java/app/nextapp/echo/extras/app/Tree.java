@@ -33,15 +33,23 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.EventListener;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import nextapp.echo.app.ApplicationInstance;
 import nextapp.echo.app.Border;
 import nextapp.echo.app.Color;
 import nextapp.echo.app.Component;
@@ -51,25 +59,33 @@ import nextapp.echo.app.Font;
 import nextapp.echo.app.ImageReference;
 import nextapp.echo.app.Insets;
 import nextapp.echo.app.Label;
+import nextapp.echo.app.TaskQueueHandle;
 import nextapp.echo.app.event.ActionEvent;
 import nextapp.echo.app.event.ActionListener;
 import nextapp.echo.app.event.ChangeEvent;
 import nextapp.echo.app.event.ChangeListener;
 import nextapp.echo.extras.app.event.TreeColumnModelEvent;
 import nextapp.echo.extras.app.event.TreeColumnModelListener;
+import nextapp.echo.extras.app.event.TreeExpansionBatchListener;
 import nextapp.echo.extras.app.event.TreeExpansionEvent;
 import nextapp.echo.extras.app.event.TreeExpansionListener;
 import nextapp.echo.extras.app.event.TreeModelEvent;
 import nextapp.echo.extras.app.event.TreeModelListener;
 import nextapp.echo.extras.app.tree.AbstractTreeModel;
+import nextapp.echo.extras.app.tree.AsyncTreeModel;
 import nextapp.echo.extras.app.tree.DefaultTreeCellRenderer;
 import nextapp.echo.extras.app.tree.DefaultTreeColumnModel;
 import nextapp.echo.extras.app.tree.DefaultTreeSelectionModel;
+import nextapp.echo.extras.app.tree.FilteredTreeModel;
+import nextapp.echo.extras.app.tree.RecyclingTreeCellRenderer;
+import nextapp.echo.extras.app.tree.SortedTreeModel;
 import nextapp.echo.extras.app.tree.TreeCellRenderer;
 import nextapp.echo.extras.app.tree.TreeColumn;
 import nextapp.echo.extras.app.tree.TreeColumnModel;
 import nextapp.echo.extras.app.tree.TreeModel;
 import nextapp.echo.extras.app.tree.TreePath;
+import nextapp.echo.extras.app.tree.TreeRowIndex;
+import nextapp.echo.extras.app.tree.TreeSearchIndex;
 import nextapp.echo.extras.app.tree.TreeSelectionModel;
 
 /**
@@ -86,6 +102,22 @@ public class Tree extends Component {
         protected int row;
         private TreeColumn[] treeColumns;
         private TreeCellRenderer[] columnRenderers;
+        
+        /**
+         * Paths that have been rendered but not yet added to the row index,
+         * inserted in a single operation by <code>flushPendingRows()</code>.
+         */
+        private List pendingRows = new ArrayList();
+        private int pendingRow;
+        
+        /**
+         * Maps each <code>RecyclingTreeCellRenderer</code> to a 
+         * <code>List</code> of components it rendered for rows that have left
+         * the window of a virtualized tree. The components remain children
+         * of the tree until they are either reused or disposed by 
+         * <code>renderWindow()</code>.
+         */
+        private Map recycledComponents = new HashMap();
 
         protected void doRender() {
         	Serializable root = model.getRoot();
@@ -93,6 +125,7 @@ public class Tree extends Component {
                 renderHeader();
             }
             doRenderNode(new TreePath(root));
+            flushPendingRows();
         }
         
         protected void init() {
@@ -145,16 +178,20 @@ public class Tree extends Component {
 
         protected void doRenderNode(TreePath treePath) {
         	Serializable value = treePath.getLastPathComponent();
-            if (!treePathToComponentCache.containsKey(treePath)) {
+            if (!isVirtualized() && !treePathToComponentCache.containsKey(treePath)) {
                 renderNodeComponents(treePath);
             }
-            int cacheSize = rowToTreePathCache.size();
-            if (cacheSize == 0 || row >= cacheSize
-                    || !rowToTreePathCache.get(row).equals(treePath)) {
-                rowToTreePathCache.add(row, treePath);
+            if (!getRowIndex().contains(treePath)) {
+                if (pendingRows.isEmpty()) {
+                    pendingRow = row;
+                }
+                pendingRows.add(treePath);
             }
             ++row;
             if (isExpanded(treePath)) {
+                if (getModel() instanceof AsyncTreeModel) {
+                    startChildLoader(treePath);
+                }
                 int childCount = model.getChildCount(value);
                 for (int i = 0; i < childCount; ++i) {
                 	Serializable childValue = model.getChild(value, i);
@@ -170,42 +207,142 @@ public class Tree extends Component {
             for (int i = 0; i < columnCount; ++i) {
                 int modelColumnIndex = treeColumns[i].getModelIndex();
                 Object modelValue = model.getValueAt(node, modelColumnIndex);
+                Component renderedComponent = recycleComponent(i, treePath, modelValue, leaf);
+                if (renderedComponent == null) {
+                    renderedComponent = columnRenderers[i].getTreeCellRendererComponent(
+                            Tree.this, treePath, modelValue, modelColumnIndex, row, leaf);
+                    if (renderedComponent == null) {
+                        renderedComponent = new Label();
+                    }
+                    add(renderedComponent);
+                }
+                cacheComponent(treePath, i, renderedComponent);
+            }
+        }
+        
+        /**
+         * Reconfigures a released component of the renderer of 
+         * <code>column</code> to display a cell. Released components the 
+         * renderer refuses to reconfigure are disposed.
+         * 
+         * @return the reconfigured component, or <code>null</code> if no 
+         *         component could be reused
+         */
+        private Component recycleComponent(int column, TreePath treePath, Object value, boolean leaf) {
+            List components = (List) recycledComponents.get(columnRenderers[column]);
+            if (components == null) {
+                return null;
+            }
+            RecyclingTreeCellRenderer recyclingRenderer = (RecyclingTreeCellRenderer) columnRenderers[column];
+            while (!components.isEmpty()) {
+                Component component = (Component) components.remove(components.size() - 1);
+                if (recyclingRenderer.recycleTreeCellRendererComponent(component, Tree.this, treePath, value, 
+                        treeColumns[column].getModelIndex(), row, leaf)) {
+                    return component;
+                }
+                remove(component);
+            }
+            return null;
+        }
+        
+        /**
+         * Reconfigures the rendered components of <code>treePath</code> in
+         * place where their renderer allows it, and renders new components 
+         * for the other columns.
+         */
+        private void rerenderNodeComponents(TreePath treePath) {
+            Serializable node = treePath.getLastPathComponent();
+            Object cached = treePathToComponentCache.get(treePath);
+            
+            boolean leaf = model.getChildCount(node) == 0;
+            for (int i = 0; i < columnCount; ++i) {
+                Component component;
+                if (cached instanceof Component) {
+                    component = (Component) cached;
+                } else {
+                    component = ((Component[]) cached)[i];
+                }
+                int modelColumnIndex = treeColumns[i].getModelIndex();
+                Object modelValue = model.getValueAt(node, modelColumnIndex);
+                if (columnRenderers[i] instanceof RecyclingTreeCellRenderer 
+                        && ((RecyclingTreeCellRenderer) columnRenderers[i]).recycleTreeCellRendererComponent(
+                                component, Tree.this, treePath, modelValue, modelColumnIndex, row, leaf)) {
+                    continue;
+                }
+                remove(component);
                 Component renderedComponent = columnRenderers[i].getTreeCellRendererComponent(
                         Tree.this, treePath, modelValue, modelColumnIndex, row, leaf);
                 if (renderedComponent == null) {
                     renderedComponent = new Label();
                 }
                 add(renderedComponent);
-                cacheComponent(treePath, i, renderedComponent);
+                if (cached instanceof Component) {
+                    treePathToComponentCache.put(treePath, renderedComponent);
+                } else {
+                    ((Component[]) cached)[i] = renderedComponent;
+                }
             }
         }
         
+        /**
+         * Stores the component of a cell. The components of a path are 
+         * stored as a single <code>Component</code> if the tree has one 
+         * column, and as a <code>Component[]</code> indexed by column 
+         * otherwise.
+         */
         protected void cacheComponent(TreePath treePath, int column, Component component) {
             if (1 == columnCount) {
                 treePathToComponentCache.put(treePath, component);
             } else {
-                List list;
+                Component[] components;
                 if (column == 0) {
-                    list = new ArrayList();
-                    treePathToComponentCache.put(treePath, list);
+                    components = new Component[columnCount];
+                    treePathToComponentCache.put(treePath, components);
                 } else {
-                    list = (List) treePathToComponentCache.get(treePath);
+                    components = (Component[]) treePathToComponentCache.get(treePath);
                 }
-                list.add(component);
+                components[column] = component;
+            }
+        }
+
+        /**
+         * Adds all paths rendered since the last flush to the row index in a
+         * single bulk insert.
+         */
+        protected void flushPendingRows() {
+            if (!pendingRows.isEmpty()) {
+                getRowIndex().insert(pendingRow, pendingRows);
+                pendingRows.clear();
             }
         }
 
         protected void update(TreePath path, boolean newState) {
+            update(new TreePath[] { path }, newState);
+        }
+
+        /**
+         * Updates the rows for a change of the expansion state of multiple 
+         * paths in a single pass.
+         * 
+         * @param paths the paths whose expansion state has changed; when
+         *        expanding, only the top-most expanded paths are required
+         * @param newState the new expansion state
+         */
+        protected void update(TreePath[] paths, boolean newState) {
             init();
-            row = getRowForPath(path);
-            if (row == -1) {
-                row = rowToTreePathCache.size();
-            }
-            if (newState) {
-                doRenderNode(path);
-            } else {
-                doCollapse(path);
+            for (int i = 0; i < paths.length; ++i) {
+                row = getRowForPath(paths[i]);
+                if (row == -1) {
+                    row = getRowIndex().size();
+                }
+                if (newState) {
+                    doRenderNode(paths[i]);
+                    flushPendingRows();
+                } else {
+                    doCollapse(paths[i]);
+                }
             }
+            renderWindow();
         }
 
         protected void doCollapse(TreePath path) {
@@ -214,20 +351,24 @@ public class Tree extends Component {
             if (model.getChildCount(value) == 0) {
                 return;
             }
+            int pathRow = getRowForPath(path);
+            if (pathRow == -1) {
+                // path is not visible, so neither are its children
+                return;
+            }
 
             // remove all rows that are between the current path and its next
             // sibling
-            int startRow = getRowForPath(path) + 1;
-            int endRow;
+            int startRow = pathRow + 1;
+            int endRow = -1;
             TreePath siblingPath = getSiblingPath(path);
-            if (siblingPath == null) {
-                endRow = rowToTreePathCache.size();
-            } else {
+            if (siblingPath != null) {
                 endRow = getRowForPath(siblingPath);
             }
-            for (int i = startRow; i < endRow; ++i) {
-                rowToTreePathCache.remove(startRow);
+            if (endRow == -1) {
+                endRow = getRowIndex().size();
             }
+            getRowIndex().remove(startRow, endRow);
         }
 
         protected TreePath getSiblingPath(TreePath path) {
@@ -246,22 +387,295 @@ public class Tree extends Component {
             }
         }
 
+        /**
+         * Re-renders the components of nodes whose values have changed. Only
+         * nodes that have already been rendered are affected, as any other
+         * node will be rendered with its current values once it is shown.
+         * 
+         * @param paths the paths of the changed nodes
+         */
+        protected void nodesChanged(TreePath[] paths) {
+            init();
+            for (int i = 0; i < paths.length; ++i) {
+                Object cached = treePathToComponentCache.get(paths[i]);
+                if (cached == null) {
+                    continue;
+                }
+                row = getRowForPath(paths[i]);
+                if (cached instanceof Component[] ? ((Component[]) cached).length == columnCount : columnCount == 1) {
+                    rerenderNodeComponents(paths[i]);
+                } else {
+                    uncacheComponents(paths[i]);
+                    renderNodeComponents(paths[i]);
+                }
+            }
+        }
+
+        /**
+         * Renders the rows of nodes that have been inserted below
+         * <code>parentPath</code>. Nothing is rendered unless the parent is
+         * both visible and expanded.
+         * 
+         * @param parentPath the path of the parent node
+         * @param childIndices the indices of the inserted children, in
+         *        ascending order
+         */
+        protected void nodesInserted(TreePath parentPath, int[] childIndices) {
+            init();
+            Serializable parent = parentPath.getLastPathComponent();
+            int childCount = model.getChildCount(parent);
+            if (childCount == childIndices.length) {
+                // the parent has just stopped being a leaf
+                nodesChanged(new TreePath[] { parentPath });
+            }
+            if (getRowForPath(parentPath) == -1 || !isExpanded(parentPath)) {
+                return;
+            }
+            
+            int endRow = getSubtreeEndRow(parentPath);
+            // render the last inserted child first, so that the row of the
+            // child following an inserted child is always known
+            for (int i = childIndices.length - 1; i >= 0; --i) {
+                int index = childIndices[i];
+                if (index == childCount - 1) {
+                    row = endRow;
+                } else {
+                    row = getRowForPath(parentPath.pathByAddingChild(model.getChild(parent, index + 1)));
+                }
+                doRenderNode(parentPath.pathByAddingChild(model.getChild(parent, index)));
+                flushPendingRows();
+            }
+            renderWindow();
+        }
+
+        /**
+         * Removes the rows and components of nodes that have been removed
+         * from below <code>parentPath</code>.
+         * 
+         * @param parentPath the path of the parent node
+         * @param children the removed child nodes
+         */
+        protected void nodesRemoved(TreePath parentPath, Object[] children) {
+            init();
+            TreePath[] paths = new TreePath[children.length];
+            for (int i = 0; i < children.length; ++i) {
+                paths[i] = parentPath.pathByAddingChild((Serializable) children[i]);
+            }
+            removeSubtrees(paths);
+            if (model.getChildCount(parentPath.getLastPathComponent()) == 0) {
+                // the parent has just become a leaf
+                nodesChanged(new TreePath[] { parentPath });
+            }
+            renderWindow();
+        }
+
+        /**
+         * Discards all rows and components below <code>path</code> and
+         * renders the subtree again from the model.
+         * 
+         * @param path the path of the node whose subtree has changed
+         */
+        protected void structureChanged(TreePath path) {
+            init();
+            int pathRow = getRowForPath(path);
+            boolean rendered = treePathToComponentCache.containsKey(path);
+            removeSubtrees(new TreePath[] { path });
+            row = pathRow;
+            if (pathRow != -1) {
+                doRenderNode(path);
+                flushPendingRows();
+            } else if (rendered) {
+                renderNodeComponents(path);
+            }
+            renderWindow();
+        }
+
+        /**
+         * Removes the rows of <code>paths</code> along with the rows of all
+         * their visible descendants from the row index, and disposes the
+         * rendered components of the paths and all their descendants.
+         * Cached components of hidden descendants are found in a single
+         * pass over the component cache for all paths.
+         * 
+         * @param paths the paths at the roots of the subtrees
+         */
+        private void removeSubtrees(TreePath[] paths) {
+            Set removedRoots = new HashSet();
+            for (int i = 0; i < paths.length; ++i) {
+                TreePath path = paths[i];
+                removedRoots.add(path);
+                int startRow = getRowForPath(path);
+                if (startRow != -1) {
+                    int endRow = startRow + 1;
+                    int rowCount = getRowIndex().size();
+                    while (endRow < rowCount && path.isDescendant(getRowIndex().getPath(endRow))) {
+                        ++endRow;
+                    }
+                    List removedPaths = getRowIndex().remove(startRow, endRow);
+                    for (int j = 0; j < removedPaths.size(); ++j) {
+                        uncacheComponents((TreePath) removedPaths.get(j));
+                    }
+                }
+                uncacheComponents(path);
+            }
+            
+            // components of collapsed descendants stay cached while hidden
+            int headerCount = isHeaderVisible() ? 1 : 0;
+            if (treePathToComponentCache.size() > getRowIndex().size() + headerCount) {
+                Iterator it = treePathToComponentCache.keySet().iterator();
+                List hiddenPaths = new ArrayList();
+                while (it.hasNext()) {
+                    TreePath cachedPath = (TreePath) it.next();
+                    for (TreePath ancestor = cachedPath; ancestor != null; ancestor = ancestor.getParentPath()) {
+                        if (removedRoots.contains(ancestor)) {
+                            hiddenPaths.add(cachedPath);
+                            break;
+                        }
+                    }
+                }
+                for (int i = 0; i < hiddenPaths.size(); ++i) {
+                    uncacheComponents((TreePath) hiddenPaths.get(i));
+                }
+            }
+        }
+
+        /**
+         * Returns the row directly following the visible subtree of
+         * <code>path</code>.
+         */
+        private int getSubtreeEndRow(TreePath path) {
+            TreePath siblingPath = getSiblingPath(path);
+            int endRow = siblingPath == null ? -1 : getRowForPath(siblingPath);
+            return endRow == -1 ? getRowIndex().size() : endRow;
+        }
+
+        /**
+         * Removes the rendered components of <code>path</code> from the tree
+         * and the component cache. The components of a virtualized tree are
+         * kept for reuse if their renderer is a 
+         * <code>RecyclingTreeCellRenderer</code>.
+         */
+        protected void uncacheComponents(TreePath path) {
+            Object cached = treePathToComponentCache.remove(path);
+            if (cached instanceof Component) {
+                releaseComponent(0, (Component) cached);
+            } else if (cached != null) {
+                Component[] components = (Component[]) cached;
+                for (int i = 0; i < components.length; ++i) {
+                    releaseComponent(i, components[i]);
+                }
+            }
+        }
+        
+        private void releaseComponent(int column, Component component) {
+            if (isVirtualized() && column < columnCount 
+                    && columnRenderers[column] instanceof RecyclingTreeCellRenderer) {
+                List components = (List) recycledComponents.get(columnRenderers[column]);
+                if (components == null) {
+                    components = new ArrayList();
+                    recycledComponents.put(columnRenderers[column], components);
+                }
+                components.add(component);
+            } else {
+                remove(component);
+            }
+        }
+        
+        /**
+         * Disposes all released components that have not been reused.
+         */
+        private void disposeRecycledComponents() {
+            Iterator it = recycledComponents.values().iterator();
+            while (it.hasNext()) {
+                List components = (List) it.next();
+                for (int i = 0; i < components.size(); ++i) {
+                    remove((Component) components.get(i));
+                }
+            }
+            recycledComponents.clear();
+        }
+
+        /**
+         * Rebuilds the row index after the tree has been sorted. The 
+         * rendered components of the rows are kept.
+         */
+        protected void sortChanged() {
+            init();
+            rowIndex = new TreeRowIndex();
+            pendingRows.clear();
+            row = 0;
+            doRenderNode(new TreePath(model.getRoot()));
+            flushPendingRows();
+            renderWindow();
+        }
+
         protected void fullUpdate() {
             init();
+            firePropertyChange(STRUCTURE_INVALIDATED_PROPERTY, null, null);
             removeAll();
+            recycledComponents.clear();
             treePathToComponentCache.clear();
-            rowToTreePathCache.clear();
+            rowIndex = new TreeRowIndex();
+            pendingRows.clear();
             row = 0;
             doRender();
+            renderWindow();
+        }
+
+        /**
+         * Renders the components of the rows within the window of a 
+         * virtualized tree, and disposes the components of all rows outside
+         * of it. Does nothing if the tree is not virtualized.
+         * 
+         * @see Tree#getWindowStartRow()
+         * @see Tree#getWindowEndRow()
+         */
+        protected void renderWindow() {
+            if (!isVirtualized()) {
+                return;
+            }
+            init();
+            int startRow = getWindowStartRow();
+            int endRow = getWindowEndRow();
+            
+            List releasedPaths = new ArrayList();
+            Iterator it = treePathToComponentCache.keySet().iterator();
+            while (it.hasNext()) {
+                TreePath cachedPath = (TreePath) it.next();
+                if (cachedPath == null) {
+                    // header
+                    continue;
+                }
+                int cachedRow = getRowForPath(cachedPath);
+                if (cachedRow < startRow || cachedRow >= endRow) {
+                    releasedPaths.add(cachedPath);
+                }
+            }
+            for (int i = 0; i < releasedPaths.size(); ++i) {
+                uncacheComponents((TreePath) releasedPaths.get(i));
+            }
+            
+            for (row = startRow; row < endRow; ++row) {
+                TreePath path = getRowIndex().getPath(row);
+                if (!treePathToComponentCache.containsKey(path)) {
+                    renderNodeComponents(path);
+                }
+            }
+            disposeRecycledComponents();
         }
     }
 
-    private Renderer renderer = createRenderer();
+    /**
+     * The renderer, not serialized, created again on first use after
+     * deserialization.
+     */
+    private transient Renderer renderer = createRenderer();
 
     public static final String PROPERTY_ACTION_COMMAND = "actionCommand";
     public static final String PROPERTY_BORDER = "border";
     public static final String PROPERTY_HEADER_VISIBLE = "headerVisible";
     public static final String PROPERTY_INSETS = "insets";
+    public static final String PROPERTY_HEIGHT = "height";
     public static final String PROPERTY_LINE_STYLE = "lineStyle";
     public static final String PROPERTY_NODE_CLOSED_ICON = "nodeClosedIcon";
     public static final String PROPERTY_NODE_CLOSED_BOTTOM_ICON = "nodeClosedBottomIcon";
@@ -281,10 +695,13 @@ public class Tree extends Component {
     public static final String PROPERTY_SELECTION_FONT = "selectionFont";
     public static final String PROPERTY_SELECTION_FOREGROUND = "selectionForeground";
     public static final String PROPERTY_SHOWS_ROOT_HANDLE = "showsRootHandle";
+    public static final String PROPERTY_SORT_ENABLED = "sortEnabled";
     public static final String PROPERTY_WIDTH = "width";
     
     public static final String EXPAND_ACTION = "expand";
     public static final String INPUT_ACTION = "action";
+    public static final String INPUT_SORT = "sort";
+    public static final String INPUT_VIEWPORT = "viewport";
 
     public static final String ACTION_LISTENERS_CHANGED_PROPERTY = "actionListeners";
     public static final String AUTO_CREATE_COLUMNS_FROM_MODEL_CHANGED_PROPERTY = "autoCreateColumnsFromModel";
@@ -294,10 +711,16 @@ public class Tree extends Component {
     public static final String DEFAULT_HEADER_RENDERER_CHANGED_PROPERTY = "defaultHeaderRenderer";
     public static final String DEFAULT_RENDERER_CHANGED_PROPERTY = "defaultRenderer";
     public static final String EXPANSION_STATE_CHANGED_PROPERTY = "expansionState";
+    public static final String FILTER_CHANGED_PROPERTY = "filter";
     public static final String MODEL_CHANGED_PROPERTY = "model";
+    public static final String OVERSCAN_ROW_COUNT_CHANGED_PROPERTY = "overscanRowCount";
     public static final String SELECTION_CHANGED_PROPERTY = "selection";
     public static final String SELECTION_MODEL_CHANGED_PROPERTY = "selectionModel";
     public static final String SELECTION_MODE_CHANGED_PROPERTY = "selectionMode";
+    public static final String SORT_CHANGED_PROPERTY = "sort";
+    public static final String STRUCTURE_INVALIDATED_PROPERTY = "structureInvalidated";
+    public static final String VIEWPORT_CHANGED_PROPERTY = "viewport";
+    public static final String VIRTUALIZED_CHANGED_PROPERTY = "virtualized";
     
     public static final int LINE_STYLE_NONE = 0;
     public static final int LINE_STYLE_SOLID = 1;
@@ -305,7 +728,76 @@ public class Tree extends Component {
     
     public static final int HEADER_ROW = -1;
     
+    /**
+     * The default number of rows rendered above and below the viewport of a
+     * virtualized tree.
+     */
+    public static final int DEFAULT_OVERSCAN_ROW_COUNT = 20;
+    
+    /**
+     * The number of rows assumed to be visible in a virtualized tree until
+     * the client reports its viewport.
+     */
+    public static final int DEFAULT_VIEWPORT_ROW_COUNT = 50;
+    
     private static final TreeCellRenderer DEFAULT_TREE_CELL_RENDERER = new DefaultTreeCellRenderer();
+    
+    private static Executor defaultChildLoaderExecutor;
+    
+    /**
+     * Returns the executor used to load the children of 
+     * <code>AsyncTreeModel</code> nodes when no executor has been set on a
+     * tree. The executor is created on first use, and runs tasks on a pool 
+     * of daemon threads.
+     * 
+     * @return the default child loader executor
+     */
+    private static synchronized Executor getDefaultChildLoaderExecutor() {
+        if (defaultChildLoaderExecutor == null) {
+            defaultChildLoaderExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Tree child loader");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return defaultChildLoaderExecutor;
+    }
+    
+    /**
+     * Task that loads the children of a node of an 
+     * <code>AsyncTreeModel</code>. On completion, the children are merged 
+     * into the model on the user interface thread through the task queue of
+     * the application.
+     */
+    private class ChildLoader extends FutureTask {
+        
+        private TreePath treePath;
+        private ApplicationInstance app;
+        private TaskQueueHandle taskQueue;
+        
+        private ChildLoader(TreePath treePath, Callable callable, ApplicationInstance app, TaskQueueHandle taskQueue) {
+            super(callable);
+            this.treePath = treePath;
+            this.app = app;
+            this.taskQueue = taskQueue;
+        }
+        
+        /**
+         * @see java.util.concurrent.FutureTask#done()
+         */
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+            app.enqueueTask(taskQueue, new Runnable() {
+                public void run() {
+                    childLoaderDone(ChildLoader.this);
+                }
+            });
+        }
+    }
 
     /**
      * Listener to monitor changes to model.
@@ -318,9 +810,15 @@ public class Tree extends Component {
          */
         public void treeStructureChanged(TreeModelEvent e) {
             firePropertyChange(MODEL_CHANGED_PROPERTY, null, getModel());
-            invalidate();
-            if (isAutoCreateColumnsFromModel()) {
-                createDefaultColumnsFromModel();
+            TreePath path = e.getTreePath();
+            if (valid && path != null && path.getParentPath() != null) {
+                getRenderer().structureChanged(path);
+                updateColumnsFromModel();
+            } else {
+                invalidate();
+                if (isAutoCreateColumnsFromModel()) {
+                    createDefaultColumnsFromModel();
+                }
             }
         }
 
@@ -330,18 +828,39 @@ public class Tree extends Component {
          */
         public void treeNodesRemoved(TreeModelEvent e) {
             firePropertyChange(MODEL_CHANGED_PROPERTY, null, getModel());
-            invalidate();
-            TreePath removedPath = e.getTreePath();
+            TreePath parentPath = e.getTreePath();
+            Object[] children = e.getChildren();
+            if (valid && children != null) {
+                getRenderer().nodesRemoved(parentPath, children);
+            } else {
+                invalidate();
+            }
+            
+            TreePath[] removedPaths;
+            if (children == null) {
+                removedPaths = new TreePath[] { parentPath };
+            } else {
+                removedPaths = new TreePath[children.length];
+                for (int i = 0; i < children.length; ++i) {
+                    removedPaths[i] = parentPath.pathByAddingChild((Serializable) children[i]);
+                }
+            }
             TreePath[] selectionPaths = getSelectionModel().getSelectionPaths();
+            List removedSelectionPaths = new ArrayList();
             for (int i = 0; i < selectionPaths.length; i++) {
                 TreePath selectionPath = selectionPaths[i];
-                if (removedPath.isDescendant(selectionPath)) {
-                    getSelectionModel().removeSelectionPath(selectionPath);
+                for (int j = 0; j < removedPaths.length; ++j) {
+                    if (removedPaths[j].isDescendant(selectionPath)) {
+                        removedSelectionPaths.add(selectionPath);
+                        break;
+                    }
                 }
             }
-            if (isAutoCreateColumnsFromModel()) {
-                createDefaultColumnsFromModel();
+            if (!removedSelectionPaths.isEmpty()) {
+                getSelectionModel().removeSelectionPaths(
+                        (TreePath[]) removedSelectionPaths.toArray(new TreePath[removedSelectionPaths.size()]));
             }
+            updateColumnsFromModel();
         }
 
         /**
@@ -350,10 +869,10 @@ public class Tree extends Component {
          */
         public void treeNodesChanged(TreeModelEvent e) {
             firePropertyChange(MODEL_CHANGED_PROPERTY, null, getModel());
-            invalidate();
-            if (isAutoCreateColumnsFromModel()) {
-                createDefaultColumnsFromModel();
+            if (valid) {
+                getRenderer().nodesChanged(getChildPaths(e));
             }
+            updateColumnsFromModel();
         }
 
         /**
@@ -362,13 +881,94 @@ public class Tree extends Component {
          */
         public void treeNodesAdded(TreeModelEvent e) {
             firePropertyChange(MODEL_CHANGED_PROPERTY, null, getModel());
-            invalidate();
-            if (isAutoCreateColumnsFromModel()) {
+            int[] childIndices = e.getChildIndices();
+            if (valid && childIndices != null) {
+                getRenderer().nodesInserted(e.getTreePath(), childIndices);
+            } else {
+                invalidate();
+            }
+            updateColumnsFromModel();
+        }
+        
+        /**
+         * Returns the paths of the children identified by a 
+         * <code>TreeModelEvent</code>, or the path of the event itself if no
+         * children are specified.
+         */
+        private TreePath[] getChildPaths(TreeModelEvent e) {
+            TreePath parentPath = e.getTreePath();
+            int[] childIndices = e.getChildIndices();
+            if (childIndices == null || childIndices.length == 0) {
+                return new TreePath[] { parentPath };
+            }
+            Object[] children = e.getChildren();
+            TreePath[] paths = new TreePath[childIndices.length];
+            for (int i = 0; i < childIndices.length; ++i) {
+                Serializable child = children == null 
+                        ? model.getChild(parentPath.getLastPathComponent(), childIndices[i])
+                        : (Serializable) children[i];
+                paths[i] = parentPath.pathByAddingChild(child);
+            }
+            return paths;
+        }
+        
+        /**
+         * Recreates the columns from the model if the model's column count
+         * no longer matches the column model.
+         */
+        private void updateColumnsFromModel() {
+            if (isAutoCreateColumnsFromModel() && columnModel.getColumnCount() != model.getColumnCount()) {
                 createDefaultColumnsFromModel();
             }
         }
     };
     
+    /**
+     * Listener to monitor changes to the model while the tree is filtered.
+     * The filter is applied again on the next validation, rendering the 
+     * entire tree.
+     */
+    private TreeModelListener filterListener = new TreeModelListener() {
+
+        /**
+         * @see nextapp.echo.extras.app.event.TreeModelListener#treeStructureChanged(
+         *          nextapp.echo.extras.app.event.TreeModelEvent)
+         */
+        public void treeStructureChanged(TreeModelEvent e) {
+            invalidateFilter();
+        }
+
+        /**
+         * @see nextapp.echo.extras.app.event.TreeModelListener#treeNodesRemoved(
+         *          nextapp.echo.extras.app.event.TreeModelEvent)
+         */
+        public void treeNodesRemoved(TreeModelEvent e) {
+            invalidateFilter();
+        }
+
+        /**
+         * @see nextapp.echo.extras.app.event.TreeModelListener#treeNodesChanged(
+         *          nextapp.echo.extras.app.event.TreeModelEvent)
+         */
+        public void treeNodesChanged(TreeModelEvent e) {
+            invalidateFilter();
+        }
+
+        /**
+         * @see nextapp.echo.extras.app.event.TreeModelListener#treeNodesAdded(
+         *          nextapp.echo.extras.app.event.TreeModelEvent)
+         */
+        public void treeNodesAdded(TreeModelEvent e) {
+            invalidateFilter();
+        }
+        
+        private void invalidateFilter() {
+            firePropertyChange(MODEL_CHANGED_PROPERTY, null, getModel());
+            filterValid = false;
+            invalidate();
+        }
+    };
+    
     /**
      * Listener to monitor changes to model.
      */
@@ -403,6 +1003,16 @@ public class Tree extends Component {
          *      nextapp.echo.extras.app.event.TreeColumnModelEvent)
          */
         public void columnResized(TreeColumnModelEvent e) {
+            if (TreeColumn.COMPARATOR_CHANGED_PROPERTY.equals(e.getPropertyName())) {
+                int[] columnIndices = e.getColumnIndices();
+                for (int i = 0; i < columnIndices.length; ++i) {
+                    if (columnIndices[i] == sortColumn) {
+                        applySort(null);
+                        break;
+                    }
+                }
+                return;
+            }
             firePropertyChange(COLUMN_WIDTH_CHANGED_PROPERTY, null, null);
         }
         
@@ -427,19 +1037,89 @@ public class Tree extends Component {
     
     private PropertyChangeListener propertyChangeListener = new TreeSelectionModelListener();
 
+    /**
+     * The model the rows are rendered from. This is the model of the tree,
+     * wrapped by the <code>sortedModel</code> while the tree is sorted, and
+     * by the <code>filteredModel</code> while the tree is filtered.
+     */
     private TreeModel model;
+    private int sortColumn = -1;
+    private boolean sortAscending = true;
+    private SortedTreeModel sortedModel;
+    private String filter;
+    private FilteredTreeModel filteredModel;
+    private boolean filterValid;
+    /**
+     * The expanded paths before the filter was set, restored when the 
+     * filter is cleared.
+     */
+    private Set unfilteredExpandedPaths;
+    private boolean searchIndexed;
+    private TreeSearchIndex searchIndex;
     private TreeColumnModel columnModel;
     private TreeSelectionModel selectionModel;
     private Map defaultRendererMap = new HashMap();
     private TreeCellRenderer defaultHeaderRenderer;
     private Set expandedPaths = new HashSet();
-    protected List rowToTreePathCache = new ArrayList();
+    /**
+     * The visible paths by row. Not serialized, it is rebuilt from the model 
+     * and the expanded paths on first use after deserialization, and is 
+     * <code>null</code> until then.
+     */
+    protected transient TreeRowIndex rowIndex = new TreeRowIndex();
     protected Map treePathToComponentCache = new HashMap();
     private boolean valid = false;
     private TreeCellRenderer cellRenderer;
     private boolean autoCreateColumnsFromModel;
     private boolean suppressChangeNotifications = false;
+    private boolean virtualized;
+    private int overscanRowCount = DEFAULT_OVERSCAN_ROW_COUNT;
+    private int viewportFirstRow;
+    private int viewportRowCount = DEFAULT_VIEWPORT_ROW_COUNT;
+    private transient Executor childLoaderExecutor;
+    private transient Map childLoaders;
+    private transient ApplicationInstance childLoaderApplication;
+    private transient TaskQueueHandle childLoaderTaskQueue;
 
+    /**
+     * Returns the renderer, creating it if the tree has been deserialized.
+     */
+    private Renderer getRenderer() {
+        if (renderer == null) {
+            renderer = createRenderer();
+        }
+        return renderer;
+    }
+    
+    /**
+     * Returns the row index, rebuilding it from the model and the expanded
+     * paths if the tree has been deserialized.
+     */
+    private TreeRowIndex getRowIndex() {
+        if (rowIndex == null) {
+            List paths = new ArrayList();
+            collectVisiblePaths(new TreePath(model.getRoot()), paths);
+            rowIndex = new TreeRowIndex();
+            rowIndex.insert(0, paths);
+        }
+        return rowIndex;
+    }
+    
+    /**
+     * Adds <code>path</code> and all of its visible descendants to 
+     * <code>paths</code>, in row order.
+     */
+    private void collectVisiblePaths(TreePath path, List paths) {
+        paths.add(path);
+        if (isExpanded(path)) {
+            Serializable value = path.getLastPathComponent();
+            int childCount = model.getChildCount(value);
+            for (int i = 0; i < childCount; ++i) {
+                collectVisiblePaths(path.pathByAddingChild(model.getChild(value, i)), paths);
+            }
+        }
+    }
+    
     /**
      * Constructs a new <code>Tree</code> with a default tree model.
      */
@@ -527,6 +1207,18 @@ public class Tree extends Component {
         firePropertyChange(ACTION_LISTENERS_CHANGED_PROPERTY, null, l);
     }
     
+    /**
+     * Adds the paths between <code>index0</code> and <code>index1</code>
+     * (inclusive) to the selection, as a single change of the selection
+     * model.
+     * 
+     * @param index0 the first row of the interval
+     * @param index1 the last row of the interval
+     */
+    public void addSelectionInterval(int index0, int index1) {
+        getSelectionModel().addSelectionPaths(getPathsBetweenRows(index0, index1));
+    }
+    
     /**
      * Collapse the node identified by the given path.
      * Any nodes below it will not be collapsed, so, if this node is expanded
@@ -543,11 +1235,7 @@ public class Tree extends Component {
      * Collapse all nodes in the tree.
      */
     public void collapseAll() {
-        List collapseList = new LinkedList(expandedPaths);
-        for (Iterator it = collapseList.iterator(); it.hasNext();) {
-            TreePath path = (TreePath)it.next();
-            setExpandedState(path, false);
-        }
+        setExpandedState(new ArrayList(expandedPaths), false);
     }
     
     /**
@@ -556,13 +1244,14 @@ public class Tree extends Component {
      * @param path the path to collapse
      */
     protected void collapseAll(TreePath path) {
-        List collapseList = new LinkedList(expandedPaths);
-        for (Iterator it = collapseList.iterator(); it.hasNext();) {
-            TreePath expandedPath = (TreePath)it.next();
+        List collapseList = new ArrayList();
+        for (Iterator it = expandedPaths.iterator(); it.hasNext();) {
+            TreePath expandedPath = (TreePath) it.next();
             if (path.isDescendant(expandedPath)) {
-                setExpandedState(expandedPath, false);
+                collapseList.add(expandedPath);
             }
         }
+        setExpandedState(collapseList, false);
     }
 
     /**
@@ -611,11 +1300,38 @@ public class Tree extends Component {
      * @param path the path to expand
      */
     protected void expandAll(TreePath path) {
-        setExpandedState(path, true);
+        expandToDepth(path, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Expand the node identified by the given path, and the nodes below it 
+     * up to the given depth. All expansion state changes are rendered in a
+     * single pass.
+     * 
+     * @param path the path to expand
+     * @param depth the number of levels below the given path to make 
+     *        visible, a depth of 1 only expands the given path
+     * @see #setExpandedState(Collection, boolean)
+     */
+    public void expandToDepth(TreePath path, int depth) {
+        List expandList = new ArrayList();
+        collectExpandablePaths(path, depth, expandList);
+        setExpandedState(expandList, true);
+    }
+    
+    /**
+     * Adds <code>path</code> and all paths below it, up to the given depth,
+     * that are not leaves to <code>paths</code>.
+     */
+    private void collectExpandablePaths(TreePath path, int depth, List paths) {
         Serializable value = path.getLastPathComponent();
+        if (depth <= 0 || model.isLeaf(value)) {
+            return;
+        }
+        paths.add(path);
         int childCount = model.getChildCount(value);
         for (int i = 0; i < childCount; ++i) {
-            expandAll(path.pathByAddingChild(model.getChild(value, i)));
+            collectExpandablePaths(path.pathByAddingChild(model.getChild(value, i)), depth - 1, paths);
         }
     }
     
@@ -666,6 +1382,17 @@ public class Tree extends Component {
     public TreeCellRenderer getCellRenderer() {
         return cellRenderer;
     }
+    
+    /**
+     * Returns the <code>Executor</code> used to load the children of nodes
+     * of an <code>AsyncTreeModel</code>. If no executor has been set, a 
+     * shared executor backed by a pool of daemon threads is returned.
+     * 
+     * @return the child loader executor
+     */
+    public Executor getChildLoaderExecutor() {
+        return childLoaderExecutor == null ? getDefaultChildLoaderExecutor() : childLoaderExecutor;
+    }
 
     /** 
      * Returns the <code>TreeColumnModel</code> describing this tree's 
@@ -673,65 +1400,366 @@ public class Tree extends Component {
      *
      * @return the column model
      */
-    public TreeColumnModel getColumnModel() {
-        return columnModel;
+    public TreeColumnModel getColumnModel() {
+        return columnModel;
+    }
+    
+    /**
+     * Returns the default <code>TreeCellRenderer</code> used to render
+     * header cells.  The default header renderer will be used in the event 
+     * that a <code>TreeColumn</code> does not provide a specific header
+     * renderer.
+     * 
+     * @return the <code>TreeCellRenderer</code>
+     */
+    public TreeCellRenderer getDefaultHeaderRenderer() {
+        return defaultHeaderRenderer;
+    }
+    
+    /**
+     * Returns the default <code>TreeCellRenderer</code> for the specified 
+     * column class.  The default renderer will be used in the event that
+     * a <code>TreeColumn</code> does not provide a specific renderer.
+     * 
+     * @param columnClass the column <code>Class</code>
+     * @return the <code>TreeCellRenderer</code>
+     */
+    public TreeCellRenderer getDefaultRenderer(Class columnClass) {
+        return (TreeCellRenderer) defaultRendererMap.get(columnClass);
+    }
+    
+    /**
+     * Returns the height of the tree. The height is used as the height of
+     * the scrolled area of a virtualized tree, and is otherwise ignored.
+     * 
+     * @return the height
+     * @see #setVirtualized(boolean)
+     */
+    public Extent getHeight() {
+        return (Extent) get(PROPERTY_HEIGHT);
+    }
+
+    /**
+     * Returns the default cell insets.
+     * 
+     * @return the default cell insets
+     */
+    public Insets getInsets() {
+        return (Insets) get(PROPERTY_INSETS);
+    }
+
+    /**
+     * @see nextapp.echo.app.Component#dispose()
+     */
+    public void dispose() {
+        removeModelListener();
+        cancelChildLoaders(null);
+    }
+
+    /**
+     * @see nextapp.echo.app.Component#init()
+     */
+    public void init() {
+        addModelListener();
+    }
+    
+    /**
+     * Registers the listener to model changes. While the tree is filtered,
+     * the model itself is listened to, as the filtered view does not fire 
+     * any events.
+     */
+    private void addModelListener() {
+        if (filteredModel == null) {
+            model.addTreeModelListener(modelListener);
+        } else {
+            getModel().addTreeModelListener(filterListener);
+        }
+    }
+    
+    private void removeModelListener() {
+        if (filteredModel == null) {
+            model.removeTreeModelListener(modelListener);
+        } else {
+            getModel().removeTreeModelListener(filterListener);
+        }
+    }
+    
+    /**
+     * Builds the model the rows are rendered from on top of the model of 
+     * the tree, according to the sort and the filter of the tree. Existing
+     * views of the same model are reused. The model listener must be 
+     * removed before, and added again after, invoking this method.
+     * 
+     * @param baseModel the model of the tree
+     */
+    private void buildViewModel(TreeModel baseModel) {
+        TreeModel viewModel = baseModel;
+        if (sortColumn >= columnModel.getColumnCount()) {
+            // the column has been removed
+            sortColumn = -1;
+        }
+        if (sortedModel != null && (sortColumn == -1 || sortedModel.getModel() != baseModel)) {
+            sortedModel.dispose();
+            sortedModel = null;
+        }
+        if (sortColumn != -1) {
+            TreeColumn treeColumn = columnModel.getColumn(sortColumn);
+            if (sortedModel == null) {
+                sortedModel = new SortedTreeModel(baseModel, treeColumn.getModelIndex(), sortAscending, 
+                        treeColumn.getComparator());
+            } else {
+                sortedModel.setSort(treeColumn.getModelIndex(), sortAscending, treeColumn.getComparator());
+            }
+            viewModel = sortedModel;
+        }
+        if (filter == null) {
+            filteredModel = null;
+        } else {
+            if (filteredModel == null || filteredModel.getModel() != viewModel) {
+                filteredModel = new FilteredTreeModel(viewModel);
+                filterValid = false;
+            }
+            viewModel = filteredModel;
+        }
+        model = viewModel;
+    }
+
+    /**
+     * Returns the <code>TreeModel</code> being visualized by this
+     * <code>Tree</code>.
+     * 
+     * @return the model
+     */
+    public TreeModel getModel() {
+        if (sortedModel != null) {
+            return sortedModel.getModel();
+        }
+        return filteredModel == null ? model : filteredModel.getModel();
+    }
+
+    /**
+     * Returns the <code>TreeModel</code> the rows of this <code>Tree</code>
+     * are rendered from. This is the model returned by {@link #getModel()},
+     * a view of it with sorted children while the tree is sorted, or a view
+     * containing only the matching nodes and their ancestors while a filter
+     * is set.
+     * 
+     * @return the view model
+     * @see #setFilter(String)
+     * @see #setSort(int, boolean)
+     */
+    public TreeModel getViewModel() {
+        return model;
+    }
+    
+    /**
+     * Returns the filter of the tree.
+     * 
+     * @return the filter, <code>null</code> if the tree is not filtered
+     */
+    public String getFilter() {
+        return filter;
+    }
+    
+    /**
+     * Sets the filter of the tree. While a filter is set, only the nodes 
+     * matching the filter and their ancestors are shown, and every ancestor
+     * of a matching node is expanded. The expansion state from before the
+     * filter was set is restored when the filter is cleared.
+     * <p>
+     * Any change of the model while the tree is filtered causes the filter 
+     * to be applied again, and the entire tree to be rendered.
+     * 
+     * @param newValue the filter, a query as accepted by 
+     *        {@link #findPaths(String)}, or <code>null</code> to show all nodes
+     */
+    public void setFilter(String newValue) {
+        if (newValue != null && TreeSearchIndex.getWords(newValue).length == 0) {
+            newValue = null;
+        }
+        String oldValue = filter;
+        if (oldValue == null ? newValue == null : oldValue.equals(newValue)) {
+            return;
+        }
+        if (oldValue == null || newValue == null) {
+            TreeModel baseModel = getModel();
+            removeModelListener();
+            filter = newValue;
+            buildViewModel(baseModel);
+            addModelListener();
+            if (newValue != null) {
+                cancelChildLoaders(null);
+                unfilteredExpandedPaths = new HashSet(expandedPaths);
+            } else {
+                expandedPaths.clear();
+                expandedPaths.addAll(unfilteredExpandedPaths);
+                unfilteredExpandedPaths = null;
+            }
+        } else {
+            filter = newValue;
+        }
+        filterValid = false;
+        invalidate();
+        firePropertyChange(FILTER_CHANGED_PROPERTY, oldValue, newValue);
+    }
+    
+    /**
+     * Shows the nodes matching the filter and expands their ancestors.
+     */
+    private void applyFilter() {
+        filteredModel.setMatches(findPaths(filter));
+        TreePath[] parentPaths = filteredModel.getParentPaths();
+        expandedPaths.clear();
+        for (int i = 0; i < parentPaths.length; ++i) {
+            expandedPaths.add(parentPaths[i]);
+        }
+        filterValid = true;
+    }
+    
+    /**
+     * Returns the index of the column the tree is sorted by.
+     * 
+     * @return the index of the column within the column model, or -1 if
+     *         the tree is not sorted
+     */
+    public int getSortColumn() {
+        return sortColumn;
     }
     
     /**
-     * Returns the default <code>TreeCellRenderer</code> used to render
-     * header cells.  The default header renderer will be used in the event 
-     * that a <code>TreeColumn</code> does not provide a specific header
-     * renderer.
+     * Determines whether the tree is sorted in ascending order.
      * 
-     * @return the <code>TreeCellRenderer</code>
+     * @return true if the tree is sorted in ascending order
      */
-    public TreeCellRenderer getDefaultHeaderRenderer() {
-        return defaultHeaderRenderer;
+    public boolean isSortAscending() {
+        return sortAscending;
     }
     
     /**
-     * Returns the default <code>TreeCellRenderer</code> for the specified 
-     * column class.  The default renderer will be used in the event that
-     * a <code>TreeColumn</code> does not provide a specific renderer.
+     * Sorts the children of every node by the values of a column. The 
+     * values are compared with the <code>Comparator</code> of the 
+     * <code>TreeColumn</code>, if any. The model itself is not changed, the
+     * children are sorted in the view of the model returned by 
+     * {@link #getViewModel()}.
+     * <p>
+     * Sorting keeps the rendered components of all rows; only the order of
+     * the rows changes. The order of the children of a node is cached 
+     * until the children of that node change.
+     * 
+     * @param column the index of the column within the column model, or -1 
+     *        to show the children in the order of the model
+     * @param ascending true to sort in ascending order, false to sort in 
+     *        descending order
+     */
+    public void setSort(int column, boolean ascending) {
+        if (column < -1 || column >= columnModel.getColumnCount()) {
+            throw new IllegalArgumentException("Invalid column index: " + column);
+        }
+        int oldColumn = sortColumn;
+        boolean oldAscending = sortAscending;
+        if (column == oldColumn && (column == -1 || ascending == oldAscending)) {
+            return;
+        }
+        sortColumn = column;
+        sortAscending = ascending;
+        applySort(new Integer(oldColumn));
+    }
+    
+    /**
+     * Sorts the rows again after the sort of the tree, or the 
+     * <code>Comparator</code> of the column it is sorted by, changed.
      * 
-     * @param columnClass the column <code>Class</code>
-     * @return the <code>TreeCellRenderer</code>
+     * @param oldColumn the index of the column the tree was sorted by, or
+     *        <code>null</code> if only the <code>Comparator</code> changed
      */
-    public TreeCellRenderer getDefaultRenderer(Class columnClass) {
-        return (TreeCellRenderer) defaultRendererMap.get(columnClass);
+    private void applySort(Integer oldColumn) {
+        TreeModel baseModel = getModel();
+        removeModelListener();
+        buildViewModel(baseModel);
+        addModelListener();
+        if (filteredModel != null && filterValid) {
+            // the visible children are ordered by the sorted view
+            applyFilter();
+        }
+        if (valid) {
+            getRenderer().sortChanged();
+        }
+        firePropertyChange(SORT_CHANGED_PROPERTY, oldColumn, new Integer(sortColumn));
     }
     
     /**
-     * Returns the default cell insets.
+     * Determines whether the tree is sorted when the header of a column is
+     * clicked.
      * 
-     * @return the default cell insets
+     * @return true if sorting from the header is enabled
      */
-    public Insets getInsets() {
-        return (Insets) get(PROPERTY_INSETS);
+    public boolean isSortEnabled() {
+        Boolean value = (Boolean) get(PROPERTY_SORT_ENABLED);
+        return value == null ? false : value.booleanValue();
     }
-
+    
     /**
-     * @see nextapp.echo.app.Component#dispose()
+     * Sets whether the tree is sorted when the header of a column is 
+     * clicked. Clicking the header of the column the tree is sorted by 
+     * reverses the order.
+     * 
+     * @param newValue true to enable sorting from the header
+     * @see #setSort(int, boolean)
      */
-    public void dispose() {
-        model.removeTreeModelListener(modelListener);
+    public void setSortEnabled(boolean newValue) {
+        set(PROPERTY_SORT_ENABLED, Boolean.valueOf(newValue));
     }
-
+    
     /**
-     * @see nextapp.echo.app.Component#init()
+     * Finds the nodes of the model whose column values match a query. A 
+     * node matches if every word of the query is the prefix of a word of
+     * one of its column values, ignoring case.
+     * 
+     * @param query the query
+     * @return the paths of the matching nodes, in tree order
+     * @see #setSearchIndexed(boolean)
      */
-    public void init() {
-        model.addTreeModelListener(modelListener);
+    public TreePath[] findPaths(String query) {
+        if (!searchIndexed) {
+            return TreeSearchIndex.scan(getModel(), null, query);
+        }
+        if (searchIndex == null) {
+            searchIndex = new TreeSearchIndex(getModel());
+        }
+        return searchIndex.search(query);
     }
-
+    
     /**
-     * Returns the <code>TreeModel</code> being visualized by this
-     * <code>Tree</code>.
+     * Determines whether searches use an index.
      * 
-     * @return the model
+     * @return true if searches use an index
+     * @see #setSearchIndexed(boolean)
      */
-    public TreeModel getModel() {
-        return model;
+    public boolean isSearchIndexed() {
+        return searchIndexed;
+    }
+    
+    /**
+     * Sets whether searches use an index of the column values of all nodes.
+     * The index is built on the first search and then kept up to date with
+     * the model, which makes repeated searches and filtering of large trees
+     * considerably faster. Without an index, every search walks the entire
+     * model.
+     * 
+     * @param newValue true if searches should use an index
+     */
+    public void setSearchIndexed(boolean newValue) {
+        searchIndexed = newValue;
+        if (!newValue) {
+            disposeSearchIndex();
+        }
+    }
+    
+    private void disposeSearchIndex() {
+        if (searchIndex != null) {
+            searchIndex.dispose();
+            searchIndex = null;
+        }
     }
 
     /**
@@ -748,6 +1776,14 @@ public class Tree extends Component {
             setExpandedState(path, !isExpanded(path));
         } else if (INPUT_ACTION.equals(inputName)) {
             fireActionEvent();
+        } else if (INPUT_SORT.equals(inputName)) {
+            int column = ((Integer) inputValue).intValue();
+            if (column >= 0 && column < columnModel.getColumnCount()) {
+                setSort(column, column != sortColumn || !sortAscending);
+            }
+        } else if (INPUT_VIEWPORT.equals(inputName)) {
+            String[] viewport = ((String) inputValue).split(",");
+            setViewport(Integer.parseInt(viewport[0]), Integer.parseInt(viewport[1]));
         }
     }
     
@@ -805,6 +1841,18 @@ public class Tree extends Component {
         firePropertyChange(CELL_RENDERER_CHANGED_PROPERTY, oldValue, newValue);
     }
     
+    /**
+     * Sets the <code>Executor</code> used to load the children of nodes of
+     * an <code>AsyncTreeModel</code>. Loads that are already in progress
+     * are not affected.
+     * 
+     * @param newValue the new executor, or null to use the shared default
+     *        executor
+     */
+    public void setChildLoaderExecutor(Executor newValue) {
+        childLoaderExecutor = newValue;
+    }
+    
     /** 
      * Sets the <code>TreeColumnModel</code> describing this tree's 
      * columns.
@@ -868,35 +1916,86 @@ public class Tree extends Component {
      * @param state the new expansion state
      */
     public void setExpandedState(TreePath treePath, boolean state) {
-        if (model.isLeaf(treePath.getLastPathComponent())) {
-            return;
-        }
-        if (expandedPaths.contains(treePath) == state) {
-            // do not fire any events when we are already in the desired state.
-            return;
-        }
+        setExpandedState(Collections.singleton(treePath), state);
+    }
+    
+    /**
+     * Set the expansion state for the given tree paths. When a tree path is
+     * expanded, all parent paths will be expanded too. Paths of leaf nodes 
+     * are ignored.
+     * <p>
+     * The rows of all affected paths are rendered in a single pass. A
+     * <code>TreeExpansionBatchListener</code> receives a single 
+     * <code>TreeExpansionEvent</code> holding all paths whose state has 
+     * changed, other listeners receive an event for every path. The events
+     * are followed by a single <code>PropertyChangeEvent</code> for the
+     * {@link #EXPANSION_STATE_CHANGED_PROPERTY}.
+     * 
+     * @param treePaths the paths to expand or collapse
+     * @param state the new expansion state
+     */
+    public void setExpandedState(Collection treePaths, boolean state) {
+        List changedPaths = new ArrayList();
+        List renderPaths = new ArrayList();
         if (state) {
-            // make sure the parent path is expanded
-            // do not go into recursion, that will cause too much event
-            // notifications
-            TreePath topExpanded = null;
-            TreePath parentPath = treePath;
-            while (parentPath != null) {
-                if (!expandedPaths.contains(parentPath)) {
-                    expandedPaths.add(parentPath);
-                    topExpanded = parentPath;
-                    fireExpansionStateUpdate(parentPath, state);
+            // paths whose ancestors have already been expanded by this call
+            Set visitedPaths = new HashSet();
+            Set changedPathSet = new HashSet();
+            for (Iterator it = treePaths.iterator(); it.hasNext();) {
+                TreePath treePath = (TreePath) it.next();
+                if (model.isLeaf(treePath.getLastPathComponent())) {
+                    continue;
+                }
+                // make sure the parent paths are expanded
+                TreePath topExpanded = null;
+                TreePath parentPath = treePath;
+                while (parentPath != null && visitedPaths.add(parentPath)) {
+                    if (expandedPaths.add(parentPath)) {
+                        topExpanded = parentPath;
+                        changedPaths.add(parentPath);
+                        changedPathSet.add(parentPath);
+                    }
+                    parentPath = parentPath.getParentPath();
+                }
+                if (topExpanded != null) {
+                    renderPaths.add(topExpanded);
                 }
-                parentPath = parentPath.getParentPath();
             }
-            if (topExpanded != null && valid) {
-                renderer.update(topExpanded, true);
+            // paths that have been expanded below another expanded path are
+            // rendered as part of the subtree of that path
+            List topPaths = new ArrayList();
+            for (int i = 0; i < renderPaths.size(); ++i) {
+                TreePath renderPath = (TreePath) renderPaths.get(i);
+                TreePath parentPath = renderPath.getParentPath();
+                while (parentPath != null && !changedPathSet.contains(parentPath)) {
+                    parentPath = parentPath.getParentPath();
+                }
+                if (parentPath == null) {
+                    topPaths.add(renderPath);
+                }
             }
+            renderPaths = topPaths;
         } else {
-            expandedPaths.remove(treePath);
-            renderer.update(treePath, false);
-            fireExpansionStateUpdate(treePath, state);
+            for (Iterator it = treePaths.iterator(); it.hasNext();) {
+                TreePath treePath = (TreePath) it.next();
+                if (!model.isLeaf(treePath.getLastPathComponent()) && expandedPaths.remove(treePath)) {
+                    changedPaths.add(treePath);
+                }
+            }
+            renderPaths = changedPaths;
+        }
+        if (changedPaths.isEmpty()) {
+            // do not fire any events when we are already in the desired state.
+            return;
+        }
+        if (valid) {
+            getRenderer().update((TreePath[]) renderPaths.toArray(new TreePath[renderPaths.size()]), state);
+        }
+        if (!state && childLoaders != null) {
+            cancelChildLoaders(new HashSet(changedPaths));
         }
+        fireTreeExpansionEvent((TreePath[]) changedPaths.toArray(new TreePath[changedPaths.size()]), state);
+        firePropertyChange(EXPANSION_STATE_CHANGED_PROPERTY, null, null);
     }
     
     /**
@@ -909,6 +2008,17 @@ public class Tree extends Component {
         set(PROPERTY_HEADER_VISIBLE, Boolean.valueOf(newValue));
     }
     
+    /**
+     * Sets the height of the tree. The height is used as the height of
+     * the scrolled area of a virtualized tree, and is otherwise ignored.
+     * 
+     * @param newValue the new height
+     * @see #setVirtualized(boolean)
+     */
+    public void setHeight(Extent newValue) {
+        set(PROPERTY_HEIGHT, newValue);
+    }
+    
     /**
      * Sets the default cell insets.
      * 
@@ -930,18 +2040,197 @@ public class Tree extends Component {
      * @param newState the new expansion state for the given path
      */
     protected void fireExpansionStateUpdate(TreePath treePath, boolean newState) {
-        TreeExpansionEvent event = new TreeExpansionEvent(this, treePath);
-        EventListener[] listeners = getEventListenerList().getListeners(
-                TreeExpansionListener.class);
+        fireTreeExpansionEvent(treePath, newState);
+        firePropertyChange(EXPANSION_STATE_CHANGED_PROPERTY, null, null);
+    }
+    
+    /**
+     * Notifies all <code>TreeExpansionListener</code>s that the expansion
+     * state of a path has changed.
+     * 
+     * @param treePath the path to fire the expansion event for
+     * @param newState the new expansion state for the given path
+     */
+    private void fireTreeExpansionEvent(TreePath treePath, boolean newState) {
+        fireTreeExpansionEvent(new TreePath[] { treePath }, newState);
+    }
+    
+    /**
+     * Notifies all <code>TreeExpansionListener</code>s that the expansion
+     * state of several paths has changed. A 
+     * <code>TreeExpansionBatchListener</code> is notified once, other
+     * listeners once per path.
+     * 
+     * @param treePaths the paths to fire the expansion event for
+     * @param newState the new expansion state of the paths
+     */
+    private void fireTreeExpansionEvent(TreePath[] treePaths, boolean newState) {
+        if (!hasEventListenerList()) {
+            return;
+        }
+        EventListener[] listeners = getEventListenerList().getListeners(TreeExpansionListener.class);
+        if (listeners.length == 0) {
+            return;
+        }
+        TreeExpansionEvent batchEvent = null;
+        TreeExpansionEvent[] events = null;
         for (int i = 0; i < listeners.length; ++i) {
+            if (listeners[i] instanceof TreeExpansionBatchListener) {
+                TreeExpansionBatchListener l = (TreeExpansionBatchListener) listeners[i];
+                if (batchEvent == null) {
+                    batchEvent = new TreeExpansionEvent(this, treePaths);
+                }
+                if (newState) {
+                    l.treePathsExpanded(batchEvent);
+                } else {
+                    l.treePathsCollapsed(batchEvent);
+                }
+                continue;
+            }
             TreeExpansionListener l = (TreeExpansionListener) listeners[i];
-            if (newState) {
-                l.treeExpanded(event);
-            } else {
-                l.treeCollapsed(event);
+            if (events == null) {
+                events = new TreeExpansionEvent[treePaths.length];
+                for (int j = 0; j < treePaths.length; ++j) {
+                    events[j] = new TreeExpansionEvent(this, treePaths[j]);
+                }
+            }
+            for (int j = 0; j < events.length; ++j) {
+                if (newState) {
+                    l.treeExpanded(events[j]);
+                } else {
+                    l.treeCollapsed(events[j]);
+                }
             }
         }
-        firePropertyChange(EXPANSION_STATE_CHANGED_PROPERTY, null, null);
+    }
+    
+    /**
+     * Starts loading the children of the node at <code>treePath</code> if
+     * the model is an <code>AsyncTreeModel</code> that has neither loaded 
+     * them nor is loading them. The loaded children are merged into the
+     * model through an application task queue, i.e. on the next 
+     * synchronization with the client.
+     * 
+     * @param treePath the path of the expanded node
+     */
+    private void startChildLoader(TreePath treePath) {
+        AsyncTreeModel asyncModel = (AsyncTreeModel) getModel();
+        Serializable node = treePath.getLastPathComponent();
+        if (asyncModel.isChildrenLoaded(node) || asyncModel.isLoading(node)) {
+            return;
+        }
+        ApplicationInstance app = getApplicationInstance();
+        if (app == null) {
+            app = ApplicationInstance.getActive();
+            if (app == null) {
+                return;
+            }
+        }
+        if (childLoaders == null) {
+            childLoaders = new HashMap();
+        }
+        if (childLoaderTaskQueue == null) {
+            childLoaderApplication = app;
+            childLoaderTaskQueue = app.createTaskQueue();
+        }
+        ChildLoader loader = new ChildLoader(treePath, asyncModel.startLoading(node), 
+                childLoaderApplication, childLoaderTaskQueue);
+        childLoaders.put(treePath, loader);
+        getChildLoaderExecutor().execute(loader);
+    }
+    
+    /**
+     * Merges the children loaded by <code>loader</code> into the model.
+     * Invoked from the application task queue.
+     * <p>
+     * If the children could not be loaded, the node is collapsed, its
+     * loading is cancelled and the cause is passed to
+     * <code>childLoadingFailed()</code>.
+     * 
+     * @param loader the completed loader
+     */
+    private void childLoaderDone(ChildLoader loader) {
+        if (childLoaders == null || childLoaders.get(loader.treePath) != loader) {
+            // Loader has been cancelled or superseded.
+            return;
+        }
+        childLoaders.remove(loader.treePath);
+        try {
+            List children;
+            Throwable failure;
+            try {
+                children = (List) loader.get();
+                ((AsyncTreeModel) getModel()).finishLoading(loader.treePath, children);
+                return;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                failure = ex;
+            } catch (ExecutionException ex) {
+                failure = ex.getCause();
+            }
+            setExpandedState(loader.treePath, false);
+            ((AsyncTreeModel) getModel()).cancelLoading(loader.treePath);
+            childLoadingFailed(loader.treePath, failure);
+        } finally {
+            releaseChildLoaderTaskQueue();
+        }
+    }
+    
+    /**
+     * Invoked when the children of an expanded node could not be loaded 
+     * from an <code>AsyncTreeModel</code>. The node has already been 
+     * collapsed, and may be expanded again to retry. The default 
+     * implementation does nothing; override to report the failure, e.g. 
+     * to the user or to a log.
+     * <p>
+     * This method is invoked from an application task queue, failures are
+     * therefore not thrown, which would end the synchronization with the 
+     * client.
+     * 
+     * @param treePath the path of the node whose children failed to load
+     * @param cause the exception thrown while loading the children
+     */
+    protected void childLoadingFailed(TreePath treePath, Throwable cause) { }
+    
+    /**
+     * Cancels the in-flight child loaders of the given paths and their
+     * descendants.
+     * 
+     * @param treePaths the paths whose loaders should be cancelled, or null
+     *        to cancel all loaders
+     */
+    private void cancelChildLoaders(Set treePaths) {
+        if (childLoaders == null || childLoaders.isEmpty()) {
+            return;
+        }
+        List cancelled = new ArrayList();
+        for (Iterator it = childLoaders.values().iterator(); it.hasNext();) {
+            ChildLoader loader = (ChildLoader) it.next();
+            TreePath treePath = loader.treePath;
+            while (treePaths != null && treePath != null && !treePaths.contains(treePath)) {
+                treePath = treePath.getParentPath();
+            }
+            if (treePaths == null || treePath != null) {
+                it.remove();
+                loader.cancel(true);
+                cancelled.add(loader.treePath);
+            }
+        }
+        for (int i = 0; i < cancelled.size(); ++i) {
+            ((AsyncTreeModel) getModel()).cancelLoading((TreePath) cancelled.get(i));
+        }
+        releaseChildLoaderTaskQueue();
+    }
+    
+    /**
+     * Removes the child loader task queue once no loads are in progress.
+     */
+    private void releaseChildLoaderTaskQueue() {
+        if (childLoaders.isEmpty() && childLoaderTaskQueue != null) {
+            childLoaderApplication.removeTaskQueue(childLoaderTaskQueue);
+            childLoaderApplication = null;
+            childLoaderTaskQueue = null;
+        }
     }
     
     /**
@@ -1010,6 +2299,18 @@ public class Tree extends Component {
         return value == null ? true : value.booleanValue();
     }
     
+    /**
+     * Determines whether the tree is virtualized. A virtualized tree only 
+     * holds the components of the rows that are within, or close to, the
+     * viewport of the client.
+     * 
+     * @return true if the tree is virtualized
+     * @see #setVirtualized(boolean)
+     */
+    public boolean isVirtualized() {
+        return virtualized;
+    }
+
     /**
      * Determines if selection is enabled.
      * 
@@ -1041,7 +2342,7 @@ public class Tree extends Component {
         if (row == HEADER_ROW) {
             return null;
         } else {
-            return (TreePath) rowToTreePathCache.get(row);
+            return getRowIndex().getPath(row);
         }
     }
 
@@ -1052,12 +2353,36 @@ public class Tree extends Component {
      * @return the row index, or -1 if the path is not visible
      */
     public int getRowForPath(TreePath path) {
-        for (int i = 0; i < rowToTreePathCache.size(); ++i) {
-            if (rowToTreePathCache.get(i).equals(path)) {
-                return i;
-            }
+        return getRowIndex().getRow(path);
+    }
+    
+    /**
+     * Returns the paths of the rows between <code>index0</code> and
+     * <code>index1</code> (inclusive), in row order. The indices may be
+     * given in either order, and are limited to the valid rows.
+     * 
+     * @param index0 the first row of the interval
+     * @param index1 the last row of the interval
+     * @return the paths of the rows
+     */
+    public TreePath[] getPathsBetweenRows(int index0, int index1) {
+        int fromRow = Math.max(0, Math.min(index0, index1));
+        int toRow = Math.min(getRowIndex().size(), Math.max(index0, index1) + 1);
+        if (fromRow >= toRow) {
+            return new TreePath[0];
         }
-        return -1;
+        List paths = getRowIndex().getPaths(fromRow, toRow);
+        return (TreePath[]) paths.toArray(new TreePath[paths.size()]);
+    }
+    
+    /**
+     * Returns the number of rows, including the row of the root node if it
+     * is not visible. The header row is not counted.
+     * 
+     * @return the row count
+     */
+    public int getRowCount() {
+        return getRowIndex().size();
     }
     
     /**
@@ -1174,6 +2499,67 @@ public class Tree extends Component {
     public Extent getWidth() {
         return (Extent) get(PROPERTY_WIDTH);
     }
+    
+    /**
+     * Returns the number of rows rendered above and below the viewport of a
+     * virtualized tree.
+     * 
+     * @return the overscan row count
+     */
+    public int getOverscanRowCount() {
+        return overscanRowCount;
+    }
+    
+    /**
+     * Returns the first row of the viewport, as last reported by the client.
+     * 
+     * @return the first visible row
+     * @see #setViewport(int, int)
+     */
+    public int getViewportFirstRow() {
+        return viewportFirstRow;
+    }
+    
+    /**
+     * Returns the number of rows in the viewport, as last reported by the 
+     * client.
+     * 
+     * @return the visible row count
+     * @see #setViewport(int, int)
+     */
+    public int getViewportRowCount() {
+        return viewportRowCount;
+    }
+    
+    /**
+     * Returns the first row of the window of rows whose components are 
+     * rendered. If the tree is not virtualized, this is always the first 
+     * row.
+     * 
+     * @return the first row of the window
+     */
+    public int getWindowStartRow() {
+        if (!virtualized) {
+            return 0;
+        }
+        int startRow = Math.min(viewportFirstRow, getRowIndex().size() - viewportRowCount) - overscanRowCount;
+        return Math.max(0, startRow);
+    }
+    
+    /**
+     * Returns the row directly following the window of rows whose 
+     * components are rendered. If the tree is not virtualized, this is 
+     * always the row count.
+     * 
+     * @return the end row of the window (exclusive)
+     */
+    public int getWindowEndRow() {
+        if (!virtualized) {
+            return getRowIndex().size();
+        }
+        int endRow = viewportFirstRow + viewportRowCount + overscanRowCount;
+        return Math.min(getRowIndex().size(), Math.max(endRow, getWindowStartRow()));
+    }
 
     /**
      * Returns the component that is rendered at the given location.
@@ -1185,10 +2571,7 @@ public class Tree extends Component {
      */
     public Component getComponent(int row, int column) {
         // FIXME throw when out of bounds?
-        if (rowToTreePathCache.isEmpty()) {
-            return null;
-        }
-        if (row >= rowToTreePathCache.size()) {
+        if (row >= getRowIndex().size()) {
             return null;
         }
         return getComponent(getPathForRow(row), column);
@@ -1205,16 +2588,28 @@ public class Tree extends Component {
      */
     public Component getComponent(TreePath path, int column) {
         // FIXME throw when out of bounds?
-        if (columnModel.getColumnCount() == 1) {
-            return (Component) treePathToComponentCache.get(path);
-        } else {
-            List list = (List) treePathToComponentCache.get(path);
-            if (list != null) {
-	            return (Component) list.get(column);
-            } else {
-	            throw new IllegalStateException("Components have not been rendered for path " + path);
-            }
+        Object cached = treePathToComponentCache.get(path);
+        if (cached instanceof Component[]) {
+            return ((Component[]) cached)[column];
         }
+        return (Component) cached;
+    }
+    
+    /**
+     * Returns the components that are rendered for all columns of the given
+     * path. The returned array is held by the tree and must not be 
+     * modified.
+     * 
+     * @param path the path the components are rendered for
+     * @return the components indexed by column, or <code>null</code> if the
+     *         components of the path are not yet rendered
+     */
+    public Component[] getRowComponents(TreePath path) {
+        Object cached = treePathToComponentCache.get(path);
+        if (cached instanceof Component) {
+            return new Component[] { (Component) cached };
+        }
+        return (Component[]) cached;
     }
     
     /**
@@ -1293,6 +2688,18 @@ public class Tree extends Component {
         // existence of hasActionListeners() method. 
         firePropertyChange(ACTION_LISTENERS_CHANGED_PROPERTY, l, null);
     }
+    
+    /**
+     * Removes the paths between <code>index0</code> and <code>index1</code>
+     * (inclusive) from the selection, as a single change of the selection
+     * model.
+     * 
+     * @param index0 the first row of the interval
+     * @param index1 the last row of the interval
+     */
+    public void removeSelectionInterval(int index0, int index1) {
+        getSelectionModel().removeSelectionPaths(getPathsBetweenRows(index0, index1));
+    }
 
     /**
      * Sets the <code>TreeModel</code> being visualized.
@@ -1308,12 +2715,16 @@ public class Tree extends Component {
             throw new IllegalArgumentException("The model may not be null.");
         }
 
-        TreeModel oldValue = model;
-        if (oldValue != null) {
-            oldValue.removeTreeModelListener(modelListener);
+        setFilter(null);
+        disposeSearchIndex();
+        TreeModel oldValue = null;
+        if (model != null) {
+            oldValue = getModel();
+            removeModelListener();
+            cancelChildLoaders(null);
         }
-        newValue.addTreeModelListener(modelListener);
-        model = newValue;
+        buildViewModel(newValue);
+        addModelListener();
         
         expandedPaths.clear();
         
@@ -1459,11 +2870,11 @@ public class Tree extends Component {
     private void setSelectedIndices(int[] selectedIndices) {
         // Temporarily suppress the Tables selection event notifier.
         suppressChangeNotifications = true;
-        TreeSelectionModel selectionModel = getSelectionModel();
-        selectionModel.clearSelection();
+        TreePath[] paths = new TreePath[selectedIndices.length];
         for (int i = 0; i < selectedIndices.length; ++i) {
-            selectionModel.addSelectionPath(getPathForRow(selectedIndices[i]));
+            paths[i] = getPathForRow(selectedIndices[i]);
         }
+        getSelectionModel().setSelectionPaths(paths);
         // End temporary suppression.
         suppressChangeNotifications = false;
         firePropertyChange(SELECTION_CHANGED_PROPERTY, null, selectedIndices);
@@ -1523,6 +2934,18 @@ public class Tree extends Component {
         set(PROPERTY_SELECTION_FONT, newValue);
     }
     
+    /**
+     * Selects the paths between <code>index0</code> and <code>index1</code>
+     * (inclusive), replacing the current selection as a single change of the
+     * selection model.
+     * 
+     * @param index0 the first row of the interval
+     * @param index1 the last row of the interval
+     */
+    public void setSelectionInterval(int index0, int index1) {
+        getSelectionModel().setSelectionPaths(getPathsBetweenRows(index0, index1));
+    }
+    
     /**
      * Sets the row selection model.
      * The selection model may not be null.
@@ -1564,6 +2987,64 @@ public class Tree extends Component {
     public void setWidth(Extent newValue) {
         set(PROPERTY_WIDTH, newValue);
     }
+    
+    /**
+     * Sets the number of rows rendered above and below the viewport of a
+     * virtualized tree. A larger value reduces the number of round trips 
+     * while scrolling, at the cost of more components being held by the tree.
+     * 
+     * @param newValue the new overscan row count
+     */
+    public void setOverscanRowCount(int newValue) {
+        if (newValue < 0) {
+            throw new IllegalArgumentException("Overscan row count may not be negative.");
+        }
+        int oldValue = overscanRowCount;
+        overscanRowCount = newValue;
+        if (valid) {
+            getRenderer().renderWindow();
+        }
+        firePropertyChange(OVERSCAN_ROW_COUNT_CHANGED_PROPERTY, new Integer(oldValue), new Integer(newValue));
+    }
+    
+    /**
+     * Sets the rows that are currently visible to the user. This method is
+     * invoked when the client reports its viewport. The components of a 
+     * virtualized tree are rendered for the new window of rows, and released
+     * for rows that have left the window.
+     * 
+     * @param firstRow the first visible row
+     * @param rowCount the number of visible rows
+     */
+    public void setViewport(int firstRow, int rowCount) {
+        if (firstRow == viewportFirstRow && rowCount == viewportRowCount) {
+            return;
+        }
+        viewportFirstRow = Math.max(0, firstRow);
+        viewportRowCount = Math.max(0, rowCount);
+        if (valid) {
+            getRenderer().renderWindow();
+        }
+        firePropertyChange(VIEWPORT_CHANGED_PROPERTY, null, null);
+    }
+    
+    /**
+     * Sets whether the tree is virtualized. A virtualized tree only renders
+     * components for the rows within its viewport, plus the overscan rows
+     * above and below it, and the client only renders those rows. The 
+     * height of a virtualized tree should be set, as the viewport is
+     * determined by the scrolled area of the tree.
+     * 
+     * @param newValue true if the tree should be virtualized
+     * @see #setHeight(Extent)
+     * @see #setOverscanRowCount(int)
+     */
+    public void setVirtualized(boolean newValue) {
+        invalidate();
+        boolean oldValue = virtualized;
+        virtualized = newValue;
+        firePropertyChange(VIRTUALIZED_CHANGED_PROPERTY, Boolean.valueOf(oldValue), Boolean.valueOf(newValue));
+    }
 
     /**
      * @see nextapp.echo.app.Component#validate()
@@ -1572,7 +3053,10 @@ public class Tree extends Component {
         super.validate();
         while (!valid) {
             valid = true;
-            renderer.fullUpdate();
+            if (filteredModel != null && !filterValid) {
+                applyFilter();
+            }
+            getRenderer().fullUpdate();
         }
     }
 
@@ -29,7 +29,10 @@
 
 package nextapp.echo.extras.app.datagrid;
 
+import java.util.EventListener;
+
 import nextapp.echo.app.event.EventListenerList;
+import nextapp.echo.extras.app.event.DataGridModelEvent;
 import nextapp.echo.extras.app.event.DataGridModelListener;
 
 /**
@@ -49,6 +52,78 @@ implements DataGridModel {
         listenerList.addListener(DataGridModelListener.class, l);
     }
 
+    /**
+     * Notifies listeners that the values of a range of cells changed.
+     * 
+     * @param firstColumn the first changed column (inclusive)
+     * @param firstRow the first changed row (inclusive)
+     * @param lastColumn the last changed column (inclusive)
+     * @param lastRow the last changed row (inclusive)
+     */
+    public void fireCellsUpdated(int firstColumn, int firstRow, int lastColumn, int lastRow) {
+        fireModelChanged(new DataGridModelEvent(this, DataGridModelEvent.CELLS_UPDATED, 
+                firstColumn, firstRow, lastColumn, lastRow));
+    }
+    
+    /**
+     * Notifies listeners that a range of columns was deleted.
+     * 
+     * @param firstColumn the index of the first deleted column (inclusive)
+     * @param lastColumn the index of the last deleted column (inclusive)
+     */
+    public void fireColumnsDeleted(int firstColumn, int lastColumn) {
+        fireModelChanged(new DataGridModelEvent(this, DataGridModelEvent.COLUMNS_DELETED, firstColumn, -1, lastColumn, -1));
+    }
+    
+    /**
+     * Notifies listeners that a range of columns was inserted.
+     * 
+     * @param firstColumn the index of the first inserted column (inclusive)
+     * @param lastColumn the index of the last inserted column (inclusive)
+     */
+    public void fireColumnsInserted(int firstColumn, int lastColumn) {
+        fireModelChanged(new DataGridModelEvent(this, DataGridModelEvent.COLUMNS_INSERTED, firstColumn, -1, lastColumn, -1));
+    }
+    
+    /**
+     * Notifies listeners that the entire model may have changed.
+     */
+    public void fireModelChanged() {
+        fireModelChanged(new DataGridModelEvent(this));
+    }
+    
+    /**
+     * Notifies listeners of a change to the model.
+     * 
+     * @param e the <code>DataGridModelEvent</code> to fire
+     */
+    public void fireModelChanged(DataGridModelEvent e) {
+        EventListener[] listeners = listenerList.getListeners(DataGridModelListener.class);
+        for (int i = 0; i < listeners.length; ++i) {
+            ((DataGridModelListener) listeners[i]).modelChanged(e);
+        }
+    }
+    
+    /**
+     * Notifies listeners that a range of rows was deleted.
+     * 
+     * @param firstRow the index of the first deleted row (inclusive)
+     * @param lastRow the index of the last deleted row (inclusive)
+     */
+    public void fireRowsDeleted(int firstRow, int lastRow) {
+        fireModelChanged(new DataGridModelEvent(this, DataGridModelEvent.ROWS_DELETED, -1, firstRow, -1, lastRow));
+    }
+    
+    /**
+     * Notifies listeners that a range of rows was inserted.
+     * 
+     * @param firstRow the index of the first inserted row (inclusive)
+     * @param lastRow the index of the last inserted row (inclusive)
+     */
+    public void fireRowsInserted(int firstRow, int lastRow) {
+        fireModelChanged(new DataGridModelEvent(this, DataGridModelEvent.ROWS_INSERTED, -1, firstRow, -1, lastRow));
+    }
+    
     /**
      * @see nextapp.echo.extras.app.datagrid.DataGridModel#removeDataGridModelListener(
      *      nextapp.echo.extras.app.event.DataGridModelListener)
@@ -0,0 +1,407 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.datagrid;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import nextapp.echo.extras.app.event.DataGridModelEvent;
+
+/**
+ * Abstract <code>AsyncPrefetchDataGridModel</code> implementation for models whose rows are stored in several 
+ * partitions of a backend.
+ * <p>
+ * A prefetched region is split into sub-ranges which do not cross partition boundaries.  The sub-ranges are retrieved
+ * in parallel by <code>fetch()</code>, on the fetch executor of the model.  The retrieved values are cached and 
+ * returned by <code>get()</code>, values which are not cached are retrieved synchronously, cell by cell.  The cache is
+ * cleared whenever the model fires an event.
+ * <p>
+ * By default, partitions contain a fixed number of rows.  Models whose partitions vary in size should override
+ * <code>getPartitionLastRow()</code>.
+ */
+public abstract class AbstractPartitionedDataGridModel extends AbstractDataGridModel 
+implements AsyncPrefetchDataGridModel {
+    
+    /**
+     * A <code>Future</code> which completes when all of a set of <code>Future</code>s have completed.
+     */
+    private static class CompositeFuture 
+    implements Future {
+        
+        private Future[] futures;
+        
+        private CompositeFuture(Future[] futures) {
+            super();
+            this.futures = futures;
+        }
+        
+        /**
+         * @see java.util.concurrent.Future#cancel(boolean)
+         */
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = false;
+            for (int i = 0; i < futures.length; ++i) {
+                cancelled |= futures[i].cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+        
+        /**
+         * @see java.util.concurrent.Future#get()
+         */
+        public Object get() 
+        throws InterruptedException, ExecutionException {
+            for (int i = 0; i < futures.length; ++i) {
+                futures[i].get();
+            }
+            return null;
+        }
+        
+        /**
+         * @see java.util.concurrent.Future#get(long, java.util.concurrent.TimeUnit)
+         */
+        public Object get(long timeout, TimeUnit unit) 
+        throws InterruptedException, ExecutionException, TimeoutException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            for (int i = 0; i < futures.length; ++i) {
+                futures[i].get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            }
+            return null;
+        }
+        
+        /**
+         * @see java.util.concurrent.Future#isCancelled()
+         */
+        public boolean isCancelled() {
+            for (int i = 0; i < futures.length; ++i) {
+                if (futures[i].isCancelled()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * @see java.util.concurrent.Future#isDone()
+         */
+        public boolean isDone() {
+            for (int i = 0; i < futures.length; ++i) {
+                if (!futures[i].isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * A rectangular range of retrieved values.
+     */
+    private static class Range {
+        
+        private int firstColumn, firstRow, lastColumn, lastRow;
+        
+        /**
+         * The values, indexed by row and column relative to the first row and column.
+         */
+        private Object[][] values;
+        
+        private Range(int firstColumn, int firstRow, int lastColumn, int lastRow, Object[][] values) {
+            super();
+            this.firstColumn = firstColumn;
+            this.firstRow = firstRow;
+            this.lastColumn = lastColumn;
+            this.lastRow = lastRow;
+            this.values = values;
+        }
+        
+        private boolean contains(int firstColumn, int firstRow, int lastColumn, int lastRow) {
+            return firstColumn >= this.firstColumn && lastColumn <= this.lastColumn 
+                    && firstRow >= this.firstRow && lastRow <= this.lastRow;
+        }
+    }
+    
+    /**
+     * The number of threads of the default fetch executor.
+     */
+    public static final int DEFAULT_FETCH_THREAD_COUNT = 4;
+    
+    /**
+     * The maximum number of ranges of values which are cached.
+     */
+    public static final int MAX_CACHED_RANGES = 32;
+    
+    private static Executor defaultFetchExecutor;
+    
+    /**
+     * Returns the executor used to retrieve values when no executor has been set on a model.  The executor is created
+     * on first use, and runs tasks on a fixed pool of <code>DEFAULT_FETCH_THREAD_COUNT</code> daemon threads.
+     * 
+     * @return the default fetch executor
+     */
+    private static synchronized Executor getDefaultFetchExecutor() {
+        if (defaultFetchExecutor == null) {
+            defaultFetchExecutor = Executors.newFixedThreadPool(DEFAULT_FETCH_THREAD_COUNT, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "DataGrid model fetcher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return defaultFetchExecutor;
+    }
+    
+    private int partitionSize;
+    private transient Executor fetchExecutor;
+    
+    /**
+     * The number of times the cache has been cleared, used to discard ranges which were retrieved before the cache 
+     * was cleared.  Access is synchronized on the model.
+     */
+    private transient int cacheVersion;
+    
+    /**
+     * The cached ranges, most recently retrieved first.  Access is synchronized on the model.
+     */
+    private transient LinkedList ranges;
+    
+    /**
+     * The range which contained the most recently queried cell.  Access is synchronized on the model.
+     */
+    private transient Range lastRange;
+    
+    /**
+     * Creates a new <code>AbstractPartitionedDataGridModel</code>.
+     * 
+     * @param partitionSize the number of rows of each partition
+     */
+    public AbstractPartitionedDataGridModel(int partitionSize) {
+        super();
+        if (partitionSize < 1) {
+            throw new IllegalArgumentException("Invalid partition size: " + partitionSize);
+        }
+        this.partitionSize = partitionSize;
+    }
+    
+    /**
+     * Retrieves the values of a range of cells, which is contained in a single partition.  This method is invoked on
+     * the threads of the fetch executor, possibly concurrently for different ranges, and may not modify the model.
+     * 
+     * @param firstColumn the first column to retrieve (inclusive)
+     * @param firstRow the first row to retrieve (inclusive)
+     * @param lastColumn the last column to retrieve (inclusive)
+     * @param lastRow the last row to retrieve (inclusive)
+     * @return the values, indexed by row and column relative to <code>firstRow</code> and <code>firstColumn</code>
+     * @throws Exception if the values could not be retrieved
+     */
+    protected abstract Object[][] fetch(int firstColumn, int firstRow, int lastColumn, int lastRow)
+    throws Exception;
+    
+    /**
+     * Caches a retrieved range of values, discarding the least recently retrieved range if the cache is full.
+     * 
+     * @param range the range
+     * @param version the cache version when the retrieval of the range was started, the range is discarded if the
+     *        cache has been cleared since
+     */
+    private synchronized void addRange(Range range, int version) {
+        if (version != cacheVersion) {
+            return;
+        }
+        if (ranges == null) {
+            ranges = new LinkedList();
+        }
+        ranges.addFirst(range);
+        if (ranges.size() > MAX_CACHED_RANGES) {
+            ranges.removeLast();
+        }
+    }
+    
+    /**
+     * Discards all cached values.
+     */
+    public synchronized void clearCache() {
+        ++cacheVersion;
+        ranges = null;
+        lastRange = null;
+    }
+    
+    /**
+     * Returns a cached range containing the specified range of cells.
+     * 
+     * @param firstColumn the first column (inclusive)
+     * @param firstRow the first row (inclusive)
+     * @param lastColumn the last column (inclusive)
+     * @param lastRow the last row (inclusive)
+     * @return the cached range, or null if the cells are not cached
+     */
+    private synchronized Range findRange(int firstColumn, int firstRow, int lastColumn, int lastRow) {
+        if (lastRange != null && lastRange.contains(firstColumn, firstRow, lastColumn, lastRow)) {
+            return lastRange;
+        }
+        if (ranges == null) {
+            return null;
+        }
+        Iterator it = ranges.iterator();
+        while (it.hasNext()) {
+            Range range = (Range) it.next();
+            if (range.contains(firstColumn, firstRow, lastColumn, lastRow)) {
+                lastRange = range;
+                return range;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Clears the cache before notifying listeners.
+     * 
+     * @see nextapp.echo.extras.app.datagrid.AbstractDataGridModel#fireModelChanged(
+     *      nextapp.echo.extras.app.event.DataGridModelEvent)
+     */
+    public void fireModelChanged(DataGridModelEvent e) {
+        clearCache();
+        super.fireModelChanged(e);
+    }
+    
+    /**
+     * Returns the cached value of a cell, or retrieves it synchronously if it is not cached.
+     * 
+     * @see nextapp.echo.extras.app.datagrid.DataGridModel#get(int, int)
+     */
+    public Object get(int column, int row) {
+        Range range = findRange(column, row, column, row);
+        if (range != null) {
+            return range.values[row - range.firstRow][column - range.firstColumn];
+        }
+        try {
+            return fetch(column, row, column, row)[0][0];
+        } catch (Exception ex) {
+            throw new RuntimeException("Unable to retrieve value at " + column + "," + row, ex);
+        }
+    }
+    
+    /**
+     * Returns the <code>Executor</code> used to retrieve the sub-ranges of prefetched regions.
+     * 
+     * @return the fetch executor
+     */
+    public Executor getFetchExecutor() {
+        return fetchExecutor == null ? getDefaultFetchExecutor() : fetchExecutor;
+    }
+    
+    /**
+     * Returns the last row of the partition containing a row.
+     * 
+     * @param row the row index
+     * @return the index of the last row of the partition
+     */
+    protected int getPartitionLastRow(int row) {
+        return (row / partitionSize + 1) * partitionSize - 1;
+    }
+    
+    /**
+     * Returns the number of rows of each partition.
+     * 
+     * @return the partition size
+     */
+    public int getPartitionSize() {
+        return partitionSize;
+    }
+    
+    /**
+     * Retrieves a region and waits until it has been retrieved.  Cells of sub-ranges which could not be retrieved are
+     * retrieved again when queried.
+     * 
+     * @see nextapp.echo.extras.app.datagrid.PrefetchDataGridModel#prefetch(int, int, int, int)
+     */
+    public void prefetch(int firstColumn, int firstRow, int lastColumn, int lastRow) {
+        try {
+            prefetchAsync(firstColumn, firstRow, lastColumn, lastRow).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            // Failed cells are retrieved by get().
+        }
+    }
+    
+    /**
+     * Starts retrieving the sub-ranges of a region which are not cached, splitting it at partition boundaries.
+     * 
+     * @see nextapp.echo.extras.app.datagrid.AsyncPrefetchDataGridModel#prefetchAsync(int, int, int, int)
+     */
+    public Future prefetchAsync(final int firstColumn, int firstRow, final int lastColumn, int lastRow) {
+        LinkedList futures = new LinkedList();
+        Executor executor = getFetchExecutor();
+        final int version;
+        synchronized (this) {
+            version = cacheVersion;
+        }
+        int row = firstRow;
+        while (row <= lastRow) {
+            final int partitionFirstRow = row;
+            final int partitionLastRow = Math.min(getPartitionLastRow(row), lastRow);
+            if (findRange(firstColumn, partitionFirstRow, lastColumn, partitionLastRow) == null) {
+                FutureTask task = new FutureTask(new Callable() {
+                    public Object call() throws Exception {
+                        Object[][] values = fetch(firstColumn, partitionFirstRow, lastColumn, partitionLastRow);
+                        addRange(new Range(firstColumn, partitionFirstRow, lastColumn, partitionLastRow, values), 
+                                version);
+                        return null;
+                    }
+                });
+                executor.execute(task);
+                futures.add(task);
+            }
+            row = partitionLastRow + 1;
+        }
+        return new CompositeFuture((Future[]) futures.toArray(new Future[futures.size()]));
+    }
+    
+    /**
+     * Sets the <code>Executor</code> used to retrieve the sub-ranges of prefetched regions.  By default, a shared 
+     * executor running <code>DEFAULT_FETCH_THREAD_COUNT</code> threads is used.
+     * 
+     * @param newValue the new fetch executor, or null to use the default executor
+     */
+    public void setFetchExecutor(Executor newValue) {
+        fetchExecutor = newValue;
+    }
+}
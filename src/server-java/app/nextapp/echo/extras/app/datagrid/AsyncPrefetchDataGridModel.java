@@ -0,0 +1,55 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.datagrid;
+
+import java.util.concurrent.Future;
+
+/**
+ * A DataGrid model which prefetches regions asynchronously.
+ * <p>
+ * The synchronization peer of the <code>DataGrid</code> invokes <code>prefetchAsync()</code> before it queries a 
+ * region, and waits for the returned <code>Future</code> with a timeout.  The synchronous <code>prefetch()</code>
+ * method is not invoked by the peer.
+ */
+public interface AsyncPrefetchDataGridModel extends PrefetchDataGridModel {
+
+    /**
+     * Starts retrieving a region of the model, such that it may be queried without blocking once the returned 
+     * <code>Future</code> has completed.
+     * 
+     * @param firstColumn the first column to retrieve (inclusive)
+     * @param firstRow the first row to retrieve (inclusive)
+     * @param lastColumn the last column to retrieve (inclusive)
+     * @param lastRow the last row to retrieve (inclusive)
+     * @return a <code>Future</code> which completes when the region has been retrieved, and which may be cancelled
+     *         to abandon the retrieval
+     */
+    public Future prefetchAsync(int firstColumn, int firstRow, int lastColumn, int lastRow);
+}
@@ -0,0 +1,112 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.datagrid;
+
+/**
+ * A DataGrid model whose columns each hold values of a single primitive or <code>String</code> type.
+ * <p>
+ * Values are retrieved through the getter of the type of their column, which does not box primitive values.  The
+ * synchronization peer of the <code>DataGrid</code> renders the columns of such a model as typed arrays.  
+ * <code>get()</code> must return the boxed value of a cell, e.g., an <code>Integer</code> for a cell of a 
+ * <code>TYPE_INT</code> column.
+ */
+public interface ColumnarDataGridModel extends DataGridModel {
+    
+    /**
+     * Column type holding <code>int</code> values.
+     */
+    public static final int TYPE_INT = 1;
+    
+    /**
+     * Column type holding <code>long</code> values.
+     * Note that values beyond 2^53 in magnitude lose precision when displayed by the client.
+     */
+    public static final int TYPE_LONG = 2;
+    
+    /**
+     * Column type holding <code>double</code> values.
+     */
+    public static final int TYPE_DOUBLE = 3;
+    
+    /**
+     * Column type holding <code>String</code> values, which may be <code>null</code>.
+     */
+    public static final int TYPE_STRING = 4;
+
+    /**
+     * Returns the type of the values of a column.
+     * 
+     * @param column the column index (zero-based)
+     * @return the column type, one of the following values:
+     *         <ul>
+     *          <li><code>TYPE_INT</code></li>
+     *          <li><code>TYPE_LONG</code></li>
+     *          <li><code>TYPE_DOUBLE</code></li>
+     *          <li><code>TYPE_STRING</code></li>
+     *         </ul>
+     */
+    public int getColumnType(int column);
+    
+    /**
+     * Returns the value of a cell of a <code>TYPE_DOUBLE</code> column.
+     * 
+     * @param column the column index (zero-based)
+     * @param row the row index (zero-based)
+     * @return the value
+     */
+    public double getDouble(int column, int row);
+    
+    /**
+     * Returns the value of a cell of a <code>TYPE_INT</code> column.
+     * 
+     * @param column the column index (zero-based)
+     * @param row the row index (zero-based)
+     * @return the value
+     */
+    public int getInt(int column, int row);
+    
+    /**
+     * Returns the value of a cell of a <code>TYPE_LONG</code> column.
+     * 
+     * @param column the column index (zero-based)
+     * @param row the row index (zero-based)
+     * @return the value
+     */
+    public long getLong(int column, int row);
+    
+    /**
+     * Returns the value of a cell of a <code>TYPE_STRING</code> column.
+     * 
+     * @param column the column index (zero-based)
+     * @param row the row index (zero-based)
+     * @return the value, possibly <code>null</code>
+     */
+    public String getString(int column, int row);
+}
@@ -0,0 +1,93 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.datagrid;
+
+/**
+ * A <code>SortFilterDataGridModel</code> of a <code>ColumnarDataGridModel</code>, which is itself a 
+ * <code>ColumnarDataGridModel</code>.
+ * <p>
+ * The typed getters read the values of the underlying model through the rows of the view, such that the 
+ * synchronization peer of the <code>DataGrid</code> renders the sorted and filtered columns as typed arrays, as it 
+ * does for the underlying model.
+ */
+public class ColumnarSortFilterDataGridModel extends SortFilterDataGridModel 
+implements ColumnarDataGridModel {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private ColumnarDataGridModel model;
+    
+    /**
+     * Creates a new <code>ColumnarSortFilterDataGridModel</code>, which neither sorts nor filters the rows initially.  
+     * The model listens to the underlying model until it is disposed.
+     * 
+     * @param model the underlying model
+     * @see #dispose()
+     */
+    public ColumnarSortFilterDataGridModel(ColumnarDataGridModel model) {
+        super(model);
+        this.model = model;
+    }
+    
+    /**
+     * @see nextapp.echo.extras.app.datagrid.ColumnarDataGridModel#getColumnType(int)
+     */
+    public int getColumnType(int column) {
+        return model.getColumnType(column);
+    }
+    
+    /**
+     * @see nextapp.echo.extras.app.datagrid.ColumnarDataGridModel#getDouble(int, int)
+     */
+    public double getDouble(int column, int row) {
+        return model.getDouble(column, getModelRow(row));
+    }
+    
+    /**
+     * @see nextapp.echo.extras.app.datagrid.ColumnarDataGridModel#getInt(int, int)
+     */
+    public int getInt(int column, int row) {
+        return model.getInt(column, getModelRow(row));
+    }
+    
+    /**
+     * @see nextapp.echo.extras.app.datagrid.ColumnarDataGridModel#getLong(int, int)
+     */
+    public long getLong(int column, int row) {
+        return model.getLong(column, getModelRow(row));
+    }
+    
+    /**
+     * @see nextapp.echo.extras.app.datagrid.ColumnarDataGridModel#getString(int, int)
+     */
+    public String getString(int column, int row) {
+        return model.getString(column, getModelRow(row));
+    }
+}
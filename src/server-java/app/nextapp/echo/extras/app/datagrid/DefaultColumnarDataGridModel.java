@@ -0,0 +1,242 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.datagrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Default <code>ColumnarDataGridModel</code> implementation, storing each column in an array of its type.
+ * <p>
+ * Columns are added as arrays of <code>int</code>, <code>long</code>, <code>double</code> or <code>String</code>
+ * values, whose lengths have to be the row count of the model.  The arrays are not copied.  The model must be 
+ * notified through <code>fireCellsUpdated()</code> if an array is modified other than through its setters.
+ */
+public class DefaultColumnarDataGridModel extends AbstractDataGridModel 
+implements ColumnarDataGridModel {
+    
+    /** Serial Version UID. */
+    private static final long serialVersionUID = 20090101L;
+    
+    /**
+     * The column arrays.
+     */
+    private List columns = new ArrayList();
+    
+    private int rowCount;
+    
+    /**
+     * Creates a new <code>DefaultColumnarDataGridModel</code> without columns.
+     * 
+     * @param rowCount the number of rows
+     */
+    public DefaultColumnarDataGridModel(int rowCount) {
+        super();
+        if (rowCount < 0) {
+            throw new IllegalArgumentException("Invalid row count: " + rowCount);
+        }
+        this.rowCount = rowCount;
+    }
+    
+    /**
+     * Adds a column.
+     * 
+     * @param values the column array
+     * @param length the length of the array
+     */
+    private void addColumn(Object values, int length) {
+        if (length != rowCount) {
+            throw new IllegalArgumentException("Column of " + length + " values does not match row count of " 
+                    + rowCount + ".");
+        }
+        columns.add(values);
+        fireColumnsInserted(columns.size() - 1, columns.size() - 1);
+    }
+    
+    /**
+     * Adds a <code>TYPE_DOUBLE</code> column.
+     * 
+     * @param values the values of the column, one per row
+     */
+    public void addColumn(double[] values) {
+        addColumn(values, values.length);
+    }
+    
+    /**
+     * Adds a <code>TYPE_INT</code> column.
+     * 
+     * @param values the values of the column, one per row
+     */
+    public void addColumn(int[] values) {
+        addColumn(values, values.length);
+    }
+    
+    /**
+     * Adds a <code>TYPE_LONG</code> column.
+     * 
+     * @param values the values of the column, one per row
+     */
+    public void addColumn(long[] values) {
+        addColumn(values, values.length);
+    }
+    
+    /**
+     * Adds a <code>TYPE_STRING</code> column.
+     * 
+     * @param values the values of the column, one per row
+     */
+    public void addColumn(String[] values) {
+        addColumn(values, values.length);
+    }
+    
+    /**
+     * Returns the value of a cell, boxed for primitive columns.
+     * 
+     * @see nextapp.echo.extras.app.datagrid.DataGridModel#get(int, int)
+     */
+    public Object get(int column, int row) {
+        Object values = columns.get(column);
+        if (values instanceof int[]) {
+            return new Integer(((int[]) values)[row]);
+        } else if (values instanceof long[]) {
+            return new Long(((long[]) values)[row]);
+        } else if (values instanceof double[]) {
+            return new Double(((double[]) values)[row]);
+        } else {
+            return ((String[]) values)[row];
+        }
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.datagrid.DataGridModel#getColumnCount()
+     */
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.datagrid.ColumnarDataGridModel#getColumnType(int)
+     */
+    public int getColumnType(int column) {
+        Object values = columns.get(column);
+        if (values instanceof int[]) {
+            return TYPE_INT;
+        } else if (values instanceof long[]) {
+            return TYPE_LONG;
+        } else if (values instanceof double[]) {
+            return TYPE_DOUBLE;
+        } else {
+            return TYPE_STRING;
+        }
+    }
+    
+    /**
+     * @see nextapp.echo.extras.app.datagrid.ColumnarDataGridModel#getDouble(int, int)
+     */
+    public double getDouble(int column, int row) {
+        return ((double[]) columns.get(column))[row];
+    }
+    
+    /**
+     * @see nextapp.echo.extras.app.datagrid.ColumnarDataGridModel#getInt(int, int)
+     */
+    public int getInt(int column, int row) {
+        return ((int[]) columns.get(column))[row];
+    }
+    
+    /**
+     * @see nextapp.echo.extras.app.datagrid.ColumnarDataGridModel#getLong(int, int)
+     */
+    public long getLong(int column, int row) {
+        return ((long[]) columns.get(column))[row];
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.datagrid.DataGridModel#getRowCount()
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    /**
+     * @see nextapp.echo.extras.app.datagrid.ColumnarDataGridModel#getString(int, int)
+     */
+    public String getString(int column, int row) {
+        return ((String[]) columns.get(column))[row];
+    }
+    
+    /**
+     * Sets the value of a cell of a <code>TYPE_DOUBLE</code> column.
+     * 
+     * @param column the column index (zero-based)
+     * @param row the row index (zero-based)
+     * @param value the new value
+     */
+    public void setDouble(int column, int row, double value) {
+        ((double[]) columns.get(column))[row] = value;
+        fireCellsUpdated(column, row, column, row);
+    }
+    
+    /**
+     * Sets the value of a cell of a <code>TYPE_INT</code> column.
+     * 
+     * @param column the column index (zero-based)
+     * @param row the row index (zero-based)
+     * @param value the new value
+     */
+    public void setInt(int column, int row, int value) {
+        ((int[]) columns.get(column))[row] = value;
+        fireCellsUpdated(column, row, column, row);
+    }
+    
+    /**
+     * Sets the value of a cell of a <code>TYPE_LONG</code> column.
+     * 
+     * @param column the column index (zero-based)
+     * @param row the row index (zero-based)
+     * @param value the new value
+     */
+    public void setLong(int column, int row, long value) {
+        ((long[]) columns.get(column))[row] = value;
+        fireCellsUpdated(column, row, column, row);
+    }
+    
+    /**
+     * Sets the value of a cell of a <code>TYPE_STRING</code> column.
+     * 
+     * @param column the column index (zero-based)
+     * @param row the row index (zero-based)
+     * @param value the new value
+     */
+    public void setString(int column, int row, String value) {
+        ((String[]) columns.get(column))[row] = value;
+        fireCellsUpdated(column, row, column, row);
+    }
+}
@@ -0,0 +1,1073 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.datagrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import nextapp.echo.extras.app.event.DataGridModelEvent;
+import nextapp.echo.extras.app.event.DataGridModelListener;
+
+/**
+ * A view of a <code>DataGridModel</code> whose rows are sorted by the values of a column and filtered by a set of
+ * <code>DataGridRowFilter</code>s.
+ * <p>
+ * The order of the rows for a sort key, i.e., a column, direction and comparator, is computed when first needed and 
+ * cached as a permutation of the row indices of the underlying model, such that returning to a previous sort key does 
+ * not sort the rows again.  The rows accepted by each filter are cached as a <code>BitSet</code>.  Large models are 
+ * sorted in parallel, on the sort executor of the model.  The values of the sort column are read from the underlying 
+ * model once per sort, on the calling thread; the values of <code>ColumnarDataGridModel</code> columns are compared 
+ * as primitives.  A <code>ColumnarSortFilterDataGridModel</code> additionally provides the typed values of a 
+ * <code>ColumnarDataGridModel</code> to the <code>DataGrid</code>.
+ * <p>
+ * Changing the sort key fires a <code>CELLS_UPDATED</code> event for the entire model, the row count is unchanged.  
+ * Changing the filters changes the row count and fires a <code>STRUCTURE_CHANGED</code> event.  Events of the 
+ * underlying model are forwarded unchanged while neither sorting nor filtering is active.
+ * <p>
+ * Updated cells of the underlying model are handled incrementally: the filters are evaluated again for the updated 
+ * rows only, and the updated rows are reinserted into the permutation of the current sort key if their values in the 
+ * sort column changed.  If the set of displayed rows is unchanged, <code>CELLS_UPDATED</code> events are fired for 
+ * the rows of the view displaying the updated rows, and for the rows of the view which were reordered.  Otherwise, 
+ * and for all other events of the underlying model, the affected caches are discarded and a 
+ * <code>STRUCTURE_CHANGED</code> event is fired.
+ */
+public class SortFilterDataGridModel extends AbstractDataGridModel {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Compares two rows of the underlying model.
+     */
+    private interface RowComparator {
+        
+        /**
+         * Compares two rows.
+         * 
+         * @param row1 the first row
+         * @param row2 the second row
+         * @return a negative value, zero, or a positive value if the first row is ordered before, equal to, or after 
+         *         the second row
+         */
+        public int compare(int row1, int row2);
+    }
+    
+    /**
+     * A sort column, direction and comparator, identifying a cached permutation.
+     */
+    private static class SortKey {
+        
+        private int column;
+        private boolean ascending;
+        private Comparator comparator;
+        
+        private SortKey(int column, boolean ascending, Comparator comparator) {
+            super();
+            this.column = column;
+            this.ascending = ascending;
+            this.comparator = comparator;
+        }
+        
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        public boolean equals(Object o) {
+            if (!(o instanceof SortKey)) {
+                return false;
+            }
+            SortKey that = (SortKey) o;
+            return column == that.column && ascending == that.ascending && comparator == that.comparator;
+        }
+        
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+        public int hashCode() {
+            return column * 2 + (ascending ? 1 : 0);
+        }
+    }
+
+    /**
+     * Orders values when no comparator is specified.  <code>null</code> comes first, mutually comparable values are 
+     * compared, and all other values are compared by their string representation.
+     */
+    private static final Comparator DEFAULT_COMPARATOR = new Comparator() {
+        public int compare(Object o1, Object o2) {
+            if (o1 == null || o2 == null) {
+                return o1 == null ? (o2 == null ? 0 : -1) : 1;
+            }
+            if (o1 instanceof Comparable && o1.getClass() == o2.getClass()) {
+                return ((Comparable) o1).compareTo(o2);
+            }
+            return o1.toString().compareTo(o2.toString());
+        }
+    };
+    
+    /**
+     * The maximum number of permutations which are cached.
+     */
+    public static final int MAX_CACHED_PERMUTATIONS = 8;
+    
+    /**
+     * The row count from which rows are sorted in parallel.
+     */
+    public static final int PARALLEL_SORT_THRESHOLD = 65536;
+    
+    /**
+     * The size of ranges which are sorted by insertion sort instead of being merged.
+     */
+    private static final int INSERTION_SORT_SIZE = 16;
+    
+    /**
+     * Rows updated in the sort column are reinserted into the cached permutation if they are at most 
+     * 1/<code>REINSERT_DIVISOR</code> of all rows, otherwise the rows are sorted again.
+     */
+    private static final int REINSERT_DIVISOR = 16;
+    
+    private static Executor defaultSortExecutor;
+    
+    /**
+     * Returns the executor used to sort rows in parallel when no executor has been set on a model.  The executor is 
+     * created on first use, and runs tasks on a fixed pool of daemon threads, one per available processor.
+     * 
+     * @return the default sort executor
+     */
+    private static synchronized Executor getDefaultSortExecutor() {
+        if (defaultSortExecutor == null) {
+            defaultSortExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), 
+                    new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "DataGrid model sorter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return defaultSortExecutor;
+    }
+    
+    /**
+     * Merges two adjacent sorted ranges of rows.
+     * 
+     * @param source the array containing the sorted ranges
+     * @param target the array to store the merged range in, at the same position
+     * @param from the first index of the first range (inclusive)
+     * @param middle the first index of the second range
+     * @param to the last index of the second range (exclusive)
+     * @param comparator the <code>RowComparator</code>
+     */
+    private static void merge(int[] source, int[] target, int from, int middle, int to, RowComparator comparator) {
+        int i = from, j = middle, k = from;
+        while (i < middle && j < to) {
+            // Rows of the first range come first when equal, keeping the sort stable.
+            target[k++] = comparator.compare(source[j], source[i]) < 0 ? source[j++] : source[i++];
+        }
+        while (i < middle) {
+            target[k++] = source[i++];
+        }
+        while (j < to) {
+            target[k++] = source[j++];
+        }
+    }
+    
+    /**
+     * Sorts a range of rows by a stable merge sort.
+     * 
+     * @param rows the rows
+     * @param buffer a buffer of the length of the rows array, of which the range is overwritten
+     * @param from the first index of the range (inclusive)
+     * @param to the last index of the range (exclusive)
+     * @param comparator the <code>RowComparator</code>
+     */
+    private static void sort(int[] rows, int[] buffer, int from, int to, RowComparator comparator) {
+        if (to - from <= INSERTION_SORT_SIZE) {
+            for (int i = from + 1; i < to; ++i) {
+                int row = rows[i];
+                int j = i;
+                while (j > from && comparator.compare(row, rows[j - 1]) < 0) {
+                    rows[j] = rows[j - 1];
+                    --j;
+                }
+                rows[j] = row;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(rows, buffer, from, middle, comparator);
+        sort(rows, buffer, middle, to, comparator);
+        if (comparator.compare(rows[middle], rows[middle - 1]) >= 0) {
+            // Already ordered.
+            return;
+        }
+        merge(rows, buffer, from, middle, to, comparator);
+        System.arraycopy(buffer, from, rows, from, to - from);
+    }
+    
+    /**
+     * Runs tasks on an executor, and waits until all have completed.  Interruptions of the waiting thread are 
+     * deferred until the tasks have completed, as they operate on arrays owned by the caller.
+     * 
+     * @param executor the <code>Executor</code>
+     * @param tasks the tasks
+     * @throws RuntimeException if a task failed
+     */
+    private static void runAll(Executor executor, Runnable[] tasks) {
+        FutureTask[] futures = new FutureTask[tasks.length];
+        for (int i = 0; i < tasks.length; ++i) {
+            futures[i] = new FutureTask(tasks[i], null);
+            executor.execute(futures[i]);
+        }
+        boolean interrupted = false;
+        RuntimeException failure = null;
+        for (int i = 0; i < futures.length; ++i) {
+            while (true) {
+                try {
+                    futures[i].get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause()
+                                : new RuntimeException(ex.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    /**
+     * Forwards the events of the underlying model, after discarding the affected caches.
+     */
+    private DataGridModelListener modelListener = new DataGridModelListener() {
+
+        /**
+         * @see nextapp.echo.extras.app.event.DataGridModelListener#modelChanged(nextapp.echo.extras.app.event.DataGridModelEvent)
+         */
+        public void modelChanged(DataGridModelEvent e) {
+            processModelEvent(e);
+        }
+    };
+    
+    private DataGridModel model;
+    private int sortColumn = -1;
+    private boolean ascending = true;
+    private Comparator comparator;
+    private List filters = new ArrayList();
+    private transient Executor sortExecutor;
+    
+    /**
+     * Maps <code>SortKey</code>s to the cached permutations, arrays holding the underlying row index of each row in
+     * sorted order.  Ordered by access, least recently used first.  Not serialized, the permutations are computed again
+     * when needed.
+     */
+    private transient Map permutations;
+    
+    /**
+     * Maps each filter to a <code>BitSet</code> of the underlying rows it accepts.  Not serialized.
+     */
+    private transient Map filterRows;
+    
+    /**
+     * The underlying row index of each row of the view, or <code>null</code> if it has not been computed.
+     */
+    private transient int[] viewRows;
+    
+    /**
+     * The inverse of <code>viewRows</code>: the row index of the view displaying each row of the underlying model, 
+     * or -1 if the row is not displayed.  <code>null</code> if it has not been computed.
+     */
+    private transient int[] viewPositions;
+    
+    /**
+     * Creates a new <code>SortFilterDataGridModel</code>, which neither sorts nor filters the rows initially.  
+     * The model listens to the underlying model until it is disposed.
+     * 
+     * @param model the underlying model
+     * @see #dispose()
+     */
+    public SortFilterDataGridModel(DataGridModel model) {
+        super();
+        this.model = model;
+        model.addDataGridModelListener(modelListener);
+    }
+    
+    /**
+     * Adds a filter.  Only rows accepted by all filters are displayed.
+     * 
+     * @param filter the filter to add
+     */
+    public void addFilter(DataGridRowFilter filter) {
+        filters.add(filter);
+        discardViewRows();
+        fireModelChanged();
+    }
+    
+    /**
+     * Removes all filters.
+     */
+    public void clearFilters() {
+        if (filters.isEmpty()) {
+            return;
+        }
+        filters.clear();
+        getFilterRows().clear();
+        discardViewRows();
+        fireModelChanged();
+    }
+    
+    /**
+     * Displays the rows in the order of the underlying model.
+     */
+    public void clearSort() {
+        setSort(-1, true, null);
+    }
+    
+    /**
+     * Creates a <code>RowComparator</code> for a sort key, reading the values of the sort column.
+     * 
+     * @param key the <code>SortKey</code>
+     * @param rowCount the row count of the underlying model
+     * @return the <code>RowComparator</code>
+     */
+    private RowComparator createRowComparator(SortKey key, int rowCount) {
+        final boolean ascending = key.ascending;
+        int columnType = model instanceof ColumnarDataGridModel && key.comparator == null 
+                ? ((ColumnarDataGridModel) model).getColumnType(key.column) : ColumnarDataGridModel.TYPE_STRING;
+        switch (columnType) {
+        case ColumnarDataGridModel.TYPE_INT:
+        case ColumnarDataGridModel.TYPE_LONG:
+            final long[] longValues = new long[rowCount];
+            for (int row = 0; row < rowCount; ++row) {
+                longValues[row] = columnType == ColumnarDataGridModel.TYPE_INT 
+                        ? ((ColumnarDataGridModel) model).getInt(key.column, row) 
+                        : ((ColumnarDataGridModel) model).getLong(key.column, row);
+            }
+            return new RowComparator() {
+                public int compare(int row1, int row2) {
+                    long value1 = longValues[ascending ? row1 : row2], value2 = longValues[ascending ? row2 : row1];
+                    return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+                }
+            };
+        case ColumnarDataGridModel.TYPE_DOUBLE:
+            final double[] doubleValues = new double[rowCount];
+            for (int row = 0; row < rowCount; ++row) {
+                doubleValues[row] = ((ColumnarDataGridModel) model).getDouble(key.column, row);
+            }
+            return new RowComparator() {
+                public int compare(int row1, int row2) {
+                    return ascending ? Double.compare(doubleValues[row1], doubleValues[row2]) 
+                            : Double.compare(doubleValues[row2], doubleValues[row1]);
+                }
+            };
+        default:
+            final Object[] values = new Object[rowCount];
+            for (int row = 0; row < rowCount; ++row) {
+                values[row] = model.get(key.column, row);
+            }
+            final Comparator valueComparator = key.comparator == null ? DEFAULT_COMPARATOR : key.comparator;
+            return new RowComparator() {
+                public int compare(int row1, int row2) {
+                    return ascending ? valueComparator.compare(values[row1], values[row2]) 
+                            : valueComparator.compare(values[row2], values[row1]);
+                }
+            };
+        }
+    }
+    
+    /**
+     * Creates a <code>RowComparator</code> for a sort key which reads the values of the sort column from the 
+     * underlying model on each comparison, ordering rows with equal values by their index.  Used to reinsert a few 
+     * rows into a permutation, without reading the entire column.
+     * 
+     * @param key the <code>SortKey</code>
+     * @return the <code>RowComparator</code>
+     */
+    private RowComparator createModelRowComparator(SortKey key) {
+        final int column = key.column;
+        final boolean ascending = key.ascending;
+        final int columnType = model instanceof ColumnarDataGridModel && key.comparator == null 
+                ? ((ColumnarDataGridModel) model).getColumnType(column) : ColumnarDataGridModel.TYPE_STRING;
+        final Comparator valueComparator = key.comparator == null ? DEFAULT_COMPARATOR : key.comparator;
+        return new RowComparator() {
+            public int compare(int row1, int row2) {
+                int result;
+                switch (columnType) {
+                case ColumnarDataGridModel.TYPE_INT:
+                case ColumnarDataGridModel.TYPE_LONG:
+                    long longValue1 = columnType == ColumnarDataGridModel.TYPE_INT 
+                            ? ((ColumnarDataGridModel) model).getInt(column, row1) 
+                            : ((ColumnarDataGridModel) model).getLong(column, row1);
+                    long longValue2 = columnType == ColumnarDataGridModel.TYPE_INT 
+                            ? ((ColumnarDataGridModel) model).getInt(column, row2) 
+                            : ((ColumnarDataGridModel) model).getLong(column, row2);
+                    result = longValue1 < longValue2 ? -1 : (longValue1 == longValue2 ? 0 : 1);
+                    break;
+                case ColumnarDataGridModel.TYPE_DOUBLE:
+                    result = Double.compare(((ColumnarDataGridModel) model).getDouble(column, row1), 
+                            ((ColumnarDataGridModel) model).getDouble(column, row2));
+                    break;
+                default:
+                    result = valueComparator.compare(model.get(column, row1), model.get(column, row2));
+                }
+                if (!ascending) {
+                    result = -result;
+                }
+                return result == 0 ? (row1 < row2 ? -1 : (row1 == row2 ? 0 : 1)) : result;
+            }
+        };
+    }
+    
+    /**
+     * Discards the rows of the view, such that they are computed again when needed.
+     */
+    private void discardViewRows() {
+        viewRows = null;
+        viewPositions = null;
+    }
+    
+    /**
+     * Detaches this model from the underlying model.
+     */
+    public void dispose() {
+        model.removeDataGridModelListener(modelListener);
+        getPermutations().clear();
+        getFilterRows().clear();
+        discardViewRows();
+    }
+    
+    /**
+     * @see nextapp.echo.extras.app.datagrid.DataGridModel#get(int, int)
+     */
+    public Object get(int column, int row) {
+        int[] rows = getViewRows();
+        return model.get(column, rows == null ? row : rows[row]);
+    }
+    
+    /**
+     * @see nextapp.echo.extras.app.datagrid.DataGridModel#getColumnCount()
+     */
+    public int getColumnCount() {
+        return model.getColumnCount();
+    }
+    
+    /**
+     * Returns the filters.
+     * 
+     * @return an unmodifiable list of the <code>DataGridRowFilter</code>s
+     */
+    public List getFilters() {
+        return Collections.unmodifiableList(filters);
+    }
+    
+    private Map getFilterRows() {
+        if (filterRows == null) {
+            filterRows = new HashMap();
+        }
+        return filterRows;
+    }
+    
+    /**
+     * Returns the underlying model.
+     * 
+     * @return the model
+     */
+    public DataGridModel getModel() {
+        return model;
+    }
+    
+    /**
+     * Returns the underlying row index of a row of the view.
+     * 
+     * @param row the row index of the view (zero-based)
+     * @return the row index of the underlying model
+     */
+    public int getModelRow(int row) {
+        int[] rows = getViewRows();
+        return rows == null ? row : rows[row];
+    }
+    
+    /**
+     * Returns the permutation of the rows of the underlying model for a sort key, computing it if necessary.
+     * 
+     * @param key the <code>SortKey</code>
+     * @return the underlying row index of each row, in sorted order
+     */
+    private int[] getPermutation(SortKey key) {
+        int[] permutation = (int[]) getPermutations().get(key);
+        if (permutation == null) {
+            permutation = sort(key);
+            getPermutations().put(key, permutation);
+        }
+        return permutation;
+    }
+    
+    private Map getPermutations() {
+        if (permutations == null) {
+            permutations = new LinkedHashMap(16, 0.75f, true) {
+                
+                private static final long serialVersionUID = 1L;
+                
+                protected boolean removeEldestEntry(Map.Entry eldest) {
+                    return size() > MAX_CACHED_PERMUTATIONS;
+                }
+            };
+        }
+        return permutations;
+    }
+    
+    /**
+     * @see nextapp.echo.extras.app.datagrid.DataGridModel#getRowCount()
+     */
+    public int getRowCount() {
+        int[] rows = getViewRows();
+        return rows == null ? model.getRowCount() : rows.length;
+    }
+    
+    /**
+     * Returns the <code>Comparator</code> of the values of the sort column.
+     * 
+     * @return the <code>Comparator</code>, or <code>null</code> for the default order
+     */
+    public Comparator getSortComparator() {
+        return comparator;
+    }
+    
+    /**
+     * Returns the index of the column the rows are sorted by.
+     * 
+     * @return the column index, or -1 if the rows are not sorted
+     */
+    public int getSortColumn() {
+        return sortColumn;
+    }
+    
+    /**
+     * Returns the executor used to sort large models in parallel.
+     * 
+     * @return the sort executor
+     */
+    public Executor getSortExecutor() {
+        return sortExecutor == null ? getDefaultSortExecutor() : sortExecutor;
+    }
+    
+    /**
+     * Returns the underlying row indices of the rows of the view, computing them if necessary.
+     * 
+     * @return the row indices, or <code>null</code> if the rows are neither sorted nor filtered
+     */
+    private int[] getViewRows() {
+        if (viewRows != null || (sortColumn == -1 && filters.isEmpty())) {
+            return viewRows;
+        }
+        int[] order = sortColumn == -1 ? null : getPermutation(new SortKey(sortColumn, ascending, comparator));
+        if (filters.isEmpty()) {
+            viewRows = order;
+            return viewRows;
+        }
+        
+        int rowCount = model.getRowCount();
+        BitSet visible = null;
+        Iterator it = filters.iterator();
+        while (it.hasNext()) {
+            DataGridRowFilter filter = (DataGridRowFilter) it.next();
+            BitSet accepted = (BitSet) getFilterRows().get(filter);
+            if (accepted == null) {
+                accepted = new BitSet(rowCount);
+                for (int row = 0; row < rowCount; ++row) {
+                    if (filter.accept(model, row)) {
+                        accepted.set(row);
+                    }
+                }
+                getFilterRows().put(filter, accepted);
+            }
+            if (visible == null) {
+                visible = (BitSet) accepted.clone();
+            } else {
+                visible.and(accepted);
+            }
+        }
+        
+        int[] rows = new int[visible.cardinality()];
+        if (order == null) {
+            int index = 0;
+            for (int row = visible.nextSetBit(0); row >= 0; row = visible.nextSetBit(row + 1)) {
+                rows[index++] = row;
+            }
+        } else {
+            int index = 0;
+            for (int i = 0; i < order.length; ++i) {
+                if (visible.get(order[i])) {
+                    rows[index++] = order[i];
+                }
+            }
+        }
+        viewRows = rows;
+        return viewRows;
+    }
+    
+    /**
+     * Returns the row index of the view displaying each row of the underlying model, computing them if necessary.
+     * 
+     * @return the row indices of the view, -1 for rows which are not displayed, or <code>null</code> if the rows are 
+     *         neither sorted nor filtered
+     */
+    private int[] getViewPositions() {
+        int[] rows = getViewRows();
+        if (viewPositions != null || rows == null) {
+            return viewPositions;
+        }
+        int[] positions = new int[model.getRowCount()];
+        for (int row = 0; row < positions.length; ++row) {
+            positions[row] = -1;
+        }
+        for (int i = 0; i < rows.length; ++i) {
+            positions[rows[i]] = i;
+        }
+        viewPositions = positions;
+        return viewPositions;
+    }
+    
+    /**
+     * Determines whether the rows are sorted in ascending order.
+     * 
+     * @return true for ascending order, false for descending order
+     */
+    public boolean isAscending() {
+        return ascending;
+    }
+    
+    /**
+     * Fires <code>CELLS_UPDATED</code> events for the columns of an event of the underlying model, covering the rows 
+     * of the view displaying the updated rows which are not within a range of the view already updated.
+     * 
+     * @param e the event of the underlying model
+     * @param firstRow the first updated row of the underlying model (inclusive)
+     * @param lastRow the last updated row of the underlying model (inclusive)
+     * @param firstUpdatedRow the first row of the view already updated (inclusive)
+     * @param lastUpdatedRow the last row of the view already updated (inclusive), less than firstUpdatedRow if none
+     */
+    private void fireViewRowsUpdated(DataGridModelEvent e, int firstRow, int lastRow, int firstUpdatedRow, 
+            int lastUpdatedRow) {
+        int[] positions = getViewPositions();
+        int[] updatedRows = new int[lastRow - firstRow + 1];
+        int count = 0;
+        for (int row = firstRow; row <= lastRow; ++row) {
+            int position = positions[row];
+            if (position != -1 && (position < firstUpdatedRow || position > lastUpdatedRow)) {
+                updatedRows[count++] = position;
+            }
+        }
+        if (sortColumn != -1) {
+            Arrays.sort(updatedRows, 0, count);
+        }
+        
+        // Fire an event per run of adjacent rows.
+        int i = 0;
+        while (i < count) {
+            int runEnd = i;
+            while (runEnd + 1 < count && updatedRows[runEnd + 1] == updatedRows[runEnd] + 1) {
+                ++runEnd;
+            }
+            fireCellsUpdated(e.getFirstColumn(), updatedRows[i], e.getLastColumn(), updatedRows[runEnd]);
+            i = runEnd + 1;
+        }
+    }
+    
+    /**
+     * Updates the caches after cells of the underlying model have been updated, and fires the corresponding events,
+     * see the class description.  Sorting or filtering is active.
+     * 
+     * @param e the <code>CELLS_UPDATED</code> event of the underlying model
+     */
+    private void processCellsUpdated(DataGridModelEvent e) {
+        int[] oldRows = viewRows;
+        int firstRow = Math.max(e.getFirstRow(), 0);
+        int lastRow = Math.min(e.getLastRow(), model.getRowCount() - 1);
+        boolean membershipChanged = updateFilterRows(firstRow, lastRow);
+        boolean orderChanged = updatePermutations(e, firstRow, lastRow);
+        
+        if (oldRows == null) {
+            // The view has not been read since the last notification of all rows, the changes are not known.
+            discardViewRows();
+            int rowCount = getRowCount();
+            if (!filters.isEmpty()) {
+                fireModelChanged();
+            } else if (rowCount > 0) {
+                fireCellsUpdated(0, 0, getColumnCount() - 1, rowCount - 1);
+            }
+            return;
+        }
+        if (membershipChanged) {
+            discardViewRows();
+            fireModelChanged();
+            return;
+        }
+        if (firstRow > lastRow) {
+            return;
+        }
+        if (!orderChanged) {
+            fireViewRowsUpdated(e, firstRow, lastRow, 0, -1);
+            return;
+        }
+        
+        // Update the entire rows of the view between the first and last row which changed position.
+        discardViewRows();
+        int[] rows = getViewRows();
+        int firstMovedRow = 0;
+        while (firstMovedRow < rows.length && rows[firstMovedRow] == oldRows[firstMovedRow]) {
+            ++firstMovedRow;
+        }
+        int lastMovedRow = rows.length - 1;
+        while (lastMovedRow > firstMovedRow && rows[lastMovedRow] == oldRows[lastMovedRow]) {
+            --lastMovedRow;
+        }
+        if (firstMovedRow <= lastMovedRow) {
+            fireCellsUpdated(0, firstMovedRow, getColumnCount() - 1, lastMovedRow);
+        }
+        fireViewRowsUpdated(e, firstRow, lastRow, firstMovedRow, lastMovedRow);
+    }
+    
+    /**
+     * Discards the caches affected by an event of the underlying model, and forwards the event.  Updated cells are
+     * processed incrementally while sorting or filtering is active.
+     * 
+     * @param e the event of the underlying model
+     */
+    private void processModelEvent(DataGridModelEvent e) {
+        if (e.getType() == DataGridModelEvent.CELLS_UPDATED && (sortColumn != -1 || !filters.isEmpty())) {
+            processCellsUpdated(e);
+            return;
+        }
+        
+        discardViewRows();
+        getFilterRows().clear();
+        if (e.getType() == DataGridModelEvent.CELLS_UPDATED) {
+            // Only the permutations of the updated columns are affected.
+            Iterator it = getPermutations().keySet().iterator();
+            while (it.hasNext()) {
+                int column = ((SortKey) it.next()).column;
+                if (column >= e.getFirstColumn() && column <= e.getLastColumn()) {
+                    it.remove();
+                }
+            }
+        } else {
+            getPermutations().clear();
+        }
+        
+        if (sortColumn == -1 && filters.isEmpty()) {
+            fireModelChanged(new DataGridModelEvent(this, e.getType(), e.getFirstColumn(), e.getFirstRow(), 
+                    e.getLastColumn(), e.getLastRow()));
+        } else {
+            updateSortColumn(e);
+            fireModelChanged();
+        }
+    }
+    
+    /**
+     * Removes a filter.
+     * 
+     * @param filter the filter to remove
+     */
+    public void removeFilter(DataGridRowFilter filter) {
+        if (!filters.remove(filter)) {
+            return;
+        }
+        getFilterRows().remove(filter);
+        discardViewRows();
+        fireModelChanged();
+    }
+    
+    /**
+     * Returns a permutation of the rows of the underlying model in which a range of rows whose values changed is 
+     * reinserted at the positions matching their new values.  The other rows keep their order.
+     * 
+     * @param key the <code>SortKey</code> of the permutation
+     * @param permutation the permutation, which is not modified
+     * @param firstRow the first row to reinsert (inclusive)
+     * @param lastRow the last row to reinsert (inclusive)
+     * @return the new permutation
+     */
+    private int[] reinsertRows(SortKey key, int[] permutation, int firstRow, int lastRow) {
+        RowComparator rowComparator = createModelRowComparator(key);
+        int count = lastRow - firstRow + 1;
+        int[] updatedRows = new int[count];
+        for (int i = 0; i < count; ++i) {
+            updatedRows[i] = firstRow + i;
+        }
+        sort(updatedRows, new int[count], 0, count, rowComparator);
+        
+        int[] remainingRows = new int[permutation.length - count];
+        int remainingCount = 0;
+        for (int i = 0; i < permutation.length; ++i) {
+            if (permutation[i] < firstRow || permutation[i] > lastRow) {
+                remainingRows[remainingCount++] = permutation[i];
+            }
+        }
+        
+        // Binary search the position of each updated row among the remaining rows, following the previous one.
+        int[] rows = new int[permutation.length];
+        int index = 0, remainingIndex = 0;
+        for (int updatedIndex = 0; updatedIndex < count; ++updatedIndex) {
+            int low = remainingIndex, high = remainingCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (rowComparator.compare(remainingRows[middle], updatedRows[updatedIndex]) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            System.arraycopy(remainingRows, remainingIndex, rows, index, low - remainingIndex);
+            index += low - remainingIndex;
+            remainingIndex = low;
+            rows[index++] = updatedRows[updatedIndex];
+        }
+        System.arraycopy(remainingRows, remainingIndex, rows, index, remainingCount - remainingIndex);
+        return rows;
+    }
+    
+    /**
+     * Sorts the rows of the underlying model, in parallel if their number is at least 
+     * <code>PARALLEL_SORT_THRESHOLD</code>.
+     * 
+     * @param key the <code>SortKey</code>
+     * @return the underlying row index of each row, in sorted order
+     */
+    private int[] sort(SortKey key) {
+        int rowCount = model.getRowCount();
+        final RowComparator rowComparator = createRowComparator(key, rowCount);
+        final int[] rows = new int[rowCount];
+        for (int row = 0; row < rowCount; ++row) {
+            rows[row] = row;
+        }
+        final int[] buffer = new int[rowCount];
+        
+        int chunkCount = Runtime.getRuntime().availableProcessors();
+        if (rowCount < PARALLEL_SORT_THRESHOLD || chunkCount < 2) {
+            sort(rows, buffer, 0, rowCount, rowComparator);
+            return rows;
+        }
+        
+        // Sort chunks in parallel, then merge adjacent chunks in parallel rounds.
+        final int[] bounds = new int[chunkCount + 1];
+        for (int i = 0; i <= chunkCount; ++i) {
+            bounds[i] = (int) ((long) rowCount * i / chunkCount);
+        }
+        Runnable[] tasks = new Runnable[chunkCount];
+        for (int i = 0; i < chunkCount; ++i) {
+            final int from = bounds[i], to = bounds[i + 1];
+            tasks[i] = new Runnable() {
+                public void run() {
+                    sort(rows, buffer, from, to, rowComparator);
+                }
+            };
+        }
+        runAll(getSortExecutor(), tasks);
+        
+        for (int width = 1; width < chunkCount; width *= 2) {
+            List mergeTasks = new ArrayList();
+            for (int i = 0; i + width < chunkCount; i += 2 * width) {
+                final int from = bounds[i], middle = bounds[i + width], to = bounds[Math.min(i + 2 * width, chunkCount)];
+                mergeTasks.add(new Runnable() {
+                    public void run() {
+                        merge(rows, buffer, from, middle, to, rowComparator);
+                        System.arraycopy(buffer, from, rows, from, to - from);
+                    }
+                });
+            }
+            runAll(getSortExecutor(), (Runnable[]) mergeTasks.toArray(new Runnable[mergeTasks.size()]));
+        }
+        return rows;
+    }
+    
+    /**
+     * Sets the executor used to sort large models in parallel.
+     * 
+     * @param newValue the new executor, or <code>null</code> to use a shared executor with a thread per available 
+     *        processor
+     */
+    public void setSortExecutor(Executor newValue) {
+        sortExecutor = newValue;
+    }
+    
+    /**
+     * Sorts the rows by the values of a column, using the default order of the values.
+     * 
+     * @param column the index of the column to sort by, or -1 to display the rows in the order of the underlying model
+     * @param ascending true for ascending order, false for descending order
+     */
+    public void setSort(int column, boolean ascending) {
+        setSort(column, ascending, null);
+    }
+    
+    /**
+     * Sorts the rows by the values of a column.  Rows with equal values keep the order of the underlying model.
+     * The client is notified that all cells changed, the row count is unchanged.
+     * 
+     * @param column the index of the column to sort by, or -1 to display the rows in the order of the underlying model
+     * @param ascending true for ascending order, false for descending order
+     * @param comparator the <code>Comparator</code> of the column values, or <code>null</code> to compare
+     *        <code>Comparable</code> values of the same class, and any other values by their string representation
+     */
+    public void setSort(int column, boolean ascending, Comparator comparator) {
+        if (column == sortColumn && ascending == this.ascending && comparator == this.comparator) {
+            return;
+        }
+        this.sortColumn = column;
+        this.ascending = ascending;
+        this.comparator = comparator;
+        discardViewRows();
+        int rowCount = getRowCount();
+        int columnCount = getColumnCount();
+        if (rowCount > 0 && columnCount > 0) {
+            fireCellsUpdated(0, 0, columnCount - 1, rowCount - 1);
+        }
+    }
+    
+    /**
+     * Evaluates the filters again for a range of updated rows, updating the cached rows accepted by each filter.
+     * 
+     * @param firstRow the first updated row (inclusive)
+     * @param lastRow the last updated row (inclusive)
+     * @return true if a row is displayed which was not displayed before, or vice versa
+     */
+    private boolean updateFilterRows(int firstRow, int lastRow) {
+        boolean membershipChanged = false;
+        for (int row = firstRow; row <= lastRow; ++row) {
+            boolean wasVisible = true, visible = true;
+            Iterator it = filters.iterator();
+            while (it.hasNext()) {
+                DataGridRowFilter filter = (DataGridRowFilter) it.next();
+                BitSet accepted = (BitSet) getFilterRows().get(filter);
+                if (accepted == null) {
+                    continue;
+                }
+                boolean accept = filter.accept(model, row);
+                wasVisible &= accepted.get(row);
+                visible &= accept;
+                accepted.set(row, accept);
+            }
+            membershipChanged |= wasVisible != visible;
+        }
+        return membershipChanged;
+    }
+    
+    /**
+     * Updates the cached permutations after the cells of a range of rows have been updated.  The permutation of the 
+     * current sort key is updated by reinserting the updated rows, the permutations of other sort keys on the updated 
+     * columns are discarded.
+     * 
+     * @param e the <code>CELLS_UPDATED</code> event of the underlying model
+     * @param firstRow the first updated row (inclusive)
+     * @param lastRow the last updated row (inclusive)
+     * @return true if the order of the rows may have changed
+     */
+    private boolean updatePermutations(DataGridModelEvent e, int firstRow, int lastRow) {
+        SortKey currentKey = sortColumn == -1 ? null : new SortKey(sortColumn, ascending, comparator);
+        int[] currentPermutation = null;
+        Iterator it = getPermutations().entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry entry = (Map.Entry) it.next();
+            int column = ((SortKey) entry.getKey()).column;
+            if (column >= e.getFirstColumn() && column <= e.getLastColumn()) {
+                if (entry.getKey().equals(currentKey)) {
+                    currentPermutation = (int[]) entry.getValue();
+                }
+                it.remove();
+            }
+        }
+        if (currentKey == null || sortColumn < e.getFirstColumn() || sortColumn > e.getLastColumn() 
+                || firstRow > lastRow) {
+            return false;
+        }
+        if (currentPermutation == null || (lastRow - firstRow + 1) > currentPermutation.length / REINSERT_DIVISOR) {
+            return true;
+        }
+        int[] permutation = reinsertRows(currentKey, currentPermutation, firstRow, lastRow);
+        if (Arrays.equals(permutation, currentPermutation)) {
+            getPermutations().put(currentKey, currentPermutation);
+            return false;
+        }
+        getPermutations().put(currentKey, permutation);
+        return true;
+    }
+    
+    /**
+     * Updates the index of the sort column after columns of the underlying model have been inserted or deleted.
+     * Sorting is disabled if the sort column has been deleted.
+     * 
+     * @param e the event of the underlying model
+     */
+    private void updateSortColumn(DataGridModelEvent e) {
+        if (sortColumn == -1) {
+            return;
+        }
+        int count = e.getLastColumn() - e.getFirstColumn() + 1;
+        switch (e.getType()) {
+        case DataGridModelEvent.COLUMNS_INSERTED:
+            if (e.getFirstColumn() <= sortColumn) {
+                sortColumn += count;
+            }
+            break;
+        case DataGridModelEvent.COLUMNS_DELETED:
+            if (e.getLastColumn() < sortColumn) {
+                sortColumn -= count;
+            } else if (e.getFirstColumn() <= sortColumn) {
+                sortColumn = -1;
+            }
+            break;
+        case DataGridModelEvent.STRUCTURE_CHANGED:
+            if (sortColumn >= model.getColumnCount()) {
+                sortColumn = -1;
+            }
+            break;
+        }
+    }
+}
@@ -35,15 +35,144 @@ import nextapp.echo.extras.app.datagrid.DataGridModel;
 
 /**
  * An event which describes a change to the state of a <code>DataGridModel</code>.
+ * <p>
+ * The type of the event determines which of the cell indices are relevant:
+ * <ul>
+ *  <li><code>STRUCTURE_CHANGED</code>: none, the entire model may have changed.</li>
+ *  <li><code>CELLS_UPDATED</code>: the values of the cells in the range from the first to
+ *   the last column and row changed.</li>
+ *  <li><code>ROWS_INSERTED</code>, <code>ROWS_DELETED</code>: the rows from the first to the last 
+ *   row were inserted or deleted.</li>
+ *  <li><code>COLUMNS_INSERTED</code>, <code>COLUMNS_DELETED</code>: the columns from the first to 
+ *   the last column were inserted or deleted.</li>
+ * </ul>
+ * Row and column indices are those of the model at the time the event is fired, i.e., the 
+ * indices of deleted rows and columns are their indices before they were deleted.
  */
 public class DataGridModelEvent extends EventObject {
     
+    /** Serial Version UID. */
+    private static final long serialVersionUID = 20070101L;
+
     /**
-     * Creates a new <code>DataGridModelEvent</code>.
+     * Event type indicating the entire model may have changed.
+     */
+    public static final int STRUCTURE_CHANGED = 0;
+    
+    /**
+     * Event type indicating the values of a range of cells changed.
+     */
+    public static final int CELLS_UPDATED = 1;
+    
+    /**
+     * Event type indicating a range of rows was inserted.
+     */
+    public static final int ROWS_INSERTED = 2;
+    
+    /**
+     * Event type indicating a range of rows was deleted.
+     */
+    public static final int ROWS_DELETED = 3;
+    
+    /**
+     * Event type indicating a range of columns was inserted.
+     */
+    public static final int COLUMNS_INSERTED = 4;
+    
+    /**
+     * Event type indicating a range of columns was deleted.
+     */
+    public static final int COLUMNS_DELETED = 5;
+    
+    private int type;
+    private int firstColumn, firstRow, lastColumn, lastRow;
+    
+    /**
+     * Creates a new <code>DataGridModelEvent</code> indicating the entire model may have changed.
      * 
      * @param source the source of the event
      */
     public DataGridModelEvent(DataGridModel source) {
+        this(source, STRUCTURE_CHANGED, -1, -1, -1, -1);
+    }
+    
+    /**
+     * Creates a new <code>DataGridModelEvent</code>.
+     * 
+     * @param source the source of the event
+     * @param type the type of the event, one of the following values:
+     *        <ul>
+     *         <li><code>STRUCTURE_CHANGED</code></li>
+     *         <li><code>CELLS_UPDATED</code></li>
+     *         <li><code>ROWS_INSERTED</code></li>
+     *         <li><code>ROWS_DELETED</code></li>
+     *         <li><code>COLUMNS_INSERTED</code></li>
+     *         <li><code>COLUMNS_DELETED</code></li>
+     *        </ul>
+     * @param firstColumn the first affected column (inclusive), -1 if not relevant
+     * @param firstRow the first affected row (inclusive), -1 if not relevant
+     * @param lastColumn the last affected column (inclusive), -1 if not relevant
+     * @param lastRow the last affected row (inclusive), -1 if not relevant
+     */
+    public DataGridModelEvent(DataGridModel source, int type, int firstColumn, int firstRow, int lastColumn, int lastRow) {
         super(source);
+        this.type = type;
+        this.firstColumn = firstColumn;
+        this.firstRow = firstRow;
+        this.lastColumn = lastColumn;
+        this.lastRow = lastRow;
+    }
+    
+    /**
+     * Returns the first affected column.
+     * 
+     * @return the first affected column (inclusive), -1 if not relevant
+     */
+    public int getFirstColumn() {
+        return firstColumn;
+    }
+    
+    /**
+     * Returns the first affected row.
+     * 
+     * @return the first affected row (inclusive), -1 if not relevant
+     */
+    public int getFirstRow() {
+        return firstRow;
+    }
+    
+    /**
+     * Returns the last affected column.
+     * 
+     * @return the last affected column (inclusive), -1 if not relevant
+     */
+    public int getLastColumn() {
+        return lastColumn;
+    }
+    
+    /**
+     * Returns the last affected row.
+     * 
+     * @return the last affected row (inclusive), -1 if not relevant
+     */
+    public int getLastRow() {
+        return lastRow;
+    }
+    
+    /**
+     * Returns the type of the event.
+     * 
+     * @return the type of the event, one of the following values:
+     *         <ul>
+     *          <li><code>STRUCTURE_CHANGED</code></li>
+     *          <li><code>CELLS_UPDATED</code></li>
+     *          <li><code>ROWS_INSERTED</code></li>
+     *          <li><code>ROWS_DELETED</code></li>
+     *          <li><code>COLUMNS_INSERTED</code></li>
+     *          <li><code>COLUMNS_DELETED</code></li>
+     *         </ul>
+     */
+    public int getType() {
+        return type;
     }
 }
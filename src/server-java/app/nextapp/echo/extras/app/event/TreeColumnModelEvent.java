@@ -40,6 +40,8 @@ public class TreeColumnModelEvent extends EventObject {
 
     private int fromIndex;
     private int toIndex;
+    private int[] columnIndices;
+    private String propertyName;
 
     /**
      * Creates a new <code>TreeColumnModelEvent</code>.
@@ -56,6 +58,34 @@ public class TreeColumnModelEvent extends EventObject {
         this.toIndex = toIndex;
     }
     
+    /**
+     * Creates a new <code>TreeColumnModelEvent</code> describing a change
+     * of the given columns.
+     *
+     * @param source the updated <code>TableColumnModel</code>.
+     * @param columnIndices the indices of the changed columns 
+     *        (relevant to resize operations)
+     */
+    public TreeColumnModelEvent(TreeColumnModel source, int[] columnIndices) {
+        this(source, columnIndices.length == 1 ? columnIndices[0] : -1, 
+                columnIndices.length == 1 ? columnIndices[0] : -1);
+        this.columnIndices = columnIndices;
+    }
+    
+    /**
+     * Creates a new <code>TreeColumnModelEvent</code> describing a change
+     * of a property of the given columns.
+     *
+     * @param source the updated <code>TableColumnModel</code>.
+     * @param columnIndices the indices of the changed columns 
+     * @param propertyName the name of the changed <code>TreeColumn</code>
+     *        property
+     */
+    public TreeColumnModelEvent(TreeColumnModel source, int[] columnIndices, String propertyName) {
+        this(source, columnIndices);
+        this.propertyName = propertyName;
+    }
+    
     /**
      * Returns the index from which the column was moved or removed.
      * This method is only relevant to remove and move operations.
@@ -75,4 +105,32 @@ public class TreeColumnModelEvent extends EventObject {
     public int getToIndex() {
         return toIndex;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Returns the indices of the changed columns.
+     * This method is only relevant to resize operations.
+     *
+     * @return the indices of the changed columns, or an empty array if
+     *         the event does not describe the changed columns
+     */
+    public int[] getColumnIndices() {
+        if (columnIndices != null) {
+            return columnIndices;
+        } else if (fromIndex != -1 && fromIndex == toIndex) {
+            return new int[] { fromIndex };
+        } else {
+            return new int[0];
+        }
+    }
+    
+    /**
+     * Returns the name of the changed <code>TreeColumn</code> property.
+     * This method is only relevant to resize operations.
+     *
+     * @return the name of the property, or <code>null</code> if the event
+     *         does not describe the changed property
+     */
+    public String getPropertyName() {
+        return propertyName;
+    }
+}
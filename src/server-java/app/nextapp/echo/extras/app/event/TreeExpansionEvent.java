@@ -37,14 +37,44 @@ import nextapp.echo.extras.app.tree.TreePath;
 public class TreeExpansionEvent extends EventObject {
 
     private final TreePath path;
+    private final TreePath[] paths;
 
     public TreeExpansionEvent(Tree source, TreePath path) {
         super(source);
         this.path = path;
+        this.paths = new TreePath[] { path };
     }
     
+    /**
+     * Creates an event for the change of the expansion state of several 
+     * paths, delivered to <code>TreeExpansionBatchListener</code>s.
+     * 
+     * @param source the tree
+     * @param paths the paths whose expansion state changed, not empty
+     */
+    public TreeExpansionEvent(Tree source, TreePath[] paths) {
+        super(source);
+        this.path = paths[0];
+        this.paths = paths;
+    }
+    
+    /**
+     * Returns the changed path, or the first changed path if the expansion
+     * state of several paths changed.
+     * 
+     * @return the path
+     */
     public TreePath getPath() {
         return path;
     }
     
+    /**
+     * Returns all paths whose expansion state changed.
+     * 
+     * @return the paths
+     */
+    public TreePath[] getPaths() {
+        return paths;
+    }
+    
 }
@@ -0,0 +1,358 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.serial;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import nextapp.echo.app.serial.PropertyPeerFactory;
+import nextapp.echo.app.serial.SerialContext;
+import nextapp.echo.app.serial.SerialException;
+import nextapp.echo.app.serial.SerialPropertyPeer;
+import nextapp.echo.app.util.Context;
+
+/**
+ * Writes model data as XML directly to a <code>Writer</code>, in a single pass and without building a DOM.
+ * <p>
+ * Model values are written as the content of property elements in the format of their 
+ * <code>SerialPropertyPeer</code>s.  <code>String</code>, <code>Number</code> and <code>Boolean</code> values are
+ * written directly.  Values of other types are rendered by their peer into an element of the document of the 
+ * <code>SerialContext</code>, which is then written to the stream.
+ * <p>
+ * The writer does not validate the structure of the written XML.
+ */
+public class ModelXmlWriter {
+    
+    private Writer out;
+    private Context context;
+    private PropertyPeerFactory factory;
+    
+    /**
+     * The names of the open elements.
+     */
+    private List elementNames = new ArrayList();
+    
+    /**
+     * Flag indicating whether the start tag of the current element is not yet closed, i.e., attributes may be added.
+     */
+    private boolean startTagOpen;
+    
+    /**
+     * Buffer in which the digits of integer values are formatted.
+     */
+    private char[] digits = new char[20];
+    
+    /**
+     * Creates a new <code>ModelXmlWriter</code>.
+     * 
+     * @param out the <code>Writer</code> to write to, encoding characters as UTF-8
+     * @param context the <code>Context</code> providing the <code>PropertyPeerFactory</code> and 
+     *        <code>SerialContext</code> used to render values of other types than <code>String</code>, 
+     *        <code>Number</code> and <code>Boolean</code>
+     */
+    public ModelXmlWriter(Writer out, Context context) {
+        super();
+        this.out = out;
+        this.context = context;
+    }
+    
+    /**
+     * Closes the start tag of the current element, if still open.
+     */
+    private void closeStartTag() 
+    throws IOException {
+        if (startTagOpen) {
+            out.write('>');
+            startTagOpen = false;
+        }
+    }
+    
+    /**
+     * Flushes the underlying <code>Writer</code>.
+     * 
+     * @throws IOException
+     */
+    public void flush() 
+    throws IOException {
+        out.flush();
+    }
+    
+    /**
+     * Writes a <code>double</code> value as text content of the current element, in the format of 
+     * <code>Double.toString()</code>.
+     * 
+     * @param value the value
+     * @throws IOException
+     */
+    public void writeDouble(double value)
+    throws IOException {
+        closeStartTag();
+        if (value == (long) value && value != 0.0 && value > -1e7 && value < 1e7) {
+            // Integral values are written without allocating a string.
+            writeLong((long) value);
+            out.write(".0");
+        } else {
+            out.write(Double.toString(value));
+        }
+    }
+    
+    /**
+     * Writes an <code>int</code> value as text content of the current element.
+     * 
+     * @param value the value
+     * @throws IOException
+     */
+    public void writeInt(int value)
+    throws IOException {
+        writeLong(value);
+    }
+    
+    /**
+     * Writes a <code>long</code> value as text content of the current element, without allocating a string.
+     * 
+     * @param value the value
+     * @throws IOException
+     */
+    public void writeLong(long value)
+    throws IOException {
+        closeStartTag();
+        if (value == Long.MIN_VALUE) {
+            out.write(Long.toString(value));
+            return;
+        }
+        boolean negative = value < 0;
+        if (negative) {
+            value = -value;
+        }
+        int position = digits.length;
+        do {
+            digits[--position] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        if (negative) {
+            digits[--position] = '-';
+        }
+        out.write(digits, position, digits.length - position);
+    }
+    
+    /**
+     * Writes an attribute of the current element.  Must be invoked before any content of the element is written.
+     * 
+     * @param name the attribute name
+     * @param value the attribute value
+     * @throws IOException
+     */
+    public void writeAttribute(String name, String value)
+    throws IOException {
+        if (!startTagOpen) {
+            throw new IllegalStateException("Attributes must be written before the content of an element.");
+        }
+        out.write(' ');
+        out.write(name);
+        out.write("=\"");
+        writeEscaped(value, true);
+        out.write('"');
+    }
+    
+    /**
+     * Writes the XML declaration.  Must be invoked before any element is written.
+     * 
+     * @throws IOException
+     */
+    public void writeDeclaration()
+    throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    }
+    
+    /**
+     * Writes the end of the current element.
+     * 
+     * @throws IOException
+     */
+    public void writeEndElement() 
+    throws IOException {
+        String name = (String) elementNames.remove(elementNames.size() - 1);
+        if (startTagOpen) {
+            out.write("/>");
+            startTagOpen = false;
+        } else {
+            out.write("</");
+            out.write(name);
+            out.write('>');
+        }
+    }
+    
+    /**
+     * Writes text, escaping markup characters.
+     * 
+     * @param text the text
+     * @param attribute true if the text is an attribute value
+     */
+    private void writeEscaped(String text, boolean attribute)
+    throws IOException {
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; ++i) {
+            String replacement;
+            switch (text.charAt(i)) {
+            case '&':
+                replacement = "&amp;";
+                break;
+            case '<':
+                replacement = "&lt;";
+                break;
+            case '>':
+                replacement = "&gt;";
+                break;
+            case '\r':
+                replacement = "&#13;";
+                break;
+            case '"':
+                replacement = attribute ? "&quot;" : null;
+                break;
+            case '\n':
+                replacement = attribute ? "&#10;" : null;
+                break;
+            case '\t':
+                replacement = attribute ? "&#9;" : null;
+                break;
+            default:
+                replacement = null;
+            }
+            if (replacement != null) {
+                if (i > start) {
+                    out.write(text, start, i - start);
+                }
+                out.write(replacement);
+                start = i + 1;
+            }
+        }
+        if (length > start) {
+            out.write(text, start, length - start);
+        }
+    }
+    
+    /**
+     * Writes the attributes and content of a DOM element as the attributes and content of the current element.
+     * 
+     * @param element the DOM element
+     */
+    private void writeNodeContent(Element element) 
+    throws IOException {
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); ++i) {
+            Node attribute = attributes.item(i);
+            writeAttribute(attribute.getNodeName(), attribute.getNodeValue());
+        }
+        Node node = element.getFirstChild();
+        while (node != null) {
+            switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                writeStartElement(node.getNodeName());
+                writeNodeContent((Element) node);
+                writeEndElement();
+                break;
+            case Node.TEXT_NODE:
+            case Node.CDATA_SECTION_NODE:
+                writeText(node.getNodeValue());
+                break;
+            }
+            node = node.getNextSibling();
+        }
+    }
+    
+    /**
+     * Writes the start of an element.  The start tag is closed when content or another element is written.
+     * 
+     * @param name the element name
+     * @throws IOException
+     */
+    public void writeStartElement(String name)
+    throws IOException {
+        closeStartTag();
+        out.write('<');
+        out.write(name);
+        elementNames.add(name);
+        startTagOpen = true;
+    }
+    
+    /**
+     * Writes text content of the current element.
+     * 
+     * @param text the text
+     * @throws IOException
+     */
+    public void writeText(String text)
+    throws IOException {
+        closeStartTag();
+        writeEscaped(text, false);
+    }
+    
+    /**
+     * Writes a model value as the attributes and content of the current element, which has to be a property element 
+     * without attributes or content.  Nothing is written for <code>null</code> values.
+     * 
+     * @param value the model value
+     * @param objectClass the class of the object containing the value, provided to the 
+     *        <code>SerialPropertyPeer</code> of the value
+     * @throws IOException
+     * @throws SerialException
+     */
+    public void writeValue(Object value, Class objectClass)
+    throws IOException, SerialException {
+        if (value == null) {
+            return;
+        } else if (value instanceof String) {
+            writeText((String) value);
+        } else if (value instanceof Number) {
+            writeAttribute("t", "n");
+            writeText(value.toString());
+        } else if (value instanceof Boolean) {
+            writeAttribute("t", "b");
+            writeText(value.toString());
+        } else {
+            if (factory == null) {
+                factory = (PropertyPeerFactory) context.get(PropertyPeerFactory.class);
+            }
+            Document document = ((SerialContext) context.get(SerialContext.class)).getDocument();
+            Element propertyElement = document.createElement("p");
+            SerialPropertyPeer peer = factory.getPeerForProperty(value.getClass());
+            peer.toXml(context, objectClass, propertyElement, value);
+            writeNodeContent(propertyElement);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.tree;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Base class for <code>AsyncTreeModel</code>s. Subclasses load the children
+ * of a node in <code>loadChildren()</code>, which is invoked on a background
+ * thread. While the children of a node are loading, the node has a single
+ * <code>LoadingNode</code> child, displayed as the loading text in the first
+ * column.
+ */
+public abstract class AbstractAsyncTreeModel extends AbstractTreeModel 
+implements AsyncTreeModel {
+    
+    /**
+     * The placeholder child of a node whose children are being loaded.
+     */
+    public static class LoadingNode 
+    implements Serializable {
+        
+        private Serializable parent;
+        
+        private LoadingNode(Serializable parent) {
+            this.parent = parent;
+        }
+        
+        /**
+         * Returns the node whose children are being loaded.
+         * 
+         * @return the parent node
+         */
+        public Serializable getParent() {
+            return parent;
+        }
+        
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        public boolean equals(Object o) {
+            return o instanceof LoadingNode && parent.equals(((LoadingNode) o).parent);
+        }
+        
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+        public int hashCode() {
+            return parent.hashCode();
+        }
+    }
+    
+    /**
+     * The default text displayed for nodes whose children are being loaded.
+     */
+    public static final String DEFAULT_LOADING_TEXT = "Loading...";
+    
+    private Map childrenMap = new HashMap();
+    private Set loadingParents = new HashSet();
+    private String loadingText = DEFAULT_LOADING_TEXT;
+    
+    /**
+     * Loads the children of <code>parent</code>. This method is invoked on a
+     * background thread, and may not modify the model.
+     * 
+     * @param parent the parent node
+     * @return the <code>List</code> of child nodes
+     * @throws Exception if the children could not be loaded
+     */
+    protected abstract List loadChildren(Serializable parent) 
+    throws Exception;
+    
+    /**
+     * Returns the value to be displayed for a node that is not a 
+     * <code>LoadingNode</code>.
+     * 
+     * @param node the node
+     * @param columnIndex the column index
+     * @return the column value
+     * @see TreeModel#getValueAt(Serializable, int)
+     */
+    protected abstract Serializable getNodeValueAt(Serializable node, int columnIndex);
+    
+    /**
+     * Determines whether a node that is not a <code>LoadingNode</code> is a
+     * leaf. This method is invoked before the children of the node are
+     * loaded, and should not require them.
+     * 
+     * @param node the node
+     * @return true if the node is a leaf
+     * @see TreeModel#isLeaf(Serializable)
+     */
+    protected abstract boolean isLeafNode(Serializable node);
+    
+    /**
+     * Returns the text displayed for nodes whose children are being loaded.
+     * 
+     * @return the loading text
+     */
+    public String getLoadingText() {
+        return loadingText;
+    }
+    
+    /**
+     * Sets the text displayed for nodes whose children are being loaded.
+     * 
+     * @param newValue the new loading text
+     */
+    public void setLoadingText(String newValue) {
+        loadingText = newValue;
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getChild(java.io.Serializable, int)
+     */
+    public Serializable getChild(Serializable parent, int index) {
+        if (loadingParents.contains(parent)) {
+            if (index != 0) {
+                throw new IndexOutOfBoundsException("Invalid child index: " + index);
+            }
+            return new LoadingNode(parent);
+        }
+        List children = (List) childrenMap.get(parent);
+        if (children == null) {
+            throw new IndexOutOfBoundsException("Children have not been loaded for node " + parent);
+        }
+        return (Serializable) children.get(index);
+    }
+
+    /**
+     * Returns the number of loaded children of <code>parent</code>, 1 if 
+     * the children are being loaded, or 0 if they have not been loaded.
+     * 
+     * @see nextapp.echo.extras.app.tree.TreeModel#getChildCount(java.io.Serializable)
+     */
+    public int getChildCount(Serializable parent) {
+        if (loadingParents.contains(parent)) {
+            return 1;
+        }
+        List children = (List) childrenMap.get(parent);
+        return children == null ? 0 : children.size();
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getIndexOfChild(java.io.Serializable, java.io.Serializable)
+     */
+    public int getIndexOfChild(Serializable parent, Serializable child) {
+        if (loadingParents.contains(parent)) {
+            return child instanceof LoadingNode ? 0 : -1;
+        }
+        List children = (List) childrenMap.get(parent);
+        return children == null ? -1 : children.indexOf(child);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getValueAt(java.io.Serializable, int)
+     */
+    public Serializable getValueAt(Serializable node, int columnIndex) {
+        if (node instanceof LoadingNode) {
+            return columnIndex == 0 ? loadingText : null;
+        }
+        return getNodeValueAt(node, columnIndex);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#isLeaf(java.io.Serializable)
+     */
+    public boolean isLeaf(Serializable object) {
+        return object instanceof LoadingNode || isLeafNode(object);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.AsyncTreeModel#isChildrenLoaded(java.io.Serializable)
+     */
+    public boolean isChildrenLoaded(Serializable parent) {
+        return childrenMap.containsKey(parent);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.AsyncTreeModel#isLoading(java.io.Serializable)
+     */
+    public boolean isLoading(Serializable parent) {
+        return loadingParents.contains(parent);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.AsyncTreeModel#startLoading(java.io.Serializable)
+     */
+    public Callable startLoading(final Serializable parent) {
+        loadingParents.add(parent);
+        return new Callable() {
+            public Object call() throws Exception {
+                return loadChildren(parent);
+            }
+        };
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.AsyncTreeModel#finishLoading(
+     *      nextapp.echo.extras.app.tree.TreePath, java.util.List)
+     */
+    public void finishLoading(TreePath parentPath, List children) {
+        Serializable parent = parentPath.getLastPathComponent();
+        loadingParents.remove(parent);
+        childrenMap.put(parent, new ArrayList(children));
+        fireTreeStructureChanged(this, parentPath.getPath(), null, null);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.AsyncTreeModel#cancelLoading(nextapp.echo.extras.app.tree.TreePath)
+     */
+    public void cancelLoading(TreePath parentPath) {
+        if (loadingParents.remove(parentPath.getLastPathComponent())) {
+            fireTreeStructureChanged(this, parentPath.getPath(), null, null);
+        }
+    }
+    
+    /**
+     * Discards the loaded children of the node at <code>parentPath</code>, 
+     * so that they are loaded again the next time the node is rendered
+     * expanded.
+     * 
+     * @param parentPath the path of the parent node
+     */
+    public void reload(TreePath parentPath) {
+        if (childrenMap.remove(parentPath.getLastPathComponent()) != null) {
+            fireTreeStructureChanged(this, parentPath.getPath(), null, null);
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package nextapp.echo.extras.app.tree;
 
-import java.util.Map;
+import java.util.EventListener;
 import java.util.Vector;
 
 import nextapp.echo.app.event.EventListenerList;
@@ -9,6 +9,17 @@ import nextapp.echo.extras.app.event.TreeModelListener;
 
 public abstract class AbstractTreeNode implements TreeNode {
 
+    /**
+     * Key of the listeners registered with 
+     * {@link AbstractTreeNode#addSubtreeTreeModelListener(TreeModelListener)}.
+     */
+    private static interface SubtreeTreeModelListener extends TreeModelListener { }
+    
+    private static final int NODES_CHANGED = 0;
+    private static final int NODES_INSERTED = 1;
+    private static final int NODES_REMOVED = 2;
+    private static final int STRUCTURE_CHANGED = 3;
+    
     protected EventListenerList listenerList = new EventListenerList();
 
     public void addTreeModelListener(TreeModelListener listener) {
@@ -19,6 +30,79 @@ public abstract class AbstractTreeNode implements TreeNode {
         listenerList.removeListener(TreeModelListener.class, l);
     }
     
+    /**
+     * Adds a listener to receive the events generated by this node and by all
+     * of its descendants extending <code>AbstractTreeNode</code>. The events
+     * of the descendants are propagated along the <code>getParent()</code> 
+     * chain, so that a single listener on the root node receives the events 
+     * of an entire tree.
+     * 
+     * @param listener the listener to add
+     */
+    public void addSubtreeTreeModelListener(TreeModelListener listener) {
+        listenerList.addListener(SubtreeTreeModelListener.class, listener);
+    }
+    
+    /**
+     * Removes a listener added with 
+     * {@link #addSubtreeTreeModelListener(TreeModelListener)}.
+     * 
+     * @param listener the listener to remove
+     */
+    public void removeSubtreeTreeModelListener(TreeModelListener listener) {
+        listenerList.removeListener(SubtreeTreeModelListener.class, listener);
+    }
+    
+    /**
+     * Determines whether an event generated by this node is received by any
+     * listener, either of this node or of an ancestor.
+     */
+    private boolean hasTreeModelListeners() {
+        if (listenerList.getListenerCount(TreeModelListener.class) > 0) {
+            return true;
+        }
+        for (TreeNode node = this; node != null; node = node.getParent()) {
+            if (node instanceof AbstractTreeNode 
+                    && ((AbstractTreeNode) node).listenerList.getListenerCount(SubtreeTreeModelListener.class) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Notifies the listeners of this node, and the subtree listeners of this
+     * node and its ancestors.
+     */
+    private void dispatch(int type, TreeModelEvent e) {
+        dispatch(type, e, listenerList.getListeners(TreeModelListener.class));
+        for (TreeNode node = this; node != null; node = node.getParent()) {
+            if (node instanceof AbstractTreeNode) {
+                dispatch(type, e, ((AbstractTreeNode) node).listenerList.getListeners(SubtreeTreeModelListener.class));
+            }
+        }
+    }
+    
+    private static void dispatch(int type, TreeModelEvent e, EventListener[] listeners) {
+        for (int i = 0; i < listeners.length; ++i) {
+            TreeModelListener listener = (TreeModelListener) listeners[i];
+            switch (type) {
+            case NODES_CHANGED:
+                listener.treeNodesChanged(e);
+                break;
+            case NODES_INSERTED:
+                listener.treeNodesAdded(e);
+                break;
+            case NODES_REMOVED:
+                listener.treeNodesRemoved(e);
+                break;
+            case STRUCTURE_CHANGED:
+                listener.treeStructureChanged(e);
+                break;
+            }
+        }
+    }
+    
     private Object[] getPathToRoot(TreeNode node) {
         Vector path = new Vector();
         TreeNode currNode = node;
@@ -57,16 +141,9 @@ public abstract class AbstractTreeNode implements TreeNode {
      * @see EventListenerList
      */
     protected void fireTreeNodesChanged(TreeNode parent, int[] childIndices) {
-        // Guaranteed to return a non-null array
-        Object[] listeners = listenerList.getListeners(TreeModelListener.class);
-        
-        TreeModelEvent e = null;
-        for (int i = 0; i < listeners.length; ++i) {
-            // Lazily create the event:
-            if (e == null) {
-                e = new TreeModelEvent(parent, getPathToRoot(parent), childIndices, getChildren(parent, childIndices));
-            }
-            ((TreeModelListener) listeners[i]).treeNodesChanged(e);
+        if (hasTreeModelListeners()) {
+            dispatch(NODES_CHANGED, 
+                    new TreeModelEvent(parent, getPathToRoot(parent), childIndices, getChildren(parent, childIndices)));
         }
     }
 
@@ -82,15 +159,8 @@ public abstract class AbstractTreeNode implements TreeNode {
      * @see EventListenerList
      */
     protected void fireTreeNodesInserted(int[] childIndices) {
-        // Guaranteed to return a non-null array
-        Object[] listeners = listenerList.getListeners(TreeModelListener.class);
-        TreeModelEvent e = null;
-        for (int i = 0; i < listeners.length; i++) {
-            // Lazily create the event:
-            if (e == null) {
-                e = new TreeModelEvent(this, getPathToRoot(this), childIndices, getChildren(childIndices));
-            }
-            ((TreeModelListener) listeners[i]).treeNodesAdded(e);
+        if (hasTreeModelListeners()) {
+            dispatch(NODES_INSERTED, new TreeModelEvent(this, getPathToRoot(this), childIndices, getChildren(childIndices)));
         }
     }
 
@@ -106,15 +176,8 @@ public abstract class AbstractTreeNode implements TreeNode {
      * @see EventListenerList
      */
     protected void fireTreeNodesRemoved(int[] childIndices, TreeNode[] children) {
-        // Guaranteed to return a non-null array
-        Object[] listeners = listenerList.getListeners(TreeModelListener.class);
-        TreeModelEvent e = null;
-        for (int i = 0; i < listeners.length; i++) {
-            // Lazily create the event:
-            if (e == null) {
-                e = new TreeModelEvent(this, getPathToRoot(this), childIndices, children);
-            }
-            ((TreeModelListener) listeners[i]).treeNodesRemoved(e);
+        if (hasTreeModelListeners()) {
+            dispatch(NODES_REMOVED, new TreeModelEvent(this, getPathToRoot(this), childIndices, children));
         }
     }
 
@@ -130,14 +193,9 @@ public abstract class AbstractTreeNode implements TreeNode {
      * @see EventListenerList
      */
     protected void fireTreeStructureChanged(int[] childIndices) {
-        // Guaranteed to return a non-null array
-        Object[] listeners = listenerList.getListeners(TreeModelListener.class);
-        TreeModelEvent e = null;
-        for (int i = 0; i < listeners.length; i++) {
-            // Lazily create the event:
-            if (e == null)
-                e = new TreeModelEvent(this, getPathToRoot(this), childIndices, getChildren(childIndices));
-            ((TreeModelListener) listeners[i]).treeStructureChanged(e);
+        if (hasTreeModelListeners()) {
+            dispatch(STRUCTURE_CHANGED, 
+                    new TreeModelEvent(this, getPathToRoot(this), childIndices, getChildren(childIndices)));
         }
     }
 
@@ -0,0 +1,97 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.tree;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * A <code>TreeModel</code> whose child nodes are loaded asynchronously.
+ * <p>
+ * When a <code>Tree</code> renders an expanded node whose children are not
+ * yet loaded, it invokes <code>startLoading()</code> and runs the returned
+ * task on its child loader executor. While the children are loading, the
+ * model should report a single placeholder child for the node. Once the 
+ * task has completed, the tree invokes <code>finishLoading()</code> from
+ * the user interface thread, and the model fires a structure change for the
+ * node.
+ * 
+ * @see nextapp.echo.extras.app.Tree#setChildLoaderExecutor(java.util.concurrent.Executor)
+ */
+public interface AsyncTreeModel 
+extends TreeModel {
+    
+    /**
+     * Determines whether the children of <code>parent</code> have been
+     * loaded.
+     * 
+     * @param parent the parent node
+     * @return true if the children have been loaded
+     */
+    public boolean isChildrenLoaded(Serializable parent);
+    
+    /**
+     * Determines whether the children of <code>parent</code> are currently
+     * being loaded.
+     * 
+     * @param parent the parent node
+     * @return true if the children are being loaded
+     */
+    public boolean isLoading(Serializable parent);
+    
+    /**
+     * Marks the children of <code>parent</code> as being loaded, and returns
+     * the task that loads them. The task is run on a background thread, and
+     * must return the <code>List</code> of child nodes without modifying the
+     * model.
+     * 
+     * @param parent the parent node
+     * @return the task that loads the child nodes
+     */
+    public Callable startLoading(Serializable parent);
+    
+    /**
+     * Sets the children of the node at <code>parentPath</code> to the 
+     * result of its load task. Invoked from the user interface thread.
+     * 
+     * @param parentPath the path of the parent node
+     * @param children the loaded child nodes
+     */
+    public void finishLoading(TreePath parentPath, List children);
+    
+    /**
+     * Cancels loading the children of the node at <code>parentPath</code>.
+     * The children will be loaded again the next time the node is expanded.
+     * 
+     * @param parentPath the path of the parent node
+     */
+    public void cancelLoading(TreePath parentPath);
+}
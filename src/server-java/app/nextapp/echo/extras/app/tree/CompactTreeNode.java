@@ -0,0 +1,396 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.tree;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A memory-compact implementation of the {@link TreeNode} interface,
+ * intended for large trees.
+ * <p>
+ * The children are stored in an unsynchronized array, each
+ * <code>CompactTreeNode</code> child knowing its own index, so that
+ * {@link #getIndexOf(TreeNode)} and {@link #getNodeForPath(TreePath)} do
+ * not need to search the children.
+ * <p>
+ * The column values are stored in an array ordered by the column keys. The
+ * array of column keys is meant to be shared by all nodes of a tree, and is
+ * used by {@link TreeNodeModel} to retrieve the column values by index.
+ * Values of keys that are not part of the column keys are ignored.
+ */
+public class CompactTreeNode extends AbstractTreeNode {
+
+    private static final TreeNode[] EMPTY_CHILDREN = new TreeNode[0];
+    private static final String[] EMPTY_KEYS = new String[0];
+    private static final Object[] EMPTY_VALUES = new Object[0];
+
+    /**
+     * The parent node for this TreeNode. If null, this is either
+     * a root node or a tree fragment.
+     */
+    private TreeNode parent;
+
+    /**
+     * The index of this node within the children of its parent.
+     */
+    private int index;
+
+    /**
+     * The child nodes of this node, the first <code>childCount</code>
+     * entries are used.
+     */
+    private TreeNode[] children = EMPTY_CHILDREN;
+
+    /**
+     * The number of child nodes of this node.
+     */
+    private int childCount;
+
+    /**
+     * The keys of the columns, shared between nodes.
+     */
+    private String[] columnKeys;
+
+    /**
+     * The values of the columns, in the order of the column keys.
+     */
+    private Object[] columnValues;
+
+    /**
+     * Whether this node is a leaf node. If null, then indicates that
+     * we are a leaf if we have no children.
+     */
+    private Boolean isLeaf;
+
+    /**
+     * Creates a new <code>CompactTreeNode</code> without columns.
+     */
+    public CompactTreeNode() {
+        this(null, null, null);
+    }
+
+    /**
+     * Creates a new <code>CompactTreeNode</code>.
+     *
+     * @param columnKeys the keys of the columns, should be the same array
+     *        for all nodes of a tree
+     * @param columnValues the values of the columns, in the order of the
+     *        column keys, the array is not copied
+     */
+    public CompactTreeNode(String[] columnKeys, Object[] columnValues) {
+        this(columnKeys, columnValues, null);
+    }
+
+    /**
+     * Creates a new <code>CompactTreeNode</code>.
+     *
+     * @param columnKeys the keys of the columns, should be the same array
+     *        for all nodes of a tree
+     * @param columnValues the values of the columns, in the order of the
+     *        column keys, the array is not copied
+     * @param isLeaf whether the node is a leaf node, <code>null</code> if the
+     *        node is a leaf if it has no children
+     */
+    public CompactTreeNode(String[] columnKeys, Object[] columnValues, Boolean isLeaf) {
+        super();
+        this.columnKeys = columnKeys == null ? EMPTY_KEYS : columnKeys;
+        if (columnValues == null) {
+            this.columnValues = this.columnKeys.length == 0 ? EMPTY_VALUES : new Object[this.columnKeys.length];
+        } else if (columnValues.length != this.columnKeys.length) {
+            throw new IllegalArgumentException("Expected " + this.columnKeys.length + " column values, got "
+                    + columnValues.length);
+        } else {
+            this.columnValues = columnValues;
+        }
+        this.isLeaf = isLeaf;
+    }
+
+    /**
+     * Adds a child to this node at the end of the child nodes list
+     */
+    public void addChild(TreeNode node) {
+        node.setParent(this);
+        int childIndex = append(node);
+        fireTreeNodesInserted(new int[] {childIndex});
+    }
+
+    /**
+     * Adds the nodes of a collection at the end of the child nodes list.
+     * A single event is fired for all nodes.
+     *
+     * @param nodes the <code>TreeNode</code>s to add
+     */
+    public void addChildren(Collection nodes) {
+        if (nodes.isEmpty()) {
+            return;
+        }
+        int[] childIndices = new int[nodes.size()];
+        ensureCapacity(childCount + childIndices.length);
+        int i = 0;
+        for (Iterator it = nodes.iterator(); it.hasNext(); ++i) {
+            TreeNode node = (TreeNode) it.next();
+            node.setParent(this);
+            childIndices[i] = append(node);
+        }
+        fireTreeNodesInserted(childIndices);
+    }
+
+    /**
+     * Appends a node whose parent has already been set to this node.
+     *
+     * @return the index of the node
+     */
+    private int append(TreeNode node) {
+        ensureCapacity(childCount + 1);
+        if (node instanceof CompactTreeNode) {
+            ((CompactTreeNode) node).index = childCount;
+        }
+        children[childCount] = node;
+        return childCount++;
+    }
+
+    /**
+     * Ensures that the child array can hold <code>capacity</code> nodes.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= children.length) {
+            return;
+        }
+        TreeNode[] newChildren = new TreeNode[Math.max(capacity, Math.max(4, children.length + (children.length >> 1)))];
+        System.arraycopy(children, 0, newChildren, 0, childCount);
+        children = newChildren;
+    }
+
+    /**
+     * Reduces the capacity of the child array to the number of children.
+     */
+    public void trimToSize() {
+        if (childCount < children.length) {
+            TreeNode[] newChildren = childCount == 0 ? EMPTY_CHILDREN : new TreeNode[childCount];
+            System.arraycopy(children, 0, newChildren, 0, childCount);
+            children = newChildren;
+        }
+    }
+
+    /**
+     * Returns the node at the specified index.
+     * @throws ArrayIndexOutOfBoundsException if the index is out of range for the child list
+     */
+    public TreeNode getChild(int index) {
+        if (index < 0 || index >= childCount) {
+            throw new ArrayIndexOutOfBoundsException("Index "
+                    + index
+                    + " is not in range 0 <= index < "
+                    + childCount);
+        }
+        return children[index];
+    }
+
+    /**
+     * Returns the number of children this node holds
+     */
+    public int getChildCount() {
+        return childCount;
+    }
+
+    /**
+     * Returns the keys of the columns.
+     */
+    public String[] getColumnKeys() {
+        return columnKeys;
+    }
+
+    /**
+     * Returns the value of a column.
+     *
+     * @param columnIndex the index of the column within the column keys
+     */
+    public Object getColumnValue(int columnIndex) {
+        return columnValues[columnIndex];
+    }
+
+    /**
+     * Sets the value of a column.
+     *
+     * @param columnIndex the index of the column within the column keys
+     * @param value the new value
+     */
+    public void setColumnValue(int columnIndex, Object value) {
+        columnValues[columnIndex] = value;
+        fireColumnValuesChanged();
+    }
+
+    /**
+     * Returns an unmodifiable map of the nodes column values, in the order
+     * of the column keys.
+     */
+    public Map getColumnValues() {
+        Map map = new LinkedHashMap();
+        for (int i = 0; i < columnKeys.length; ++i) {
+            map.put(columnKeys[i], columnValues[i]);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Sets the column values from the values of the column keys in the
+     * given map.
+     */
+    public void setColumnValues(Map values) {
+        Object[] newValues = columnKeys.length == 0 ? EMPTY_VALUES : new Object[columnKeys.length];
+        for (int i = 0; i < columnKeys.length; ++i) {
+            newValues[i] = values.get(columnKeys[i]);
+        }
+        columnValues = newValues;
+        fireColumnValuesChanged();
+    }
+
+    private void fireColumnValuesChanged() {
+        if (parent != null) {
+            fireTreeNodesChanged(parent, new int[] {parent.getIndexOf(this)});
+        }
+    }
+
+    /**
+     * Retrieves the node at the end of the given path.
+     * The path must start with this node or an IllegalStateException will be thrown.
+     */
+    public TreeNode getNodeForPath(TreePath path) {
+        int pathCount = path.getPathCount();
+        if (pathCount == 0) {
+            throw new IllegalStateException("Empty path");
+        } else if (path.getPathComponent(0) != this) {
+            throw new IllegalStateException("Path does not start at this node");
+        }
+        TreeNode node = this;
+        for (int i = 1; i < pathCount; ++i) {
+            Object child = path.getPathComponent(i);
+            if (!(child instanceof TreeNode) || node.getIndexOf((TreeNode) child) == -1) {
+                throw new IllegalArgumentException("Path is not valid due to child not found: "
+                        + path);
+            }
+            node = (TreeNode) child;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the current parent of this node
+     */
+    public TreeNode getParent() {
+        return parent;
+    }
+
+    /**
+     * Sets the current parent of this node.
+     */
+    public void setParent(TreeNode node) {
+        if (parent != null)
+            parent.removeChild(this);
+        parent = node;
+    }
+
+    /**
+     * Whether this node is a leaf node
+     */
+    public boolean isLeaf() {
+        if (isLeaf != null)
+            return isLeaf.booleanValue();
+
+        return childCount == 0;
+    }
+
+    /**
+     * Sets whether this node is a leaf node. If set to null, then the node will be a leaf node if
+     * it has no children.
+     * @param isLeaf
+     */
+    public void setLeaf(Boolean isLeaf) {
+        this.isLeaf = isLeaf;
+    }
+
+    /**
+     * Clears the list of children for this node
+     */
+    public void removeAllChildren() {
+        int[] childIndices = new int[childCount];
+        TreeNode[] childNodes = new TreeNode[childCount];
+        for (int i = 0; i < childIndices.length; i++) {
+            childIndices[i] = i;
+        }
+        System.arraycopy(children, 0, childNodes, 0, childCount);
+        children = EMPTY_CHILDREN;
+        childCount = 0;
+        for (int i = 0; i < childNodes.length; i++) {
+            childNodes[i].setParent(null);
+        }
+        fireTreeNodesRemoved(childIndices, childNodes);
+    }
+
+    /**
+     * Removes the specified node from the list of children. If the node is not in the list of
+     * children, this does nothing.
+     */
+    public void removeChild(TreeNode node) {
+        int childIndex = getIndexOf(node);
+        if (childIndex == -1)
+            return;
+        System.arraycopy(children, childIndex + 1, children, childIndex, childCount - childIndex - 1);
+        children[--childCount] = null;
+        for (int i = childIndex; i < childCount; ++i) {
+            if (children[i] instanceof CompactTreeNode) {
+                ((CompactTreeNode) children[i]).index = i;
+            }
+        }
+        node.setParent(null);
+        fireTreeNodesRemoved(new int[] {childIndex}, new TreeNode[] {node});
+    }
+
+    /**
+     * Returns the index of the specified node in this node's child list, or -1 if the supplied node
+     * is not a child of this node.
+     */
+    public int getIndexOf(TreeNode node) {
+        if (node instanceof CompactTreeNode) {
+            int childIndex = ((CompactTreeNode) node).index;
+            return childIndex < childCount && children[childIndex] == node ? childIndex : -1;
+        }
+        for (int i = 0; i < childCount; ++i) {
+            if (children[i] == node) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
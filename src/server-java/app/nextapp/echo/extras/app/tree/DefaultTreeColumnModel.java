@@ -52,7 +52,8 @@ implements TreeColumnModel {
         
         public void propertyChange(PropertyChangeEvent evt) {
             int index = columns.indexOf(evt.getSource());
-            TreeColumnModelEvent event = new TreeColumnModelEvent(DefaultTreeColumnModel.this, index, index);
+            TreeColumnModelEvent event = new TreeColumnModelEvent(DefaultTreeColumnModel.this, new int[] { index }, 
+                    evt.getPropertyName());
             fireColumnResized(event);
         }
     };
@@ -31,7 +31,6 @@ package nextapp.echo.extras.app.tree;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.util.Arrays;
 import java.util.EventListener;
 import java.util.LinkedHashSet;
 
@@ -45,6 +44,12 @@ public class DefaultTreeSelectionModel implements TreeSelectionModel {
     private int selectionMode = SINGLE_SELECTION;
     private LinkedHashSet paths = new LinkedHashSet();
     
+    /**
+     * The selected paths in selection order, or null if they have changed 
+     * since the last invocation of <code>getSelectionPaths()</code>.
+     */
+    private transient TreePath[] selectionPaths;
+    
     /**
      * @see nextapp.echo.extras.app.tree.TreeSelectionModel#addChangeListener(nextapp.echo.app.event.ChangeListener)
      */
@@ -86,11 +91,17 @@ public class DefaultTreeSelectionModel implements TreeSelectionModel {
             this.paths.clear();
             changed |= this.paths.add(paths[0]);
             if (changed) {
+                selectionPaths = null;
             	fireValueChanged();
             	eventFired = true;
             }
         } else {
-            if (this.paths.addAll(Arrays.asList(paths))) {
+            boolean changed = false;
+            for (int i = 0; i < paths.length; ++i) {
+                changed |= this.paths.add(paths[i]);
+            }
+            if (changed) {
+                selectionPaths = null;
                 fireValueChanged();
                 eventFired = true;
             }
@@ -104,6 +115,7 @@ public class DefaultTreeSelectionModel implements TreeSelectionModel {
     public void clearSelection() {
         if (!isSelectionEmpty()) {
             paths.clear();
+            selectionPaths = null;
             fireValueChanged();
         }
     }
@@ -141,7 +153,10 @@ public class DefaultTreeSelectionModel implements TreeSelectionModel {
      * @see nextapp.echo.extras.app.tree.TreeSelectionModel#getSelectionPaths()
      */
     public TreePath[] getSelectionPaths() {
-        return (TreePath[]) paths.toArray(new TreePath[paths.size()]);
+        if (selectionPaths == null) {
+            selectionPaths = (TreePath[]) paths.toArray(new TreePath[paths.size()]);
+        }
+        return (TreePath[]) selectionPaths.clone();
     }
 
     /**
@@ -177,6 +192,7 @@ public class DefaultTreeSelectionModel implements TreeSelectionModel {
      */
     public void removeSelectionPath(TreePath path) {
         if (paths.remove(path)) {
+            selectionPaths = null;
             fireValueChanged();
         }
     }
@@ -185,7 +201,15 @@ public class DefaultTreeSelectionModel implements TreeSelectionModel {
      * @see nextapp.echo.extras.app.tree.TreeSelectionModel#removeSelectionPaths(nextapp.echo.extras.app.tree.TreePath[])
      */
     public void removeSelectionPaths(TreePath[] paths) {
-        if (this.paths.removeAll(Arrays.asList(paths))) {
+        if (paths == null) {
+            return;
+        }
+        boolean changed = false;
+        for (int i = 0; i < paths.length; ++i) {
+            changed |= this.paths.remove(paths[i]);
+        }
+        if (changed) {
+            selectionPaths = null;
             fireValueChanged();
         }
     }
@@ -202,6 +226,7 @@ public class DefaultTreeSelectionModel implements TreeSelectionModel {
             TreePath newPath = getSelectionPath();
             paths.clear();
             paths.add(newPath);
+            selectionPaths = null;
             fireValueChanged();
         }
         int oldValue = selectionMode;
@@ -227,6 +252,7 @@ public class DefaultTreeSelectionModel implements TreeSelectionModel {
     public void setSelectionPath(TreePath path) {
         boolean wasEmpty = isSelectionEmpty();
         paths.clear();
+        selectionPaths = null;
         boolean alreadyFired = addSelectionPath(path);
         if (!alreadyFired) {
 	        if (!wasEmpty || !isSelectionEmpty()) {
@@ -241,6 +267,7 @@ public class DefaultTreeSelectionModel implements TreeSelectionModel {
     public void setSelectionPaths(TreePath[] paths) {
         boolean wasEmpty = isSelectionEmpty();
         this.paths.clear();
+        selectionPaths = null;
         boolean alreadyFired = addSelectionPaths(paths);
         if (!alreadyFired) {
 	        if (!wasEmpty || !isSelectionEmpty()) {
@@ -0,0 +1,216 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.tree;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A view of a <code>TreeModel</code> containing only a set of matching
+ * nodes and their ancestors.
+ * <p>
+ * The children of a node are kept in the order of the underlying model. The
+ * view is not updated when the underlying model changes, and does not fire
+ * any events itself; {@link #setMatches(TreePath[])} must be invoked again
+ * after the underlying model has changed.
+ * <p>
+ * Nodes are identified by their value, the values of the nodes of the 
+ * underlying model must therefore be unique.
+ */
+public class FilteredTreeModel extends AbstractTreeModel {
+    
+    private static final long serialVersionUID = 1L;
+
+    private TreeModel model;
+    
+    /**
+     * Maps every visible node that has visible children to the 
+     * <code>List</code> of its visible children.
+     */
+    private Map visibleChildren = new HashMap();
+    
+    /**
+     * The paths of the visible nodes that have visible children.
+     */
+    private List parentPaths = new ArrayList();
+    
+    /**
+     * Creates a new <code>FilteredTreeModel</code> without any matches.
+     * 
+     * @param model the underlying model
+     */
+    public FilteredTreeModel(TreeModel model) {
+        this.model = model;
+    }
+    
+    /**
+     * Returns the underlying model.
+     * 
+     * @return the model
+     */
+    public TreeModel getModel() {
+        return model;
+    }
+    
+    /**
+     * Sets the matching nodes. Every ancestor of a matching node is visible.
+     * 
+     * @param matches the paths of the matching nodes, which must be paths of
+     *        the underlying model
+     */
+    public void setMatches(TreePath[] matches) {
+        visibleChildren = new HashMap();
+        parentPaths = new ArrayList();
+        Set visiblePaths = new HashSet();
+        for (int i = 0; i < matches.length; ++i) {
+            TreePath path = matches[i];
+            if (!visiblePaths.add(path)) {
+                continue;
+            }
+            // make the ancestors visible, up to the first one already visible
+            TreePath parentPath = path.getParentPath();
+            while (parentPath != null) {
+                Serializable parent = parentPath.getLastPathComponent();
+                List children = (List) visibleChildren.get(parent);
+                if (children == null) {
+                    children = new ArrayList();
+                    visibleChildren.put(parent, children);
+                    parentPaths.add(parentPath);
+                }
+                children.add(path.getLastPathComponent());
+                if (!visiblePaths.add(parentPath)) {
+                    break;
+                }
+                path = parentPath;
+                parentPath = path.getParentPath();
+            }
+        }
+        for (int i = 0; i < parentPaths.size(); ++i) {
+            Serializable parent = ((TreePath) parentPaths.get(i)).getLastPathComponent();
+            List children = (List) visibleChildren.get(parent);
+            if (children.size() > 1) {
+                // order the visible children by iterating the children of the model once
+                Set visible = new HashSet(children);
+                children.clear();
+                int childCount = model.getChildCount(parent);
+                for (int j = 0; j < childCount && children.size() < visible.size(); ++j) {
+                    Serializable child = model.getChild(parent, j);
+                    if (visible.contains(child)) {
+                        children.add(child);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the paths of the visible nodes that have visible children, 
+     * which are the paths to expand to show every matching node.
+     * 
+     * @return the paths
+     */
+    public TreePath[] getParentPaths() {
+        return (TreePath[]) parentPaths.toArray(new TreePath[parentPaths.size()]);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getChild(java.io.Serializable, int)
+     */
+    public Serializable getChild(Serializable parent, int index) {
+        List children = (List) visibleChildren.get(parent);
+        if (children == null) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return (Serializable) children.get(index);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getChildCount(java.io.Serializable)
+     */
+    public int getChildCount(Serializable parent) {
+        List children = (List) visibleChildren.get(parent);
+        return children == null ? 0 : children.size();
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getIndexOfChild(java.io.Serializable, java.io.Serializable)
+     */
+    public int getIndexOfChild(Serializable parent, Serializable child) {
+        List children = (List) visibleChildren.get(parent);
+        return children == null ? -1 : children.indexOf(child);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#isLeaf(java.io.Serializable)
+     */
+    public boolean isLeaf(Serializable object) {
+        return !visibleChildren.containsKey(object);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getRoot()
+     */
+    public Serializable getRoot() {
+        return model.getRoot();
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getValueAt(java.io.Serializable, int)
+     */
+    public Serializable getValueAt(Serializable node, int columnIndex) {
+        return model.getValueAt(node, columnIndex);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getColumnCount()
+     */
+    public int getColumnCount() {
+        return model.getColumnCount();
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getColumnName(int)
+     */
+    public String getColumnName(int column) {
+        return model.getColumnName(column);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getColumnClass(int)
+     */
+    public Class getColumnClass(int column) {
+        return model.getColumnClass(column);
+    }
+}
@@ -0,0 +1,67 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.tree;
+
+import nextapp.echo.app.Component;
+import nextapp.echo.extras.app.Tree;
+
+/**
+ * A <code>TreeCellRenderer</code> whose components can be reused for other
+ * cells.
+ * <p>
+ * A virtualized <code>Tree</code> keeps the components of rows that leave its
+ * window and reconfigures them for the rows that enter it, instead of
+ * disposing them and rendering new ones. A reused component keeps its place
+ * in the component hierarchy, so the client only receives the properties
+ * that have changed. The components of changed nodes are reconfigured in
+ * place, whether the tree is virtualized or not.
+ */
+public interface RecyclingTreeCellRenderer 
+extends TreeCellRenderer {
+    
+    /**
+     * Reconfigures a component previously returned by 
+     * <code>getTreeCellRendererComponent()</code> of this renderer to 
+     * display another cell.
+     * 
+     * @param component the component to reconfigure
+     * @param tree the tree
+     * @param treePath the path of the node of the cell
+     * @param value the value of the cell
+     * @param column the model index of the column of the cell
+     * @param row the row of the cell
+     * @param leaf whether the node of the cell is a leaf
+     * @return <code>true</code> if the component has been reconfigured, 
+     *         <code>false</code> if it can not display the cell and a new
+     *         component has to be rendered
+     */
+    public boolean recycleTreeCellRendererComponent(Component component, Tree tree, TreePath treePath, Object value, 
+            int column, int row, boolean leaf);
+}
@@ -0,0 +1,452 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.tree;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import nextapp.echo.extras.app.event.TreeModelEvent;
+import nextapp.echo.extras.app.event.TreeModelListener;
+
+/**
+ * A view of a <code>TreeModel</code> in which the children of every node
+ * are sorted by the values of a column.
+ * <p>
+ * The order of the children of a node is computed when they are first 
+ * accessed, and cached as a permutation of the child indices of the 
+ * underlying model. The permutation of a node is only discarded when the 
+ * children of that node are added, removed or changed, or when the node 
+ * itself is removed. Events of the underlying model are forwarded with the
+ * child indices of the view. When changed children have moved, the 
+ * structure of their parent is reported as changed.
+ * <p>
+ * Nodes are identified by their value, the values of the nodes of the 
+ * underlying model must therefore be unique.
+ */
+public class SortedTreeModel extends AbstractTreeModel {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * The order of the children of a single node.
+     */
+    private static class Permutation {
+        
+        /** The index in the underlying model of each child of the view. */
+        private int[] viewToModel;
+        
+        /** The index in the view of each child of the underlying model. */
+        private int[] modelToView;
+        
+        /** The children at the time of sorting, in the order of the model. */
+        private Object[] children;
+        
+        private Permutation(int[] viewToModel, Object[] children) {
+            this.viewToModel = viewToModel;
+            this.children = children;
+            modelToView = new int[viewToModel.length];
+            for (int i = 0; i < viewToModel.length; ++i) {
+                modelToView[viewToModel[i]] = i;
+            }
+        }
+    }
+
+    /**
+     * Orders values that are not ordered by a column comparator. 
+     * <code>null</code> comes first, mutually comparable values are 
+     * compared, and all other values are compared by their string 
+     * representation.
+     */
+    private static final Comparator DEFAULT_COMPARATOR = new Comparator() {
+        public int compare(Object o1, Object o2) {
+            if (o1 == null || o2 == null) {
+                return o1 == null ? (o2 == null ? 0 : -1) : 1;
+            }
+            if (o1 instanceof Comparable && o1.getClass() == o2.getClass()) {
+                return ((Comparable) o1).compareTo(o2);
+            }
+            return o1.toString().compareTo(o2.toString());
+        }
+    };
+    
+    /**
+     * Forwards the events of the underlying model.
+     */
+    private TreeModelListener modelListener = new TreeModelListener() {
+
+        /**
+         * @see nextapp.echo.extras.app.event.TreeModelListener#treeNodesAdded(nextapp.echo.extras.app.event.TreeModelEvent)
+         */
+        public void treeNodesAdded(TreeModelEvent e) {
+            nodesAdded(e);
+        }
+
+        /**
+         * @see nextapp.echo.extras.app.event.TreeModelListener#treeNodesChanged(nextapp.echo.extras.app.event.TreeModelEvent)
+         */
+        public void treeNodesChanged(TreeModelEvent e) {
+            nodesChanged(e);
+        }
+
+        /**
+         * @see nextapp.echo.extras.app.event.TreeModelListener#treeNodesRemoved(nextapp.echo.extras.app.event.TreeModelEvent)
+         */
+        public void treeNodesRemoved(TreeModelEvent e) {
+            nodesRemoved(e);
+        }
+
+        /**
+         * @see nextapp.echo.extras.app.event.TreeModelListener#treeStructureChanged(nextapp.echo.extras.app.event.TreeModelEvent)
+         */
+        public void treeStructureChanged(TreeModelEvent e) {
+            structureChanged(e);
+        }
+    };
+    
+    private TreeModel model;
+    private int columnIndex;
+    private boolean ascending;
+    private Comparator comparator;
+    
+    /**
+     * Maps each node whose children have been accessed to the 
+     * <code>Permutation</code> of its children. Not serialized, the 
+     * permutations are computed again when needed.
+     */
+    private transient Map permutations = new HashMap();
+    
+    /**
+     * Creates a new <code>SortedTreeModel</code>. The model listens to the
+     * underlying model until it is disposed.
+     * 
+     * @param model the underlying model
+     * @param columnIndex the index of the model column to sort by
+     * @param ascending true for ascending order, false for descending order
+     * @param comparator the <code>Comparator</code> of the column values, 
+     *        or <code>null</code> to compare <code>Comparable</code> values
+     *        of the same class, and any other values by their string 
+     *        representation
+     * @see #dispose()
+     */
+    public SortedTreeModel(TreeModel model, int columnIndex, boolean ascending, Comparator comparator) {
+        this.model = model;
+        this.columnIndex = columnIndex;
+        this.ascending = ascending;
+        this.comparator = comparator;
+        model.addTreeModelListener(modelListener);
+    }
+    
+    /**
+     * Detaches this model from the underlying model.
+     */
+    public void dispose() {
+        model.removeTreeModelListener(modelListener);
+        getPermutations().clear();
+    }
+    
+    /**
+     * Returns the underlying model.
+     * 
+     * @return the model
+     */
+    public TreeModel getModel() {
+        return model;
+    }
+    
+    /**
+     * Returns the index of the model column the children are sorted by.
+     * 
+     * @return the column index
+     */
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+    
+    /**
+     * Determines whether the children are sorted in ascending order.
+     * 
+     * @return true for ascending order, false for descending order
+     */
+    public boolean isAscending() {
+        return ascending;
+    }
+    
+    /**
+     * Changes the order of the children. All cached permutations are 
+     * discarded, no events are fired.
+     * 
+     * @param columnIndex the index of the model column to sort by
+     * @param ascending true for ascending order, false for descending order
+     * @param comparator the <code>Comparator</code> of the column values, 
+     *        or <code>null</code> for the default order
+     */
+    public void setSort(int columnIndex, boolean ascending, Comparator comparator) {
+        this.columnIndex = columnIndex;
+        this.ascending = ascending;
+        this.comparator = comparator;
+        getPermutations().clear();
+    }
+    
+    private Map getPermutations() {
+        if (permutations == null) {
+            permutations = new HashMap();
+        }
+        return permutations;
+    }
+    
+    /**
+     * Returns the permutation of the children of <code>parent</code>, 
+     * computing it if necessary.
+     */
+    private Permutation getPermutation(Serializable parent) {
+        Permutation permutation = (Permutation) getPermutations().get(parent);
+        if (permutation == null) {
+            permutation = sort(parent);
+            getPermutations().put(parent, permutation);
+        }
+        return permutation;
+    }
+    
+    /**
+     * Sorts the children of <code>parent</code>. Children with equal values
+     * keep the order of the underlying model.
+     */
+    private Permutation sort(Serializable parent) {
+        int childCount = model.getChildCount(parent);
+        Object[] children = new Object[childCount];
+        final Object[] values = new Object[childCount];
+        Integer[] indices = new Integer[childCount];
+        for (int i = 0; i < childCount; ++i) {
+            children[i] = model.getChild(parent, i);
+            values[i] = model.getValueAt((Serializable) children[i], columnIndex);
+            indices[i] = new Integer(i);
+        }
+        final Comparator valueComparator = comparator == null ? DEFAULT_COMPARATOR : comparator;
+        // Arrays.sort() of objects is stable
+        Arrays.sort(indices, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                int result = valueComparator.compare(values[((Integer) o1).intValue()], 
+                        values[((Integer) o2).intValue()]);
+                return ascending ? result : -result;
+            }
+        });
+        int[] viewToModel = new int[childCount];
+        for (int i = 0; i < childCount; ++i) {
+            viewToModel[i] = indices[i].intValue();
+        }
+        return new Permutation(viewToModel, children);
+    }
+    
+    /**
+     * Discards the permutations of a node and all of its descendants.
+     */
+    private void discard(Object node) {
+        Permutation permutation = (Permutation) getPermutations().remove(node);
+        if (permutation != null) {
+            for (int i = 0; i < permutation.children.length; ++i) {
+                discard(permutation.children[i]);
+            }
+        }
+    }
+    
+    /**
+     * Returns the view indices of the children of an event, in ascending 
+     * order, along with the children in the same order.
+     * 
+     * @param permutation the permutation to translate the indices with
+     * @param childIndices the model indices of the children
+     * @param children the children, in the order of <code>childIndices</code>
+     * @return an array holding the <code>int[]</code> of view indices and
+     *         the <code>Object[]</code> of children
+     */
+    private static Object[] toView(Permutation permutation, int[] childIndices, Object[] children) {
+        long[] entries = new long[childIndices.length];
+        for (int i = 0; i < childIndices.length; ++i) {
+            entries[i] = ((long) permutation.modelToView[childIndices[i]] << 32) | i;
+        }
+        Arrays.sort(entries);
+        int[] viewIndices = new int[entries.length];
+        Object[] viewChildren = new Object[entries.length];
+        for (int i = 0; i < entries.length; ++i) {
+            viewIndices[i] = (int) (entries[i] >>> 32);
+            viewChildren[i] = children[(int) entries[i]];
+        }
+        return new Object[] { viewIndices, viewChildren };
+    }
+    
+    /**
+     * Returns the children of an event, retrieving them from the underlying
+     * model if the event does not provide them.
+     */
+    private Object[] getChildren(TreeModelEvent e) {
+        Object[] children = e.getChildren();
+        if (children == null) {
+            Serializable parent = e.getTreePath().getLastPathComponent();
+            int[] childIndices = e.getChildIndices();
+            children = new Object[childIndices.length];
+            for (int i = 0; i < childIndices.length; ++i) {
+                children[i] = model.getChild(parent, childIndices[i]);
+            }
+        }
+        return children;
+    }
+    
+    private void nodesAdded(TreeModelEvent e) {
+        Serializable parent = e.getTreePath().getLastPathComponent();
+        int[] childIndices = e.getChildIndices();
+        if (getPermutations().remove(parent) == null || childIndices == null) {
+            // the children have not been accessed, their indices are of no use
+            fireTreeNodesInserted(this, e.getPath(), childIndices, e.getChildren());
+            return;
+        }
+        Object[] view = toView(getPermutation(parent), childIndices, getChildren(e));
+        fireTreeNodesInserted(this, e.getPath(), (int[]) view[0], (Object[]) view[1]);
+    }
+    
+    private void nodesRemoved(TreeModelEvent e) {
+        Serializable parent = e.getTreePath().getLastPathComponent();
+        int[] childIndices = e.getChildIndices();
+        Permutation permutation = (Permutation) getPermutations().remove(parent);
+        Object[] children = e.getChildren();
+        if (children != null) {
+            for (int i = 0; i < children.length; ++i) {
+                discard(children[i]);
+            }
+        }
+        if (permutation == null || childIndices == null || children == null) {
+            fireTreeNodesRemoved(this, e.getPath(), childIndices, e.getChildren());
+            return;
+        }
+        Object[] view = toView(permutation, childIndices, children);
+        fireTreeNodesRemoved(this, e.getPath(), (int[]) view[0], (Object[]) view[1]);
+    }
+    
+    private void nodesChanged(TreeModelEvent e) {
+        int[] childIndices = e.getChildIndices();
+        if (childIndices == null || childIndices.length == 0) {
+            // the root has changed
+            fireTreeNodesChanged(this, e.getPath(), childIndices, e.getChildren());
+            return;
+        }
+        Serializable parent = e.getTreePath().getLastPathComponent();
+        Permutation oldPermutation = (Permutation) getPermutations().remove(parent);
+        if (oldPermutation == null) {
+            fireTreeNodesChanged(this, e.getPath(), childIndices, e.getChildren());
+            return;
+        }
+        Object[] children = getChildren(e);
+        Permutation permutation = getPermutation(parent);
+        if (Arrays.equals(oldPermutation.viewToModel, permutation.viewToModel)) {
+            Object[] view = toView(permutation, childIndices, children);
+            fireTreeNodesChanged(this, e.getPath(), (int[]) view[0], (Object[]) view[1]);
+        } else {
+            // reporting the moved children as removed and inserted would 
+            // make listeners drop state such as their selection
+            fireTreeStructureChanged(this, e.getPath(), null, null);
+        }
+    }
+    
+    private void structureChanged(TreeModelEvent e) {
+        TreePath path = e.getTreePath();
+        if (path == null || path.getParentPath() == null) {
+            getPermutations().clear();
+        } else {
+            discard(path.getLastPathComponent());
+        }
+        fireTreeStructureChanged(this, e.getPath(), e.getChildIndices(), e.getChildren());
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getChild(java.io.Serializable, int)
+     */
+    public Serializable getChild(Serializable parent, int index) {
+        return model.getChild(parent, getPermutation(parent).viewToModel[index]);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getChildCount(java.io.Serializable)
+     */
+    public int getChildCount(Serializable parent) {
+        return model.getChildCount(parent);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getIndexOfChild(java.io.Serializable, java.io.Serializable)
+     */
+    public int getIndexOfChild(Serializable parent, Serializable child) {
+        int index = model.getIndexOfChild(parent, child);
+        return index == -1 ? -1 : getPermutation(parent).modelToView[index];
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#isLeaf(java.io.Serializable)
+     */
+    public boolean isLeaf(Serializable object) {
+        return model.isLeaf(object);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getRoot()
+     */
+    public Serializable getRoot() {
+        return model.getRoot();
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getValueAt(java.io.Serializable, int)
+     */
+    public Serializable getValueAt(Serializable node, int columnIndex) {
+        return model.getValueAt(node, columnIndex);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getColumnCount()
+     */
+    public int getColumnCount() {
+        return model.getColumnCount();
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getColumnName(int)
+     */
+    public String getColumnName(int column) {
+        return model.getColumnName(column);
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.tree.TreeModel#getColumnClass(int)
+     */
+    public Class getColumnClass(int column) {
+        return model.getColumnClass(column);
+    }
+}
@@ -32,6 +32,7 @@ package nextapp.echo.extras.app.tree;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.Serializable;
+import java.util.Comparator;
 
 import nextapp.echo.app.Extent;
 
@@ -42,6 +43,7 @@ public class TreeColumn
 implements Serializable {
 
     public static final String CELL_RENDERER_CHANGED_PROPERTY = "cellRenderer";
+    public static final String COMPARATOR_CHANGED_PROPERTY = "comparator";
     public static final String HEADER_RENDERER_CHANGED_PROPERTY = "headerRenderer";
     public static final String HEADER_VALUE_CHANGED_PROPERTY = "headerValue";
     public static final String IDENTIFIER_CHANGED_PROPERTY = "identifier";
@@ -50,6 +52,7 @@ implements Serializable {
     
     private Extent width;
     private TreeCellRenderer cellRenderer;
+    private Comparator comparator;
     private TreeCellRenderer headerRenderer;
     private Object headerValue;
     private int modelIndex;
@@ -120,6 +123,19 @@ implements Serializable {
         return cellRenderer;
     }
     
+    /**
+     * Returns the <code>Comparator</code> used to order the values of the
+     * column when the tree is sorted by this column.  The value of this 
+     * property may be null, in which case <code>Comparable</code> values of 
+     * the same class are compared, and any other values by their string 
+     * representation.
+     *
+     * @return the comparator for this column
+     */
+    public Comparator getComparator() {
+        return comparator;
+    }
+    
     /**
      * Returns the <code>TreeCellRenderer</code> used to render the
      * header cell of this column.  The value of this property may be null,
@@ -202,6 +218,19 @@ implements Serializable {
         pcs.firePropertyChange(CELL_RENDERER_CHANGED_PROPERTY, oldValue, newValue);
     }
     
+    /** 
+     * Sets the <code>Comparator</code> used to order the values of the 
+     * column when the tree is sorted by this column.  The comparator should
+     * be <code>Serializable</code>.
+     *
+     * @param newValue the new comparator
+     */
+    public void setComparator(Comparator newValue) {
+        Comparator oldValue = comparator;
+        comparator = newValue;
+        pcs.firePropertyChange(COMPARATOR_CHANGED_PROPERTY, oldValue, newValue);
+    }
+    
     /** 
      * Sets the <code>TreeCellRenderer</code> used to render the
      * header cell of this column.  The value of this property may be null,
@@ -15,7 +15,14 @@ import nextapp.echo.extras.app.event.TreeModelListener;
  * into a model as used by {@link nextapp.echo.extras.app.Tree}.
  * 
  * If constructed with only the root node, then the columns will be the set of keys that are 
- * contained in any of the tree nodes, with no guaranteed ordering.
+ * contained in any of the tree nodes, with no guaranteed ordering. The columns of a 
+ * {@link CompactTreeNode} root are its column keys, in order, and the values of nodes sharing 
+ * these keys are retrieved by index.
+ * 
+ * By default the model registers itself as a listener of every node. If constructed to propagate
+ * events, and the root node is an {@link AbstractTreeNode}, the model registers a single subtree 
+ * listener on the root node instead, receiving the events of all nodes extending 
+ * <code>AbstractTreeNode</code> along their parent chain.
  *
  * @author Lloyd Colling
  */
@@ -35,6 +42,12 @@ public class TreeNodeModel extends AbstractTreeModel implements TreeModelListene
      */
     Set nodesWeAreListeningTo = new HashSet();
     
+    /**
+     * Whether the events of the nodes are propagated to a single listener
+     * on the root node
+     */
+    boolean propagateEvents;
+    
     /**
      * Default constructor that creates a model from a node and compiles the set of column keys from
      * all the nodes in the tree.
@@ -51,13 +64,42 @@ public class TreeNodeModel extends AbstractTreeModel implements TreeModelListene
      * @param columnKeys
      */
     public TreeNodeModel(TreeNode root, String[] columnKeys) {
+        this(root, columnKeys, false);
+    }
+    
+    /**
+     * Constructor that creates a model from the given node using the supplied keys to retrieve the
+     * column values for display, optionally receiving the events of the nodes through a single
+     * listener on the root node.
+     * @param root
+     * @param columnKeys the keys, or null to compile the keys from the nodes
+     * @param propagateEvents true to register a single subtree listener on the root node, which 
+     *        must then be an {@link AbstractTreeNode}, instead of a listener on every node
+     * @see AbstractTreeNode#addSubtreeTreeModelListener(TreeModelListener)
+     */
+    public TreeNodeModel(TreeNode root, String[] columnKeys, boolean propagateEvents) {
         super();
         this.root = root;
         if (columnKeys != null)
             this.columnKeys = columnKeys;
         else
             compileColumns();
-        addListenersToTree(root);
+        if (propagateEvents) {
+            if (!(root instanceof AbstractTreeNode)) {
+                throw new IllegalArgumentException("Events can only be propagated from an AbstractTreeNode root");
+            }
+            this.propagateEvents = true;
+            ((AbstractTreeNode) root).addSubtreeTreeModelListener(this);
+        } else {
+            addListenersToTree(root);
+        }
+    }
+    
+    /**
+     * Whether the events of the nodes are received through a single listener on the root node.
+     */
+    public boolean isPropagateEvents() {
+        return propagateEvents;
     }
     
     /**
@@ -88,6 +130,10 @@ public class TreeNodeModel extends AbstractTreeModel implements TreeModelListene
      * Compiles the list of column headings from the current tree
      */
     protected void compileColumns() {
+        if (root instanceof CompactTreeNode) {
+            columnKeys = ((CompactTreeNode) root).getColumnKeys();
+            return;
+        }
         List columnHeadings = new LinkedList();
         addColumnHeadings(root, columnHeadings);
         columnKeys = new String[columnHeadings.size()];
@@ -150,6 +196,9 @@ public class TreeNodeModel extends AbstractTreeModel implements TreeModelListene
      * @see nextapp.echo.extras.app.tree.TreeModel.getValueAt(Object, int)
      */
     public Serializable getValueAt(Serializable node, int column) {
+        if (node instanceof CompactTreeNode && ((CompactTreeNode) node).getColumnKeys() == columnKeys) {
+            return (Serializable)((CompactTreeNode) node).getColumnValue(column);
+        }
         return (Serializable)((TreeNode)node).getColumnValues().get(columnKeys[column]);
     }
 
@@ -164,8 +213,10 @@ public class TreeNodeModel extends AbstractTreeModel implements TreeModelListene
      * handles notifications from the tree nodes that the tree structure has changed
      */
     public void treeNodesAdded(TreeModelEvent e) {
-        for (int i = 0; i < e.getChildren().length; i++) {
-            addListenersToTree((TreeNode)e.getChildren()[i]);
+        if (!propagateEvents) {
+            for (int i = 0; i < e.getChildren().length; i++) {
+                addListenersToTree((TreeNode)e.getChildren()[i]);
+            }
         }
         fireTreeNodesInserted(this, e.getPath(), e.getChildIndices(), e.getChildren());
     }
@@ -181,8 +232,10 @@ public class TreeNodeModel extends AbstractTreeModel implements TreeModelListene
      * handles notifications from the tree nodes that the tree structure has changed
      */
     public void treeNodesRemoved(TreeModelEvent e) {
-        for (int i = 0; i < e.getChildren().length; i++) {
-            removeListenersFromTree((TreeNode)e.getChildren()[i]);
+        if (!propagateEvents) {
+            for (int i = 0; i < e.getChildren().length; i++) {
+                removeListenersFromTree((TreeNode)e.getChildren()[i]);
+            }
         }
         fireTreeNodesRemoved(this, e.getPath(), e.getChildIndices(), e.getChildren());
     }
@@ -191,8 +244,10 @@ public class TreeNodeModel extends AbstractTreeModel implements TreeModelListene
      * handles notifications from the tree nodes that the tree structure has changed
      */
     public void treeStructureChanged(TreeModelEvent e) {
-        removeAllNodeListeners();
-        addListenersToTree(root);
+        if (!propagateEvents) {
+            removeAllNodeListeners();
+            addListenersToTree(root);
+        }
         fireTreeStructureChanged(this, e.getPath(), e.getChildIndices(), e.getChildren());
     }
 
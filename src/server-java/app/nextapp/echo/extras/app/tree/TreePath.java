@@ -29,6 +29,8 @@
 
 package nextapp.echo.extras.app.tree;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 /**
@@ -43,10 +45,20 @@ implements Serializable {
      * Path representing the parent, null if lastPathComponent represents the
      * root.
      */
-    private TreePath parentPath;
+    private final TreePath parentPath;
 
     /** Last path component. */
-    private Serializable lastPathComponent;
+    private final Serializable lastPathComponent;
+    
+    /** The number of components in the path. */
+    private final int pathCount;
+    
+    /** 
+     * The hash code of the path, computed from all of its components. Not
+     * serialized, as the hash codes of the components may differ after
+     * deserialization.
+     */
+    private transient int hash;
 
     /**
      * Constructs a path from an array of Objects, uniquely identifying the path
@@ -62,13 +74,19 @@ implements Serializable {
      *            an array of Objects representing the path to a node
      */
     public TreePath(Serializable[] path) {
-        if (path == null || path.length == 0) {
-            throw new IllegalArgumentException("path in TreePath must be non null and not empty.");
-        }
-        lastPathComponent = path[path.length - 1];
-        if (path.length > 1) {
-            parentPath = new TreePath(path, path.length - 1);
-        }
+        this(path, getLength(path));
+    }
+
+    /**
+     * Constructs a path from an array of Objects. Each element of the array
+     * must be <code>Serializable</code>.
+     * 
+     * @param path
+     *            an array of Objects representing the path to a node
+     * @see #TreePath(Serializable[])
+     */
+    public TreePath(Object[] path) {
+        this(toSerializableArray(path));
     }
 
     /**
@@ -81,11 +99,7 @@ implements Serializable {
      * @see #TreePath(Object[])
      */
     public TreePath(Serializable singlePath) {
-        if (singlePath == null) {
-            throw new IllegalArgumentException("path in TreePath must be non null.");
-        }
-        lastPathComponent = singlePath;
-        parentPath = null;
+        this(null, singlePath);
     }
 
     /**
@@ -98,6 +112,21 @@ implements Serializable {
         }
         parentPath = parent;
         lastPathComponent = lastElement;
+        pathCount = parent == null ? 1 : parent.getPathCount() + 1;
+        hash = computeHash();
+    }
+    
+    private int computeHash() {
+        return parentPath == null ? 31 + lastPathComponent.hashCode() 
+                : 31 * parentPath.hashCode() + lastPathComponent.hashCode();
+    }
+    
+    private void readObject(ObjectInputStream in) 
+    throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (lastPathComponent != null) {
+            hash = computeHash();
+        }
     }
 
     /**
@@ -105,10 +134,7 @@ implements Serializable {
      * <code>length</code>.
      */
     protected TreePath(Serializable[] path, int length) {
-        lastPathComponent = path[length - 1];
-        if (length > 1) {
-            parentPath = new TreePath(path, length - 1);
-        }
+        this(length > 1 ? new TreePath(path, length - 1) : null, path[length - 1]);
     }
 
     /**
@@ -116,9 +142,35 @@ implements Serializable {
      * manner. If a subclass uses this constructor, it should also override the
      * <code>getPath</code>, <code>getPathCount</code>, and
      * <code>getPathComponent</code> methods, and possibly the
-     * <code>equals</code> method.
+     * <code>equals</code> and <code>hashCode</code> methods.
      */
     protected TreePath() {
+        parentPath = null;
+        lastPathComponent = null;
+        pathCount = 0;
+    }
+    
+    /**
+     * Returns the length of <code>path</code>, verifying that it is
+     * neither null nor empty.
+     */
+    private static int getLength(Serializable[] path) {
+        if (path == null || path.length == 0) {
+            throw new IllegalArgumentException("path in TreePath must be non null and not empty.");
+        }
+        return path.length;
+    }
+
+    /**
+     * Copies an array of Objects into an array of <code>Serializable</code>s.
+     */
+    private static Serializable[] toSerializableArray(Object[] path) {
+        if (path == null) {
+            return null;
+        }
+        Serializable[] serializablePath = new Serializable[path.length];
+        System.arraycopy(path, 0, serializablePath, 0, path.length);
+        return serializablePath;
     }
 
     /**
@@ -155,11 +207,7 @@ implements Serializable {
      * @return an int giving a count of items the path
      */
     public int getPathCount() {
-        int result = 0;
-        for (TreePath path = this; path != null; path = path.parentPath) {
-            result++;
-        }
-        return result;
+        return pathCount;
     }
 
     /**
@@ -203,10 +251,14 @@ implements Serializable {
         if (o instanceof TreePath) {
             TreePath oTreePath = (TreePath) o;
 
-            if (getPathCount() != oTreePath.getPathCount()) {
+            if (hashCode() != oTreePath.hashCode() || getPathCount() != oTreePath.getPathCount()) {
                 return false;
             }
             for (TreePath path = this; path != null; path = path.parentPath) {
+                if (path == oTreePath) {
+                    // paths created from the same parent path share it
+                    return true;
+                }
                 if (!(path.lastPathComponent.equals(oTreePath.lastPathComponent))) {
                     return false;
                 }
@@ -219,12 +271,14 @@ implements Serializable {
 
     /**
      * Returns the hashCode for the object. The hash code of a TreePath is
-     * defined to be the hash code of the last component in the path.
+     * computed from all components in the path, in the same way as the hash 
+     * code of a <code>List</code> containing the components of the path.
+     * The hash code is computed once, when the path is created.
      * 
      * @return the hashCode for the object
      */
     public int hashCode() {
-        return lastPathComponent.hashCode();
+        return hash;
     }
 
     /**
@@ -0,0 +1,371 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.tree;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Maintains the mapping between the rows of a <code>Tree</code> and the
+ * <code>TreePath</code>s rendered on them.
+ * <p>
+ * Rows are stored in an implicitly keyed treap, so that looking up the path
+ * for a row, looking up the row for a path, and inserting or removing a
+ * contiguous block of rows (e.g., the visible descendants of an expanded or
+ * collapsed node) all run in logarithmic time, independent of the number of
+ * rows affected by the operation besides the cost of handling the affected
+ * paths themselves.
+ */
+public class TreeRowIndex
+implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A single row of the index.
+     */
+    private static class Entry
+    implements Serializable {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private TreePath path;
+        private int priority;
+        private int size = 1;
+        private Entry left;
+        private Entry right;
+        private Entry parent;
+        
+        private Entry(TreePath path, int priority) {
+            this.path = path;
+            this.priority = priority;
+        }
+    }
+    
+    private Entry root;
+    private Map pathToEntry = new HashMap();
+    private Random random = new Random();
+    
+    /**
+     * Removes all rows from the index.
+     */
+    public void clear() {
+        root = null;
+        pathToEntry.clear();
+    }
+    
+    /**
+     * Determines whether the given path is currently assigned to a row.
+     * 
+     * @param path the path
+     * @return true if the path is contained in the index
+     */
+    public boolean contains(TreePath path) {
+        return pathToEntry.containsKey(path);
+    }
+    
+    /**
+     * Returns the path rendered on the given row.
+     * 
+     * @param row the row index
+     * @return the path
+     * @throws IndexOutOfBoundsException when the row is invalid
+     */
+    public TreePath getPath(int row) {
+        if (row < 0 || row >= size()) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size());
+        }
+        Entry entry = root;
+        while (true) {
+            int leftSize = size(entry.left);
+            if (row < leftSize) {
+                entry = entry.left;
+            } else if (row == leftSize) {
+                return entry.path;
+            } else {
+                row -= leftSize + 1;
+                entry = entry.right;
+            }
+        }
+    }
+    
+    /**
+     * Returns the paths rendered on the rows from <code>fromRow</code> 
+     * (inclusive) to <code>toRow</code> (exclusive).
+     * 
+     * @param fromRow the first row
+     * @param toRow the row following the last row
+     * @return the <code>TreePath</code>s, in row order
+     */
+    public List getPaths(int fromRow, int toRow) {
+        if (fromRow < 0 || toRow > size() || fromRow > toRow) {
+            throw new IndexOutOfBoundsException("From: " + fromRow + ", To: " + toRow + ", Size: " + size());
+        }
+        List paths = new ArrayList(toRow - fromRow);
+        collect(root, 0, fromRow, toRow, paths);
+        return paths;
+    }
+    
+    /**
+     * Returns the row the given path is rendered on.
+     * 
+     * @param path the path
+     * @return the row index, or -1 if the path is not contained in the index
+     */
+    public int getRow(TreePath path) {
+        Entry entry = (Entry) pathToEntry.get(path);
+        if (entry == null) {
+            return -1;
+        }
+        int row = size(entry.left);
+        while (entry.parent != null) {
+            if (entry == entry.parent.right) {
+                row += size(entry.parent.left) + 1;
+            }
+            entry = entry.parent;
+        }
+        return row;
+    }
+    
+    /**
+     * Inserts a single path at the given row, moving all subsequent rows down.
+     * 
+     * @param row the row index
+     * @param path the path to insert
+     */
+    public void insert(int row, TreePath path) {
+        insert(row, Collections.singletonList(path));
+    }
+    
+    /**
+     * Inserts a contiguous block of paths starting at the given row, moving
+     * all subsequent rows down.
+     * 
+     * @param row the row index of the first inserted path
+     * @param paths the <code>TreePath</code>s to insert, in row order
+     * @throws IllegalArgumentException if one of the paths is already
+     *         contained in the index
+     */
+    public void insert(int row, List paths) {
+        if (row < 0 || row > size()) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size());
+        }
+        if (paths.isEmpty()) {
+            return;
+        }
+        Entry block = build(paths);
+        Entry[] parts = split(root, row);
+        root = merge(merge(parts[0], block), parts[1]);
+        root.parent = null;
+    }
+    
+    /**
+     * Removes the rows from <code>fromRow</code> (inclusive) to
+     * <code>toRow</code> (exclusive), moving all subsequent rows up.
+     * 
+     * @param fromRow the first row to remove
+     * @param toRow the row following the last row to remove
+     * @return the removed <code>TreePath</code>s, in row order
+     */
+    public List remove(int fromRow, int toRow) {
+        if (fromRow < 0 || toRow > size() || fromRow > toRow) {
+            throw new IndexOutOfBoundsException("From: " + fromRow + ", To: " + toRow + ", Size: " + size());
+        }
+        if (fromRow == toRow) {
+            return Collections.EMPTY_LIST;
+        }
+        Entry[] head = split(root, fromRow);
+        Entry[] tail = split(head[1], toRow - fromRow);
+        root = merge(head[0], tail[1]);
+        if (root != null) {
+            root.parent = null;
+        }
+        List removed = new ArrayList(toRow - fromRow);
+        collect(tail[0], removed);
+        for (int i = 0; i < removed.size(); ++i) {
+            pathToEntry.remove(removed.get(i));
+        }
+        return removed;
+    }
+    
+    /**
+     * Returns the number of rows in the index.
+     * 
+     * @return the row count
+     */
+    public int size() {
+        return size(root);
+    }
+    
+    /**
+     * Creates a treap holding the given paths in order. The treap is
+     * constructed in linear time as the Cartesian tree of the entry
+     * priorities. If a path is already indexed, or contained twice, the
+     * index is left unchanged.
+     */
+    private Entry build(List paths) {
+        int count = paths.size();
+        Entry[] stack = new Entry[count];
+        int top = 0;
+        for (int i = 0; i < count; ++i) {
+            TreePath path = (TreePath) paths.get(i);
+            if (pathToEntry.containsKey(path)) {
+                // Leave the index unchanged: forget the paths of this block indexed so far.
+                for (int j = 0; j < i; ++j) {
+                    pathToEntry.remove(paths.get(j));
+                }
+                throw new IllegalArgumentException("Path already indexed: " + path);
+            }
+            Entry entry = new Entry(path, random.nextInt());
+            pathToEntry.put(path, entry);
+            Entry last = null;
+            while (top > 0 && stack[top - 1].priority < entry.priority) {
+                last = stack[--top];
+            }
+            entry.left = last;
+            if (last != null) {
+                last.parent = entry;
+            }
+            if (top > 0) {
+                stack[top - 1].right = entry;
+                entry.parent = stack[top - 1];
+            }
+            stack[top++] = entry;
+        }
+        Entry block = stack[0];
+        block.parent = null;
+        updateSizes(block);
+        return block;
+    }
+    
+    /**
+     * Collects the paths of the given subtree that are rendered on the rows
+     * from <code>fromRow</code> (inclusive) to <code>toRow</code> 
+     * (exclusive) in row order. The first row of the subtree is 
+     * <code>offset</code>.
+     */
+    private void collect(Entry entry, int offset, int fromRow, int toRow, List paths) {
+        if (entry == null) {
+            return;
+        }
+        int row = offset + size(entry.left);
+        if (fromRow < row) {
+            collect(entry.left, offset, fromRow, toRow, paths);
+        }
+        if (row >= fromRow && row < toRow) {
+            paths.add(entry.path);
+        }
+        if (row + 1 < toRow) {
+            collect(entry.right, row + 1, fromRow, toRow, paths);
+        }
+    }
+    
+    /**
+     * Collects the paths of the given subtree in row order.
+     */
+    private void collect(Entry entry, List paths) {
+        if (entry == null) {
+            return;
+        }
+        collect(entry.left, paths);
+        paths.add(entry.path);
+        collect(entry.right, paths);
+    }
+    
+    /**
+     * Joins two treaps, all entries of <code>a</code> preceding those of
+     * <code>b</code>.
+     */
+    private Entry merge(Entry a, Entry b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            a.right.parent = a;
+            a.size = size(a.left) + size(a.right) + 1;
+            return a;
+        } else {
+            b.left = merge(a, b.left);
+            b.left.parent = b;
+            b.size = size(b.left) + size(b.right) + 1;
+            return b;
+        }
+    }
+    
+    /**
+     * Splits a treap into the first <code>count</code> entries and the
+     * remainder.  The roots of both returned treaps have no parent.
+     */
+    private Entry[] split(Entry entry, int count) {
+        if (entry == null) {
+            return new Entry[2];
+        }
+        Entry[] parts;
+        if (size(entry.left) < count) {
+            parts = split(entry.right, count - size(entry.left) - 1);
+            entry.right = parts[0];
+            if (parts[0] != null) {
+                parts[0].parent = entry;
+            }
+            parts[0] = entry;
+        } else {
+            parts = split(entry.left, count);
+            entry.left = parts[1];
+            if (parts[1] != null) {
+                parts[1].parent = entry;
+            }
+            parts[1] = entry;
+        }
+        entry.size = size(entry.left) + size(entry.right) + 1;
+        entry.parent = null;
+        return parts;
+    }
+    
+    private static int size(Entry entry) {
+        return entry == null ? 0 : entry.size;
+    }
+    
+    private static int updateSizes(Entry entry) {
+        if (entry == null) {
+            return 0;
+        }
+        entry.size = updateSizes(entry.left) + updateSizes(entry.right) + 1;
+        return entry.size;
+    }
+}
@@ -0,0 +1,511 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.app.tree;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import nextapp.echo.extras.app.event.TreeModelEvent;
+import nextapp.echo.extras.app.event.TreeModelListener;
+
+/**
+ * An inverted index over the column values of the nodes of a 
+ * <code>TreeModel</code>, used to find the paths of the nodes matching a
+ * query.
+ * <p>
+ * Column values are split into words of letters and digits, which are 
+ * matched case-insensitively. A node matches a query if every word of the
+ * query is a prefix of a word of one of its column values.
+ * <p>
+ * The index is built on the first search, and is then maintained 
+ * incrementally from the events of the model. It is not serialized, but 
+ * built again on the first search after deserialization.
+ */
+public class TreeSearchIndex 
+implements TreeModelListener, Serializable {
+    
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The indexed state of a single node.
+     */
+    private static class Entry {
+        
+        /** The words of the column values of the node. */
+        private String[] words;
+        
+        /** The paths of the indexed children of the node, null if none. */
+        private List childPaths;
+    }
+    
+    /**
+     * Orders paths in the order in which the nodes appear in a tree. The 
+     * indices of the children of a parent are looked up once, by iterating
+     * the children in order, and cached for the lifetime of the comparator.
+     */
+    private static class TreeOrderComparator 
+    implements Comparator {
+        
+        private TreeModel model;
+        
+        /** Maps parent paths to maps of their children to their indices. */
+        private Map childIndices = new HashMap();
+        
+        private TreeOrderComparator(TreeModel model) {
+            this.model = model;
+        }
+        
+        /**
+         * Returns the index of the last node of <code>path</code> within 
+         * its parent, or -1 if it is not a child of its parent.
+         */
+        private int getIndex(TreePath path) {
+            TreePath parentPath = path.getParentPath();
+            Map indices = (Map) childIndices.get(parentPath);
+            if (indices == null) {
+                indices = new HashMap();
+                Serializable parent = parentPath.getLastPathComponent();
+                int childCount = model.getChildCount(parent);
+                for (int i = 0; i < childCount; ++i) {
+                    indices.put(model.getChild(parent, i), new Integer(i));
+                }
+                childIndices.put(parentPath, indices);
+            }
+            Integer index = (Integer) indices.get(path.getLastPathComponent());
+            return index == null ? -1 : index.intValue();
+        }
+
+        /**
+         * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+         */
+        public int compare(Object o1, Object o2) {
+            TreePath path1 = (TreePath) o1;
+            TreePath path2 = (TreePath) o2;
+            while (path1.getPathCount() > path2.getPathCount()) {
+                path1 = path1.getParentPath();
+            }
+            while (path2.getPathCount() > path1.getPathCount()) {
+                path2 = path2.getParentPath();
+            }
+            if (path1.equals(path2)) {
+                // one path is an ancestor of the other
+                return ((TreePath) o1).getPathCount() - ((TreePath) o2).getPathCount();
+            }
+            while (!path1.getParentPath().equals(path2.getParentPath())) {
+                path1 = path1.getParentPath();
+                path2 = path2.getParentPath();
+            }
+            return getIndex(path1) - getIndex(path2);
+        }
+    }
+    
+    private static final String[] NO_WORDS = new String[0];
+    
+    /**
+     * Splits a text into its lower case words of letters and digits.
+     * 
+     * @param text the text, may be <code>null</code>
+     * @return the distinct words of the text
+     */
+    public static String[] getWords(String text) {
+        if (text == null) {
+            return NO_WORDS;
+        }
+        Set words = null;
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; ++i) {
+            boolean wordChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start == -1) {
+                start = i;
+            } else if (!wordChar && start != -1) {
+                if (words == null) {
+                    words = new HashSet();
+                }
+                words.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return words == null ? NO_WORDS : (String[]) words.toArray(new String[words.size()]);
+    }
+    
+    /**
+     * Returns the words of the column values of a node.
+     */
+    private static String[] getWords(TreeModel model, int[] columns, Serializable node) {
+        int columnCount = columns == null ? model.getColumnCount() : columns.length;
+        if (columnCount == 1) {
+            Object value = model.getValueAt(node, columns == null ? 0 : columns[0]);
+            return value == null ? NO_WORDS : getWords(value.toString());
+        }
+        Set words = null;
+        for (int i = 0; i < columnCount; ++i) {
+            Object value = model.getValueAt(node, columns == null ? i : columns[i]);
+            if (value != null) {
+                String[] valueWords = getWords(value.toString());
+                for (int j = 0; j < valueWords.length; ++j) {
+                    if (words == null) {
+                        words = new HashSet();
+                    }
+                    words.add(valueWords[j]);
+                }
+            }
+        }
+        return words == null ? NO_WORDS : (String[]) words.toArray(new String[words.size()]);
+    }
+    
+    /**
+     * Determines whether every query word is a prefix of one of the words.
+     */
+    private static boolean matches(String[] words, String[] queryWords) {
+        for (int i = 0; i < queryWords.length; ++i) {
+            boolean found = false;
+            for (int j = 0; j < words.length && !found; ++j) {
+                found = words[j].startsWith(queryWords[i]);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Finds the nodes of a model matching a query by walking the entire 
+     * model, without building an index.
+     * 
+     * @param model the model
+     * @param columns the model indices of the columns to search, or 
+     *        <code>null</code> to search all columns
+     * @param query the query
+     * @return the paths of the matching nodes, in tree order
+     */
+    public static TreePath[] scan(TreeModel model, int[] columns, String query) {
+        String[] queryWords = getWords(query);
+        List paths = new ArrayList();
+        Serializable root = model.getRoot();
+        if (queryWords.length > 0 && root != null) {
+            scan(model, columns, queryWords, new TreePath(root), paths);
+        }
+        return (TreePath[]) paths.toArray(new TreePath[paths.size()]);
+    }
+    
+    private static void scan(TreeModel model, int[] columns, String[] queryWords, TreePath path, List paths) {
+        Serializable node = path.getLastPathComponent();
+        if (matches(getWords(model, columns, node), queryWords)) {
+            paths.add(path);
+        }
+        int childCount = model.getChildCount(node);
+        for (int i = 0; i < childCount; ++i) {
+            scan(model, columns, queryWords, path.pathByAddingChild(model.getChild(node, i)), paths);
+        }
+    }
+    
+    private TreeModel model;
+    private int[] columns;
+    
+    /**
+     * Maps each word to the <code>Set</code> of paths of the nodes 
+     * containing it, <code>null</code> if the index has not been built.
+     */
+    private transient SortedMap wordPaths;
+    
+    /**
+     * Maps the path of every indexed node to its <code>Entry</code>, 
+     * <code>null</code> if the index has not been built.
+     */
+    private transient Map entries;
+    
+    /**
+     * Creates a new <code>TreeSearchIndex</code> over all columns of a
+     * model.
+     * 
+     * @param model the model
+     */
+    public TreeSearchIndex(TreeModel model) {
+        this(model, null);
+    }
+    
+    /**
+     * Creates a new <code>TreeSearchIndex</code>.
+     * 
+     * @param model the model
+     * @param columns the model indices of the columns to index, or 
+     *        <code>null</code> to index all columns
+     */
+    public TreeSearchIndex(TreeModel model, int[] columns) {
+        this.model = model;
+        this.columns = columns;
+        model.addTreeModelListener(this);
+    }
+    
+    /**
+     * Detaches the index from its model, and discards it.
+     */
+    public void dispose() {
+        model.removeTreeModelListener(this);
+        discard();
+    }
+    
+    /**
+     * Discards the index, to be built again on the next search.
+     */
+    private void discard() {
+        entries = null;
+        wordPaths = null;
+    }
+    
+    /**
+     * Returns the model of the index.
+     * 
+     * @return the model
+     */
+    public TreeModel getModel() {
+        return model;
+    }
+    
+    /**
+     * Finds the nodes matching a query.
+     * 
+     * @param query the query
+     * @return the paths of the matching nodes, in tree order
+     */
+    public TreePath[] search(String query) {
+        String[] queryWords = getWords(query);
+        if (queryWords.length == 0) {
+            return new TreePath[0];
+        }
+        if (entries == null) {
+            build();
+        }
+        Set result = null;
+        for (int i = 0; i < queryWords.length && (result == null || !result.isEmpty()); ++i) {
+            Set matches = new HashSet();
+            Collection prefixed = wordPaths.subMap(queryWords[i], queryWords[i] + Character.MAX_VALUE).values();
+            for (Iterator it = prefixed.iterator(); it.hasNext();) {
+                matches.addAll((Set) it.next());
+            }
+            if (result == null) {
+                result = matches;
+            } else {
+                result.retainAll(matches);
+            }
+        }
+        List paths = new ArrayList(result);
+        Collections.sort(paths, new TreeOrderComparator(model));
+        return (TreePath[]) paths.toArray(new TreePath[paths.size()]);
+    }
+    
+    private void build() {
+        entries = new HashMap();
+        wordPaths = new TreeMap();
+        Serializable root = model.getRoot();
+        if (root != null) {
+            addSubtree(new TreePath(root));
+        }
+    }
+    
+    /**
+     * Indexes a node and all of its descendants.
+     */
+    private void addSubtree(TreePath path) {
+        Serializable node = path.getLastPathComponent();
+        Entry entry = new Entry();
+        entry.words = getWords(model, columns, node);
+        entries.put(path, entry);
+        addWords(path, entry.words);
+        int childCount = model.getChildCount(node);
+        if (childCount > 0) {
+            entry.childPaths = new ArrayList(childCount);
+            for (int i = 0; i < childCount; ++i) {
+                TreePath childPath = path.pathByAddingChild(model.getChild(node, i));
+                entry.childPaths.add(childPath);
+                addSubtree(childPath);
+            }
+        }
+    }
+    
+    /**
+     * Removes a node and all of its indexed descendants from the index.
+     */
+    private void removeSubtree(TreePath path) {
+        Entry entry = (Entry) entries.remove(path);
+        if (entry == null) {
+            return;
+        }
+        removeWords(path, entry.words);
+        if (entry.childPaths != null) {
+            for (int i = 0; i < entry.childPaths.size(); ++i) {
+                removeSubtree((TreePath) entry.childPaths.get(i));
+            }
+        }
+    }
+    
+    private void addWords(TreePath path, String[] words) {
+        for (int i = 0; i < words.length; ++i) {
+            Set paths = (Set) wordPaths.get(words[i]);
+            if (paths == null) {
+                paths = new HashSet();
+                wordPaths.put(words[i], paths);
+            }
+            paths.add(path);
+        }
+    }
+    
+    private void removeWords(TreePath path, String[] words) {
+        for (int i = 0; i < words.length; ++i) {
+            Set paths = (Set) wordPaths.get(words[i]);
+            if (paths != null) {
+                paths.remove(path);
+                if (paths.isEmpty()) {
+                    wordPaths.remove(words[i]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Indexes the changed column values of a node.
+     */
+    private void updateNode(TreePath path) {
+        Entry entry = (Entry) entries.get(path);
+        if (entry != null) {
+            removeWords(path, entry.words);
+            entry.words = getWords(model, columns, path.getLastPathComponent());
+            addWords(path, entry.words);
+        }
+    }
+    
+    /**
+     * Returns the paths of the children of an event.
+     */
+    private TreePath[] getChildPaths(TreeModelEvent e) {
+        TreePath parentPath = e.getTreePath();
+        Object[] children = e.getChildren();
+        int[] childIndices = e.getChildIndices();
+        int count = children != null ? children.length : childIndices.length;
+        TreePath[] childPaths = new TreePath[count];
+        for (int i = 0; i < count; ++i) {
+            Serializable child = children != null ? (Serializable) children[i]
+                    : model.getChild(parentPath.getLastPathComponent(), childIndices[i]);
+            childPaths[i] = parentPath.pathByAddingChild(child);
+        }
+        return childPaths;
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.event.TreeModelListener#treeNodesAdded(nextapp.echo.extras.app.event.TreeModelEvent)
+     */
+    public void treeNodesAdded(TreeModelEvent e) {
+        if (entries == null) {
+            return;
+        }
+        Entry parentEntry = (Entry) entries.get(e.getTreePath());
+        if (parentEntry == null) {
+            return;
+        }
+        TreePath[] childPaths = getChildPaths(e);
+        if (parentEntry.childPaths == null) {
+            parentEntry.childPaths = new ArrayList(childPaths.length);
+        }
+        for (int i = 0; i < childPaths.length; ++i) {
+            parentEntry.childPaths.add(childPaths[i]);
+            addSubtree(childPaths[i]);
+        }
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.event.TreeModelListener#treeNodesChanged(nextapp.echo.extras.app.event.TreeModelEvent)
+     */
+    public void treeNodesChanged(TreeModelEvent e) {
+        if (entries == null) {
+            return;
+        }
+        if (e.getChildren() == null && e.getChildIndices() == null) {
+            // the root node has changed
+            updateNode(e.getTreePath());
+            return;
+        }
+        TreePath[] childPaths = getChildPaths(e);
+        for (int i = 0; i < childPaths.length; ++i) {
+            updateNode(childPaths[i]);
+        }
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.event.TreeModelListener#treeNodesRemoved(nextapp.echo.extras.app.event.TreeModelEvent)
+     */
+    public void treeNodesRemoved(TreeModelEvent e) {
+        if (entries == null) {
+            return;
+        }
+        Entry parentEntry = (Entry) entries.get(e.getTreePath());
+        if (parentEntry == null) {
+            return;
+        }
+        if (e.getChildren() == null) {
+            // the removed nodes are unknown
+            discard();
+            return;
+        }
+        TreePath[] childPaths = getChildPaths(e);
+        for (int i = 0; i < childPaths.length; ++i) {
+            removeSubtree(childPaths[i]);
+            parentEntry.childPaths.remove(childPaths[i]);
+        }
+    }
+
+    /**
+     * @see nextapp.echo.extras.app.event.TreeModelListener#treeStructureChanged(nextapp.echo.extras.app.event.TreeModelEvent)
+     */
+    public void treeStructureChanged(TreeModelEvent e) {
+        if (entries == null) {
+            return;
+        }
+        TreePath path = e.getTreePath();
+        if (path == null || path.getParentPath() == null || !entries.containsKey(path)) {
+            discard();
+            return;
+        }
+        removeSubtree(path);
+        addSubtree(path);
+    }
+}
@@ -23,6 +23,15 @@ Extras.RemoteTree = Core.extend(Echo.Component, {
     
     doAction: function() {
         this.fireEvent({type: "action", source: this});
+    },
+    
+    /**
+     * Requests the tree to be sorted by a column.
+     * 
+     * @param {Number} columnIndex the index of the column whose header has been clicked
+     */
+    doSort: function(columnIndex) {
+        this.fireEvent({type: "sort", source: this, data: columnIndex});
     }
 });
 
@@ -43,6 +52,7 @@ Extras.RemoteTree.TreeStructure = Core.extend({
         this._idNodeMap = {};
         this._rootNode = rootNode;
         this._headerNode = null;
+        this._rowMap = null;
         this.addNode(rootNode);
     },
     
@@ -72,6 +82,7 @@ Extras.RemoteTree.TreeStructure = Core.extend({
     },
     
     _addNodeInternal: function(node) {
+        this._rowMap = null;
     	this._idNodeMap[node.getId()] = node;
         if (node.getParentId()) {
             var parentNode = this.getNode(node.getParentId());
@@ -84,21 +95,61 @@ Extras.RemoteTree.TreeStructure = Core.extend({
     /**
      * Adds node to this structure, or updates it if it is already a part of this structure. 
      * If node has a parent id, the node will be added to the node with the parent id. 
-     * Any child nodes will be added (or updated) as well.
+     * Any child nodes will be added (or updated) as well. If the child nodes of node are
+     * complete, child nodes of the existing node that are not present in node are removed,
+     * and the remaining child nodes are ordered like those of node.
      * 
      * @see #addNode
      * @see Extras.RemoteTree.TreeNode#updateTo
      * 
      * @param {Extras.RemoteTree.TreeNode} node the node to add (or update)
+     * @return true if the child nodes of an existing node with child nodes have changed
+     * @type Boolean
      */
     addOrUpdateNode: function(node) {
-    	var oldNode = this.getNode(node.getId());
-    	if (oldNode) {
-    		oldNode.updateTo(node);
-    	} else {
-    		this._addNodeInternal(node);
-    	}
-    	this.addOrUpdateChildNodes(node);
+        var oldNode = this.getNode(node.getId());
+        if (oldNode) {
+            this._rowMap = null;
+            var changed = false;
+            var complete = oldNode != node && node.isChildNodesComplete();
+            if (complete) {
+                changed = oldNode.getChildNodeCount() > 0 && !oldNode.hasEqualChildNodes(node);
+                this._removeStaleChildNodes(oldNode, node);
+            }
+            oldNode.updateTo(node);
+            changed = this.addOrUpdateChildNodes(node) || changed;
+            if (complete) {
+                oldNode.sortChildNodes(node);
+            }
+            return changed;
+        } else {
+            this._addNodeInternal(node);
+            return this.addOrUpdateChildNodes(node);
+        }
+    },
+    
+    /**
+     * Removes all child nodes of oldNode that are not present as child nodes of node.
+     * 
+     * @param {Extras.RemoteTree.TreeNode} oldNode the node to remove the child nodes from
+     * @param {Extras.RemoteTree.TreeNode} node the node with the complete set of child nodes
+     */
+    _removeStaleChildNodes: function(oldNode, node) {
+        var childIds = {};
+        var i;
+        for (i = 0; i < node.getChildNodeCount(); ++i) {
+            childIds[node.getChildNode(i).getId()] = true;
+        }
+        var staleNodes = [];
+        for (i = 0; i < oldNode.getChildNodeCount(); ++i) {
+            var childNode = oldNode.getChildNode(i);
+            if (!childIds[childNode.getId()]) {
+                staleNodes.push(childNode);
+            }
+        }
+        for (i = 0; i < staleNodes.length; ++i) {
+            this.removeNode(staleNodes[i]);
+        }
     },
     
     /**
@@ -124,13 +175,17 @@ Extras.RemoteTree.TreeStructure = Core.extend({
      * @see Extras.RemoteTree.TreeNode#updateTo
      * 
      * @param {Extras.RemoteTree.TreeNode} node the node to add (or update) the child nodes from
+     * @return true if the child nodes of an existing node with child nodes have changed
+     * @type Boolean
      */
     addOrUpdateChildNodes: function(node) {
+        var changed = false;
         var childCount = node.getChildNodeCount();
         for (var i = 0; i < childCount; ++i) {
             var childNode = node.getChildNode(i);
-            this.addOrUpdateNode(childNode);
+            changed = this.addOrUpdateNode(childNode) || changed;
         }
+        return changed;
     },
     
     /**
@@ -141,6 +196,7 @@ Extras.RemoteTree.TreeStructure = Core.extend({
      * @param {Extras.RemoteTree.TreeNode} node the node to remove
      */
     removeNode: function(node) {
+        this._rowMap = null;
         this.removeChildNodes(node);
         if (node.getParentId()) {
             var parentNode = this.getNode(node.getParentId());
@@ -174,6 +230,56 @@ Extras.RemoteTree.TreeStructure = Core.extend({
         return this._rootNode;
     },
     
+    /**
+     * Gets the row index of node. The root node is at row 0, followed by the descendants
+     * of which all ancestors are expanded, whether the root node is shown or not.
+     * <p>
+     * The row indices of all nodes are determined in a single pass on first use, and kept until 
+     * the structure or the expansion state of a node changes.
+     * 
+     * @see #invalidateRows
+     * 
+     * @param {Extras.RemoteTree.TreeNode} node the node
+     * 
+     * @return the row index, or -1 if node is not shown
+     * @type Integer
+     */
+    getNodeRow: function(node) {
+        if (!this._rowMap) {
+            this._rowMap = {};
+            if (this._rootNode) {
+                this._addNodeRows(this._rootNode, 0);
+            }
+        }
+        var row = this._rowMap[node.getId()];
+        return row == null ? -1 : row;
+    },
+    
+    /**
+     * Adds the row indices of node and its shown descendants to the row map.
+     * 
+     * @return the row index following those of node and its descendants
+     * @type Integer
+     */
+    _addNodeRows: function(node, row) {
+        this._rowMap[node.getId()] = row++;
+        if (node.isExpanded()) {
+            var childCount = node.getChildNodeCount();
+            for (var i = 0; i < childCount; ++i) {
+                row = this._addNodeRows(node.getChildNode(i), row);
+            }
+        }
+        return row;
+    },
+    
+    /**
+     * Discards the row indices of the nodes, to be invoked when the expansion state of a
+     * node has changed.
+     */
+    invalidateRows: function() {
+        this._rowMap = null;
+    },
+    
     /**
      * Gets the depth of the deepest visible node. The root node is at depth 1, every
      * level increments the depth by one.
@@ -363,6 +469,161 @@ Extras.RemoteTree.TreeStructure = Core.extend({
     }
 });
 
+/**
+ * @class Tree structure of a virtualized tree. A tree window holds only the rows that
+ *          have been rendered by the server, without their ancestors. The depth of the
+ *          rows, and the sibling state of the rows and their ancestors, are provided by 
+ *          the server.
+ */
+Extras.RemoteTree.TreeWindow = Core.extend(Extras.RemoteTree.TreeStructure, {
+    
+    /**
+     * The index of the first row of the window.
+     * @type Integer
+     */
+    startRow: 0,
+    
+    /**
+     * The total number of rows of the tree.
+     * @type Integer
+     */
+    rowCount: 0,
+    
+    /**
+     * Creates a new TreeWindow object.
+     * 
+     * @param {Integer} startRow the index of the first row of the window
+     * @param {Integer} rowCount the total number of rows of the tree
+     * @constructor
+     */
+    $construct: function(startRow, rowCount) {
+        this._idNodeMap = {};
+        this._rootNode = null;
+        this._headerNode = null;
+        this._rows = [];
+        this._rowData = {};
+        this.startRow = startRow;
+        this.rowCount = rowCount;
+    },
+    
+    /**
+     * Adds a row to the end of the window.
+     * 
+     * @param {Extras.RemoteTree.TreeNode} node the node rendered to the row
+     * @param {Integer} depth the depth of node, 1 for the root node
+     * @param {Boolean} nextSibling true if node has a next sibling
+     * @param {String} lines for each ancestor of node, starting at its parent, 
+     *          "1" if the ancestor has a next sibling, "0" if not
+     */
+    addRow: function(node, depth, nextSibling, lines) {
+        this._idNodeMap[node.getId()] = node;
+        this._rowData[node.getId()] = { row: this.startRow + this._rows.length, depth: depth, 
+                nextSibling: nextSibling, lines: lines };
+        this._rows.push(node);
+        if (depth == 1) {
+            this._rootNode = node;
+        }
+    },
+    
+    /**
+     * Gets the nodes of the rows in this window, in row order.
+     * 
+     * @return the nodes
+     * @type Array
+     */
+    getRows: function() {
+        return this._rows;
+    },
+    
+    /**
+     * Gets the row index of node.
+     * 
+     * @param {Extras.RemoteTree.TreeNode} node the node
+     * 
+     * @return the row index, or -1 if node is not within this window
+     * @type Integer
+     */
+    getNodeRow: function(node) {
+        var data = this._rowData[node.getId()];
+        return data ? data.row : -1;
+    },
+    
+    /**
+     * @see Extras.RemoteTree.TreeStructure#getNodeDepth
+     */
+    getNodeDepth: function(node) {
+        var data = this._rowData[node.getId()];
+        return data ? data.depth : 1;
+    },
+    
+    /**
+     * @see Extras.RemoteTree.TreeStructure#hasNodeNextSibling
+     */
+    hasNodeNextSibling: function(node) {
+        var data = this._rowData[node.getId()];
+        return data ? data.nextSibling : false;
+    },
+    
+    /**
+     * Determines whether an ancestor of node has a next sibling on the same level.
+     * 
+     * @param {Extras.RemoteTree.TreeNode} node the node
+     * @param {Integer} level the level of the ancestor, 0 for the parent of node
+     * 
+     * @return true if the ancestor has a next sibling
+     * @type Boolean
+     */
+    hasAncestorNextSibling: function(node, level) {
+        var data = this._rowData[node.getId()];
+        return data ? data.lines.charAt(level) == "1" : false;
+    },
+    
+    /**
+     * Gets the lines of the row of node.
+     * 
+     * @param {Extras.RemoteTree.TreeNode} node the node
+     * 
+     * @return for each ancestor of node, starting at its parent, "1" if the ancestor has a next
+     *         sibling, "0" if not, or null if node is not within this window
+     * @type String
+     * @see #addRow
+     */
+    getNodeLines: function(node) {
+        var data = this._rowData[node.getId()];
+        return data ? data.lines : null;
+    },
+    
+    /**
+     * Siblings are not necessarily part of the window, this method always returns null.
+     */
+    getNodeNextSibling: function(node, useParentSibling) {
+        return null;
+    },
+    
+    /**
+     * Returns an iterator over the rows from node up to and including endNode.
+     * 
+     * @see Extras.RemoteTree.TreeStructure#iterator
+     */
+    iterator: function(node, includeHidden, endNode) {
+        var rows = this._rows;
+        var index = this.getNodeRow(node) - this.startRow;
+        var endIndex = this.getNodeRow(endNode ? endNode : node) - this.startRow;
+        return {
+            hasNext: function() {
+                return index >= 0 && index <= endIndex && index < rows.length;
+            },
+            nextNode: function() {
+                return this.hasNext() ? rows[index++] : null;
+            }
+        };
+    },
+    
+    toString: function() {
+        return "treeWindow [start=" + this.startRow + ", rows=" + this._rows.length + ", rowCount=" + this.rowCount + "]";
+    }
+});
+
 /**
  * @class Represents a tree node
  */
@@ -382,6 +643,7 @@ Extras.RemoteTree.TreeNode = Core.extend({
         this._columns = [];
         this._expanded = false;
         this._leaf = false;
+        this._childNodesComplete = false;
     },
     
     /**
@@ -444,6 +706,49 @@ Extras.RemoteTree.TreeNode = Core.extend({
         }
     },
     
+    /**
+     * Orders the child nodes of this node like the child nodes of node. Child nodes
+     * that are not present in node are dropped.
+     * 
+     * @param {Extras.RemoteTree.TreeNode} node the node to take the order from
+     */
+    sortChildNodes: function(node) {
+        var idNodeMap = {};
+        var i;
+        for (i = 0; i < this._childNodes.length; ++i) {
+            idNodeMap[this._childNodes[i]._id] = this._childNodes[i];
+        }
+        var childNodes = [];
+        for (i = 0; i < node._childNodes.length; ++i) {
+            var childNode = idNodeMap[node._childNodes[i]._id];
+            if (childNode) {
+                childNodes.push(childNode);
+            }
+        }
+        this._childNodes = childNodes;
+    },
+    
+    /**
+     * Determines if the child nodes of this node have the same ids, in the same order,
+     * as the child nodes of node.
+     * 
+     * @param {Extras.RemoteTree.TreeNode} node the node to compare with
+     * 
+     * @return true if the child nodes are equal, false if not
+     * @type Boolean
+     */
+    hasEqualChildNodes: function(node) {
+        if (this._childNodes.length != node._childNodes.length) {
+            return false;
+        }
+        for (var i = 0; i < this._childNodes.length; ++i) {
+            if (this._childNodes[i]._id != node._childNodes[i]._id) {
+                return false;
+            }
+        }
+        return true;
+    },
+    
     /**
      * Removes node as a child node of this node.
      * 
@@ -514,6 +819,26 @@ Extras.RemoteTree.TreeNode = Core.extend({
         return this._expanded;
     },
     
+    /**
+     * Sets whether the child nodes of this node are complete, i.e. any child node
+     * that is not present is no longer part of the tree.
+     * 
+     * @param {Boolean} newValue true if the child nodes are complete
+     */
+    setChildNodesComplete: function(newValue) {
+        this._childNodesComplete = newValue;
+    },
+    
+    /**
+     * Determines whether the child nodes of this node are complete.
+     * 
+     * @return true if the child nodes are complete, false if not
+     * @type Boolean
+     */
+    isChildNodesComplete: function() {
+        return this._childNodesComplete;
+    },
+    
     /**
      * Sets whether this node is a leaf or not.
      * 
@@ -605,6 +930,17 @@ Extras.RemoteTree.SelectionUpdate = Core.extend({
         this._addedSelections.push(row);
     },
     
+    /**
+     * Adds the rows from firstRow to lastRow (inclusive) to the added selections 
+     * of this update.
+     * 
+     * @param firstRow the first row to add
+     * @param lastRow the last row to add
+     */
+    addSelectionRange: function(firstRow, lastRow) {
+        this._addedSelections.push(firstRow == lastRow ? firstRow : firstRow + "-" + lastRow);
+    },
+    
     /**
      * Adds row to the removed selections of this update
      * 
@@ -683,10 +1019,16 @@ Extras.TreeSelectionModel = Core.extend({
     
     _selectionState: null,
     
+    /**
+     * Maps the ids of the selected nodes to true.
+     */
+    _selectedIds: null,
+    
     _selectionMode: null,
     
     $construct: function(selectionMode) { 
         this._selectionState = [];
+        this._selectedIds = {};
         this._selectionMode = selectionMode;
     },
     
@@ -716,11 +1058,10 @@ Extras.TreeSelectionModel = Core.extend({
      * @param node the node to add to the selection
      */
     addSelectedNode: function(node) {
-        for (var i = 0; i < this._selectionState.length; ++i) {
-            if (this._selectionState[i]._id == node._id) {
-                return;
-            }
+        if (this._selectedIds[node._id]) {
+            return;
         }
+        this._selectedIds[node._id] = true;
         this._selectionState.push(node);
     },
     
@@ -730,6 +1071,10 @@ Extras.TreeSelectionModel = Core.extend({
      * @param node the node to remove from the selection
      */
     removeSelectedNode: function(node) {
+        if (!this._selectedIds[node._id]) {
+            return;
+        }
+        delete this._selectedIds[node._id];
         for (var i = 0; i < this._selectionState.length; ++i) {
             if (this._selectionState[i]._id == node._id) {
                 // Remove node.
@@ -769,6 +1114,28 @@ Extras.TreeSelectionModel = Core.extend({
         return this._selectionState;
     },
     
+    /**
+     * Gets the ids of the currently selected nodes.
+     * 
+     * @return the ids of the currently selected nodes
+     * @type Array
+     */
+    getSelectedIds: function() {
+        var ids = [];
+        for (var i = 0; i < this._selectionState.length; ++i) {
+            ids.push(this._selectionState[i]._id);
+        }
+        return ids;
+    },
+    
+    /**
+     * Deselects all nodes.
+     */
+    clearSelection: function() {
+        this._selectionState = [];
+        this._selectedIds = {};
+    },
+    
     /**
      * Determines whether a node is selected.
      * 
@@ -778,12 +1145,7 @@ Extras.TreeSelectionModel = Core.extend({
      * @type Boolean 
      */
     isNodeSelected: function(node) {
-        for (var i = 0; i < this._selectionState.length; ++i) {
-            if (this._selectionState[i]._id == node._id) {
-                return true;
-            }
-        }
-        return false;
+        return !!this._selectedIds[node._id];
     },
     
     /**
@@ -809,8 +1171,8 @@ Extras.TreeSelectionModel = Core.extend({
         if (this._selectionState.length != selection.length) {
             return false;
         }
-        for (var i = 0; i < this._selectionState.length; ++i) {
-            if (Core.Arrays.indexOf(selection, this._selectionState[i].getId()) == -1) {
+        for (var i = 0; i < selection.length; ++i) {
+            if (!this._selectedIds[selection[i]]) {
                 return false;
             }
         }
@@ -1,5 +1,7 @@
 /**
  * RemoteClient-hosted DataGrid component.
+ * 
+ * @sp {Number} cacheSize the maximum number of model cells cached by the client
  */
 Extras.RemoteDataGrid = Core.extend(Extras.DataGrid, {
     
@@ -7,15 +9,165 @@ Extras.RemoteDataGrid = Core.extend(Extras.DataGrid, {
 
         /**
          * Server-based incrementally provided model.
+         * Values are cached in tiles of <code>TILE_COLUMNS</code> by <code>TILE_ROWS</code> cells.  When the number of 
+         * cached cells exceeds the cache size, the least recently used tiles are discarded, except for tiles which are
+         * retained for display.  Discarded tiles are retrieved from the model service when requested by 
+         * <code>prefetch()</code>, and reported to it along with the next request, such that the server does not 
+         * send updates of their values.
          */
         Model: Core.extend(Extras.DataGrid.Model, {
             
+            $static: {
+                
+                /**
+                 * The number of columns of a cache tile.
+                 * @type Number
+                 */
+                TILE_COLUMNS: 20,
+                
+                /**
+                 * The number of rows of a cache tile.
+                 * @type Number
+                 */
+                TILE_ROWS: 20,
+                
+                /**
+                 * The default maximum number of cached cells.
+                 * @type Number
+                 */
+                DEFAULT_CACHE_SIZE: 20000,
+                
+                /**
+                 * The maximum number of cells retrieved by a single request to the model service.
+                 * @type Number
+                 */
+                MAX_REQUEST_CELLS: 4096,
+                
+                /**
+                 * The maximum number of concurrent requests to the model service.
+                 * @type Number
+                 */
+                MAX_REQUESTS: 2,
+                
+                /**
+                 * Reads the values of a region of cells from an element containing either a property element per cell, 
+                 * row by row, or an array element per column, as rendered for columnar models.  The <code>t</code>
+                 * attribute of an array element specifies the type of its values: the text of <code>i</code>, 
+                 * <code>l</code> and <code>d</code> arrays contains space-separated numbers, <code>s</code> arrays 
+                 * contain a property element per string, which is empty for null values.
+                 * 
+                 * @param {Element} element the element containing the values
+                 * @param {Number} x1 the first column (inclusive)
+                 * @param {Number} y1 the first row (inclusive)
+                 * @param {Number} x2 the last column (inclusive)
+                 * @param {Number} y2 the last row (inclusive)
+                 * @return the values, row by row
+                 * @type Array
+                 */
+                readValues: function(element, x1, y1, x2, y2) {
+                    var values = [], width = x2 - x1 + 1, height = y2 - y1 + 1, x, y;
+                    var valueElement = element.firstChild;
+                    if (valueElement && valueElement.nodeName == "a") {
+                        for (x = 0; valueElement && x < width; ++x) {
+                            var type = valueElement.getAttribute("t");
+                            if (type == "s") {
+                                var pElement = valueElement.firstChild;
+                                for (y = 0; pElement && y < height; ++y) {
+                                    values[y * width + x] = pElement.firstChild ? pElement.firstChild.nodeValue : null;
+                                    pElement = pElement.nextSibling;
+                                }
+                            } else {
+                                // Long text may be split into several text nodes by the XML parser.
+                                var text = "";
+                                for (var textNode = valueElement.firstChild; textNode; textNode = textNode.nextSibling) {
+                                    text += textNode.nodeValue;
+                                }
+                                var items = text.split(" ");
+                                for (y = 0; y < items.length && y < height; ++y) {
+                                    values[y * width + x] = type == "d" ? parseFloat(items[y]) : parseInt(items[y], 10);
+                                }
+                            }
+                            valueElement = valueElement.nextSibling;
+                        }
+                    } else {
+                        // Retrieve values.  (Use property sync peers, not implemented yet)
+                        while (valueElement && values.length < width * height) {
+                            values.push(valueElement.firstChild ? valueElement.firstChild.nodeValue : null);
+                            valueElement = valueElement.nextSibling;
+                        }
+                    }
+                    return values;
+                }
+            },
+            
+            /**
+             * Counter used to record the order in which tiles are accessed.
+             * @type Number
+             */
+            _accessCount: 0,
+            
+            /**
+             * The maximum number of cached cells.
+             * @type Number
+             */
+            _cacheSize: null,
+            
             /**
              * Column count.
              * @type Number
              */
             _columnCount: null,
             
+            /**
+             * The cell ranges of the tiles discarded since the last request to the model service, strings of the form
+             * "x1,y1,x2,y2".
+             * @type Array
+             */
+            _discardedRanges: null,
+            
+            /**
+             * The number of times cached values have been moved between cells, used to discard responses which were
+             * requested before the values were moved.
+             * @type Number
+             */
+            _moveCount: 0,
+            
+            /**
+             * Tiles which are queued or being retrieved, mapping tile keys to objects containing column and row 
+             * properties (the tile indices) and a callbacks array, holding the functions of <code>prefetch()</code> 
+             * invocations to invoke when the tile is stored.
+             */
+            _pendingTiles: null,
+            
+            /**
+             * The tile indices of the most recently prefetched region which was not retained for display, an object 
+             * containing x1, y1, x2, and y2 properties.
+             */
+            _prefetchRegion: null,
+            
+            /**
+             * The keys of pending tiles which have not been requested yet, in the order in which they were prefetched.
+             * @type Array
+             */
+            _queue: null,
+            
+            /**
+             * The number of requests to the model service in progress.
+             * @type Number
+             */
+            _requestCount: 0,
+            
+            /**
+             * The number of the last request to the model service.
+             * @type Number
+             */
+            _requestNumber: 0,
+            
+            /**
+             * Mapping between tile keys and the number of displayed regions retaining the tile.
+             */
+            _retainCounts: null,
+            
             /**
              * Row count.
              * @type Number
@@ -23,9 +175,32 @@ Extras.RemoteDataGrid = Core.extend(Extras.DataGrid, {
             _rowCount: null,
             
             /**
-             * Row storage.  Temporary implementation, this will crash and burn on large DataGrids.
+             * The URL of the model service, including the render id of the component.
+             * @type String
              */
-            _rows: null,
+            _serviceUrl: null,
+            
+            /**
+             * The number of tiles in the cache.
+             * @type Number
+             */
+            _tileCount: 0,
+            
+            /**
+             * Tile storage, mapping tile keys to tiles.  A tile is an object containing column and row properties 
+             * (the tile indices), an access property (the value of the access counter when the tile was last accessed),
+             * and a values array holding the cell values row by row.  The values of cells which have not been loaded are
+             * undefined.
+             */
+            _tiles: null,
+            
+            /**
+             * The version of the indices of the model, provided by the server and sent along with discarded tiles.
+             * The server ignores discarded tiles whose indices have been moved by an update the client has not 
+             * received yet.
+             * @type Number
+             */
+            _version: 0,
             
             /**
              * Constructor.
@@ -34,15 +209,88 @@ Extras.RemoteDataGrid = Core.extend(Extras.DataGrid, {
              * @param {Number} rowCount the row count
              */
             $construct: function(columnCount, rowCount) {
-                this._rows = [];
+                this._tiles = { };
+                this._retainCounts = { };
+                this._pendingTiles = { };
+                this._queue = [];
+                this._discardedRanges = [];
+                this._cacheSize = Extras.RemoteDataGrid.Model.DEFAULT_CACHE_SIZE;
                 this._columnCount = columnCount;
                 this._rowCount = rowCount;
             },
             
+            /**
+             * Removes the values of a range of columns, moving the values of the following columns.
+             * 
+             * @param {Number} firstColumn the first deleted column (inclusive)
+             * @param {Number} lastColumn the last deleted column (inclusive)
+             */
+            deleteColumns: function(firstColumn, lastColumn) {
+                var count = lastColumn - firstColumn + 1;
+                this._moveCells(function(column, row) {
+                    if (column < firstColumn) {
+                        return column;
+                    }
+                    return column > lastColumn ? column - count : -1;
+                }, true);
+                this._columnCount -= count;
+            },
+            
+            /**
+             * Removes the values of a range of rows, moving the values of the following rows.
+             * 
+             * @param {Number} firstRow the first deleted row (inclusive)
+             * @param {Number} lastRow the last deleted row (inclusive)
+             */
+            deleteRows: function(firstRow, lastRow) {
+                var count = lastRow - firstRow + 1;
+                this._moveCells(function(column, row) {
+                    if (row < firstRow) {
+                        return row;
+                    }
+                    return row > lastRow ? row - count : -1;
+                }, false);
+                this._rowCount -= count;
+            },
+            
+            /**
+             * Discards least recently used tiles which are not retained, until the number of cached cells does not exceed
+             * the cache size.
+             */
+            _evict: function() {
+                var tileSize = Extras.RemoteDataGrid.Model.TILE_COLUMNS * Extras.RemoteDataGrid.Model.TILE_ROWS;
+                while (this._tileCount * tileSize > this._cacheSize) {
+                    var leastRecentTile = null;
+                    for (var key in this._tiles) {
+                        var tile = this._tiles[key];
+                        if (!this._retainCounts[key] && (leastRecentTile == null || tile.access < leastRecentTile.access)) {
+                            leastRecentTile = tile;
+                        }
+                    }
+                    if (leastRecentTile == null) {
+                        // All tiles are displayed.
+                        return;
+                    }
+                    delete this._tiles[leastRecentTile.column + "," + leastRecentTile.row];
+                    --this._tileCount;
+                    var x = leastRecentTile.column * Extras.RemoteDataGrid.Model.TILE_COLUMNS,
+                        y = leastRecentTile.row * Extras.RemoteDataGrid.Model.TILE_ROWS;
+                    this._discardedRanges.push(x + "," + y + "," + (x + Extras.RemoteDataGrid.Model.TILE_COLUMNS - 1) + 
+                            "," + (y + Extras.RemoteDataGrid.Model.TILE_ROWS - 1));
+                }
+            },
+            
             /** @see Extras.DataGrid.Model#get */
             get: function(column, row) {
-                var rowArray = this._rows[row];
-                return rowArray ? rowArray[column] : null;
+                var tile = this._tiles[Math.floor(column / Extras.RemoteDataGrid.Model.TILE_COLUMNS) + "," + 
+                        Math.floor(row / Extras.RemoteDataGrid.Model.TILE_ROWS)];
+                if (!tile) {
+                    return null;
+                }
+                tile.access = ++this._accessCount;
+                var value = tile.values[(row % Extras.RemoteDataGrid.Model.TILE_ROWS) * 
+                        Extras.RemoteDataGrid.Model.TILE_COLUMNS + column % Extras.RemoteDataGrid.Model.TILE_COLUMNS];
+                return value === undefined ? null : value;
             },
             
             /** @see Extras.DataGrid.Model#getColumnCount */
@@ -55,18 +303,569 @@ Extras.RemoteDataGrid = Core.extend(Extras.DataGrid, {
                 return this._rowCount;
             },
             
-            /** @see Extras.DataGrid.Model#prefetch */
+            /**
+             * Inserts a range of columns without values, moving the values of the following columns.
+             * 
+             * @param {Number} firstColumn the first inserted column (inclusive)
+             * @param {Number} lastColumn the last inserted column (inclusive)
+             */
+            insertColumns: function(firstColumn, lastColumn) {
+                var count = lastColumn - firstColumn + 1;
+                this._moveCells(function(column, row) {
+                    return column < firstColumn ? column : column + count;
+                }, true);
+                this._columnCount += count;
+            },
+            
+            /**
+             * Inserts a range of rows without values, moving the values of the following rows.
+             * 
+             * @param {Number} firstRow the first inserted row (inclusive)
+             * @param {Number} lastRow the last inserted row (inclusive)
+             */
+            insertRows: function(firstRow, lastRow) {
+                var count = lastRow - firstRow + 1;
+                this._moveCells(function(column, row) {
+                    return row < firstRow ? row : row + count;
+                }, false);
+                this._rowCount += count;
+            },
+            
+            /**
+             * Discards all cached values, such that they are retrieved from the server when requested again.
+             * Responses to requests made before the invalidation are discarded.
+             */
+            invalidate: function() {
+                this._tiles = { };
+                this._tileCount = 0;
+                this._pendingTiles = { };
+                this._queue = [];
+                this._discardedRanges = [];
+                ++this._moveCount;
+            },
+            
+            /**
+             * Determines whether the values of all cells of a tile within the bounds of the model are cached.
+             * 
+             * @param {Number} tileColumn the column index of the tile
+             * @param {Number} tileRow the row index of the tile
+             * @return true if the tile is loaded
+             * @type Boolean
+             */
+            _isTileLoaded: function(tileColumn, tileRow) {
+                var tile = this._tiles[tileColumn + "," + tileRow];
+                if (!tile) {
+                    return false;
+                }
+                var columns = Math.min(Extras.RemoteDataGrid.Model.TILE_COLUMNS, 
+                        this._columnCount - tileColumn * Extras.RemoteDataGrid.Model.TILE_COLUMNS),
+                    rows = Math.min(Extras.RemoteDataGrid.Model.TILE_ROWS, 
+                        this._rowCount - tileRow * Extras.RemoteDataGrid.Model.TILE_ROWS);
+                for (var y = 0; y < rows; ++y) {
+                    for (var x = 0; x < columns; ++x) {
+                        if (tile.values[y * Extras.RemoteDataGrid.Model.TILE_COLUMNS + x] === undefined) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            },
+            
+            /**
+             * Determines whether a tile should be retrieved, i.e., whether it is retained for display or part of the
+             * most recently prefetched region which was not retained.
+             * 
+             * @param {Number} tileColumn the column index of the tile
+             * @param {Number} tileRow the row index of the tile
+             * @return true if the tile is wanted
+             * @type Boolean
+             */
+            _isTileWanted: function(tileColumn, tileRow) {
+                var region = this._prefetchRegion;
+                return !!this._retainCounts[tileColumn + "," + tileRow] || (region != null && tileColumn >= region.x1 && 
+                        tileColumn <= region.x2 && tileRow >= region.y1 && tileRow <= region.y2);
+            },
+            
+            /**
+             * Moves the cached values of cells along one axis, storing them in new tiles.
+             * 
+             * @param {Function} translate function returning the new index of a cell along the axis, or -1 if the value
+             *        of the cell is discarded, provided the column and row of the cell
+             * @param {Boolean} columns true to move values between columns, false to move them between rows
+             */
+            _moveCells: function(translate, columns) {
+                var oldTiles = this._tiles;
+                this._tiles = { };
+                this._tileCount = 0;
+                this._pendingTiles = { };
+                this._queue = [];
+                
+                // Discarded tiles are no longer reported, their indices are not valid for the new version.
+                this._discardedRanges = [];
+                ++this._moveCount;
+                for (var key in oldTiles) {
+                    var tile = oldTiles[key];
+                    var left = tile.column * Extras.RemoteDataGrid.Model.TILE_COLUMNS,
+                        top = tile.row * Extras.RemoteDataGrid.Model.TILE_ROWS;
+                    for (var i = 0; i < tile.values.length; ++i) {
+                        if (tile.values[i] === undefined) {
+                            continue;
+                        }
+                        var column = left + i % Extras.RemoteDataGrid.Model.TILE_COLUMNS,
+                            row = top + Math.floor(i / Extras.RemoteDataGrid.Model.TILE_COLUMNS);
+                        var index = translate(column, row);
+                        if (index != -1) {
+                            this._setValue(columns ? index : column, columns ? row : index, tile.values[i], tile.access);
+                        }
+                    }
+                }
+            },
+            
+            /**
+             * Requests the values of a region from the server, unless they are cached.  The callback is invoked 
+             * immediately if all values are cached, otherwise once the values have been stored.
+             * Tiles which are not cached are queued and requested in the background, combining adjacent tiles into 
+             * single requests.  Queued tiles and received values are discarded if the tiles are neither retained nor
+             * part of the most recently prefetched region which is not retained, i.e., if they have been scrolled out 
+             * of view before they were received.
+             * 
+             * @see Extras.DataGrid.Model#prefetch 
+             */
             prefetch: function(callback, firstColumn, firstRow, lastColumn, lastRow) {
-                callback();
+                if (!this._serviceUrl) {
+                    callback();
+                    return;
+                }
+                
+                var region = {
+                    x1: Math.floor(firstColumn / Extras.RemoteDataGrid.Model.TILE_COLUMNS),
+                    y1: Math.floor(firstRow / Extras.RemoteDataGrid.Model.TILE_ROWS),
+                    x2: Math.floor(lastColumn / Extras.RemoteDataGrid.Model.TILE_COLUMNS),
+                    y2: Math.floor(lastRow / Extras.RemoteDataGrid.Model.TILE_ROWS)
+                };
+                var missingKeys = [],
+                    retained = true,
+                    tileColumn, tileRow, key;
+                for (tileRow = region.y1; tileRow <= region.y2 && retained; ++tileRow) {
+                    for (tileColumn = region.x1; tileColumn <= region.x2 && retained; ++tileColumn) {
+                        retained = !!this._retainCounts[tileColumn + "," + tileRow];
+                    }
+                }
+                if (!retained) {
+                    // Region is not (entirely) displayed, i.e., it is prefetched ahead of scrolling.
+                    this._prefetchRegion = region;
+                }
+                
+                for (tileRow = region.y1; tileRow <= region.y2; ++tileRow) {
+                    for (tileColumn = region.x1; tileColumn <= region.x2; ++tileColumn) {
+                        if (!this._isTileLoaded(tileColumn, tileRow)) {
+                            key = tileColumn + "," + tileRow;
+                            if (!this._pendingTiles[key]) {
+                                this._pendingTiles[key] = { column: tileColumn, row: tileRow, callbacks: [] };
+                                this._queue.push(key);
+                            }
+                            missingKeys.push(key);
+                        }
+                    }
+                }
+                
+                if (missingKeys.length === 0) {
+                    callback();
+                    return;
+                }
+                
+                var remaining = missingKeys.length;
+                var tileCallback = function() {
+                    if (--remaining === 0) {
+                        callback();
+                    }
+                };
+                for (var i = 0; i < missingKeys.length; ++i) {
+                    this._pendingTiles[missingKeys[i]].callbacks.push(tileCallback);
+                }
+                
+                this._processQueue();
             },
             
+            /**
+             * Requests queued tiles from the model service, as long as the number of requests in progress is below
+             * <code>MAX_REQUESTS</code>.  Tiles retained for display are requested first.  Each request retrieves a 
+             * rectangle of adjacent queued tiles, of at most <code>MAX_REQUEST_CELLS</code> cells.
+             */
+            _processQueue: function() {
+                var maxTiles = Math.floor(Extras.RemoteDataGrid.Model.MAX_REQUEST_CELLS / 
+                        (Extras.RemoteDataGrid.Model.TILE_COLUMNS * Extras.RemoteDataGrid.Model.TILE_ROWS));
+                while (this._requestCount < Extras.RemoteDataGrid.Model.MAX_REQUESTS && this._queue.length > 0) {
+                    var queued = { },
+                        origin = null,
+                        queue = [],
+                        i, key, tile;
+                    
+                    // Discard tiles which have been scrolled out of view.
+                    for (i = 0; i < this._queue.length; ++i) {
+                        key = this._queue[i];
+                        tile = this._pendingTiles[key];
+                        if (this._isTileWanted(tile.column, tile.row)) {
+                            queue.push(key);
+                            queued[key] = true;
+                            if (origin == null || (this._retainCounts[key] && !this._retainCounts[origin.column + "," + 
+                                    origin.row])) {
+                                origin = tile;
+                            }
+                        } else {
+                            delete this._pendingTiles[key];
+                        }
+                    }
+                    this._queue = queue;
+                    if (origin == null) {
+                        return;
+                    }
+                    
+                    // Extend the request to the right, then downward, over adjacent queued tiles.
+                    var x1 = origin.column, 
+                        y1 = origin.row, 
+                        x2 = x1, 
+                        y2 = y1,
+                        x, complete;
+                    while ((x2 - x1 + 2) <= maxTiles && queued[(x2 + 1) + "," + y1]) {
+                        ++x2;
+                    }
+                    while ((x2 - x1 + 1) * (y2 - y1 + 2) <= maxTiles) {
+                        complete = true;
+                        for (x = x1; x <= x2 && complete; ++x) {
+                            complete = queued[x + "," + (y2 + 1)];
+                        }
+                        if (!complete) {
+                            break;
+                        }
+                        ++y2;
+                    }
+                    
+                    queue = [];
+                    for (i = 0; i < this._queue.length; ++i) {
+                        tile = this._pendingTiles[this._queue[i]];
+                        if (tile.column < x1 || tile.column > x2 || tile.row < y1 || tile.row > y2) {
+                            queue.push(this._queue[i]);
+                        }
+                    }
+                    this._queue = queue;
+                    this._requestTiles(x1, y1, x2, y2);
+                }
+            },
+            
+            /**
+             * Prevents tiles containing a region of cells from being discarded, until they are released.
+             * 
+             * @see Extras.DataGrid.Model#retain
+             */
+            retain: function(firstColumn, firstRow, lastColumn, lastRow) {
+                this._updateRetainCounts(firstColumn, firstRow, lastColumn, lastRow, 1);
+            },
+            
+            /** @see Extras.DataGrid.Model#release */
+            release: function(firstColumn, firstRow, lastColumn, lastRow) {
+                this._updateRetainCounts(firstColumn, firstRow, lastColumn, lastRow, -1);
+            },
+            
+            /**
+             * Requests a rectangle of tiles from the model service.  The received values of tiles which are no longer
+             * wanted are discarded, the values of the other tiles are stored and the callbacks awaiting them are invoked.
+             * 
+             * @param {Number} firstTileColumn the column index of the first tile (inclusive)
+             * @param {Number} firstTileRow the row index of the first tile (inclusive)
+             * @param {Number} lastTileColumn the column index of the last tile (inclusive)
+             * @param {Number} lastTileRow the row index of the last tile (inclusive)
+             */
+            _requestTiles: function(firstTileColumn, firstTileRow, lastTileColumn, lastTileRow) {
+                var x1 = firstTileColumn * Extras.RemoteDataGrid.Model.TILE_COLUMNS,
+                    y1 = firstTileRow * Extras.RemoteDataGrid.Model.TILE_ROWS,
+                    x2 = Math.min((lastTileColumn + 1) * Extras.RemoteDataGrid.Model.TILE_COLUMNS, this._columnCount) - 1,
+                    y2 = Math.min((lastTileRow + 1) * Extras.RemoteDataGrid.Model.TILE_ROWS, this._rowCount) - 1;
+                var moveCount = this._moveCount;
+                var url = this._serviceUrl + "&x1=" + x1 + "&y1=" + y1 + "&x2=" + x2 + "&y2=" + y2 + 
+                        "&v=" + this._version + "&r=" + (++this._requestNumber);
+                if (this._discardedRanges.length > 0) {
+                    url += "&ev=" + this._discardedRanges.join(",");
+                    this._discardedRanges = [];
+                }
+                var conn = new Core.Web.HttpConnection(url, "GET");
+                conn.addResponseListener(Core.method(this, function(e) {
+                    --this._requestCount;
+                    if (moveCount === this._moveCount) {
+                        var wantedTiles = { },
+                            callbacks = [],
+                            tileColumn, tileRow, key, i;
+                        for (tileRow = firstTileRow; tileRow <= lastTileRow; ++tileRow) {
+                            for (tileColumn = firstTileColumn; tileColumn <= lastTileColumn; ++tileColumn) {
+                                key = tileColumn + "," + tileRow;
+                                if (this._pendingTiles[key] && this._isTileWanted(tileColumn, tileRow)) {
+                                    wantedTiles[key] = true;
+                                    callbacks = callbacks.concat(this._pendingTiles[key].callbacks);
+                                }
+                                delete this._pendingTiles[key];
+                            }
+                        }
+                        if (e.valid) {
+                            this._storeValues(e.source.getResponseXml().documentElement, x1, y1, x2, y2, wantedTiles);
+                            for (i = 0; i < callbacks.length; ++i) {
+                                callbacks[i]();
+                            }
+                        }
+                    }
+                    this._processQueue();
+                }));
+                ++this._requestCount;
+                conn.connect();
+            },
+            
+            /**
+             * Sets the value of a cell.  Tiles may be discarded if the cell is stored in a new tile.
+             * 
+             * @param {Number} column the column index
+             * @param {Number} row the row index
+             * @param value the new value
+             */
             set: function(column, row, value) {
-                var rowArray = this._rows[row];
-                if (!rowArray) {
-                    rowArray = [];
-                    this._rows[row] = rowArray;
+                var tileCount = this._tileCount;
+                this._setValue(column, row, value, ++this._accessCount);
+                if (this._tileCount > tileCount) {
+                    this._evict();
+                }
+            },
+            
+            /**
+             * Sets the maximum number of cached cells.
+             * 
+             * @param {Number} cacheSize the cache size, in cells
+             */
+            setCacheSize: function(cacheSize) {
+                this._cacheSize = cacheSize;
+                this._evict();
+            },
+            
+            /**
+             * Sets the URL of the model service, used to retrieve values which are not cached.
+             * 
+             * @param {String} serviceUrl the URL, including the render id of the component
+             */
+            setServiceUrl: function(serviceUrl) {
+                this._serviceUrl = serviceUrl;
+            },
+            
+            /**
+             * Sets the version of the indices of the model, provided by the server.
+             * 
+             * @param {Number} version the version
+             */
+            setVersion: function(version) {
+                this._version = version;
+            },
+            
+            /**
+             * Sets the size of the model.
+             * 
+             * @param {Number} columnCount the column count
+             * @param {Number} rowCount the row count
+             */
+            setSize: function(columnCount, rowCount) {
+                this._columnCount = columnCount;
+                this._rowCount = rowCount;
+            },
+            
+            /**
+             * Stores the value of a cell in its tile, creating the tile if necessary.
+             * 
+             * @param {Number} column the column index
+             * @param {Number} row the row index
+             * @param value the new value
+             * @param {Number} access the access count to record for the tile
+             */
+            _setValue: function(column, row, value, access) {
+                var tileColumn = Math.floor(column / Extras.RemoteDataGrid.Model.TILE_COLUMNS),
+                    tileRow = Math.floor(row / Extras.RemoteDataGrid.Model.TILE_ROWS);
+                var key = tileColumn + "," + tileRow;
+                var tile = this._tiles[key];
+                if (!tile) {
+                    tile = { column: tileColumn, row: tileRow, access: access, values: [] };
+                    this._tiles[key] = tile;
+                    ++this._tileCount;
+                } else if (access > tile.access) {
+                    tile.access = access;
+                }
+                tile.values[(row % Extras.RemoteDataGrid.Model.TILE_ROWS) * Extras.RemoteDataGrid.Model.TILE_COLUMNS + 
+                        column % Extras.RemoteDataGrid.Model.TILE_COLUMNS] = value;
+            },
+            
+            /**
+             * Stores the values of a region of cells, provided as the property elements of a model element.
+             * 
+             * @param {Element} modelElement the model element, containing a property element per cell, row by row
+             * @param {Number} x1 the first column (inclusive)
+             * @param {Number} y1 the first row (inclusive)
+             * @param {Number} x2 the last column (inclusive)
+             * @param {Number} y2 the last row (inclusive)
+             * @param wantedTiles an object whose properties are the keys of the tiles whose values are stored, the values 
+             *        of other tiles are discarded
+             */
+            _storeValues: function(modelElement, x1, y1, x2, y2, wantedTiles) {
+                var tileCount = this._tileCount;
+                var access = ++this._accessCount;
+                var values = Extras.RemoteDataGrid.Model.readValues(modelElement, x1, y1, x2, y2);
+                var x = x1, y = y1;
+                for (var i = 0; i < values.length; ++i) {
+                    if (wantedTiles[Math.floor(x / Extras.RemoteDataGrid.Model.TILE_COLUMNS) + "," + 
+                            Math.floor(y / Extras.RemoteDataGrid.Model.TILE_ROWS)]) {
+                        this._setValue(x, y, values[i], access);
+                    }
+                    
+                    // Move to next value.
+                    ++x;
+                    if (x > x2) {
+                        x = x1;
+                        ++y;
+                    }
+                }
+                if (this._tileCount > tileCount) {
+                    this._evict();
+                }
+            },
+            
+            /**
+             * Adds a value to the retain counts of the tiles containing a region of cells.
+             * 
+             * @param {Number} firstColumn the first column (inclusive)
+             * @param {Number} firstRow the first row (inclusive)
+             * @param {Number} lastColumn the last column (inclusive)
+             * @param {Number} lastRow the last row (inclusive)
+             * @param {Number} increment the value to add, 1 or -1
+             */
+            _updateRetainCounts: function(firstColumn, firstRow, lastColumn, lastRow, increment) {
+                var lastTileColumn = Math.floor(lastColumn / Extras.RemoteDataGrid.Model.TILE_COLUMNS),
+                    lastTileRow = Math.floor(lastRow / Extras.RemoteDataGrid.Model.TILE_ROWS);
+                for (var tileRow = Math.floor(firstRow / Extras.RemoteDataGrid.Model.TILE_ROWS); tileRow <= lastTileRow;
+                        ++tileRow) {
+                    for (var tileColumn = Math.floor(firstColumn / Extras.RemoteDataGrid.Model.TILE_COLUMNS); 
+                            tileColumn <= lastTileColumn; ++tileColumn) {
+                        var key = tileColumn + "," + tileRow;
+                        var retainCount = (this._retainCounts[key] || 0) + increment;
+                        if (retainCount > 0) {
+                            this._retainCounts[key] = retainCount;
+                        } else {
+                            delete this._retainCounts[key];
+                        }
+                    }
+                }
+            }
+        }),
+        
+        /**
+         * Changes to a server-based model, consisting of inserted and deleted rows and columns, followed by the values of
+         * updated cells or the invalidation of all cached values.
+         */
+        ModelUpdate: Core.extend({
+            
+            /**
+             * The new column count.
+             * @type Number
+             */
+            columnCount: null,
+            
+            /**
+             * The new row count.
+             * @type Number
+             */
+            rowCount: null,
+            
+            /**
+             * The version of the indices of the model after the update.
+             * @type Number
+             */
+            version: 0,
+            
+            /**
+             * The insertions and deletions, objects containing the name of the <code>Model</code> method performing the 
+             * operation, and the first and last index.
+             * @type Array
+             */
+            _operations: null,
+            
+            /**
+             * The updated cell ranges, objects containing x1, y1, x2, and y2 properties and a values array holding the
+             * values of the cells row by row.
+             * @type Array
+             */
+            _cellRanges: null,
+            
+            /**
+             * Flag indicating whether all values held by the model are discarded, instead of replacing the values of
+             * cell ranges.
+             * @type Boolean
+             */
+            invalidated: false,
+            
+            /**
+             * Constructor.
+             * 
+             * @param {Number} columnCount the new column count
+             * @param {Number} rowCount the new row count
+             */
+            $construct: function(columnCount, rowCount) {
+                this.columnCount = columnCount;
+                this.rowCount = rowCount;
+                this._operations = [];
+                this._cellRanges = [];
+            },
+            
+            /**
+             * Adds a range of updated cells.
+             * 
+             * @param {Number} x1 the first column (inclusive)
+             * @param {Number} y1 the first row (inclusive)
+             * @param {Number} x2 the last column (inclusive)
+             * @param {Number} y2 the last row (inclusive)
+             * @param {Array} values the values of the cells, row by row
+             */
+            addCellRange: function(x1, y1, x2, y2, values) {
+                this._cellRanges.push({ x1: x1, y1: y1, x2: x2, y2: y2, values: values });
+            },
+            
+            /**
+             * Adds an insertion or deletion of rows or columns.
+             * 
+             * @param {String} method the name of the <code>Model</code> method performing the operation, one of
+             *        insertRows, deleteRows, insertColumns, or deleteColumns
+             * @param {Number} first the first index (inclusive)
+             * @param {Number} last the last index (inclusive)
+             */
+            addOperation: function(method, first, last) {
+                this._operations.push({ method: method, first: first, last: last });
+            },
+            
+            /**
+             * Applies the changes to a model.
+             * 
+             * @param {Extras.RemoteDataGrid.Model} model the model
+             */
+            apply: function(model) {
+                var i;
+                for (i = 0; i < this._operations.length; ++i) {
+                    var operation = this._operations[i];
+                    model[operation.method](operation.first, operation.last);
+                }
+                model.setSize(this.columnCount, this.rowCount);
+                model.setVersion(this.version);
+                if (this.invalidated) {
+                    model.invalidate();
+                }
+                for (i = 0; i < this._cellRanges.length; ++i) {
+                    var range = this._cellRanges[i];
+                    var index = 0;
+                    for (var y = range.y1; y <= range.y2; ++y) {
+                        for (var x = range.x1; x <= range.x2; ++x) {
+                            model.set(x, y, range.values[index++]);
+                        }
+                    }
                 }
-                this._rows[row][column] = value;
             }
         })
     },
@@ -105,14 +904,13 @@ Extras.Sync.RemoteDataGrid = Core.extend(Extras.Sync.DataGrid, {
                             y1 = parseInt(modelElement.getAttribute("y1"), 10),
                             x2 = parseInt(modelElement.getAttribute("x2"), 10),
                             y2 = parseInt(modelElement.getAttribute("y2"), 10);
+                        model.setVersion(parseInt(modelElement.getAttribute("v"), 10));
+                        var values = Extras.RemoteDataGrid.Model.readValues(modelElement, x1, y1, x2, y2);
                         var x = x1, y = y1;
-                        var valueElement = modelElement.firstChild;
-                        while (valueElement) {
-                            // Retrieve value.  (Use property sync peers, not implemented yet)
-                            model.set(x, y, valueElement.firstChild ? valueElement.firstChild.nodeValue : null);
+                        for (var i = 0; i < values.length; ++i) {
+                            model.set(x, y, values[i]);
                             
                             // Move to next value.
-                            valueElement = valueElement.nextSibling;
                             ++x;
                             if (x > x2) {
                                 x = x1;
@@ -126,11 +924,91 @@ Extras.Sync.RemoteDataGrid = Core.extend(Extras.Sync.DataGrid, {
                 $load: function() {
                     Echo.Serial.addPropertyTranslator("Extras.RemoteDataGrid.Model", this);
                 }
+            }),
+            
+            ModelUpdate: Core.extend(Echo.Serial.PropertyTranslator, {
+                
+                $static: {
+                
+                    /**
+                     * Maps the element names of operations to the names of the <code>Model</code> methods performing them.
+                     */
+                    _OPERATIONS: { ir: "insertRows", dr: "deleteRows", ic: "insertColumns", dc: "deleteColumns" },
+                
+                    /** @see Echo.Serial.PropertyTranslator#toProperty */
+                    toProperty: function(client, pElement) {
+                        var updateElement = pElement.firstChild;
+                        var modelUpdate = new Extras.RemoteDataGrid.ModelUpdate(parseInt(updateElement.getAttribute("cc"), 10),
+                                parseInt(updateElement.getAttribute("rc"), 10));
+                        modelUpdate.version = parseInt(updateElement.getAttribute("v"), 10);
+                        var element = updateElement.firstChild;
+                        while (element) {
+                            if (element.nodeName == "c") {
+                                var x1 = parseInt(element.getAttribute("x1"), 10),
+                                    y1 = parseInt(element.getAttribute("y1"), 10),
+                                    x2 = parseInt(element.getAttribute("x2"), 10),
+                                    y2 = parseInt(element.getAttribute("y2"), 10);
+                                modelUpdate.addCellRange(x1, y1, x2, y2, 
+                                        Extras.RemoteDataGrid.Model.readValues(element, x1, y1, x2, y2));
+                            } else if (element.nodeName == "iv") {
+                                modelUpdate.invalidated = true;
+                            } else {
+                                modelUpdate.addOperation(this._OPERATIONS[element.nodeName], 
+                                        parseInt(element.getAttribute("s"), 10), parseInt(element.getAttribute("e"), 10));
+                            }
+                            element = element.nextSibling;
+                        }
+                        return modelUpdate;
+                    }
+                },
+                
+                $load: function() {
+                    Echo.Serial.addPropertyTranslator("Extras.RemoteDataGrid.ModelUpdate", this);
+                }
             })
         }
     },
     
     $load: function() {
         Echo.Render.registerPeer("Extras.RemoteDataGrid", this);
+    },
+    
+    /**
+     * Configures the model to retrieve values from the model service, and to cache at most the number of cells
+     * specified by the <code>cacheSize</code> property.
+     * 
+     * @see Echo.Render.ComponentSync#renderAdd
+     */
+    renderAdd: function(update, parentElement) {
+        Extras.Sync.DataGrid.prototype.renderAdd.call(this, update, parentElement);
+        var model = this.component.get("model");
+        if (model instanceof Extras.RemoteDataGrid.Model) {
+            model.setServiceUrl(this.client.getServiceUrl("EchoExtras.DataGrid.Model") + "&cid=" + this.component.renderId);
+            model.setCacheSize(this.component.render("cacheSize", Extras.RemoteDataGrid.Model.DEFAULT_CACHE_SIZE));
+        }
+    },
+    
+    /**
+     * Applies model updates to the model held by the client.  The tiles are rendered again from the updated model,
+     * the entire grid only if the size of the model changed.
+     * 
+     * @see Echo.Render.ComponentSync#renderUpdate
+     */
+    renderUpdate: function(update) {
+        var modelUpdate = update.getUpdatedProperty("modelUpdate");
+        if (modelUpdate && modelUpdate.newValue && !update.getUpdatedProperty("model")) {
+            var model = this.component.get("model");
+            var columnCount = model.getColumnCount(),
+                rowCount = model.getRowCount();
+            modelUpdate.newValue.apply(model);
+            if (update.getUpdatedPropertyNames().length == 1 && model.getColumnCount() == columnCount && 
+                    model.getRowCount() == rowCount) {
+                if (!this._fullRenderRequired) {
+                    this.renderRegionTiles();
+                }
+                return false;
+            }
+        }
+        return Extras.Sync.DataGrid.prototype.renderUpdate.call(this, update);
     }
 });
@@ -3,27 +3,42 @@ Extras.Serial.RemoteTree = {
 
 Extras.Serial.RemoteTree.TreeStructure = { 
 
+    _FLAG_EXPANDED: 0x1,
+    _FLAG_LEAF: 0x2,
+    _FLAG_ROOT: 0x4,
+    _FLAG_CHILDREN_COMPLETE: 0x8,
+    _FLAG_HEADER: 0x10,
+    _FLAG_NEXT_SIBLING: 0x20,
+    _FLAG_PARENT: 0x40,
+    _FLAG_LINES: 0x80,
+    
+    /**
+     * Pattern splitting a render id into a prefix and a trailing number.
+     */
+    _ID_PATTERN: /^(.*\D)?(\d+)$/,
+
     toProperty: function(client, propertyElement) {
-        var children = Core.Web.DOM.getChildElementsByTagName(propertyElement, "e");
+        var compact = propertyElement.getAttribute("cs");
+        var records = compact ? this._readCompact(compact) : [];
+        
+        if (propertyElement.getAttribute("ws")) {
+            return this._toWindow(propertyElement, records);
+        }
         
         var structures = [];
         
         var treeStructure;
         var headerNode;
-        for (var i = 0; i < children.length; ++i) {
-            var childElement = children[i];
-            var id = childElement.getAttribute("i");
-            var parentId = childElement.getAttribute("p");
-            var node = new Extras.RemoteTree.TreeNode(id, parentId);
-            var expandedState = childElement.getAttribute("ex") == "1";
-            var root = childElement.getAttribute("r") == "1";
-            node.setExpanded(expandedState);
-            node.setLeaf(childElement.getAttribute("l") == "1");
-            var header = childElement.getAttribute("h") == "1";
-            if (header) {
+        for (var i = 0; i < records.length; ++i) {
+            var record = records[i];
+            var node = new Extras.RemoteTree.TreeNode(record.id, record.parentId);
+            node.setExpanded((record.flags & this._FLAG_EXPANDED) !== 0);
+            node.setLeaf((record.flags & this._FLAG_LEAF) !== 0);
+            node.setChildNodesComplete((record.flags & this._FLAG_CHILDREN_COMPLETE) !== 0);
+            if (record.flags & this._FLAG_HEADER) {
                 headerNode = node;
             } else {
-                if (root) {
+                if (record.flags & this._FLAG_ROOT) {
                     treeStructure = new Extras.RemoteTree.TreeStructure(node);
                     if (headerNode) {
                         treeStructure.setHeaderNode(headerNode);
@@ -35,11 +50,8 @@ Extras.Serial.RemoteTree.TreeStructure = {
                 }
             }
             
-            var columns = childElement.childNodes;
-            for (var c = 0; c < columns.length; ++c) {
-                var columnElement = columns[c];
-                var columnId = columnElement.getAttribute("i");
-                node.addColumn(columnId);
+            for (var c = 0; c < record.columns.length; ++c) {
+                node.addColumn(record.columns[c]);
             }
         }
         if (headerNode) {
@@ -47,6 +59,124 @@ Extras.Serial.RemoteTree.TreeStructure = {
         }
         structures.fullRefresh = (propertyElement.getAttribute("fr") == "1");
         return structures;
+    },
+    
+    /**
+     * Creates the tree window of a virtualized tree. The rows of a window are always
+     * sent in their entirety.
+     */
+    _toWindow: function(propertyElement, records) {
+        var treeWindow = new Extras.RemoteTree.TreeWindow(parseInt(propertyElement.getAttribute("ws"), 10),
+                parseInt(propertyElement.getAttribute("rc"), 10));
+        for (var i = 0; i < records.length; ++i) {
+            var record = records[i];
+            var node = new Extras.RemoteTree.TreeNode(record.id, null);
+            node.setExpanded((record.flags & this._FLAG_EXPANDED) !== 0);
+            node.setLeaf((record.flags & this._FLAG_LEAF) !== 0);
+            for (var c = 0; c < record.columns.length; ++c) {
+                node.addColumn(record.columns[c]);
+            }
+            if (record.flags & this._FLAG_HEADER) {
+                treeWindow.setHeaderNode(node);
+            } else {
+                treeWindow.addRow(node, record.depth, (record.flags & this._FLAG_NEXT_SIBLING) !== 0, record.lines);
+            }
+        }
+        var structures = [treeWindow];
+        structures.fullRefresh = true;
+        return structures;
+    },
+    
+    /**
+     * Reads the nodes of the structure from the compact string written by 
+     * <code>CompactTreeStructureWriter</code>. The parent of a node that is
+     * not the root of a structure is the closest preceding node with a 
+     * depth of one less.
+     */
+    _readCompact: function(data) {
+        var nodes = this._split(data);
+        var records = [];
+        var depthIds = [];
+        var prefix = null;
+        var number = 0;
+        
+        var readId = Core.method(this, function(field) {
+            var id;
+            if (field === "") {
+                id = prefix + (number + 1);
+            } else if (field.charAt(0) == "~") {
+                id = prefix + (number + parseInt(field.substring(1), 10));
+            } else {
+                id = field.indexOf("\\") == -1 ? field : field.replace(/\\(.)/g, "$1");
+            }
+            var match = this._ID_PATTERN.exec(id);
+            if (match && match[2].length <= 9 && (match[2].length == 1 || match[2].charAt(0) != "0")) {
+                prefix = match[1] || "";
+                number = parseInt(match[2], 10);
+            } else {
+                prefix = null;
+            }
+            return id;
+        });
+        
+        for (var i = 0; i < nodes.length; ++i) {
+            var fields = nodes[i];
+            var flags = parseInt(fields[0], 10);
+            var depth = parseInt(fields[1], 10);
+            var record = { id: readId(fields[2]), parentId: null, flags: flags, depth: depth, lines: null, columns: [] };
+            var index = 3;
+            if (flags & this._FLAG_PARENT) {
+                record.parentId = readId(fields[index++]);
+            } else if (!(flags & (this._FLAG_ROOT | this._FLAG_HEADER | this._FLAG_LINES)) && depth > 1) {
+                record.parentId = depthIds[depth - 1];
+            }
+            if (flags & this._FLAG_LINES) {
+                record.lines = fields[index++];
+            }
+            for (; index < fields.length; ++index) {
+                record.columns.push(readId(fields[index]));
+            }
+            if (!(flags & this._FLAG_HEADER)) {
+                depthIds[depth] = record.id;
+            }
+            records.push(record);
+        }
+        return records;
+    },
+    
+    /**
+     * Splits a compact structure string into an array of nodes, each being 
+     * an array of fields. Escaped separators are not split, the escape 
+     * characters are retained.
+     */
+    _split: function(data) {
+        var nodes = [];
+        var i;
+        if (data.indexOf("\\") == -1) {
+            var nodeStrings = data.split(";");
+            for (i = 0; i < nodeStrings.length; ++i) {
+                nodes.push(nodeStrings[i].split(","));
+            }
+            return nodes;
+        }
+        var fields = [];
+        var start = 0;
+        for (i = 0; i < data.length; ++i) {
+            var ch = data.charAt(i);
+            if (ch == "\\") {
+                ++i;
+            } else if (ch == "," || ch == ";") {
+                fields.push(data.substring(start, i));
+                start = i + 1;
+                if (ch == ";") {
+                    nodes.push(fields);
+                    fields = [];
+                }
+            }
+        }
+        fields.push(data.substring(start));
+        nodes.push(fields);
+        return nodes;
     }
 };
 
@@ -11,8 +11,13 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
         LINE_STYLE_NONE: 0,
         LINE_STYLE_SOLID: 1,
         LINE_STYLE_DOTTED: 2,
+        
+        /**
+         * The row height assumed for virtualized trees until the rows are measured.
+         */
+        _DEFAULT_ROW_HEIGHT: 20,
     
-        _supportedPartialProperties: ["treeStructure", "selection"],
+        _supportedPartialProperties: ["treeStructure", "selection", "columnWidth"],
         
         TREE_IMAGES: {
             0: {
@@ -62,6 +67,9 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
         this._headerVisible = this.component.render("headerVisible", false);
         this._rolloverEnabled = this.component.render("rolloverEnabled");
         this._selectionEnabled = this.component.render("selectionEnabled");
+        // the selection held before the tree is rendered again
+        var selectedIds = this.selectionModel ? this.selectionModel.getSelectedIds() : null;
+        this.selectionModel = null;
         if (this._selectionEnabled) {
             this.selectionModel = new Extras.TreeSelectionModel(parseInt(this.component.get("selectionMode"), 10));
         }
@@ -95,6 +103,8 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
         var tbodyElement = document.createElement("tbody");
         tableElement.appendChild(tbodyElement);
         this._tbodyElement = tbodyElement;
+        // maps the ids of the rendered nodes to their row elements
+        this._rowElements = {};
         
         //-- element needed for FF-specific hack, see _doExpansion function
         this._buggerTBody = document.createElement("tbody");
@@ -113,6 +123,7 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
             // local style structure contains a partial update
             this._mergeTreeStructureUpdate(localStructure);
         }
+        this._virtual = this.component.treeStructure instanceof Extras.RemoteTree.TreeWindow;
         this.columnCount = this.component.get("columnCount");
         
         this._renderColumnWidths();
@@ -120,15 +131,31 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
         if (this._headerVisible) {
             this._renderNode(update, this.component.treeStructure.getHeaderNode());
         }
-        var rootNode = this.component.treeStructure.getRootNode();
-        this._renderNode(update, rootNode);
+        if (this._virtual) {
+            this._renderWindow(update);
+            this._element = this._renderScrollContainer(tableElement);
+        } else {
+            var rootNode = this.component.treeStructure.getRootNode();
+            this._renderNode(update, rootNode);
+        }
         
-        parentElement.appendChild(tableElement);
+        parentElement.appendChild(this._element);
     
-        var selection = this.component.render("selection");
-        if (selection && this._selectionEnabled) {
-            this._setSelectedFromProperty(selection);
+        if (this._selectionEnabled) {
+            if (selectedIds) {
+                // the selection property may only hold the changes since the previous update
+                this._setSelectedFromIds(selectedIds);
+                if (this._selectionUpdate) {
+                    this._setSelectedFromProperty(this._selectionUpdate);
+                }
+            } else {
+                var selection = this.component.render("selection");
+                if (selection) {
+                    this._setSelectedFromProperty(selection);
+                }
+            }
         }
+        this._selectionUpdate = null;
     },
     
     _computeEffectBorderCompensation: function() {
@@ -146,44 +173,309 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
     },
     
     _renderColumnWidths: function() {
+        this._colGroupElement = null;
         if (!this.component.render("columnWidth")) {
             return;
         }
         // If any column widths are set, render colgroup.
-        var columnPixelAdjustment;
-        if (Core.Web.Env.QUIRK_TABLE_CELL_WIDTH_EXCLUDES_PADDING) {
-            var pixelInsets = Echo.Sync.Insets.toPixels(this._defaultInsets);
-            columnPixelAdjustment = pixelInsets.left + pixelInsets.right;
-        }
-        
         this._colGroupElement = document.createElement("colgroup");
-        var renderRelative = !Core.Web.Env.NOT_SUPPORTED_RELATIVE_COLUMN_WIDTHS;
         for (var i = 0; i < this.columnCount; ++i) {
             var colElement = document.createElement("col");
-            var width = this.component.renderIndex("columnWidth", i); 
+            var width = this._getColumnWidth(i);
             if (width != null) {
-                if (Echo.Sync.Extent.isPercent(width)) {
-                    colElement.width = parseFloat(width) + (renderRelative ? "*" : "%");
-                } else {
-                    var columnPixels = Echo.Sync.Extent.toPixels(width, true);
-                    if (columnPixelAdjustment) {
-                        colElement.width = columnPixels - columnPixelAdjustment + "px";
-                    } else {
-                        colElement.width = columnPixels + "px";
-                    }
-                }
+                colElement.width = width;
             }
             this._colGroupElement.appendChild(colElement);
         }
         this._element.appendChild(this._colGroupElement);
     },
     
+    /**
+     * Returns the value of the width attribute of the col element of a column.
+     * 
+     * @param {Number} columnIndex the index of the column
+     * @return the width, or null if the column has no width
+     * @type String
+     */
+    _getColumnWidth: function(columnIndex) {
+        var width = this.component.renderIndex("columnWidth", columnIndex); 
+        if (width == null) {
+            return null;
+        }
+        if (Echo.Sync.Extent.isPercent(width)) {
+            return parseFloat(width) + (Core.Web.Env.NOT_SUPPORTED_RELATIVE_COLUMN_WIDTHS ? "%" : "*");
+        }
+        var columnPixels = Echo.Sync.Extent.toPixels(width, true);
+        if (Core.Web.Env.QUIRK_TABLE_CELL_WIDTH_EXCLUDES_PADDING) {
+            var pixelInsets = Echo.Sync.Insets.toPixels(this._defaultInsets);
+            columnPixels -= pixelInsets.left + pixelInsets.right;
+        }
+        return columnPixels + "px";
+    },
+    
+    /**
+     * Updates the col elements of the columns whose width has changed. The server only sends
+     * the widths of resized columns, the other widths are left untouched.
+     * 
+     * @return true if the widths were updated, false if the tree needs to be rendered again
+     * @type Boolean
+     */
+    _updateColumnWidths: function() {
+        if (!this._colGroupElement) {
+            return false;
+        }
+        var colElement = this._colGroupElement.firstChild;
+        for (var i = 0; i < this.columnCount && colElement; ++i) {
+            var width = this._getColumnWidth(i);
+            if (width == null) {
+                if (colElement.width) {
+                    colElement.removeAttribute("width");
+                }
+            } else if (colElement.width != width) {
+                colElement.width = width;
+            }
+            colElement = colElement.nextSibling;
+        }
+        return true;
+    },
+    
     renderDisplay: function() {
         if (this._renderPercentWidthByMeasure) {
             this._element.style.width = "";
             var percentWidth = (this._element.parentNode.offsetWidth * this._renderPercentWidthByMeasure) / 100;
             this._element.style.width = percentWidth + "px";
         }
+        if (this._virtual) {
+            this._renderSpacers();
+            if (this._scrollTop != null) {
+                this._element.scrollTop = this._scrollTop;
+                this._scrollTop = null;
+            }
+            this._notifyViewport();
+        }
+    },
+    
+    /**
+     * Renders the rows of the window of a virtualized tree.
+     */
+    _renderWindow: function(update) {
+        var treeWindow = this.component.treeStructure;
+        var rows = treeWindow.getRows();
+        for (var i = 0; i < rows.length; ++i) {
+            var node = rows[i];
+            if (!this._rootVisible && node == treeWindow.getRootNode()) {
+                continue;
+            }
+            var elems = this._renderNodeRowStructure(null, node, treeWindow.getNodeDepth(node));
+            this._renderNodeCells(update, node, elems);
+            if (elems.expandoElement) {
+                this._renderExpandoElement(node, elems.expandoElement);
+            }
+        }
+    },
+    
+    /**
+     * Renders a new window of a virtualized tree in place. The rows of nodes that are part of
+     * both windows and rendered alike are kept along with their components, the rows of the 
+     * other nodes are disposed, and rows are only created for the nodes that entered the window.
+     * 
+     * @param {Extras.RemoteTree.TreeWindow} treeWindow the new window
+     * @return true if the rows were updated, false if the tree needs to be rendered again
+     * @type Boolean
+     */
+    _renderWindowUpdate: function(treeWindow, update) {
+        var oldWindow = this.component.treeStructure;
+        if (!(treeWindow instanceof Extras.RemoteTree.TreeWindow) || !(oldWindow instanceof Extras.RemoteTree.TreeWindow)) {
+            return false;
+        }
+        var oldHeaderNode = oldWindow.getHeaderNode();
+        var headerNode = treeWindow.getHeaderNode();
+        if ((oldHeaderNode ? oldHeaderNode.getId() : null) != (headerNode ? headerNode.getId() : null)) {
+            return false;
+        }
+        if (update.getUpdatedProperty("columnWidth") && !this._updateColumnWidths()) {
+            return false;
+        }
+        
+        var i, node, rowElement;
+        var keptRowElements = {};
+        var oldRows = oldWindow.getRows();
+        for (i = 0; i < oldRows.length; ++i) {
+            node = oldRows[i];
+            rowElement = this._rowElements[node.getId()];
+            if (!rowElement) {
+                // hidden root node
+                continue;
+            }
+            var newNode = treeWindow.getNode(node.getId());
+            if (newNode && treeWindow.getNodeRow(newNode) != -1 && 
+                    this._getWindowRowKey(oldWindow, node) == this._getWindowRowKey(treeWindow, newNode)) {
+                keptRowElements[node.getId()] = rowElement;
+            } else {
+                this._disposeRow(update, node, rowElement);
+            }
+        }
+        
+        this.component.treeStructure = treeWindow;
+        var insertBefore = headerNode ? this._rowElements[headerNode.getId()].nextSibling : this._tbodyElement.firstChild;
+        var rows = treeWindow.getRows();
+        for (i = 0; i < rows.length; ++i) {
+            node = rows[i];
+            if (!this._rootVisible && node == treeWindow.getRootNode()) {
+                continue;
+            }
+            rowElement = keptRowElements[node.getId()];
+            if (!rowElement) {
+                var elems = this._renderNodeRowStructure(insertBefore, node, treeWindow.getNodeDepth(node));
+                this._renderNodeCells(update, node, elems);
+                if (elems.expandoElement) {
+                    this._renderExpandoElement(node, elems.expandoElement);
+                }
+            } else if (rowElement == insertBefore) {
+                insertBefore = rowElement.nextSibling;
+            } else {
+                this._tbodyElement.insertBefore(rowElement, insertBefore);
+            }
+        }
+        this._renderSpacers();
+        
+        if (this._selectionEnabled) {
+            // the rows that entered the window show the selection held before
+            this._setSelectedFromIds(this.selectionModel.getSelectedIds());
+            var selection = update.getUpdatedProperty("selection");
+            if (selection) {
+                this._setSelectedFromProperty(selection.newValue, true);
+            }
+        }
+        return true;
+    },
+    
+    /**
+     * Returns a key describing how the row of node in a window of a virtualized tree is 
+     * rendered. A row can be kept for a new window if the keys of its node are equal.
+     * 
+     * @return the key
+     * @type String
+     */
+    _getWindowRowKey: function(treeWindow, node) {
+        var key = [treeWindow.getNodeDepth(node), treeWindow.hasNodeNextSibling(node), treeWindow.getNodeLines(node),
+                node.isExpanded(), node.isLeaf(), node == treeWindow.getRootNode()];
+        for (var c = 0; c < this.columnCount - 1; ++c) {
+            key.push(node.getColumn(c));
+        }
+        return key.join("|");
+    },
+    
+    /**
+     * Disposes the components rendered to the row of node, and removes the row element.
+     */
+    _disposeRow: function(update, node, rowElement) {
+        var application = this.component.application;
+        var component = application.getComponentByRenderId(node.getId());
+        if (component) {
+            Echo.Render.renderComponentDispose(update, component);
+        }
+        for (var c = 0; c < this.columnCount - 1; ++c) {
+            var columnComponent = application.getComponentByRenderId(node.getColumn(c));
+            if (columnComponent) {
+                Echo.Render.renderComponentDispose(update, columnComponent);
+            }
+        }
+        Core.Web.Event.removeAll(rowElement);
+        var cellElements = rowElement.getElementsByTagName("td");
+        for (var i = 0; i < cellElements.length; ++i) {
+            if (cellElements[i].__ExtrasTreeCellType) {
+                Core.Web.Event.removeAll(cellElements[i]);
+            }
+        }
+        this._tbodyElement.removeChild(rowElement);
+        delete this._rowElements[node.getId()];
+    },
+    
+    /**
+     * Creates the scrolled container of a virtualized tree. The rows outside of the 
+     * window are represented by spacer elements above and below the table element,
+     * sized in renderDisplay() once the height of the rows is known.
+     * 
+     * @param {Element} tableElement the table element
+     * @return the container element
+     * @type Element
+     */
+    _renderScrollContainer: function(tableElement) {
+        var containerElement = document.createElement("div");
+        containerElement.id = this.component.renderId;
+        tableElement.removeAttribute("id");
+        containerElement.style.overflow = "auto";
+        containerElement.style.height = Echo.Sync.Extent.toCssValue(this.component.render("height", "300px"), false);
+        
+        this._topSpacerElement = document.createElement("div");
+        this._bottomSpacerElement = document.createElement("div");
+        containerElement.appendChild(this._topSpacerElement);
+        containerElement.appendChild(tableElement);
+        containerElement.appendChild(this._bottomSpacerElement);
+        
+        Core.Web.Event.add(containerElement, "scroll", Core.method(this, this._processScroll), false);
+        return containerElement;
+    },
+    
+    /**
+     * Sizes the spacer elements of a virtualized tree, based on the measured height of 
+     * the rendered rows.
+     */
+    _renderSpacers: function() {
+        var treeWindow = this.component.treeStructure;
+        var rowElement = this._tbodyElement.firstChild;
+        if (rowElement && this._headerVisible) {
+            rowElement = rowElement.nextSibling;
+        }
+        if (rowElement && rowElement.offsetHeight > 0) {
+            this._rowHeight = rowElement.offsetHeight;
+        } else if (!this._rowHeight) {
+            this._rowHeight = Extras.Sync.RemoteTree._DEFAULT_ROW_HEIGHT;
+        }
+        var rowsBefore = treeWindow.startRow;
+        var rowsAfter = treeWindow.rowCount - treeWindow.startRow - treeWindow.getRows().length;
+        if (!this._rootVisible && rowsBefore > 0) {
+            // the root node occupies a row, but is not rendered
+            --rowsBefore;
+        }
+        this._topSpacerElement.style.height = (rowsBefore * this._rowHeight) + "px";
+        this._bottomSpacerElement.style.height = (Math.max(0, rowsAfter) * this._rowHeight) + "px";
+    },
+    
+    /**
+     * Processes a scroll event of a virtualized tree. The viewport is reported once 
+     * scrolling has paused.
+     */
+    _processScroll: function(e) {
+        if (this._scrollRunnable) {
+            Core.Web.Scheduler.remove(this._scrollRunnable);
+        }
+        this._scrollRunnable = Core.Web.Scheduler.run(Core.method(this, this._notifyViewport), 100, false);
+    },
+    
+    /**
+     * Reports the viewport of a virtualized tree to the server if the rendered window
+     * does not cover the viewport, including a margin of half a viewport on either side.
+     */
+    _notifyViewport: function() {
+        this._scrollRunnable = null;
+        if (!this._element || !this.client || !this._rowHeight) {
+            return;
+        }
+        var treeWindow = this.component.treeStructure;
+        var firstRow = Math.floor(this._element.scrollTop / this._rowHeight);
+        if (!this._rootVisible) {
+            ++firstRow;
+        }
+        var rowCount = Math.ceil(this._element.clientHeight / this._rowHeight) + 1;
+        var margin = Math.floor(rowCount / 2);
+        var startRow = Math.max(0, firstRow - margin);
+        var endRow = Math.min(treeWindow.rowCount, firstRow + rowCount + margin);
+        if (startRow >= treeWindow.startRow && endRow <= treeWindow.startRow + treeWindow.getRows().length) {
+            return;
+        }
+        this.component.fireEvent({type: "viewport", source: this.component, data: firstRow + "," + rowCount});
     },
     
     /**
@@ -197,6 +489,7 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
      */
     _elementIterator: function(startRow, endRow) {
         var component = this.component;
+        var rowElements = this._rowElements;
         if (!startRow && this._tbodyElement.firstChild) {
             startRow = this._tbodyElement.firstChild;
         }
@@ -210,6 +503,10 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
              * and the cursor is reset to its current state.
              */
             nextRow : function(node) {
+                if (node && !rowElements[node.getId()]) {
+                    // no row has been rendered for node
+                    return null;
+                }
                 var cursor = this.rowElement;
                 var result = this._nextRow();
                 if (!node) {
@@ -336,20 +633,7 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
             tdElement = elems.tdElement;
             expandoElement = elems.expandoElement;
             
-            var component = this.component.application.getComponentByRenderId(node.getId());
-            Echo.Render.renderComponentAdd(update, component, tdElement);
-            
-            if (this.columnCount > 1) {
-                for (var c = 0; c < this.columnCount - 1; ++c) {
-                    var columnElement = document.createElement("td");
-                    
-                    var columnComponent = this.component.application.getComponentByRenderId(node.getColumn(c));
-                    Echo.Render.renderComponentAdd(update, columnComponent, columnElement);
-                    
-                    trElement.appendChild(columnElement);
-                }
-            }
-            this._setDefaultRowStyle(trElement);
+            this._renderNodeCells(update, node, elems);
         } else {
             trElement.style.display = ""; // unhide
             tdElement = iterator.currentNodeElement();
@@ -383,6 +667,33 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
         }
     },
     
+    /**
+     * Renders the components of node to the row elements created by _renderNodeRowStructure().
+     */
+    _renderNodeCells: function(update, node, elems) {
+        var component = this.component.application.getComponentByRenderId(node.getId());
+        Echo.Render.renderComponentAdd(update, component, elems.tdElement);
+        var sortable = node == this.component.treeStructure.getHeaderNode() && this.component.render("sortEnabled");
+        if (sortable) {
+            this._addSortListener(elems.tdElement, 0);
+        }
+        
+        if (this.columnCount > 1) {
+            for (var c = 0; c < this.columnCount - 1; ++c) {
+                var columnElement = document.createElement("td");
+                
+                var columnComponent = this.component.application.getComponentByRenderId(node.getColumn(c));
+                Echo.Render.renderComponentAdd(update, columnComponent, columnElement);
+                if (sortable) {
+                    this._addSortListener(columnElement, c + 1);
+                }
+                
+                elems.trElement.appendChild(columnElement);
+            }
+        }
+        this._setDefaultRowStyle(elems.trElement);
+    },
+    
     _getIconLineStyleSuffix: function() {
         switch (this._lineStyle) {
             case Extras.Sync.RemoteTree.LINE_STYLE_NONE:
@@ -509,6 +820,7 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
         var isHeader = node == this.component.treeStructure.getHeaderNode();
         var trElement = document.createElement("tr");
         trElement.id = this.component.renderId + "_tr_" + node.getId();
+        this._rowElements[node.getId()] = trElement;
         trElement.style.cursor = isHeader || !this._selectionEnabled ? "default" : "pointer";
         trElement.style.verticalAlign = "top";
         
@@ -535,7 +847,12 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
 //            img.style.height = "10px";
             rowHeaderElement.appendChild(img);
     
-            if (parentNode) {
+            if (this._virtual) {
+                if (this._showLines && this.component.treeStructure.hasAncestorNextSibling(node, c) && this._imageSet.vertical) {
+                    Echo.Sync.FillImage.render({ url: this._imageSet.vertical, repeat: "no-repeat", x: "50%", y: 0 }, 
+                            rowHeaderElement);
+                }
+            } else if (parentNode) {
                 if (this._showLines && this.component.treeStructure.hasNodeNextSibling(parentNode) && this._imageSet.vertical) {
                     var verticalLineFillImage = { url: this._imageSet.vertical, repeat: "no-repeat", x: "50%", y: 0 };
                     Echo.Sync.FillImage.render(verticalLineFillImage, rowHeaderElement);
@@ -877,18 +1194,57 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
      */
     _clearSelected: function() {
         var selected = this.selectionModel.getSelectedNodes();
-        while (selected.length > 0) {
-            this._setSelectionState(selected[0], false);
+        this.selectionModel.clearSelection();
+        for (var i = 0; i < selected.length; ++i) {
+            var rowElement = this._getRowElementForNode(selected[i]);
+            if (rowElement) {
+                this._setRowStyle(this._createRowStyleContext(rowElement, "selection", false));
+            }
+        }
+    },
+    
+    /**
+     * Selects the nodes with the given ids, if present.
+     * 
+     * @param {Array} selectedIds the ids of the nodes to select
+     */
+    _setSelectedFromIds: function(selectedIds) {
+        for (var i = 0; i < selectedIds.length; i++) {
+            if (selectedIds[i] === "") {
+                continue;
+            }
+            var node = this.component.treeStructure.getNode(selectedIds[i]);
+            if (node) {
+                this._setSelectionState(node, true);
+            }
         }
     },
     
     /**
      * Sets the selection state based on the given selection property value.
+     * The value is either a comma separated list of the ids of all selected nodes,
+     * or a list of changes to the current selection, starting with "~", in which
+     * the ids of newly selected nodes are prefixed with "+" and the ids of 
+     * deselected nodes with "-".
      *
      * @param {String} value the value of the selection property
-     * @param {Boolean} clearPrevious if the previous selection state should be overwritten
+     * @param {Boolean} clearPrevious if the previous selection state should be overwritten,
+     *        ignored when the value is a list of changes
      */
     _setSelectedFromProperty: function(value, clearPrevious) {
+        if (value.charAt(0) == "~") {
+            var changes = value.substring(1).split(",");
+            for (var i = 0; i < changes.length; i++) {
+                if (changes[i] === "") {
+                    continue;
+                }
+                var node = this.component.treeStructure.getNode(changes[i].substring(1));
+                if (node) {
+                    this._setSelectionState(node, changes[i].charAt(0) == "+");
+                }
+            }
+            return;
+        }
         var selectedIds = value.split(",");
         if (this.selectionModel.equalsSelectionIdArray(selectedIds)) {
             return;
@@ -896,13 +1252,7 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
         if (clearPrevious) {
             this._clearSelected();
         }
-        for (var i = 0; i < selectedIds.length; i++) {
-            if (selectedIds[i] === "") {
-                continue;
-            }
-            var node = this.component.treeStructure.getNode(selectedIds[i]);
-            this._setSelectionState(node, true);
-        }
+        this._setSelectedFromIds(selectedIds);
     },
     
     /**
@@ -953,25 +1303,14 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
      * @type HTMLTableRowElement  
      */
     _getRowElementForNode: function(node) {
-        var testId = this.component.renderId + "_tr_" + node.getId();
-        var rowElement = document.getElementById(testId);
-        if (rowElement) {
-            return rowElement;
-        }
-        // the table element is not yet added to the dom structure, iterate over the rows.
-        var iterator = this._elementIterator();
-        rowElement = iterator.nextRow();
-        while (rowElement) {
-            if (rowElement.id == testId) {
-                return rowElement;
-            }
-            rowElement = iterator.nextRow();
-        }
-        return null;
+        var rowElement = this._rowElements[node.getId()];
+        return rowElement ? rowElement : null;
     },
     
     /**
      * Gets the visible row index of node. If node is not visible, -1 is returned.
+     * The row indices are looked up in the tree structure, the root node is at row 0
+     * even when it is not shown.
      * 
      * @param {Extras.RemoteTree.TreeNode} node the node to get the row index for
      * 
@@ -979,23 +1318,7 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
      * @type Integer 
      */
     _getRowIndexForNode: function(node) {
-        var testElement = this._tbodyElement.firstChild;
-        
-        var index = this._headerVisible ? -1 : 0;
-        while (testElement) {
-            if (testElement.id == this.component.renderId + "_tr_" + node.getId()) {
-                if (index != -1 && !this._rootVisible && this._headerVisible) {
-                    ++index;
-                }
-                return index;
-            }
-            testElement = testElement.nextSibling;
-            if (testElement.style.display != "none") {
-                // non-expanded nodes should not be taken into account
-                ++index;
-            }
-        }
-        return null;
+        return this.component.treeStructure.getNodeRow(node);
     },
     
     /**
@@ -1010,23 +1333,7 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
         if (element.style.display == "none") {
             return null;
         }
-        var testElement = this._tbodyElement.firstChild;
-        
-        var index = this._headerVisible ? -1 : 0;
-        while (testElement) {
-            if (testElement == element) {
-                if (index != -1 && !this._rootVisible && this._headerVisible) {
-                    ++index;
-                }
-                return index;
-            }
-            testElement = testElement.nextSibling;
-            if (testElement.style.display != "none") {
-                // non-expanded nodes should not be taken into account
-                ++index;
-            }
-        }
-        return null;
+        return this._getRowIndexForNode(this._getNodeFromElement(element));
     },
     
     _addEventListeners: function(elements) {
@@ -1056,6 +1363,30 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
         }
     },
     
+    /**
+     * Makes a header cell sort the tree by its column when clicked.
+     * 
+     * @param {Element} cellElement the header cell
+     * @param {Number} columnIndex the index of the column
+     */
+    _addSortListener: function(cellElement, columnIndex) {
+        cellElement.__ExtrasTreeColumnIndex = columnIndex;
+        cellElement.style.cursor = "pointer";
+        Core.Web.Event.add(cellElement, "click", Core.method(this, this._sortHandler), false);
+        if (!this._sortElements) {
+            this._sortElements = [];
+        }
+        this._sortElements.push(cellElement);
+    },
+    
+    _sortHandler: function(e) {
+        if (!this.client || !this.client.verifyInput(this.component)) {
+            return;
+        }
+        this.component.doSort(e.registeredTarget.__ExtrasTreeColumnIndex);
+        return false;
+    },
+    
     _doExpansion: function(node, e) {
         if (node.isLeaf()) {
             return false;
@@ -1065,13 +1396,17 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
             // this behavior is consistent with at least Windows Explorer and qooxdoo tree
             return false;
         } 
-        if (node.isExpanded()) {
+        if (this._virtual) {
+            // the rows of a virtualized tree are always rendered by the server
+        } else if (node.isExpanded()) {
             node.setExpanded(false);
+            this.component.treeStructure.invalidateRows();
             // no other peers will be called, so update may be null
             this._renderNode(null, node);
         } else if (node.getChildNodeCount() > 0) {
             // we already have the children of this node, expand and render direct
             node.setExpanded(true);
+            this.component.treeStructure.invalidateRows();
             // no other peers will be called, so update may be null
             this._renderNode(null, node);
         }
@@ -1096,6 +1431,10 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
     },
     
     _doSelection: function(node, e) {
+        if (this._virtual && this.lastSelectedNode) {
+            // the nodes of a virtualized tree are created again for every window
+            this.lastSelectedNode = this.component.treeStructure.getNode(this.lastSelectedNode.getId());
+        }
         var trElement = this._getRowElementForNode(node);
         var rowIndex = this._getRowIndexForNode(node);
         
@@ -1125,16 +1464,20 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
             }
             
             var iterator = this.component.treeStructure.iterator(startNode, false, endNode);
-            var i = lastSelectedIndex < rowIndex ? lastSelectedIndex : rowIndex;
+            var firstRow = lastSelectedIndex < rowIndex ? lastSelectedIndex : rowIndex;
+            var i = firstRow;
             trElement = this._getRowElementForNode(startNode);
             while (iterator.hasNext()) {
                 node = iterator.nextNode();
                 this._setSelectionState(node, true, trElement);
-                update.addSelection(i++);
+                ++i;
                 do {
                     trElement = trElement.nextSibling;
                 } while (trElement && trElement.style.display == "none");
             }
+            if (i > firstRow) {
+                update.addSelectionRange(firstRow, i - 1);
+            }
         } else {
             this.lastSelectedNode = node;
             var selected = !this.selectionModel.isNodeSelected(node);
@@ -1206,6 +1549,22 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
                 Core.Web.Event.removeAll(e);
             }
         }
+        if (this._sortElements) {
+            for (var i = 0; i < this._sortElements.length; ++i) {
+                Core.Web.Event.removeAll(this._sortElements[i]);
+            }
+            this._sortElements = null;
+        }
+        
+        if (this._virtual) {
+            if (this._scrollRunnable) {
+                Core.Web.Scheduler.remove(this._scrollRunnable);
+                this._scrollRunnable = null;
+            }
+            Core.Web.Event.removeAll(this._element);
+            this._topSpacerElement = null;
+            this._bottomSpacerElement = null;
+        }
         
         this._buggerTBody = null;        
         this._buggerRow = null;        
@@ -1213,6 +1572,7 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
         this._prevMaxDepth = null;
         //this.component.treeStructure = null;
         this._tbodyElement = null;
+        this._rowElements = null;
         this._element = null;
     },
     
@@ -1230,15 +1590,18 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
         var fullStructure = (treeStructureUpdate && treeStructureUpdate.newValue && 
                 treeStructureUpdate.newValue.fullRefresh);
         if (!fullStructure) {
-            // removal of children indicates that the tree was invalidated, 
-            // and thus all components are re-rendered, and the tree structure we have at the client 
-            // is no longer valid.
-            if (treeStructureUpdate && treeStructureUpdate.newValue) {
+            // removal of children indicates that rows were removed or rendered again on the server,
+            // the structure update is merged when the tree is rendered again.
+            var partial = !update.getRemovedChildren();
+            if (partial && treeStructureUpdate && treeStructureUpdate.newValue) {
                 // tree structure updates are always partial, even when there are other updates we can't handle
-                this._renderTreeStructureUpdate(treeStructureUpdate.newValue, update);
+                partial = this._renderTreeStructureUpdate(treeStructureUpdate.newValue, update);
+            }
+            if (partial && update.getUpdatedProperty("columnWidth")) {
+                partial = this._updateColumnWidths();
             }
             
-            if (Core.Arrays.containsAll(Extras.Sync.RemoteTree._supportedPartialProperties, 
+            if (partial && Core.Arrays.containsAll(Extras.Sync.RemoteTree._supportedPartialProperties, 
                     propertyNames, true)) {
                 var selection = update.getUpdatedProperty("selection");
                 if (selection && this._selectionEnabled) {
@@ -1249,12 +1612,24 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
                 return false;
             }
         } else {
+            if (this._virtual && Core.Arrays.containsAll(Extras.Sync.RemoteTree._supportedPartialProperties, 
+                    propertyNames, true) && this._renderWindowUpdate(treeStructureUpdate.newValue[0], update)) {
+                // partial update
+                return false;
+            }
             // we have a full structure property sent down from the server, reset current structure
             this.component.treeStructure = null;
         }
         
+        var selectionUpdate = update.getUpdatedProperty("selection");
+        this._selectionUpdate = selectionUpdate ? selectionUpdate.newValue : null;
+        
         var element = this._element;
         var containerElement = element.parentNode;
+        if (this._virtual) {
+            // restored in renderDisplay()
+            this._scrollTop = element.scrollTop;
+        }
         Echo.Render.renderComponentDispose(update, update.parent);
         containerElement.removeChild(element);
         this.renderAdd(update, containerElement);
@@ -1262,31 +1637,49 @@ Extras.Sync.RemoteTree = Core.extend(Echo.Render.ComponentSync, {
         return true;
     },
     
+    /**
+     * Merges a partial structure update into the current tree structure.
+     * 
+     * @return the nodes to render, or null if the child nodes of rendered nodes have changed
+     *         and the rows can't be updated in place
+     * @type Array
+     */
     _mergeTreeStructureUpdate: function(treeStructureUpdate) {
         var nodes = [];
+        var changed = false;
         var structs = treeStructureUpdate;
         for (var i = 0; i < structs.length; ++i) {
             var struct = structs[i]; 
             var updateRootNode = struct.getRootNode();
             var node = this.component.treeStructure.getNode(updateRootNode.getId());
             if (node) {
-                this.component.treeStructure.addOrUpdateChildNodes(updateRootNode);
-                node.setExpanded(updateRootNode.isExpanded());
+                changed = this.component.treeStructure.addOrUpdateNode(updateRootNode) || changed;
             } else {
                 node = this.component.treeStructure.getNode(updateRootNode.getParentId());
                 node.setExpanded(true);
-                this.component.treeStructure.addOrUpdateNode(updateRootNode);
+                this.component.treeStructure.invalidateRows();
+                changed = this.component.treeStructure.addOrUpdateNode(updateRootNode) || changed;
             }
             nodes.push(node);
         }
-        return nodes;
+        return changed ? null : nodes;
     },
     
+    /**
+     * Merges a partial structure update and renders the affected rows.
+     * 
+     * @return true if the rows were updated, false if the tree needs to be rendered again
+     * @type Boolean
+     */
     _renderTreeStructureUpdate: function(treeStructureUpdate, update) {
         var nodes = this._mergeTreeStructureUpdate(treeStructureUpdate);
+        if (!nodes) {
+            return false;
+        }
         for (var i = 0; i < nodes.length; ++i) {
             var node = nodes[i];
             this._renderNode(update, node);
         }
+        return true;
     }
 });
@@ -29,14 +29,14 @@
 
 package nextapp.echo.extras.webcontainer.sync.component;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.xml.sax.SAXException;
 
 import nextapp.echo.app.Component;
 import nextapp.echo.app.serial.PropertyPeerFactory;
@@ -44,6 +44,7 @@ import nextapp.echo.app.serial.SerialException;
 import nextapp.echo.app.serial.SerialPropertyPeer;
 import nextapp.echo.app.util.Context;
 import nextapp.echo.app.util.DomUtil;
+import nextapp.echo.extras.app.serial.ModelXmlWriter;
 import nextapp.echo.extras.app.viewer.Viewer;
 import nextapp.echo.extras.app.viewer.ViewerModel;
 import nextapp.echo.extras.webcontainer.service.CommonService;
@@ -104,22 +105,23 @@ public abstract class AbstractViewerPeer extends AbstractComponentSynchronizePee
                 ViewerModel model = viewer.getModel();
                 ModelData modelData = new ModelData(model, startIndex, endIndex);
                 
+                // The document is only used to render values which are not written directly.
                 Document document = DomUtil.createDocument("model", null, null, null);
                 Context context = new SynchronizationContext(conn, document);
                 
-                Element modelElement = document.getDocumentElement();
-                modelElement.setAttribute("sz", Integer.toString(model.size()));
-                modelElement.setAttribute("is", Integer.toString(modelData.getStartIndex()));
-                modelElement.setAttribute("ie", Integer.toString(modelData.getEndIndex()));
-                renderModelDataContent(context, modelData, modelElement);
-                
                 conn.setContentType(ContentType.TEXT_XML);
-                DomUtil.save(document, conn.getOutputStream(), null);
-                DomUtil.save(document, new PrintWriter(System.err), null);
+                ModelXmlWriter writer = new ModelXmlWriter(new BufferedWriter(
+                        new OutputStreamWriter(conn.getOutputStream(), "UTF-8")), context);
+                writer.writeDeclaration();
+                writer.writeStartElement("model");
+                writer.writeAttribute("sz", Integer.toString(model.size()));
+                writer.writeAttribute("is", Integer.toString(modelData.getStartIndex()));
+                writer.writeAttribute("ie", Integer.toString(modelData.getEndIndex()));
+                renderModelDataContent(writer, modelData);
+                writer.writeEndElement();
+                writer.flush();
             } catch (SerialException ex) {
                 throw new SynchronizationException("Unable to render model data.", ex);
-            } catch (SAXException ex) {
-                throw new SynchronizationException("Unable to render model data.", ex);
             }
         }
     };
@@ -251,6 +253,41 @@ public abstract class AbstractViewerPeer extends AbstractComponentSynchronizePee
         }
     }
     
+    /**
+     * Writes the content of a model data property to a <code>ModelXmlWriter</code>, as a property element per value.
+     * The elements of array values are written as property elements with an <code>x</code> attribute holding their
+     * index in the array.
+     * 
+     * @param writer the <code>ModelXmlWriter</code>
+     * @param modelData the <code>ModelData</code> whose content is to be written
+     * @throws IOException
+     * @throws SerialException
+     */
+    public static void renderModelDataContent(ModelXmlWriter writer, ModelData modelData) 
+    throws IOException, SerialException {
+        ViewerModel model = modelData.getModel();
+        int endIndex = Math.min(modelData.getEndIndex(), model.size());
+        for (int i = modelData.getStartIndex(); i < endIndex; ++i) {
+            Object modelValue = model.get(i);
+            if (modelValue instanceof Object[]) {
+                Object[] array = (Object[]) modelValue;
+                for (int iArray = 0; iArray < array.length; ++iArray) {
+                    if (array[iArray] == null) {
+                        continue;
+                    }
+                    writer.writeStartElement("p");
+                    writer.writeAttribute("x", Integer.toString(iArray));
+                    writer.writeValue(array[iArray], ViewerModel.class);
+                    writer.writeEndElement();
+                }
+            } else {
+                writer.writeStartElement("p");
+                writer.writeValue(modelValue, ViewerModel.class);
+                writer.writeEndElement();
+            }
+        }
+    }
+    
     private static final Service BASE_JS_SERVICE = JavaScriptService.forResources("EchoExtras.Viewer",
             new String[] {  "nextapp/echo/extras/webcontainer/resource/Application.Viewer.js",  
                             "nextapp/echo/extras/webcontainer/resource/Sync.Viewer.js",
@@ -29,25 +29,38 @@
 
 package nextapp.echo.extras.webcontainer.sync.component;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.xml.sax.SAXException;
 
 import nextapp.echo.app.Component;
+import nextapp.echo.app.Window;
 import nextapp.echo.app.serial.PropertyPeerFactory;
 import nextapp.echo.app.serial.SerialException;
 import nextapp.echo.app.serial.SerialPropertyPeer;
+import nextapp.echo.app.update.ServerComponentUpdate;
 import nextapp.echo.app.util.Context;
 import nextapp.echo.app.util.DomUtil;
 import nextapp.echo.extras.app.DataGrid;
+import nextapp.echo.extras.app.datagrid.AsyncPrefetchDataGridModel;
+import nextapp.echo.extras.app.datagrid.ColumnarDataGridModel;
 import nextapp.echo.extras.app.datagrid.DataGridModel;
 import nextapp.echo.extras.app.datagrid.PrefetchDataGridModel;
+import nextapp.echo.extras.app.serial.ModelXmlWriter;
 import nextapp.echo.extras.webcontainer.CommonResources;
 import nextapp.echo.extras.webcontainer.service.CommonService;
+import nextapp.echo.extras.webcontainer.sync.component.datagrid.DataGridRenderState;
 import nextapp.echo.webcontainer.AbstractComponentSynchronizePeer;
 import nextapp.echo.webcontainer.Connection;
 import nextapp.echo.webcontainer.ContentType;
@@ -58,19 +71,30 @@ import nextapp.echo.webcontainer.ServiceRegistry;
 import nextapp.echo.webcontainer.SynchronizationException;
 import nextapp.echo.webcontainer.WebContainerServlet;
 import nextapp.echo.webcontainer.service.JavaScriptService;
+import nextapp.echo.webcontainer.util.MultiIterator;
 
 /**
  * Synchronization peer for <code>DataGrid</code>s.
  */
 public class DataGridPeer extends AbstractComponentSynchronizePeer {
     
+    /**
+     * Name of the output property holding the changes to the model data held by the client.
+     */
+    private static final String PROPERTY_MODEL_UPDATE = "modelUpdate";
+    
+    /**
+     * Maximum number of cells to render in a single service request or model update.
+     */
+    private static final int MAX_SIZE = 4096;
+    
+    /**
+     * Maximum time to wait for an <code>AsyncPrefetchDataGridModel</code> to prefetch a region, in milliseconds.
+     */
+    private static final long PREFETCH_TIMEOUT = 30000;
+    
     private static final Service MODEL_SERVICE = new Service() {
 
-        /**
-         * Maximum number of cells to render in a single service request.
-         */
-        private static final int MAX_SIZE = 4096;
-        
         /**
          * @see nextapp.echo.webcontainer.Service#getId()
          */
@@ -103,18 +127,40 @@ public class DataGridPeer extends AbstractComponentSynchronizePeer {
                     throw new IOException("Model request for " + size + " cells exceeded maximum size of " + MAX_SIZE + " cells.");
                 }
                 ModelData modelData = new ModelData(dataGrid.getModel(), firstColumn, firstRow, lastColumn, lastRow);
+                DataGridRenderState renderState = (DataGridRenderState) dataGrid.getContainingWindow().getRenderState(dataGrid);
+                if (renderState != null) {
+                    // Tiles discarded by the client are reported as a comma-separated list of cell ranges.
+                    int version = Integer.parseInt(request.getParameter("v"));
+                    int requestNumber = Integer.parseInt(request.getParameter("r"));
+                    String discarded = request.getParameter("ev");
+                    if (discarded != null) {
+                        String[] indices = discarded.split(",");
+                        if (indices.length % 4 != 0) {
+                            throw new IOException("Invalid discarded regions: " + discarded);
+                        }
+                        for (int i = 0; i < indices.length; i += 4) {
+                            renderState.removeLoadedRegion(Integer.parseInt(indices[i]), 
+                                    Integer.parseInt(indices[i + 1]), Integer.parseInt(indices[i + 2]), 
+                                    Integer.parseInt(indices[i + 3]), version, requestNumber);
+                        }
+                    }
+                    renderState.addLoadedRegion(firstColumn, firstRow, lastColumn, lastRow, requestNumber);
+                }
                 
+                // The document is only used to render values which are not written directly.
                 Document document = DomUtil.createDocument("model", null, null, null);
                 Context context = new SynchronizationContext(conn, document);
                 
-                renderModelDataContent(context, modelData, document.getDocumentElement());
-                
                 conn.setContentType(ContentType.TEXT_XML);
-                DomUtil.save(document, conn.getOutputStream(), null);
+                ModelXmlWriter writer = new ModelXmlWriter(new BufferedWriter(
+                        new OutputStreamWriter(conn.getOutputStream(), "UTF-8")), context);
+                writer.writeDeclaration();
+                writer.writeStartElement("model");
+                renderModelDataContent(writer, modelData);
+                writer.writeEndElement();
+                writer.flush();
             } catch (SerialException ex) {
                 throw new SynchronizationException("Unable to render model data.", ex);
-            } catch (SAXException ex) {
-                throw new SynchronizationException("Unable to render model data.", ex);
             }
         }
     };
@@ -131,15 +177,19 @@ public class DataGridPeer extends AbstractComponentSynchronizePeer {
         
         private int firstColumn, firstRow, lastColumn, lastRow;
         private DataGridModel model;
+        private int version;
         
         /**
          * Creates a new <code>ModelData</code> instance.
+         * The region is prefetched if the model is a <code>PrefetchDataGridModel</code>.  The prefetching of an
+         * <code>AsyncPrefetchDataGridModel</code> is awaited for at most <code>PREFETCH_TIMEOUT</code> milliseconds.
          * 
          * @param model the <code>DataGridModel</code>
          * @param firstColumn the first column (inclusive)
          * @param firstRow the first row (inclusive)
          * @param lastColumn the last column (inclusive)
          * @param lastRow the last row (inclusive)
+         * @throws SynchronizationException if an asynchronous prefetch fails or times out
          */
         public ModelData(DataGridModel model, int firstColumn, int firstRow, int lastColumn, int lastRow) {
             super();
@@ -149,7 +199,20 @@ public class DataGridPeer extends AbstractComponentSynchronizePeer {
             this.lastColumn = lastColumn;
             this.lastRow = lastRow;
 
-            if (model instanceof PrefetchDataGridModel) {
+            if (model instanceof AsyncPrefetchDataGridModel) {
+                Future future = ((AsyncPrefetchDataGridModel) model).prefetchAsync(firstColumn, firstRow, lastColumn, lastRow);
+                try {
+                    future.get(PREFETCH_TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException ex) {
+                    future.cancel(true);
+                    throw new SynchronizationException("Model prefetch timed out after " + PREFETCH_TIMEOUT + " ms.", ex);
+                } catch (InterruptedException ex) {
+                    future.cancel(true);
+                    throw new SynchronizationException("Model prefetch interrupted.", ex);
+                } catch (ExecutionException ex) {
+                    throw new SynchronizationException("Unable to prefetch model data.", ex.getCause());
+                }
+            } else if (model instanceof PrefetchDataGridModel) {
                 ((PrefetchDataGridModel) model).prefetch(firstColumn, firstRow, lastColumn, lastRow);
             }
         }
@@ -198,6 +261,24 @@ public class DataGridPeer extends AbstractComponentSynchronizePeer {
         public int getLastRow() {
             return lastRow;
         }
+        
+        /**
+         * Returns the version of the indices of the model, see <code>DataGridRenderState.getVersion()</code>.
+         * 
+         * @return the version
+         */
+        public int getVersion() {
+            return version;
+        }
+        
+        /**
+         * Sets the version of the indices of the model, which the client sends along with the regions it discards.
+         * 
+         * @param newValue the new version
+         */
+        public void setVersion(int newValue) {
+            version = newValue;
+        }
     }
     
     /**
@@ -231,13 +312,38 @@ public class DataGridPeer extends AbstractComponentSynchronizePeer {
             modelElement.setAttribute("y1", Integer.toString(modelData.getFirstRow()));
             modelElement.setAttribute("x2", Integer.toString(modelData.getLastColumn()));
             modelElement.setAttribute("y2", Integer.toString(modelData.getLastRow()));
+            modelElement.setAttribute("v", Integer.toString(modelData.getVersion()));
             renderModelDataContent(context, modelData, modelElement);
             propertyElement.appendChild(modelElement);
         }
     }
     
+    /**
+     * Returns the name of a <code>ColumnarDataGridModel</code> column type, as rendered in the <code>t</code> 
+     * attribute of a column array.
+     * 
+     * @param type the column type
+     * @return the type name
+     */
+    private static String getColumnTypeName(int type) {
+        switch (type) {
+        case ColumnarDataGridModel.TYPE_INT:
+            return "i";
+        case ColumnarDataGridModel.TYPE_LONG:
+            return "l";
+        case ColumnarDataGridModel.TYPE_DOUBLE:
+            return "d";
+        case ColumnarDataGridModel.TYPE_STRING:
+            return "s";
+        default:
+            throw new IllegalArgumentException("Invalid column type: " + type);
+        }
+    }
+    
     /**
      * Renders the content of a model data property to XML.  Appends created property elements to specified parent element.
+     * The content of a <code>ColumnarDataGridModel</code> is rendered as column arrays, see 
+     * <code>renderColumnarModelDataContent()</code>.
      * 
      * @param context the relevant <code>Context</code> object (a <code>SynchronizationContext</code>)
      * @param modelData the <code>ModelData</code> whose content is to be rendered
@@ -246,6 +352,10 @@ public class DataGridPeer extends AbstractComponentSynchronizePeer {
      */
     public static void renderModelDataContent(Context context, ModelData modelData, Element parentElement) 
     throws SerialException {
+        if (modelData.getModel() instanceof ColumnarDataGridModel) {
+            renderColumnarModelDataContent(modelData, parentElement);
+            return;
+        }
         PropertyPeerFactory factory = (PropertyPeerFactory) context.get(PropertyPeerFactory.class);
         for (int row = modelData.getFirstRow(); row <= modelData.getLastRow(); ++row) {
             for (int column = modelData.getFirstColumn(); column <= modelData.getLastColumn(); ++column) {
@@ -260,6 +370,127 @@ public class DataGridPeer extends AbstractComponentSynchronizePeer {
         }
     }
     
+    /**
+     * Renders the content of a model data property of a <code>ColumnarDataGridModel</code> to XML, as an 
+     * <code>a</code> (array) element per column whose <code>t</code> attribute specifies the column type.  
+     * The values of numeric columns are rendered as space-separated text, the values of <code>String</code> columns 
+     * as a <code>p</code> element per value, which is empty for <code>null</code> values.  Values are retrieved 
+     * through the typed getters of the model and do not require the lookup of a <code>SerialPropertyPeer</code>.
+     * 
+     * @param modelData the <code>ModelData</code> whose content is to be rendered
+     * @param parentElement the parent DOM <code>Element</code>
+     */
+    private static void renderColumnarModelDataContent(ModelData modelData, Element parentElement) {
+        ColumnarDataGridModel model = (ColumnarDataGridModel) modelData.getModel();
+        Document document = parentElement.getOwnerDocument();
+        StringBuffer text = new StringBuffer();
+        for (int column = modelData.getFirstColumn(); column <= modelData.getLastColumn(); ++column) {
+            int type = model.getColumnType(column);
+            Element arrayElement = document.createElement("a");
+            arrayElement.setAttribute("t", getColumnTypeName(type));
+            if (type == ColumnarDataGridModel.TYPE_STRING) {
+                for (int row = modelData.getFirstRow(); row <= modelData.getLastRow(); ++row) {
+                    Element pElement = document.createElement("p");
+                    String value = model.getString(column, row);
+                    if (value != null) {
+                        pElement.appendChild(document.createTextNode(value));
+                    }
+                    arrayElement.appendChild(pElement);
+                }
+            } else {
+                text.setLength(0);
+                for (int row = modelData.getFirstRow(); row <= modelData.getLastRow(); ++row) {
+                    if (row > modelData.getFirstRow()) {
+                        text.append(' ');
+                    }
+                    switch (type) {
+                    case ColumnarDataGridModel.TYPE_INT:
+                        text.append(model.getInt(column, row));
+                        break;
+                    case ColumnarDataGridModel.TYPE_LONG:
+                        text.append(model.getLong(column, row));
+                        break;
+                    default:
+                        text.append(model.getDouble(column, row));
+                    }
+                }
+                arrayElement.appendChild(document.createTextNode(text.toString()));
+            }
+            parentElement.appendChild(arrayElement);
+        }
+    }
+    
+    /**
+     * Writes the content of a model data property to a <code>ModelXmlWriter</code>, as a property element per cell.
+     * The content of a <code>ColumnarDataGridModel</code> is written as column arrays, in the format described by
+     * <code>renderColumnarModelDataContent()</code>.
+     * 
+     * @param writer the <code>ModelXmlWriter</code>
+     * @param modelData the <code>ModelData</code> whose content is to be written
+     * @throws IOException
+     * @throws SerialException
+     */
+    public static void renderModelDataContent(ModelXmlWriter writer, ModelData modelData) 
+    throws IOException, SerialException {
+        if (modelData.getModel() instanceof ColumnarDataGridModel) {
+            renderColumnarModelDataContent(writer, modelData);
+            return;
+        }
+        DataGridModel model = modelData.getModel();
+        for (int row = modelData.getFirstRow(); row <= modelData.getLastRow(); ++row) {
+            for (int column = modelData.getFirstColumn(); column <= modelData.getLastColumn(); ++column) {
+                writer.writeStartElement("p");
+                writer.writeValue(model.get(column, row), DataGridModel.class);
+                writer.writeEndElement();
+            }
+        }
+    }
+    
+    /**
+     * Writes the content of a model data property of a <code>ColumnarDataGridModel</code> to a 
+     * <code>ModelXmlWriter</code>, as column arrays.
+     * 
+     * @param writer the <code>ModelXmlWriter</code>
+     * @param modelData the <code>ModelData</code> whose content is to be written
+     * @throws IOException
+     */
+    private static void renderColumnarModelDataContent(ModelXmlWriter writer, ModelData modelData) 
+    throws IOException {
+        ColumnarDataGridModel model = (ColumnarDataGridModel) modelData.getModel();
+        for (int column = modelData.getFirstColumn(); column <= modelData.getLastColumn(); ++column) {
+            int type = model.getColumnType(column);
+            writer.writeStartElement("a");
+            writer.writeAttribute("t", getColumnTypeName(type));
+            if (type == ColumnarDataGridModel.TYPE_STRING) {
+                for (int row = modelData.getFirstRow(); row <= modelData.getLastRow(); ++row) {
+                    writer.writeStartElement("p");
+                    String value = model.getString(column, row);
+                    if (value != null) {
+                        writer.writeText(value);
+                    }
+                    writer.writeEndElement();
+                }
+            } else {
+                for (int row = modelData.getFirstRow(); row <= modelData.getLastRow(); ++row) {
+                    if (row > modelData.getFirstRow()) {
+                        writer.writeText(" ");
+                    }
+                    switch (type) {
+                    case ColumnarDataGridModel.TYPE_INT:
+                        writer.writeInt(model.getInt(column, row));
+                        break;
+                    case ColumnarDataGridModel.TYPE_LONG:
+                        writer.writeLong(model.getLong(column, row));
+                        break;
+                    default:
+                        writer.writeDouble(model.getDouble(column, row));
+                    }
+                }
+            }
+            writer.writeEndElement();
+        }
+    }
+    
     static {
         CommonResources.install();
 
@@ -301,7 +532,19 @@ public class DataGridPeer extends AbstractComponentSynchronizePeer {
     public Object getOutputProperty(Context context, Component component, String propertyName, int propertyIndex) {
         DataGrid dataGrid = (DataGrid) component;
         if (propertyName.equals(DataGrid.MODEL_CHANGED_PROPERTY)) {
-            return new ModelData(dataGrid.getModel(), 0, 0, 19, 19);
+            Window containingWindow = dataGrid.getContainingWindow();
+            DataGridRenderState renderState = (DataGridRenderState) containingWindow.getRenderState(dataGrid);
+            if (renderState == null) {
+                renderState = new DataGridRenderState(dataGrid);
+                containingWindow.setRenderState(dataGrid, renderState);
+            }
+            renderState.reset(0, 0, 19, 19);
+            ModelData modelData = new ModelData(dataGrid.getModel(), 0, 0, 19, 19);
+            modelData.setVersion(renderState.getVersion());
+            return modelData;
+        } else if (propertyName.equals(PROPERTY_MODEL_UPDATE)) {
+            DataGridRenderState renderState = (DataGridRenderState) dataGrid.getContainingWindow().getRenderState(dataGrid);
+            return renderState.getModelUpdate();
         } else if (propertyName.equals(DataGrid.COLUMN_INDEX_CHANGED_PROPERTY)) {
             return dataGrid.getColumnIndex();
         } else if (propertyName.equals(DataGrid.ROW_INDEX_CHANGED_PROPERTY)) {
@@ -315,6 +558,28 @@ public class DataGridPeer extends AbstractComponentSynchronizePeer {
         }
     }
 
+    /**
+     * Renders changes to the content of the model incrementally, as a model update holding only the cells loaded by 
+     * the client.  The model is rendered in its entirety if the changes cannot be rendered incrementally.
+     * 
+     * @see nextapp.echo.webcontainer.AbstractComponentSynchronizePeer#getUpdatedOutputPropertyNames(
+     *      nextapp.echo.app.util.Context, nextapp.echo.app.Component, nextapp.echo.app.update.ServerComponentUpdate)
+     */
+    public Iterator getUpdatedOutputPropertyNames(Context context, Component component, ServerComponentUpdate update) {
+        Iterator normalPropertyIterator = super.getUpdatedOutputPropertyNames(context, component, update);
+        if (!update.hasUpdatedProperty(DataGrid.MODEL_CONTENT_CHANGED_PROPERTY) 
+                || update.hasUpdatedProperty(DataGrid.MODEL_CHANGED_PROPERTY)) {
+            return normalPropertyIterator;
+        }
+        DataGrid dataGrid = (DataGrid) component;
+        DataGridRenderState renderState = (DataGridRenderState) dataGrid.getContainingWindow().getRenderState(dataGrid);
+        if (renderState == null) {
+            return normalPropertyIterator;
+        }
+        String propertyName = renderState.prepareModelUpdate(MAX_SIZE) ? PROPERTY_MODEL_UPDATE : DataGrid.MODEL_CHANGED_PROPERTY;
+        return new MultiIterator(new Iterator[] { normalPropertyIterator, Collections.singleton(propertyName).iterator() });
+    }
+
     /**
      * @see nextapp.echo.webcontainer.AbstractComponentSynchronizePeer#init(nextapp.echo.app.util.Context, Component)
      */
@@ -35,8 +35,10 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import nextapp.echo.app.Component;
@@ -75,7 +77,9 @@ public class TreePeer
 extends AbstractComponentSynchronizePeer {
 
     /**
-     * Holds a selection update from the client
+     * Holds a selection update from the client. The added and removed 
+     * selections are stored as <code>int[]</code> row intervals of the form
+     * <code>{ firstRow, lastRow }</code>.
      */
     private static class TreeSelectionUpdate {
         boolean clear = false;
@@ -83,6 +87,41 @@ extends AbstractComponentSynchronizePeer {
         List removedSelections = new LinkedList();
     }
     
+    /**
+     * Parses a comma separated list of rows and row intervals, e.g.
+     * <code>3,7-12</code>, into <code>int[]</code> intervals.
+     */
+    private static void parseRowIntervals(String value, List intervals) {
+        String[] tokens = value.split(",");
+        for (int i = 0; i < tokens.length; i++) {
+            int separator = tokens[i].indexOf('-');
+            if (separator == -1) {
+                int row = Integer.parseInt(tokens[i]);
+                intervals.add(new int[] { row, row });
+            } else {
+                intervals.add(new int[] { Integer.parseInt(tokens[i].substring(0, separator)),
+                        Integer.parseInt(tokens[i].substring(separator + 1)) });
+            }
+        }
+    }
+    
+    /**
+     * Returns the paths of all rows in the given <code>int[]</code> row
+     * intervals.
+     */
+    private static TreePath[] getPathsForRowIntervals(Tree tree, List intervals) {
+        List paths = new ArrayList();
+        for (Iterator iterator = intervals.iterator(); iterator.hasNext();) {
+            int[] interval = (int[]) iterator.next();
+            if (interval[0] == interval[1]) {
+                paths.add(tree.getPathForRow(interval[0]));
+            } else {
+                paths.addAll(Arrays.asList(tree.getPathsBetweenRows(interval[0], interval[1])));
+            }
+        }
+        return (TreePath[]) paths.toArray(new TreePath[paths.size()]);
+    }
+    
     /**
      * Translates a selection update directive from the client to 
      * a TreeSelectionUpdatePeer object.
@@ -96,18 +135,10 @@ extends AbstractComponentSynchronizePeer {
             String cStr = propertyElement.getAttribute("c");
             update.clear = Boolean.valueOf(cStr).booleanValue();
             if (propertyElement.hasAttribute("r")) {
-                String rStr = propertyElement.getAttribute("r");
-                String[] rTokens = rStr.split(",");
-                for (int i = 0; i < rTokens.length; i++) {
-                    update.removedSelections.add(Integer.valueOf(rTokens[i]));
-                }
+                parseRowIntervals(propertyElement.getAttribute("r"), update.removedSelections);
             }
             if (propertyElement.hasAttribute("a")) {
-                String aStr = propertyElement.getAttribute("a");
-                String[] aTokens = aStr.split(",");
-                for (int i = 0; i < aTokens.length; i++) {
-                    update.addedSelections.add(Integer.valueOf(aTokens[i]));
-                }
+                parseRowIntervals(propertyElement.getAttribute("a"), update.addedSelections);
             }
             return update;
         }
@@ -129,6 +160,12 @@ extends AbstractComponentSynchronizePeer {
      * holds the render ids of the nodes. If a node is not yet sent to the client, the
      * selection state will be kept on the client (using the unset selections list of 
      * the render state object).
+     * <p>
+     * If the render state knows which selection the client holds, only the 
+     * difference to that selection is sent: the string then starts with 
+     * <code>~</code>, followed by the render ids of newly selected nodes 
+     * prefixed with <code>+</code> and of deselected nodes prefixed with 
+     * <code>-</code>.
      * 
      * @param context
      * @param selectionModel
@@ -139,12 +176,12 @@ extends AbstractComponentSynchronizePeer {
         UserInstance userInstance = (UserInstance) context.get(UserInstance.class);
         TreeRenderState renderState = (TreeRenderState) tree.getContainingWindow().getRenderState(tree);
         
-        StringBuffer selection = new StringBuffer();
+        Map selection = new LinkedHashMap();
         TreePath[] paths = selectionModel.getSelectionPaths();
         for (int i = 0; i < paths.length; i++) {
             TreePath path = paths[i];
             Component component = null;
-            if (pathIsVisible(path, tree)) {
+            if (tree.getRowForPath(path) != -1) {
                 component = tree.getComponent(path, 0);
             }
             if (component == null) {
@@ -152,35 +189,51 @@ extends AbstractComponentSynchronizePeer {
                     renderState.addUnsentSelection(path);
                 }
             } else {
-                String id = userInstance.getClientRenderId(component);
                 if (renderState != null) {
                     renderState.removeUnsentSelection(path);
                 }
-                if (selection.length() > 0) {
-                    selection.append(",");
+                selection.put(path, userInstance.getClientRenderId(component));
+            }
+        }
+        
+        Map clientSelection = null;
+        if (renderState != null) {
+            clientSelection = renderState.getClientSelection();
+            renderState.setClientSelection(selection);
+        }
+        StringBuffer out = new StringBuffer();
+        if (clientSelection == null) {
+            for (Iterator iterator = selection.values().iterator(); iterator.hasNext();) {
+                if (out.length() > 0) {
+                    out.append(",");
+                }
+                out.append(iterator.next());
+            }
+        } else {
+            out.append("~");
+            for (Iterator iterator = clientSelection.entrySet().iterator(); iterator.hasNext();) {
+                Map.Entry entry = (Map.Entry) iterator.next();
+                if (!entry.getValue().equals(selection.get(entry.getKey()))) {
+                    appendSelectionDelta(out, '-', entry.getValue());
+                }
+            }
+            for (Iterator iterator = selection.entrySet().iterator(); iterator.hasNext();) {
+                Map.Entry entry = (Map.Entry) iterator.next();
+                if (!entry.getValue().equals(clientSelection.get(entry.getKey()))) {
+                    appendSelectionDelta(out, '+', entry.getValue());
                 }
-                selection.append(id);
             }
         }
-        return selection.toString();
+        return out.toString();
     }
     
-	/**
-	 * This method determines if the given path is currently visible to the user
-	 * @param path
-	 * @return
-	 */
-	private static boolean pathIsVisible(TreePath path, Tree tree) {    	
-	    // root node is always visible
-	    if (path.getPathCount() == 1)
-	        return true;
-	    
-	    if (tree.isExpanded(path.getParentPath())) {
-	        return pathIsVisible(path.getParentPath(), tree);
-	    } else {
-	        return false;
-	    }
-	}
+    private static void appendSelectionDelta(StringBuffer out, char operation, Object id) {
+        if (out.length() > 1) {
+            out.append(",");
+        }
+        out.append(operation);
+        out.append(id);
+    }
 
     private static final String PROPERTY_TREE_STRUCTURE = "treeStructure";
     private static final String PROPERTY_COLUMN_COUNT = "columnCount";
@@ -230,6 +283,26 @@ extends AbstractComponentSynchronizePeer {
         addOutputProperty(Tree.SELECTION_CHANGED_PROPERTY);
         
         addEvent(new AbstractComponentSynchronizePeer.EventPeer(Tree.INPUT_ACTION, Tree.ACTION_LISTENERS_CHANGED_PROPERTY));
+        addEvent(new AbstractComponentSynchronizePeer.EventPeer(Tree.INPUT_SORT, Tree.PROPERTY_SORT_ENABLED) {
+            
+            public Class getEventDataClass() {
+                return Integer.class;
+            }
+            
+            public boolean hasListeners(Context context, Component c) {
+                return ((Tree) c).isSortEnabled();
+            }
+        });
+        addEvent(new AbstractComponentSynchronizePeer.EventPeer(Tree.INPUT_VIEWPORT, Tree.VIRTUALIZED_CHANGED_PROPERTY) {
+            
+            public Class getEventDataClass() {
+                return String.class;
+            }
+            
+            public boolean hasListeners(Context context, Component c) {
+                return ((Tree) c).isVirtualized();
+            }
+        });
     }
     
     /**
@@ -272,7 +345,24 @@ extends AbstractComponentSynchronizePeer {
      */
     public Iterator getOutputPropertyIndices(Context context, Component component, String propertyName) {
         if (PROPERTY_COLUMN_WIDTH.equals(propertyName)) {
-            final Iterator columnIterator = ((Tree) component).getColumnModel().getColumns();
+            Tree tree = (Tree) component;
+            TreeRenderState renderState = (TreeRenderState) tree.getContainingWindow().getRenderState(tree);
+            if (renderState != null) {
+                int[] resizedColumns = renderState.getResizedColumns();
+                renderState.clearResizedColumns();
+                if (resizedColumns != null) {
+                    // the client keeps the widths of the other columns
+                    int columnCount = getColumnCount(tree);
+                    List indices = new ArrayList(resizedColumns.length);
+                    for (int i = 0; i < resizedColumns.length; ++i) {
+                        if (resizedColumns[i] < columnCount) {
+                            indices.add(new Integer(resizedColumns[i]));
+                        }
+                    }
+                    return indices.iterator();
+                }
+            }
+            final Iterator columnIterator = tree.getColumnModel().getColumns();
             return new Iterator() {
                 private int i = 0;
             
@@ -308,8 +398,35 @@ extends AbstractComponentSynchronizePeer {
         HashSet extraProperties = new HashSet();
         
         Tree tree = (Tree) update.getParent();
-        if (update.hasRemovedChildren() || update.hasRemovedDescendants()) {
-        	tree.getContainingWindow().removeRenderState(component);
+        if (update.hasUpdatedProperty(Tree.STRUCTURE_INVALIDATED_PROPERTY)) {
+            // all rows have been rendered again, the client state is of no use anymore
+            TreeRenderState renderState = (TreeRenderState) tree.getContainingWindow().getRenderState(component);
+            if (renderState != null) {
+                renderState.dispose();
+                tree.getContainingWindow().removeRenderState(component);
+            }
+            extraProperties.add(PROPERTY_TREE_STRUCTURE);
+            extraProperties.add(Tree.SELECTION_CHANGED_PROPERTY);
+        } else if (update.hasRemovedChildren() || update.hasRemovedDescendants()) {
+            // rows have been removed or rendered again as a result of model changes, the 
+            // render state tracks which nodes need to be sent
+            extraProperties.add(PROPERTY_TREE_STRUCTURE);
+            extraProperties.add(Tree.SELECTION_CHANGED_PROPERTY);
+        }
+        if (update.hasUpdatedProperty(Tree.SORT_CHANGED_PROPERTY) 
+                && !update.hasUpdatedProperty(Tree.STRUCTURE_INVALIDATED_PROPERTY)) {
+            // the rows have been reordered, the client keeps their components
+            TreeRenderState renderState = (TreeRenderState) tree.getContainingWindow().getRenderState(component);
+            if (renderState != null) {
+                renderState.sortChanged();
+            }
+            extraProperties.add(PROPERTY_TREE_STRUCTURE);
+        }
+        if (tree.isVirtualized() && (update.hasUpdatedProperty(Tree.VIEWPORT_CHANGED_PROPERTY) 
+                || update.hasUpdatedProperty(Tree.SORT_CHANGED_PROPERTY)
+                || update.hasUpdatedProperty(Tree.EXPANSION_STATE_CHANGED_PROPERTY)
+                || update.hasUpdatedProperty(Tree.MODEL_CHANGED_PROPERTY) || update.hasAddedChildren())) {
+            // the window of rows is always sent in its entirety
             extraProperties.add(PROPERTY_TREE_STRUCTURE);
             extraProperties.add(Tree.SELECTION_CHANGED_PROPERTY);
         }
@@ -355,22 +472,11 @@ extends AbstractComponentSynchronizePeer {
             TreeSelectionModel selectionModel = tree.getSelectionModel();
             // process deselections
             if (!update.removedSelections.isEmpty()) {
-                TreePath[] paths = new TreePath[update.removedSelections.size()];
-                int i = 0;
-                for (Iterator iterator = update.removedSelections.iterator(); iterator.hasNext();) {
-                    Integer row = (Integer) iterator.next();
-                    paths[i++] = tree.getPathForRow(row.intValue());
-                }
-                selectionModel.removeSelectionPaths(paths);
+                selectionModel.removeSelectionPaths(getPathsForRowIntervals(tree, update.removedSelections));
             }
             // process selections
             if (!update.addedSelections.isEmpty()) {
-                TreePath[] paths = new TreePath[update.addedSelections.size()];
-                int i = 0;
-                for (Iterator iterator = update.addedSelections.iterator(); iterator.hasNext();) {
-                    Integer row = (Integer) iterator.next();
-                    paths[i++] = tree.getPathForRow(row.intValue());
-                }
+                TreePath[] paths = getPathsForRowIntervals(tree, update.addedSelections);
                 if (update.clear) {
                     selectionModel.setSelectionPaths(paths);
                 } else {
@@ -399,5 +505,10 @@ extends AbstractComponentSynchronizePeer {
         ServerMessage serverMessage = (ServerMessage) context.get(ServerMessage.class);
         serverMessage.addLibrary(CommonService.INSTANCE.getId());
         serverMessage.addLibrary(TREE_SERVICE.getId());
+        TreeRenderState renderState = (TreeRenderState) component.getContainingWindow().getRenderState(component);
+        if (renderState != null) {
+            // the component is rendered in its entirety
+            renderState.invalidateColumnWidths();
+        }
     }
 }
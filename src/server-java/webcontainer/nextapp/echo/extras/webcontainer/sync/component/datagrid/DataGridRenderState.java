@@ -0,0 +1,615 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.webcontainer.sync.component.datagrid;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+import nextapp.echo.extras.app.DataGrid;
+import nextapp.echo.extras.app.datagrid.DataGridModel;
+import nextapp.echo.extras.app.event.DataGridModelEvent;
+import nextapp.echo.webcontainer.RenderState;
+
+/**
+ * Holds the state of the model data of a client side <code>DataGrid</code>.
+ * <p>
+ * The render state tracks the regions of cells the client has loaded, and records the events of the model since the 
+ * client was last updated.  These events are translated into a <code>ModelUpdate</code> holding only the changes 
+ * that affect cells loaded by the client.  The client loads regions of whole tiles, and reports the tiles it 
+ * discards from its cache, such that the tracked regions do not outgrow the cells it holds.  At most 
+ * <code>MAX_LOADED_RANGES</code> regions are tracked, additional regions are merged with the closest ones.
+ * <p>
+ * Regions are loaded and discarded through the model service, which does not hold the lock of the application, access
+ * to the render state is therefore synchronized.  A loaded region is recorded with the number of events recorded 
+ * before it, only the events following it are applied to it.  Discarded regions are expressed in the indices of the 
+ * model known by the client, they are ignored if the client has not yet received the last update which moved cells, 
+ * as identified by the version of the render state.  Each region is tagged with the number of the client request 
+ * that loaded it, a discarded region only removes the regions loaded by earlier requests, as the client may already
+ * have requested the tiles again.
+ * <p>
+ * The events are recorded from the <code>MODEL_CONTENT_CHANGED_PROPERTY</code> property changes of the 
+ * <code>DataGrid</code>, such that the model does not reference the render state.  At most <code>MAX_EVENTS</code>
+ * events are recorded, once exceeded the client receives the model in its entirety.
+ */
+public class DataGridRenderState 
+implements RenderState {
+
+    /** Serial Version UID. */
+    private static final long serialVersionUID = 20070101L;
+    
+    /**
+     * Maximum number of updated cell ranges which are kept separately, additional ranges are merged into one.
+     */
+    private static final int MAX_CELL_RANGES = 32;
+    
+    /**
+     * Maximum number of loaded cell ranges which are tracked separately, additional ranges are merged with the range
+     * whose bounds grow the least.
+     */
+    private static final int MAX_LOADED_RANGES = 64;
+    
+    /**
+     * Maximum number of recorded events, additional events cause the model to be sent in its entirety.
+     */
+    private static final int MAX_EVENTS = 1024;
+    
+    /**
+     * Updates the range of indices described by an <code>int[]</code> range of the form 
+     * <code>{ firstColumn, firstRow, lastColumn, lastRow }</code> after indices have been inserted.
+     * 
+     * @param range the range to update
+     * @param axis 0 to update the columns, 1 to update the rows of the range
+     * @param first the first inserted index
+     * @param last the last inserted index
+     */
+    private static void insert(int[] range, int axis, int first, int last) {
+        int count = last - first + 1;
+        if (first <= range[axis]) {
+            range[axis] += count;
+            range[axis + 2] += count;
+        } else if (first <= range[axis + 2]) {
+            range[axis + 2] += count;
+        }
+    }
+    
+    /**
+     * Updates the range of indices described by an <code>int[]</code> range of the form 
+     * <code>{ firstColumn, firstRow, lastColumn, lastRow }</code> after indices have been deleted.
+     * 
+     * @param range the range to update
+     * @param axis 0 to update the columns, 1 to update the rows of the range
+     * @param first the first deleted index
+     * @param last the last deleted index
+     * @return false if all indices of the range have been deleted
+     */
+    private static boolean delete(int[] range, int axis, int first, int last) {
+        int count = last - first + 1;
+        if (last < range[axis]) {
+            range[axis] -= count;
+            range[axis + 2] -= count;
+        } else if (first <= range[axis + 2]) {
+            int overlap = Math.min(last, range[axis + 2]) - Math.max(first, range[axis]) + 1;
+            int remaining = range[axis + 2] - range[axis] + 1 - overlap;
+            if (remaining == 0) {
+                return false;
+            }
+            range[axis] = Math.min(first, range[axis]);
+            range[axis + 2] = range[axis] + remaining - 1;
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the intersection of two ranges of the form <code>{ firstColumn, firstRow, lastColumn, lastRow }</code>.
+     * 
+     * @return the intersection, or <code>null</code> if the ranges do not intersect
+     */
+    private static int[] intersect(int[] range1, int[] range2) {
+        int[] intersection = new int[] { Math.max(range1[0], range2[0]), Math.max(range1[1], range2[1]), 
+                Math.min(range1[2], range2[2]), Math.min(range1[3], range2[3]) };
+        return intersection[0] > intersection[2] || intersection[1] > intersection[3] ? null : intersection;
+    }
+    
+    /**
+     * Returns the number of cells in a range of the form <code>{ firstColumn, firstRow, lastColumn, lastRow }</code>.
+     */
+    private static int size(int[] range) {
+        return (range[2] - range[0] + 1) * (range[3] - range[1] + 1);
+    }
+    
+    /**
+     * Adds a loaded range to a list of loaded ranges.  A range contained in a listed range only updates the request 
+     * number of the listed range.
+     * 
+     * @param loadedRanges the list of loaded ranges
+     * @param range the range to add, of the form 
+     *        <code>{ firstColumn, firstRow, lastColumn, lastRow, requestNumber }</code>
+     */
+    private static void addLoadedRange(List loadedRanges, int[] range) {
+        for (Iterator it = loadedRanges.iterator(); it.hasNext();) {
+            int[] loadedRange = (int[]) it.next();
+            if (loadedRange[0] <= range[0] && loadedRange[1] <= range[1] && loadedRange[2] >= range[2] 
+                    && loadedRange[3] >= range[3]) {
+                loadedRange[4] = Math.max(loadedRange[4], range[4]);
+                return;
+            }
+        }
+        loadedRanges.add(range);
+        mergeLoadedRanges(loadedRanges);
+    }
+    
+    /**
+     * Merges the ranges of a list of loaded ranges until it does not exceed <code>MAX_LOADED_RANGES</code> ranges,
+     * each time merging the two ranges whose bounding range exceeds their sizes the least.
+     * 
+     * @param loadedRanges the list of loaded ranges
+     */
+    private static void mergeLoadedRanges(List loadedRanges) {
+        while (loadedRanges.size() > MAX_LOADED_RANGES) {
+            mergeClosestLoadedRanges(loadedRanges);
+        }
+    }
+    
+    /**
+     * Merges the two ranges of a list of loaded ranges whose bounding range exceeds their sizes the least.
+     * 
+     * @param loadedRanges the list of loaded ranges
+     */
+    private static void mergeClosestLoadedRanges(List loadedRanges) {
+        int mergeIndex1 = 0, mergeIndex2 = 1;
+        long minimumGrowth = Long.MAX_VALUE;
+        for (int i = 0; i < loadedRanges.size(); ++i) {
+            int[] range1 = (int[]) loadedRanges.get(i);
+            for (int j = i + 1; j < loadedRanges.size(); ++j) {
+                int[] range2 = (int[]) loadedRanges.get(j);
+                long growth = (long) (Math.max(range1[2], range2[2]) - Math.min(range1[0], range2[0]) + 1) 
+                        * (Math.max(range1[3], range2[3]) - Math.min(range1[1], range2[1]) + 1) 
+                        - size(range1) - size(range2);
+                if (growth < minimumGrowth) {
+                    minimumGrowth = growth;
+                    mergeIndex1 = i;
+                    mergeIndex2 = j;
+                }
+            }
+        }
+        int[] range1 = (int[]) loadedRanges.get(mergeIndex1);
+        int[] range2 = (int[]) loadedRanges.remove(mergeIndex2);
+        range1[0] = Math.min(range1[0], range2[0]);
+        range1[1] = Math.min(range1[1], range2[1]);
+        range1[2] = Math.max(range1[2], range2[2]);
+        range1[3] = Math.max(range1[3], range2[3]);
+        range1[4] = Math.max(range1[4], range2[4]);
+    }
+    
+    /**
+     * Removes the cells of a discarded range from the ranges of a list which were loaded by requests preceding the 
+     * request that reported the discarded range.  A partially discarded range is replaced by at most four ranges 
+     * holding its remaining cells, which keep any additional elements of the range.
+     * 
+     * @param it an iterator over the ranges, of the form 
+     *        <code>{ firstColumn, firstRow, lastColumn, lastRow, requestNumber, ... }</code>
+     * @param discarded the discarded range, of the form <code>{ firstColumn, firstRow, lastColumn, lastRow }</code>
+     * @param requestNumber the number of the request that reported the discarded range
+     */
+    private static void subtract(ListIterator it, int[] discarded, int requestNumber) {
+        int[] range = (int[]) it.next();
+        if (range[4] >= requestNumber) {
+            return;
+        }
+        int[] removed = intersect(range, discarded);
+        if (removed == null) {
+            return;
+        }
+        it.remove();
+        if (range[1] < removed[1]) {
+            it.add(subrange(range, range[0], range[1], range[2], removed[1] - 1));
+        }
+        if (range[3] > removed[3]) {
+            it.add(subrange(range, range[0], removed[3] + 1, range[2], range[3]));
+        }
+        if (range[0] < removed[0]) {
+            it.add(subrange(range, range[0], removed[1], removed[0] - 1, removed[3]));
+        }
+        if (range[2] > removed[2]) {
+            it.add(subrange(range, removed[2] + 1, removed[1], range[2], removed[3]));
+        }
+    }
+    
+    /**
+     * Returns a copy of a range with different bounds, keeping any additional elements of the range.
+     */
+    private static int[] subrange(int[] range, int firstColumn, int firstRow, int lastColumn, int lastRow) {
+        int[] subrange = (int[]) range.clone();
+        subrange[0] = firstColumn;
+        subrange[1] = firstRow;
+        subrange[2] = lastColumn;
+        subrange[3] = lastRow;
+        return subrange;
+    }
+    
+    private DataGrid dataGrid;
+    /**
+     * The model known by the client, <code>null</code> until the model has been sent.
+     */
+    private DataGridModel model;
+    
+    /**
+     * The ranges of the cells loaded by the client, stored as <code>int[]</code> arrays of the form 
+     * <code>{ firstColumn, firstRow, lastColumn, lastRow, requestNumber }</code>, where requestNumber is the number of 
+     * the client request that loaded the range, or 0 if it was sent with the model.  The ranges are expressed in the 
+     * indices of the model when the update was last prepared, and may overlap.
+     */
+    private List loadedRanges = new ArrayList();
+    
+    /**
+     * The regions loaded by the client while events were recorded, stored as <code>int[]</code> arrays of
+     * the form <code>{ firstColumn, firstRow, lastColumn, lastRow, requestNumber, eventIndex }</code>, where 
+     * eventIndex is the number of events which had been recorded when the region was loaded.
+     */
+    private List loadedRegions = new ArrayList();
+    
+    /**
+     * The version of the indices of the model known by the client, incremented whenever the client receives an update 
+     * which moves or discards cells.
+     */
+    private int version;
+    
+    /**
+     * The events of the model which have not been sent to the client.
+     */
+    private List events = new ArrayList();
+    
+    /**
+     * Flag indicating whether more than <code>MAX_EVENTS</code> events occurred since the client was last updated.
+     */
+    private boolean eventsOverflowed;
+    
+    /**
+     * The prepared update, returned by <code>getModelUpdate()</code>.
+     */
+    private ModelUpdate modelUpdate;
+    
+    /**
+     * Records the events of the model, fired by the <code>DataGrid</code>.
+     */
+    private PropertyChangeListener modelContentListener = new ModelContentListener();
+    
+    /**
+     * Creates a new <code>DataGridRenderState</code>.
+     * 
+     * @param dataGrid the <code>DataGrid</code>
+     */
+    public DataGridRenderState(DataGrid dataGrid) {
+        super();
+        this.dataGrid = dataGrid;
+        dataGrid.addPropertyChangeListener(modelContentListener);
+    }
+    
+    /**
+     * Adds a region of cells to the cells loaded by the client.  The region is expressed in the indices of the model
+     * at the time it is loaded, it is only affected by the events of the model recorded afterwards.
+     * 
+     * @param firstColumn the first column (inclusive)
+     * @param firstRow the first row (inclusive)
+     * @param lastColumn the last column (inclusive)
+     * @param lastRow the last row (inclusive)
+     * @param requestNumber the number of the client request loading the region
+     */
+    public synchronized void addLoadedRegion(int firstColumn, int firstRow, int lastColumn, int lastRow, 
+            int requestNumber) {
+        if (firstColumn > lastColumn || firstRow > lastRow) {
+            return;
+        }
+        if (events.isEmpty()) {
+            addLoadedRange(loadedRanges, new int[] { firstColumn, firstRow, lastColumn, lastRow, requestNumber });
+        } else {
+            loadedRegions.add(new int[] { firstColumn, firstRow, lastColumn, lastRow, requestNumber, events.size() });
+        }
+    }
+    
+    /**
+     * Adds the regions loaded before an event to a list of loaded ranges.
+     * 
+     * @param loaded the list of loaded ranges
+     * @param regionIt the iterator over the loaded regions, positioned before the next region to add
+     * @param eventIndex the index of the event
+     */
+    private void addLoadedRegions(List loaded, ListIterator regionIt, int eventIndex) {
+        while (regionIt.hasNext()) {
+            int[] region = (int[]) regionIt.next();
+            if (region[5] > eventIndex) {
+                regionIt.previous();
+                break;
+            }
+            addLoadedRange(loaded, new int[] { region[0], region[1], region[2], region[3], region[4] });
+        }
+    }
+    
+    /**
+     * Detaches this render state from the <code>DataGrid</code>.
+     */
+    public synchronized void dispose() {
+        dataGrid.removePropertyChangeListener(modelContentListener);
+        model = null;
+        events.clear();
+        loadedRegions.clear();
+    }
+    
+    /**
+     * Returns the update prepared by <code>prepareModelUpdate()</code>, and clears it.
+     * 
+     * @return the update
+     */
+    public synchronized ModelUpdate getModelUpdate() {
+        ModelUpdate modelUpdate = this.modelUpdate;
+        this.modelUpdate = null;
+        return modelUpdate;
+    }
+    
+    /**
+     * Returns the version of the indices of the model known by the client, which the client sends along with the 
+     * regions it discards.
+     * 
+     * @return the version
+     */
+    public synchronized int getVersion() {
+        return version;
+    }
+    
+    /**
+     * Translates the recorded events of the model into an update of the client, retrieved using 
+     * <code>getModelUpdate()</code>.  The update is not prepared if the client has to receive the model in its 
+     * entirety, i.e., if the structure of the model changed.  If too many cells changed, the update invalidates
+     * all values held by the client instead of containing the values of the changed cells.
+     * 
+     * @param maximumSize the maximum number of cells the update may contain
+     * @return true if the update has been prepared
+     */
+    public synchronized boolean prepareModelUpdate(int maximumSize) {
+        modelUpdate = null;
+        if (model == null || model != dataGrid.getModel() || eventsOverflowed) {
+            return false;
+        }
+        ModelUpdate update = new ModelUpdate(model);
+        List cellRanges = new ArrayList();
+        List loaded = new ArrayList();
+        for (Iterator it = loadedRanges.iterator(); it.hasNext();) {
+            loaded.add(((int[]) it.next()).clone());
+        }
+        ListIterator regionIt = loadedRegions.listIterator();
+        
+        for (int eventIndex = 0; eventIndex < events.size(); ++eventIndex) {
+            addLoadedRegions(loaded, regionIt, eventIndex);
+            DataGridModelEvent e = (DataGridModelEvent) events.get(eventIndex);
+            int type = e.getType();
+            int axis = type == DataGridModelEvent.COLUMNS_INSERTED || type == DataGridModelEvent.COLUMNS_DELETED ? 0 : 1;
+            int first = axis == 0 ? e.getFirstColumn() : e.getFirstRow();
+            int last = axis == 0 ? e.getLastColumn() : e.getLastRow();
+            switch (type) {
+            case DataGridModelEvent.CELLS_UPDATED:
+                int[] updatedRange = new int[] { e.getFirstColumn(), e.getFirstRow(), e.getLastColumn(), 
+                        e.getLastRow() };
+                for (Iterator it = loaded.iterator(); it.hasNext();) {
+                    int[] range = intersect((int[]) it.next(), updatedRange);
+                    if (range != null) {
+                        cellRanges.add(range);
+                    }
+                }
+                break;
+            case DataGridModelEvent.ROWS_INSERTED:
+            case DataGridModelEvent.COLUMNS_INSERTED:
+                update.addOperation(type, first, last);
+                for (Iterator it = cellRanges.iterator(); it.hasNext();) {
+                    insert((int[]) it.next(), axis, first, last);
+                }
+                for (Iterator it = loaded.iterator(); it.hasNext();) {
+                    int[] loadedRange = (int[]) it.next();
+                    boolean adjacent = first >= loadedRange[axis] && first <= loadedRange[axis + 2] + 1;
+                    insert(loadedRange, axis, first, last);
+                    if (adjacent) {
+                        // Inserted cells next to loaded cells are sent and become loaded.
+                        loadedRange[axis] = Math.min(loadedRange[axis], first);
+                        loadedRange[axis + 2] = Math.max(loadedRange[axis + 2], last);
+                        int[] insertedRange = new int[] { loadedRange[0], loadedRange[1], loadedRange[2], 
+                                loadedRange[3] };
+                        insertedRange[axis] = first;
+                        insertedRange[axis + 2] = last;
+                        cellRanges.add(insertedRange);
+                    }
+                }
+                break;
+            case DataGridModelEvent.ROWS_DELETED:
+            case DataGridModelEvent.COLUMNS_DELETED:
+                update.addOperation(type, first, last);
+                for (Iterator it = cellRanges.iterator(); it.hasNext();) {
+                    if (!delete((int[]) it.next(), axis, first, last)) {
+                        it.remove();
+                    }
+                }
+                for (Iterator it = loaded.iterator(); it.hasNext();) {
+                    if (!delete((int[]) it.next(), axis, first, last)) {
+                        it.remove();
+                    }
+                }
+                break;
+            default:
+                return false;
+            }
+            
+            if (cellRanges.size() > MAX_CELL_RANGES) {
+                int[] bounds = (int[]) cellRanges.get(0);
+                for (int i = 1; i < cellRanges.size(); ++i) {
+                    int[] cellRange = (int[]) cellRanges.get(i);
+                    bounds[0] = Math.min(bounds[0], cellRange[0]);
+                    bounds[1] = Math.min(bounds[1], cellRange[1]);
+                    bounds[2] = Math.max(bounds[2], cellRange[2]);
+                    bounds[3] = Math.max(bounds[3], cellRange[3]);
+                }
+                cellRanges.clear();
+                cellRanges.add(bounds);
+            }
+        }
+        addLoadedRegions(loaded, regionIt, events.size());
+        
+        // Cells beyond the current size of the model are omitted, they would not have been sent if the model did 
+        // not fire consistent events.
+        int[] modelRange = new int[] { 0, 0, update.getColumnCount() - 1, update.getRowCount() - 1 };
+        int size = 0;
+        for (Iterator it = cellRanges.iterator(); it.hasNext();) {
+            int[] range = intersect((int[]) it.next(), modelRange);
+            if (range != null) {
+                size += size(range);
+                update.addCellRange(range[0], range[1], range[2], range[3]);
+            }
+        }
+        if (size > maximumSize) {
+            // Too many cells changed to send their values: the client discards all values and retrieves those it 
+            // displays again, keeping its position and the size of the model.
+            update.setInvalidated(true);
+            loaded.clear();
+        }
+        
+        loadedRanges.clear();
+        for (Iterator it = loaded.iterator(); it.hasNext();) {
+            int[] loadedRange = (int[]) it.next();
+            int[] range = intersect(loadedRange, modelRange);
+            if (range != null) {
+                loadedRanges.add(new int[] { range[0], range[1], range[2], range[3], loadedRange[4] });
+            }
+        }
+        if (update.isInvalidated() || update.getOperations().size() > 0) {
+            ++version;
+        }
+        update.setVersion(version);
+        events.clear();
+        loadedRegions.clear();
+        modelUpdate = update;
+        return true;
+    }
+    
+    /**
+     * Removes a region of cells from the cells loaded by the client, after the client discarded them from its cache.  
+     * The region is ignored if the client did not yet receive the last update which moved or discarded cells.  
+     * Only cells loaded by requests preceding the reporting request are removed.
+     * 
+     * @param firstColumn the first column (inclusive)
+     * @param firstRow the first row (inclusive)
+     * @param lastColumn the last column (inclusive)
+     * @param lastRow the last row (inclusive)
+     * @param clientVersion the version of the indices of the model known by the client
+     * @param requestNumber the number of the client request reporting the region
+     */
+    public synchronized void removeLoadedRegion(int firstColumn, int firstRow, int lastColumn, int lastRow, 
+            int clientVersion, int requestNumber) {
+        if (clientVersion != version) {
+            return;
+        }
+        int[] discarded = new int[] { firstColumn, firstRow, lastColumn, lastRow };
+        for (ListIterator it = loadedRanges.listIterator(); it.hasNext();) {
+            subtract(it, discarded, requestNumber);
+        }
+        mergeLoadedRanges(loadedRanges);
+        
+        // Regions loaded after cells have been moved are expressed in different indices and are kept.
+        int movedIndex = 0;
+        while (movedIndex < events.size() 
+                && ((DataGridModelEvent) events.get(movedIndex)).getType() == DataGridModelEvent.CELLS_UPDATED) {
+            ++movedIndex;
+        }
+        for (ListIterator it = loadedRegions.listIterator(); it.hasNext();) {
+            if (((int[]) loadedRegions.get(it.nextIndex()))[5] > movedIndex) {
+                break;
+            }
+            subtract(it, discarded, requestNumber);
+        }
+    }
+    
+    /**
+     * Resets the render state after the model data of a region has been sent to the client in its entirety, 
+     * replacing all data the client held.
+     * 
+     * @param firstColumn the first column (inclusive)
+     * @param firstRow the first row (inclusive)
+     * @param lastColumn the last column (inclusive)
+     * @param lastRow the last row (inclusive)
+     */
+    public synchronized void reset(int firstColumn, int firstRow, int lastColumn, int lastRow) {
+        model = dataGrid.getModel();
+        events.clear();
+        eventsOverflowed = false;
+        loadedRegions.clear();
+        loadedRanges.clear();
+        modelUpdate = null;
+        ++version;
+        int[] range = intersect(new int[] { firstColumn, firstRow, lastColumn, lastRow }, 
+                new int[] { 0, 0, model.getColumnCount() - 1, model.getRowCount() - 1 });
+        if (range != null) {
+            loadedRanges.add(new int[] { range[0], range[1], range[2], range[3], 0 });
+        }
+    }
+    
+    /**
+     * Records the events of the model fired by the <code>DataGrid</code> as 
+     * <code>MODEL_CONTENT_CHANGED_PROPERTY</code> property changes.
+     */
+    private class ModelContentListener 
+    implements PropertyChangeListener, Serializable {
+        
+        /** Serial Version UID. */
+        private static final long serialVersionUID = 20070101L;
+
+        /**
+         * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+         */
+        public void propertyChange(PropertyChangeEvent e) {
+            if (!DataGrid.MODEL_CONTENT_CHANGED_PROPERTY.equals(e.getPropertyName())) {
+                return;
+            }
+            synchronized (DataGridRenderState.this) {
+                if (eventsOverflowed) {
+                    return;
+                }
+                if (events.size() >= MAX_EVENTS) {
+                    // The client receives the model in its entirety, the recorded events are of no use anymore.
+                    events.clear();
+                    loadedRegions.clear();
+                    eventsOverflowed = true;
+                } else {
+                    events.add(e.getNewValue());
+                }
+            }
+        }
+    }
+}
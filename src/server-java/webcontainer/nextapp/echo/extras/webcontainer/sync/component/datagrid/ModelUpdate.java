@@ -0,0 +1,194 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.webcontainer.sync.component.datagrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nextapp.echo.extras.app.datagrid.DataGridModel;
+
+/**
+ * A representation of the changes to a <code>DataGridModel</code> that are sent to a client which already holds
+ * a part of its data.  The changes consist of the rows and columns inserted and deleted, in the order they were made,
+ * followed by the ranges of cells whose values the client has to replace.  Cell ranges are expressed in the indices of
+ * the model after all insertions and deletions, their values are read from the model when the update is rendered.
+ * Instead of replacing the values of cells, an update may invalidate all values held by the client, which then 
+ * retrieves the values it displays again.
+ */
+public class ModelUpdate {
+    
+    private DataGridModel model;
+    private int columnCount, rowCount;
+    
+    /**
+     * The insertions and deletions, stored as <code>int[]</code> arrays of the form <code>{ type, first, last }</code>,
+     * where type is a <code>DataGridModelEvent</code> type.
+     */
+    private List operations = new ArrayList();
+    
+    /**
+     * The updated cell ranges, stored as <code>int[]</code> arrays of the form 
+     * <code>{ firstColumn, firstRow, lastColumn, lastRow }</code>.
+     */
+    private List cellRanges = new ArrayList();
+    
+    /**
+     * Flag indicating whether the client discards all values it holds.
+     */
+    private boolean invalidated;
+    
+    /**
+     * The version of the indices of the model after the update, see <code>DataGridRenderState.getVersion()</code>.
+     */
+    private int version;
+    
+    /**
+     * Creates a new <code>ModelUpdate</code>.
+     * 
+     * @param model the <code>DataGridModel</code>
+     */
+    public ModelUpdate(DataGridModel model) {
+        super();
+        this.model = model;
+        columnCount = model.getColumnCount();
+        rowCount = model.getRowCount();
+    }
+    
+    /**
+     * Adds a range of updated cells.
+     * 
+     * @param firstColumn the first column (inclusive)
+     * @param firstRow the first row (inclusive)
+     * @param lastColumn the last column (inclusive)
+     * @param lastRow the last row (inclusive)
+     */
+    public void addCellRange(int firstColumn, int firstRow, int lastColumn, int lastRow) {
+        cellRanges.add(new int[] { firstColumn, firstRow, lastColumn, lastRow });
+    }
+    
+    /**
+     * Adds an insertion or deletion of rows or columns.
+     * 
+     * @param type the <code>DataGridModelEvent</code> type of the operation
+     * @param first the first inserted or deleted index (inclusive)
+     * @param last the last inserted or deleted index (inclusive)
+     */
+    public void addOperation(int type, int first, int last) {
+        operations.add(new int[] { type, first, last });
+    }
+    
+    /**
+     * Returns the updated cell ranges, as <code>int[]</code> arrays of the form 
+     * <code>{ firstColumn, firstRow, lastColumn, lastRow }</code>.
+     * 
+     * @return the cell ranges
+     */
+    public List getCellRanges() {
+        return cellRanges;
+    }
+    
+    /**
+     * Returns the column count of the model.
+     * 
+     * @return the column count
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Returns the <code>DataGridModel</code>.
+     * 
+     * @return the <code>DataGridModel</code>
+     */
+    public DataGridModel getModel() {
+        return model;
+    }
+    
+    /**
+     * Returns the insertions and deletions of rows and columns, as <code>int[]</code> arrays of the form
+     * <code>{ type, first, last }</code>.
+     * 
+     * @return the operations
+     */
+    public List getOperations() {
+        return operations;
+    }
+    
+    /**
+     * Returns the row count of the model.
+     * 
+     * @return the row count
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    /**
+     * Returns the version of the indices of the model after the update.
+     * 
+     * @return the version
+     */
+    public int getVersion() {
+        return version;
+    }
+    
+    /**
+     * Determines whether the client discards all values it holds, after performing the insertions and deletions.
+     * 
+     * @return true if the values are invalidated
+     */
+    public boolean isInvalidated() {
+        return invalidated;
+    }
+    
+    /**
+     * Sets whether the client discards all values it holds, after performing the insertions and deletions.
+     * Any updated cell ranges are discarded when the values are invalidated.
+     * 
+     * @param newValue true to invalidate the values
+     */
+    public void setInvalidated(boolean newValue) {
+        invalidated = newValue;
+        if (invalidated) {
+            cellRanges.clear();
+        }
+    }
+    
+    /**
+     * Sets the version of the indices of the model after the update, which the client sends along with the regions it 
+     * discards.
+     * 
+     * @param newValue the new version
+     */
+    public void setVersion(int newValue) {
+        version = newValue;
+    }
+}
@@ -0,0 +1,128 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.webcontainer.sync.component.datagrid;
+
+import java.util.Iterator;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import nextapp.echo.app.serial.SerialException;
+import nextapp.echo.app.serial.SerialPropertyPeer;
+import nextapp.echo.app.util.Context;
+import nextapp.echo.extras.app.event.DataGridModelEvent;
+import nextapp.echo.extras.webcontainer.sync.component.DataGridPeer;
+
+/**
+ * Serialization peer for <code>ModelUpdate</code>s.
+ * <p>
+ * An update is rendered as an <code>mu</code> element holding the new column and row counts and the version of the
+ * indices of the model (<code>v</code>), containing an element for each insertion or deletion (<code>ir</code>/
+ * <code>dr</code> for rows, <code>ic</code>/<code>dc</code> for columns, with the first and last index as 
+ * <code>s</code> and <code>e</code> attributes), followed by a <code>c</code> element for each updated cell range 
+ * containing the cell values.  An invalidating update contains 
+ * an <code>iv</code> element instead of cell ranges.
+ */
+public class ModelUpdatePeer 
+implements SerialPropertyPeer {
+
+    /**
+     * Returns the element name of an insertion or deletion.
+     * 
+     * @param type the <code>DataGridModelEvent</code> type of the operation
+     * @return the element name
+     */
+    private static String getOperationName(int type) {
+        switch (type) {
+        case DataGridModelEvent.ROWS_INSERTED:
+            return "ir";
+        case DataGridModelEvent.ROWS_DELETED:
+            return "dr";
+        case DataGridModelEvent.COLUMNS_INSERTED:
+            return "ic";
+        case DataGridModelEvent.COLUMNS_DELETED:
+            return "dc";
+        default:
+            throw new IllegalArgumentException("Invalid operation type: " + type);
+        }
+    }
+    
+    /**
+     * @see nextapp.echo.app.serial.SerialPropertyPeer#toProperty(nextapp.echo.app.util.Context, java.lang.Class,
+     *      org.w3c.dom.Element)
+     */
+    public Object toProperty(Context context, Class objectClass, Element propertyElement)
+    throws SerialException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @see nextapp.echo.app.serial.SerialPropertyPeer#toXml(nextapp.echo.app.util.Context, java.lang.Class,
+     *      org.w3c.dom.Element, java.lang.Object)
+     */
+    public void toXml(Context context, Class objectClass, Element propertyElement, Object propertyValue)
+    throws SerialException {
+        propertyElement.setAttribute("t", "Extras.RemoteDataGrid.ModelUpdate");
+        ModelUpdate modelUpdate = (ModelUpdate) propertyValue;
+        Document document = propertyElement.getOwnerDocument();
+        Element updateElement = document.createElement("mu");
+        updateElement.setAttribute("cc", Integer.toString(modelUpdate.getColumnCount()));
+        updateElement.setAttribute("rc", Integer.toString(modelUpdate.getRowCount()));
+        updateElement.setAttribute("v", Integer.toString(modelUpdate.getVersion()));
+        
+        Iterator it = modelUpdate.getOperations().iterator();
+        while (it.hasNext()) {
+            int[] operation = (int[]) it.next();
+            Element operationElement = document.createElement(getOperationName(operation[0]));
+            operationElement.setAttribute("s", Integer.toString(operation[1]));
+            operationElement.setAttribute("e", Integer.toString(operation[2]));
+            updateElement.appendChild(operationElement);
+        }
+        
+        if (modelUpdate.isInvalidated()) {
+            updateElement.appendChild(document.createElement("iv"));
+        }
+        
+        it = modelUpdate.getCellRanges().iterator();
+        while (it.hasNext()) {
+            int[] range = (int[]) it.next();
+            Element cellsElement = document.createElement("c");
+            cellsElement.setAttribute("x1", Integer.toString(range[0]));
+            cellsElement.setAttribute("y1", Integer.toString(range[1]));
+            cellsElement.setAttribute("x2", Integer.toString(range[2]));
+            cellsElement.setAttribute("y2", Integer.toString(range[3]));
+            DataGridPeer.renderModelDataContent(context, 
+                    new DataGridPeer.ModelData(modelUpdate.getModel(), range[0], range[1], range[2], range[3]), cellsElement);
+            updateElement.appendChild(cellsElement);
+        }
+        
+        propertyElement.appendChild(updateElement);
+    }
+}
@@ -0,0 +1,170 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.webcontainer.sync.component.tree;
+
+import org.w3c.dom.Element;
+
+/**
+ * <code>TreeStructureWriter</code> that streams the nodes into a single
+ * compact string, which is stored in the <code>cs</code> attribute of the
+ * property element.
+ * <p>
+ * Nodes are separated by <code>;</code>, the fields of a node by 
+ * <code>,</code>. Each node is written as
+ * <code>flags,depth,id[,parentId][,lines][,columnId...]</code>, where
+ * <code>flags</code> holds the <code>FLAG_XXX</code> values of the node.
+ * The parent id is only written for the roots of partial structures; the 
+ * parent of any other node is the closest preceding node with a depth of
+ * one less. 
+ * <p>
+ * A render id consisting of the same prefix as the preceding id followed by
+ * a number is written as the difference to the number of the preceding id:
+ * an empty field for an increment of one, <code>~</code> followed by the
+ * difference otherwise. Other ids are written literally, with 
+ * <code>\</code> escaping separators and a leading <code>~</code>.
+ */
+public class CompactTreeStructureWriter 
+implements TreeStructureWriter {
+    
+    /** A parent id follows the id of the node. */
+    private static final int FLAG_PARENT = 0x40;
+    
+    /** The lines of a row of a virtualized tree follow the ids. */
+    private static final int FLAG_LINES = 0x80;
+    
+    /**
+     * The maximum number of digits of the number of an id that is written
+     * as a difference.
+     */
+    private static final int MAX_DIGITS = 9;
+    
+    private Element propertyElement;
+    private StringBuffer out = new StringBuffer();
+    private String lastPrefix;
+    private int lastNumber;
+    
+    /**
+     * Creates a new <code>CompactTreeStructureWriter</code>.
+     * 
+     * @param propertyElement the property element to store the structure in
+     */
+    public CompactTreeStructureWriter(Element propertyElement) {
+        this.propertyElement = propertyElement;
+    }
+
+    /**
+     * @see nextapp.echo.extras.webcontainer.sync.component.tree.TreeStructureWriter#writeNode(java.lang.String, 
+     *      java.lang.String, int, int, java.lang.String, java.lang.String[])
+     */
+    public void writeNode(String id, String parentId, int flags, int depth, String lines, String[] columnIds) {
+        boolean writeParent = parentId != null && (flags & FLAG_ROOT) != 0;
+        if (writeParent) {
+            flags |= FLAG_PARENT;
+        }
+        if (lines != null) {
+            flags |= FLAG_LINES;
+        }
+        if (out.length() > 0) {
+            out.append(';');
+        }
+        out.append(flags);
+        out.append(',');
+        out.append(depth);
+        out.append(',');
+        writeId(id);
+        if (writeParent) {
+            out.append(',');
+            writeId(parentId);
+        }
+        if (lines != null) {
+            out.append(',');
+            out.append(lines);
+        }
+        if (columnIds != null) {
+            for (int i = 0; i < columnIds.length; ++i) {
+                out.append(',');
+                writeId(columnIds[i]);
+            }
+        }
+    }
+    
+    /**
+     * Writes a render id, as a difference to the preceding id if possible.
+     */
+    private void writeId(String id) {
+        int length = id.length();
+        int split = length;
+        while (split > 0 && id.charAt(split - 1) >= '0' && id.charAt(split - 1) <= '9') {
+            --split;
+        }
+        int digits = length - split;
+        boolean numbered = digits > 0 && digits <= MAX_DIGITS && (digits == 1 || id.charAt(split) != '0');
+        int number = 0;
+        if (numbered) {
+            for (int i = split; i < length; ++i) {
+                number = number * 10 + (id.charAt(i) - '0');
+            }
+        }
+        
+        if (numbered && lastPrefix != null && lastPrefix.length() == split && id.startsWith(lastPrefix)) {
+            if (number != lastNumber + 1) {
+                out.append('~');
+                out.append(number - lastNumber);
+            }
+        } else {
+            if (length > 0 && id.charAt(0) == '~') {
+                out.append('\\');
+            }
+            for (int i = 0; i < length; ++i) {
+                char ch = id.charAt(i);
+                if (ch == ',' || ch == ';' || ch == '\\') {
+                    out.append('\\');
+                }
+                out.append(ch);
+            }
+        }
+        
+        if (numbered) {
+            if (lastPrefix == null || lastPrefix.length() != split || !id.startsWith(lastPrefix)) {
+                lastPrefix = id.substring(0, split);
+            }
+            lastNumber = number;
+        } else {
+            lastPrefix = null;
+        }
+    }
+
+    /**
+     * @see nextapp.echo.extras.webcontainer.sync.component.tree.TreeStructureWriter#finish()
+     */
+    public void finish() {
+        propertyElement.setAttribute("cs", out.toString());
+    }
+}
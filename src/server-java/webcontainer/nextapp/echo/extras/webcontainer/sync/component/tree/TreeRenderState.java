@@ -1,21 +1,36 @@
 package nextapp.echo.extras.webcontainer.sync.component.tree;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import nextapp.echo.extras.app.Tree;
+import nextapp.echo.extras.app.event.TreeColumnModelEvent;
+import nextapp.echo.extras.app.event.TreeColumnModelListener;
 import nextapp.echo.extras.app.event.TreeExpansionEvent;
-import nextapp.echo.extras.app.event.TreeExpansionListener;
+import nextapp.echo.extras.app.event.TreeExpansionBatchListener;
+import nextapp.echo.extras.app.event.TreeModelEvent;
+import nextapp.echo.extras.app.event.TreeModelListener;
+import nextapp.echo.extras.app.tree.TreeColumn;
+import nextapp.echo.extras.app.tree.TreeColumnModel;
+import nextapp.echo.extras.app.tree.TreeModel;
 import nextapp.echo.extras.app.tree.TreePath;
 import nextapp.echo.webcontainer.RenderState;
 
 /**
  * Holds the state of the client side tree.
+ * <p>
+ * The paths known by the client are not serialized. A deserialized render
+ * state renders the entire tree again on its next render.
  */
 public class TreeRenderState implements RenderState {
     private static final long serialVersionUID = 1L;
@@ -23,47 +38,235 @@ public class TreeRenderState implements RenderState {
      * Holds all paths that are sent down to the client. When a path has children it
      * is only added to this set if all it's children are sent down too.
      */
-    private Set sentPaths = new HashSet();
+    private transient Set sentPaths = new HashSet();
+    /**
+     * Maps all paths for which the client holds a node to the render id of
+     * that node. A node is replaced on the client when the id of its path
+     * changes.
+     */
+    private transient Map clientIds = new HashMap();
     /**
      * Holds paths that are changed on the server since the last synchronization
      */
-    private Set changedPaths = new HashSet();
+    private transient Set changedPaths = new HashSet();
     /**
      * Holds all selection paths that have not been sent to the client
      */
-    private Set unsentSelections = new HashSet();
+    private transient Set unsentSelections = new HashSet();
+    /**
+     * Maps the selected paths the client holds to the render ids they have 
+     * been sent with, or <code>null</code> if the client has not received a
+     * selection since all its nodes have been rendered again.
+     */
+    private transient Map clientSelection;
     /**
      * The path that changed the expansion state of as a result
      * of a client update.
      */
-    private TreePath clientPath;
+    private transient TreePath clientPath;
+    /**
+     * Holds the indices of the columns that have been resized since the 
+     * column widths were last sent, or <code>null</code> if the client has
+     * not received the widths of all columns.
+     */
+    private transient Set resizedColumns;
     /**
      * Indicates whether a full render is necessary
      */
     private boolean fullRender = true;
     private final Tree tree;
+    private TreeModel model;
+    private final TreeColumnModel columnModel;
     
     /**
      * Listens for changes in the expansion state. All changed paths are added
      * to the <code>changedPaths</code> list.
      */
-    private TreeExpansionListener expansionListener = new TreeExpansionListener() {
+    private TreeExpansionBatchListener expansionListener = new TreeExpansionBatchListener() {
         public void treeCollapsed(TreeExpansionEvent event) {
-            if (!event.getPath().equals(clientPath)) {
-                changedPaths.add(event.getPath());
-            }
+            addChangedPaths(event);
         }
         
         public void treeExpanded(TreeExpansionEvent event) {
-            if (!event.getPath().equals(clientPath)) {
-                changedPaths.add(event.getPath());
+            addChangedPaths(event);
+        }
+        
+        public void treePathsCollapsed(TreeExpansionEvent event) {
+            addChangedPaths(event);
+        }
+        
+        public void treePathsExpanded(TreeExpansionEvent event) {
+            addChangedPaths(event);
+        }
+        
+        private void addChangedPaths(TreeExpansionEvent event) {
+            TreePath[] paths = event.getPaths();
+            for (int i = 0; i < paths.length; ++i) {
+                if (!paths[i].equals(clientPath)) {
+                    changedPaths.add(paths[i]);
+                }
+            }
+        }
+    };
+    
+    /**
+     * Records the indices of resized columns. Other changes of the columns 
+     * render the entire tree again.
+     */
+    private TreeColumnModelListener columnModelListener = new TreeColumnModelListener() {
+        public void columnAdded(TreeColumnModelEvent e) { }
+        
+        public void columnMoved(TreeColumnModelEvent e) { }
+        
+        public void columnRemoved(TreeColumnModelEvent e) { }
+        
+        public void columnResized(TreeColumnModelEvent e) {
+            if (TreeColumn.COMPARATOR_CHANGED_PROPERTY.equals(e.getPropertyName())) {
+                // the tree is sorted again, the widths are unchanged
+                return;
+            }
+            if (resizedColumns != null) {
+                int[] columnIndices = e.getColumnIndices();
+                for (int i = 0; i < columnIndices.length; ++i) {
+                    resizedColumns.add(new Integer(columnIndices[i]));
+                }
+            }
+        }
+    };
+    
+    /**
+     * Listens for changes in the model. The nodes that need to be synchronized
+     * as a result of a change are added to the <code>changedPaths</code> list.
+     */
+    private TreeModelListener modelListener = new TreeModelListener() {
+        public void treeNodesAdded(TreeModelEvent e) {
+            invalidatePath(e.getTreePath());
+        }
+        
+        public void treeNodesChanged(TreeModelEvent e) {
+            invalidatePath(e.getTreePath());
+        }
+        
+        public void treeNodesRemoved(TreeModelEvent e) {
+            TreePath parentPath = e.getTreePath();
+            Object[] children = e.getChildren();
+            if (children != null) {
+                Set removedPaths = new HashSet();
+                for (int i = 0; i < children.length; ++i) {
+                    TreePath childPath = parentPath.pathByAddingChild((Serializable) children[i]);
+                    removeClientPath(childPath);
+                    removedPaths.add(childPath);
+                }
+                removeClientDescendants(removedPaths);
+            }
+            invalidatePath(parentPath);
+        }
+        
+        public void treeStructureChanged(TreeModelEvent e) {
+            TreePath path = e.getTreePath();
+            if (path != null) {
+                removeClientDescendants(path);
+                invalidatePath(path);
             }
         }
     };
     
     public TreeRenderState(Tree tree) {
         this.tree = tree;
+        this.model = tree.getViewModel();
+        this.columnModel = tree.getColumnModel();
         tree.addTreeExpansionListener(expansionListener);
+        model.addTreeModelListener(modelListener);
+        columnModel.addColumnModelListener(columnModelListener);
+    }
+    
+    private void readObject(ObjectInputStream in) 
+    throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        sentPaths = new HashSet();
+        clientIds = new HashMap();
+        changedPaths = new HashSet();
+        unsentSelections = new HashSet();
+        fullRender = true;
+    }
+    
+    /**
+     * Detaches this render state from its tree and model.
+     */
+    public void dispose() {
+        tree.removeTreeExpansionListener(expansionListener);
+        model.removeTreeModelListener(modelListener);
+        columnModel.removeColumnModelListener(columnModelListener);
+    }
+    
+    /**
+     * Updates the client state after the tree has been sorted. Every 
+     * expanded node known by the client is sent again with its children in
+     * their new order; the client keeps the rendered components. Collapsed 
+     * nodes are sent again once expanded.
+     */
+    public void sortChanged() {
+        TreeModel viewModel = tree.getViewModel();
+        if (viewModel != model) {
+            model.removeTreeModelListener(modelListener);
+            model = viewModel;
+            model.addTreeModelListener(modelListener);
+        }
+        for (Iterator iterator = sentPaths.iterator(); iterator.hasNext();) {
+            TreePath path = (TreePath) iterator.next();
+            if (tree.isExpanded(path) && tree.getRowForPath(path) != -1) {
+                changedPaths.add(path);
+            } else if (!model.isLeaf(path.getLastPathComponent())) {
+                iterator.remove();
+            }
+        }
+    }
+    
+    /**
+     * Marks the closest visible ancestor of a changed path, or the path itself
+     * if it is visible, as changed. Any hidden path between the two no longer
+     * has a complete set of children on the client.
+     */
+    private void invalidatePath(TreePath path) {
+        while (path != null) {
+            if (tree.getRowForPath(path) != -1) {
+                changedPaths.add(path);
+                if (!tree.isExpanded(path)) {
+                    sentPaths.remove(path);
+                }
+                return;
+            }
+            sentPaths.remove(path);
+            path = path.getParentPath();
+        }
+    }
+    
+    /**
+     * Forgets all client nodes below <code>path</code>.
+     */
+    public void removeClientDescendants(TreePath path) {
+        removeClientDescendants(Collections.singleton(path));
+    }
+    
+    /**
+     * Forgets all client nodes below any of <code>paths</code>, in a single
+     * pass over the client nodes.
+     */
+    private void removeClientDescendants(Set paths) {
+        for (Iterator iterator = clientIds.keySet().iterator(); iterator.hasNext();) {
+            TreePath clientPath = (TreePath) iterator.next();
+            if (clientPath == null) {
+                continue;
+            }
+            for (TreePath ancestor = clientPath.getParentPath(); ancestor != null; 
+                    ancestor = ancestor.getParentPath()) {
+                if (paths.contains(ancestor)) {
+                    iterator.remove();
+                    sentPaths.remove(clientPath);
+                    break;
+                }
+            }
+        }
     }
     
     public void setClientPath(TreePath path) {
@@ -73,6 +276,40 @@ public class TreeRenderState implements RenderState {
         }
     }
     
+    /**
+     * Returns the indices of the columns that have been resized since the
+     * column widths were last sent, in ascending order.
+     * 
+     * @return the indices, or <code>null</code> if the widths of all 
+     *         columns need to be sent
+     */
+    public int[] getResizedColumns() {
+        if (resizedColumns == null) {
+            return null;
+        }
+        int[] columnIndices = new int[resizedColumns.size()];
+        int i = 0;
+        for (Iterator iterator = resizedColumns.iterator(); iterator.hasNext();) {
+            columnIndices[i++] = ((Integer) iterator.next()).intValue();
+        }
+        Arrays.sort(columnIndices);
+        return columnIndices;
+    }
+    
+    /**
+     * Records that the client holds the current widths of all columns.
+     */
+    public void clearResizedColumns() {
+        resizedColumns = new HashSet();
+    }
+    
+    /**
+     * Records that the widths of all columns need to be sent.
+     */
+    public void invalidateColumnWidths() {
+        resizedColumns = null;
+    }
+    
     public boolean isFullRender() {
         return fullRender;
     }
@@ -89,10 +326,100 @@ public class TreeRenderState implements RenderState {
         sentPaths.remove(path);
     }
     
+    /**
+     * Forgets the client node of <code>path</code>.
+     */
+    public void removeClientPath(TreePath path) {
+        clientIds.remove(path);
+        sentPaths.remove(path);
+    }
+    
+    /**
+     * Forgets all client nodes, so that every node is sent again.
+     */
+    public void clearClientPaths() {
+        clientIds.clear();
+        sentPaths.clear();
+        clientSelection = null;
+    }
+    
+    /**
+     * Returns the render id of the node the client holds for
+     * <code>path</code>.
+     * 
+     * @param path the path
+     * @return the render id, or <code>null</code> if the client does not hold
+     *         a node for the path
+     */
+    public String getClientId(TreePath path) {
+        return (String) clientIds.get(path);
+    }
+    
+    public void setClientId(TreePath path, String id) {
+        clientIds.put(path, id);
+    }
+    
     public boolean isSent(TreePath path) {
         return sentPaths.contains(path);
     }
     
+    /**
+     * Sort key of a changed path. Paths are ordered by the row of their
+     * closest visible ancestor (or of the path itself, when visible) and
+     * then by the child indices of the hidden nodes below that ancestor, 
+     * which is the order in which they appear in the tree.
+     */
+    private static class SortKey 
+    implements Comparable {
+        
+        private TreePath path;
+        private int[] key;
+        
+        private SortKey(TreePath path, int[] key) {
+            this.path = path;
+            this.key = key;
+        }
+        
+        /**
+         * @see java.lang.Comparable#compareTo(java.lang.Object)
+         */
+        public int compareTo(Object o) {
+            int[] otherKey = ((SortKey) o).key;
+            int end = Math.min(key.length, otherKey.length);
+            for (int i = 0; i < end; ++i) {
+                if (key[i] != otherKey[i]) {
+                    return key[i] < otherKey[i] ? -1 : 1;
+                }
+            }
+            return key.length - otherKey.length;
+        }
+    }
+    
+    /**
+     * Creates the sort key of a changed path. The model is only queried for
+     * the child indices of nodes that are not visible.
+     */
+    private SortKey createSortKey(TreePath path) {
+        int depth = 0;
+        TreePath visiblePath = path;
+        int row = tree.getRowForPath(visiblePath);
+        while (row == -1 && visiblePath.getParentPath() != null) {
+            visiblePath = visiblePath.getParentPath();
+            row = tree.getRowForPath(visiblePath);
+            ++depth;
+        }
+        int[] key = new int[depth + 1];
+        key[0] = row;
+        TreePath childPath = path;
+        for (int i = depth; i > 0; --i) {
+            TreePath parentPath = childPath.getParentPath();
+            key[i] = model.getIndexOfChild(parentPath.getLastPathComponent(), 
+                    childPath.getLastPathComponent());
+            childPath = parentPath;
+        }
+        return new SortKey(path, key);
+    }
+    
     /**
      * Returns all paths of which the expansion state has been changed since
      * the last synchronization. The paths are sorted by row index.
@@ -100,51 +427,16 @@ public class TreeRenderState implements RenderState {
      * @return all paths that are changed since last synchronization
      */
     public Iterator changedPaths() {
-        ArrayList list = new ArrayList(changedPaths);
-        Collections.sort(list, new Comparator() {
-            public int compare(Object obj1, Object obj2) {
-                TreePath path1 = (TreePath) obj1;
-                TreePath path2 = (TreePath) obj2;
-                if (path1 == path2 || path1.equals(path2)) {
-                    return 0;
-                }
-                int path1Count = path1.getPathCount();
-                int path2Count = path2.getPathCount();
-                if (path1Count == 1) { // path1 has only root element
-                    return -1;
-                } else if (path2Count == 1) { // path2 has only root element
-                    return 1;
-                }
-                int end = Math.min(path1Count, path2Count);
-                int i = 1;
-                for (; i < end; i++) {
-                    Object comp1 = path1.getPathComponent(i);
-                    Object comp2 = path2.getPathComponent(i);
-                    if (comp1 != comp2) {
-                        return compareNodes(i, path1, path2);
-                    }
-                }
-                if (path1Count == i) { // path1 has only root element
-                    return -1;
-                } else if (path2Count == i) { // path2 has only root element
-                    return 1;
-                }
-                return compareNodes(i, path1, path2);
-            }
-            
-            private int compareNodes(int index, TreePath path1, TreePath path2) {
-            	Serializable commonParent = path1.getPathComponent(index - 1);
-                int index1 = tree.getModel().getIndexOfChild(commonParent, path1.getPathComponent(index));
-                int index2 = tree.getModel().getIndexOfChild(commonParent, path2.getPathComponent(index));
-                if (index1 < index2) {
-                    return -1;
-                } else if (index1 > index2) {
-                    return 1;
-                } else {
-                    return 0;
-                }
-            }
-        });
+        SortKey[] keys = new SortKey[changedPaths.size()];
+        int i = 0;
+        for (Iterator iterator = changedPaths.iterator(); iterator.hasNext();) {
+            keys[i++] = createSortKey((TreePath) iterator.next());
+        }
+        Arrays.sort(keys);
+        List list = new ArrayList(keys.length);
+        for (i = 0; i < keys.length; ++i) {
+            list.add(keys[i].path);
+        }
         return list.iterator();
     }
     
@@ -172,4 +464,24 @@ public class TreeRenderState implements RenderState {
     public void removeUnsentSelection(TreePath path) {
         unsentSelections.remove(path);
     }
+    
+    /**
+     * Returns the selection the client holds.
+     * 
+     * @return a <code>Map</code> of the selected paths to the render ids 
+     *         they have been sent with, or <code>null</code> if unknown
+     */
+    public Map getClientSelection() {
+        return clientSelection;
+    }
+    
+    /**
+     * Sets the selection the client holds.
+     * 
+     * @param clientSelection a <code>Map</code> of the selected paths to 
+     *        the render ids they have been sent with
+     */
+    public void setClientSelection(Map clientSelection) {
+        this.clientSelection = clientSelection;
+    }
 }
@@ -1,8 +1,12 @@
 package nextapp.echo.extras.webcontainer.sync.component.tree;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import nextapp.echo.app.Component;
@@ -12,7 +16,6 @@ import nextapp.echo.extras.app.tree.TreeModel;
 import nextapp.echo.extras.app.tree.TreePath;
 import nextapp.echo.webcontainer.UserInstance;
 
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 /**
@@ -24,20 +27,57 @@ public class TreeStructureRenderer {
     private TreeModel model;
     private int columnCount;
     private Element propertyElement;
-    private Document document;
+    private TreeStructureWriter writer;
     private Set renderedPaths = new HashSet();
     private TreeRenderState renderState;
+    private UserInstance userInstance;
     
+    /**
+     * Creates a renderer that writes the structure in the compact format.
+     * 
+     * @param propertyElement the property element
+     * @param tree the tree
+     * @see CompactTreeStructureWriter
+     */
     public TreeStructureRenderer(Element propertyElement, Tree tree) {
+        this(propertyElement, tree, new CompactTreeStructureWriter(propertyElement));
+    }
+    
+    /**
+     * Creates a renderer that writes the structure with the given writer.
+     * 
+     * @param propertyElement the property element
+     * @param tree the tree
+     * @param writer the writer of the nodes
+     */
+    public TreeStructureRenderer(Element propertyElement, Tree tree, TreeStructureWriter writer) {
         this.propertyElement = propertyElement;
-        document = propertyElement.getOwnerDocument();
+        this.writer = writer;
         this.tree = tree;
         columnCount = getColumnCount(tree);
-        model = tree.getModel();
+        model = tree.getViewModel();
     }
     
     public void render(Context context, TreeRenderState renderState) {
         this.renderState = renderState;
+        userInstance = (UserInstance) context.get(UserInstance.class);
+        if (tree.isVirtualized()) {
+            renderWindow(context);
+            writer.finish();
+            return;
+        }
+        if (!renderState.isFullRender() && renderState.hasChangedPaths()) {
+            List rootPaths = getChangedRootPaths();
+            if (rootPaths == null) {
+                renderState.clearClientPaths();
+                renderState.setFullRender(true);
+            } else {
+                for (Iterator iterator = rootPaths.iterator(); iterator.hasNext();) {
+                    TreePath path = (TreePath) iterator.next();
+                    renderNode(context, path.getLastPathComponent(), path, true);
+                }
+            }
+        }
         if (renderState.isFullRender()) {
             if (tree.isHeaderVisible()) {
                 // header
@@ -47,31 +87,161 @@ public class TreeStructureRenderer {
             renderNode(context, value, new TreePath(value), true);
             renderState.setFullRender(false);
             propertyElement.setAttribute("fr", "1");
-        } else if (renderState.hasChangedPaths()) {
-            for (Iterator iterator = renderState.changedPaths(); iterator.hasNext();) {
-                TreePath path = (TreePath) iterator.next();
-                renderNode(context, path.getLastPathComponent(), path, true);
-                renderedPaths.add(path);
+        }
+        writer.finish();
+    }
+    
+    /**
+     * Renders the window of rows of a virtualized tree. As the ancestors of
+     * the rows are generally not sent, every row carries its depth, whether
+     * it has a next sibling, and for each of its ancestors whether that 
+     * ancestor has a next sibling, so that the client can draw the lines 
+     * between the nodes. The paths of the window are retrieved at once, and 
+     * the last child and the lines of each distinct parent are determined
+     * only once.
+     * 
+     * @param context the context
+     */
+    private void renderWindow(Context context) {
+        if (tree.isHeaderVisible()) {
+            doRenderNode(null, tree.getComponent(null, 0), context, null, 0, null, true);
+        }
+        int startRow = tree.getWindowStartRow();
+        int endRow = tree.getWindowEndRow();
+        TreePath[] paths = endRow > startRow ? tree.getPathsBetweenRows(startRow, endRow - 1) : new TreePath[0];
+        Map lastChildren = new HashMap();
+        Map parentLines = new HashMap();
+        for (int i = 0; i < paths.length; ++i) {
+            TreePath path = paths[i];
+            doRenderNode(path, tree.getComponent(path, 0), context, path.getLastPathComponent(), 
+                    hasNextSibling(path, lastChildren) ? TreeStructureWriter.FLAG_NEXT_SIBLING : 0, 
+                    getLines(path.getParentPath(), lastChildren, parentLines), true);
+        }
+        propertyElement.setAttribute("fr", "1");
+        propertyElement.setAttribute("ws", Integer.toString(startRow));
+        propertyElement.setAttribute("rc", Integer.toString(tree.getRowCount()));
+    }
+    
+    /**
+     * Determines whether the node of <code>path</code> has a next sibling,
+     * i.e. whether it is not the last child of its parent.
+     * 
+     * @param path the path
+     * @param lastChildren the last children of the parents determined 
+     *        before, by parent path
+     */
+    private boolean hasNextSibling(TreePath path, Map lastChildren) {
+        TreePath parentPath = path.getParentPath();
+        if (parentPath == null) {
+            return false;
+        }
+        Object lastChild = lastChildren.get(parentPath);
+        if (lastChild == null && !lastChildren.containsKey(parentPath)) {
+            Serializable parent = parentPath.getLastPathComponent();
+            int childCount = model.getChildCount(parent);
+            lastChild = childCount == 0 ? null : model.getChild(parent, childCount - 1);
+            lastChildren.put(parentPath, lastChild);
+        }
+        return lastChild != null && !lastChild.equals(path.getLastPathComponent());
+    }
+    
+    /**
+     * Returns the lines of the children of <code>parentPath</code>: for 
+     * <code>parentPath</code> and each of its ancestors, starting with 
+     * <code>parentPath</code>, '1' if it has a next sibling and '0' if not.
+     * 
+     * @param parentPath the parent path, may be <code>null</code>
+     * @param lastChildren the last children of the parents determined 
+     *        before, by parent path
+     * @param parentLines the lines determined before, by parent path
+     */
+    private String getLines(TreePath parentPath, Map lastChildren, Map parentLines) {
+        if (parentPath == null) {
+            return "";
+        }
+        String lines = (String) parentLines.get(parentPath);
+        if (lines == null) {
+            lines = (hasNextSibling(parentPath, lastChildren) ? "1" : "0") 
+                    + getLines(parentPath.getParentPath(), lastChildren, parentLines);
+            parentLines.put(parentPath, lines);
+        }
+        return lines;
+    }
+    
+    /**
+     * Returns the paths to render for the changed paths of the render state.
+     * When the node of a changed path has been replaced, its parent is 
+     * rendered instead, as the client will only replace the node when the
+     * children of its parent are updated.
+     * 
+     * @return the paths, sorted by row index, or <code>null</code> if the 
+     *         entire tree needs to be rendered
+     */
+    private List getChangedRootPaths() {
+        List rootPaths = new ArrayList();
+        for (Iterator iterator = renderState.changedPaths(); iterator.hasNext();) {
+            TreePath path = (TreePath) iterator.next();
+            if (renderState.getClientId(path) == null && tree.getRowForPath(path) == -1) {
+                // neither known by the client nor visible
+                continue;
             }
+            while (isReplaced(path)) {
+                path = path.getParentPath();
+                if (path == null) {
+                    return null;
+                }
+            }
+            rootPaths.add(path);
         }
+        return rootPaths;
+    }
+    
+    /**
+     * Determines whether the client holds a node for <code>path</code> that
+     * was rendered from a different component.
+     */
+    private boolean isReplaced(TreePath path) {
+        String clientId = renderState.getClientId(path);
+        return clientId != null && !clientId.equals(userInstance.getClientRenderId(tree.getComponent(path, 0)));
     }
     
+    /**
+     * Renders a node, and all of its descendants that are not yet known by 
+     * the client. The children of an expanded node are always listed 
+     * completely, so that the client can discard the children that are no
+     * longer present.
+     * 
+     * @param context the context
+     * @param value the node value, <code>null</code> for the header
+     * @param path the path of the node, <code>null</code> for the header
+     * @param root true if the node is the root of a rendered structure
+     */
     protected void renderNode(Context context, Serializable value, TreePath path, boolean root) {
-        if (renderedPaths.contains(path)) {
-            return;
-        }
-        if (renderState.isSent(path) && !renderState.isPathChanged(path)) {
+        Component component = tree.getComponent(path, 0);
+        String id = userInstance.getClientRenderId(component);
+        String clientId = renderState.getClientId(path);
+        if (renderedPaths.contains(path) && id.equals(clientId)) {
             return;
         }
         
         renderedPaths.add(path);
-        Component component = tree.getComponent(path, 0);
+        boolean created = !id.equals(clientId);
+        if (created && clientId != null) {
+            // the client discards the descendants of a replaced node
+            renderState.removeClientDescendants(path);
+        }
 
         boolean expanded = tree.isExpanded(path);
         boolean leaf = value != null && model.isLeaf(value);
-        Element eElement = doRenderNode(path, component, context, value, root);
-        
-        propertyElement.appendChild(eElement);
+        int flags = 0;
+        if (root && path != null) {
+            flags |= TreeStructureWriter.FLAG_ROOT;
+        }
+        if (expanded && value != null) {
+            flags |= TreeStructureWriter.FLAG_CHILDREN_COMPLETE;
+        }
+        doRenderNode(path, component, context, value, flags, null, created);
+        renderState.setClientId(path, id);
         
         if (value == null) {
             return;
@@ -80,53 +250,80 @@ public class TreeStructureRenderer {
             int childCount = model.getChildCount(value);
             for (int i = 0; i < childCount; ++i) {
             	Serializable childValue = model.getChild(value, i);
-                renderNode(context, childValue, path.pathByAddingChild(childValue), false);
+                renderChildNode(context, childValue, path.pathByAddingChild(childValue));
             }
         }
         if (expanded || leaf) {
             renderState.addSentPath(path);
+        } else if (created) {
+            renderState.removeSentPath(path);
         }
     }
     
-    protected Element doRenderNode(TreePath path, Component component, Context context, Serializable value, boolean root) {
-        
-        UserInstance userInstance = (UserInstance) context.get(UserInstance.class);
-        
-        boolean expanded = tree.isExpanded(path);
-        String id = userInstance.getClientRenderId(component);
-        Element eElement = document.createElement("e");
-        eElement.setAttribute("i", id);
-        if (path != null) {
-            TreePath parentPath = path.getParentPath();
-            if (parentPath != null) {
-                eElement.setAttribute("p", userInstance.getClientRenderId(tree.getComponent(parentPath, 0)));
-            }
+    /**
+     * Renders a child of an expanded node. Children that are already known
+     * and up to date on the client are rendered without columns and
+     * descendants.
+     */
+    private void renderChildNode(Context context, Serializable value, TreePath path) {
+        Component component = tree.getComponent(path, 0);
+        boolean known = userInstance.getClientRenderId(component).equals(renderState.getClientId(path));
+        if (known && (renderedPaths.contains(path) 
+                || (renderState.isSent(path) && !renderState.isPathChanged(path)))) {
+            doRenderNode(path, component, context, value, 0, null, false);
+            return;
         }
-        boolean leaf = value != null && model.isLeaf(value);
+        renderNode(context, value, path, false);
+    }
+    
+    /**
+     * Writes a single node.
+     * 
+     * @param path the path of the node, <code>null</code> for the header
+     * @param component the component of the first column of the node
+     * @param context the context
+     * @param value the node value, <code>null</code> for the header
+     * @param flags the <code>TreeStructureWriter.FLAG_XXX</code> values 
+     *        that can not be derived from the tree, i.e. whether the node is
+     *        a root, whether its children are complete, and whether a row of
+     *        a virtualized tree has a next sibling
+     * @param lines the lines of a row of a virtualized tree, 
+     *        <code>null</code> otherwise
+     * @param renderColumns true if the components of the other columns 
+     *        should be written
+     * @see TreeStructureWriter#writeNode(String, String, int, int, String, String[])
+     */
+    protected void doRenderNode(TreePath path, Component component, Context context, Serializable value, 
+            int flags, String lines, boolean renderColumns) {
+        String id = userInstance.getClientRenderId(component);
+        String parentId = null;
+        int depth = 0;
         if (path == null) {
-            eElement.setAttribute("h", "1");
+            flags |= TreeStructureWriter.FLAG_HEADER;
         } else {
-            if (expanded) {
-                eElement.setAttribute("ex", "1");
-            } else {
-                if (leaf) {
-                    eElement.setAttribute("l", "1");
-                }
+            depth = path.getPathCount();
+            TreePath parentPath = path.getParentPath();
+            if (parentPath != null && !tree.isVirtualized()) {
+                parentId = userInstance.getClientRenderId(tree.getComponent(parentPath, 0));
             }
-            if (root) {
-                eElement.setAttribute("r", "1");
+            if (tree.isExpanded(path)) {
+                flags |= TreeStructureWriter.FLAG_EXPANDED;
+            } else if (value != null && model.isLeaf(value)) {
+                flags |= TreeStructureWriter.FLAG_LEAF;
             }
         }
         
-        if (!renderState.isSent(path)) {
-            for (int i = 1; i < columnCount; ++i) {
-                Component columnComponent = tree.getComponent(path, i);
-                Element columnElement = document.createElement("c");
-                columnElement.setAttribute("i", userInstance.getClientRenderId(columnComponent));
-                eElement.appendChild(columnElement);
+        String[] columnIds = null;
+        if (renderColumns) {
+            columnIds = new String[Math.max(0, columnCount - 1)];
+            if (columnCount > 1) {
+                Component[] components = tree.getRowComponents(path);
+                for (int i = 1; i < columnCount; ++i) {
+                    columnIds[i - 1] = userInstance.getClientRenderId(components[i]);
+                }
             }
         }
-        return eElement;
+        writer.writeNode(id, parentId, flags, depth, lines, columnIds);
     }
     
     private static int getColumnCount(Tree tree) {
@@ -0,0 +1,79 @@
+/* 
+ * This file is part of the Echo Extras Project.
+ * Copyright (C) 2005-2009 NextApp, Inc.
+ *
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ */
+
+package nextapp.echo.extras.webcontainer.sync.component.tree;
+
+/**
+ * Writes the nodes of a tree structure property. Nodes are written in 
+ * the order of their rows, every node being followed by its rendered 
+ * descendants.
+ */
+public interface TreeStructureWriter {
+    
+    /** The node is expanded. */
+    public static final int FLAG_EXPANDED = 0x1;
+    
+    /** The node is a collapsed leaf. */
+    public static final int FLAG_LEAF = 0x2;
+    
+    /** The node is the root of a rendered structure. */
+    public static final int FLAG_ROOT = 0x4;
+    
+    /** All children of the node are rendered. */
+    public static final int FLAG_CHILDREN_COMPLETE = 0x8;
+    
+    /** The node is the header. */
+    public static final int FLAG_HEADER = 0x10;
+    
+    /** The node has a next sibling (virtualized trees only). */
+    public static final int FLAG_NEXT_SIBLING = 0x20;
+    
+    /**
+     * Writes a node.
+     * 
+     * @param id the render id of the node
+     * @param parentId the render id of the parent node, or <code>null</code>
+     *        for the header, the root node and the rows of a virtualized tree
+     * @param flags the <code>FLAG_XXX</code> values of the node
+     * @param depth the number of nodes in the path of the node, 0 for the
+     *        header
+     * @param lines for each ancestor of a row of a virtualized tree, starting
+     *        at the parent, '1' if the ancestor has a next sibling and '0'
+     *        otherwise, or <code>null</code> if the tree is not virtualized
+     * @param columnIds the render ids of the components of the columns 
+     *        following the first column, or <code>null</code> if the columns
+     *        are not rendered
+     */
+    public void writeNode(String id, String parentId, int flags, int depth, String lines, String[] columnIds);
+    
+    /**
+     * Completes writing the structure.
+     */
+    public void finish();
+}